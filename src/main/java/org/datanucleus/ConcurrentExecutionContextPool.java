@@ -0,0 +1,240 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.datanucleus.management.FactoryStatistics;
+import org.datanucleus.util.NucleusLogger;
+
+/**
+ * Pool of ExecutionContext objects that takes no monitor on checkOut/checkIn, for use where ExecutionContexts
+ * are opened and closed at a high rate (e.g one per web request).
+ * <ul>
+ * <li>Each thread maps onto a small "stripe" of slots, used as a bounded per-thread cache. A thread checking in an
+ * ExecutionContext CASes it into a free slot of its stripe, and checking out takes from a used slot of its stripe.</li>
+ * <li>When a stripe is full/empty the ExecutionContext is handed off via a shared time wheel of lock-free deques, where
+ * the bucket is chosen by the time of check in.</li>
+ * <li>Expiry is performed by {@link #cleanUp()} (typically from the reaper thread) and only ever polls expired entries from the
+ * oldest end of each bucket, so costs are proportional to the number of expired objects.</li>
+ * </ul>
+ * The total number of idle ExecutionContexts held is bounded by <i>datanucleus.executionContext.maxIdle</i>.
+ */
+public class ConcurrentExecutionContextPool extends ExecutionContextPool
+{
+    private static final int SLOTS_PER_STRIPE = 2;
+
+    private static final int WHEEL_SIZE = 8;
+
+    private final int stripeMask;
+
+    /** Slots for the per-thread stripes, where the stripe for a thread is at [stripe*SLOTS_PER_STRIPE, (stripe+1)*SLOTS_PER_STRIPE). */
+    private final AtomicReferenceArray<PooledExecutionContext> slots;
+
+    /** Time wheel of idle ExecutionContexts that overflowed their stripe, bucketed by check in time. */
+    private final ConcurrentLinkedDeque<PooledExecutionContext>[] wheel;
+
+    private final long tickMillis;
+
+    /** Number of idle ExecutionContexts held (in slots or wheel). */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentExecutionContextPool(PersistenceNucleusContext nucCtx)
+    {
+        super(nucCtx);
+
+        int numStripes = 1;
+        int maxStripes = Math.max(1, (int)(maxIdle / SLOTS_PER_STRIPE));
+        int numProcs = Runtime.getRuntime().availableProcessors();
+        while (numStripes < numProcs * 2 && numStripes * 2 <= maxStripes)
+        {
+            numStripes *= 2;
+        }
+        this.stripeMask = numStripes - 1;
+        this.slots = new AtomicReferenceArray<>(numStripes * SLOTS_PER_STRIPE);
+
+        this.wheel = new ConcurrentLinkedDeque[WHEEL_SIZE];
+        for (int i=0;i<WHEEL_SIZE;i++)
+        {
+            wheel[i] = new ConcurrentLinkedDeque<>();
+        }
+        this.tickMillis = Math.max(1, expirationTime / (WHEEL_SIZE - 2));
+    }
+
+    @Override
+    public ExecutionContext checkOut(Object owner, Map<String, Object> options)
+    {
+        long now = System.currentTimeMillis();
+        ExecutionContext ec = null;
+
+        // Try the stripe for this thread
+        int start = stripeForCurrentThread() * SLOTS_PER_STRIPE;
+        for (int i=start;i<start+SLOTS_PER_STRIPE && ec == null;i++)
+        {
+            PooledExecutionContext pooled = slots.get(i);
+            if (pooled != null && slots.compareAndSet(i, pooled, null))
+            {
+                ec = acquire(pooled, now);
+            }
+        }
+
+        if (ec == null)
+        {
+            // Try the time wheel, most recent bucket first
+            long tick = now / tickMillis;
+            for (int i=0;i<WHEEL_SIZE && ec == null;i++)
+            {
+                ConcurrentLinkedDeque<PooledExecutionContext> bucket = wheel[(int)((tick - i) & (WHEEL_SIZE - 1))];
+                PooledExecutionContext pooled;
+                while (ec == null && (pooled = bucket.pollLast()) != null)
+                {
+                    ec = acquire(pooled, now);
+                }
+            }
+        }
+
+        FactoryStatistics stats = getStatistics();
+        if (ec != null)
+        {
+            ec.initialise(owner, options);
+            if (stats != null)
+            {
+                stats.executionContextPoolHit(idleCount.get());
+            }
+            return ec;
+        }
+
+        // no objects available, create a new one
+        if (stats != null)
+        {
+            stats.executionContextPoolMiss(idleCount.get());
+        }
+        return create(owner, options);
+    }
+
+    /**
+     * Convenience method to take ownership of a pooled ExecutionContext that has been removed from the slots/wheel.
+     * @param pooled The pooled object
+     * @param now Current time
+     * @return The ExecutionContext if usable, otherwise null (and it is expired)
+     */
+    private ExecutionContext acquire(PooledExecutionContext pooled, long now)
+    {
+        idleCount.decrementAndGet();
+        if ((now - pooled.checkInTime) > expirationTime || !validate(pooled.ec))
+        {
+            // object has expired, or failed validation
+            expire(pooled.ec);
+            return null;
+        }
+        return pooled.ec;
+    }
+
+    @Override
+    public void checkIn(ExecutionContext ec)
+    {
+        if (idleCount.incrementAndGet() > maxIdle)
+        {
+            // Pool is at capacity so just drop it
+            idleCount.decrementAndGet();
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        PooledExecutionContext pooled = new PooledExecutionContext(ec, now);
+
+        // Try the stripe for this thread
+        int start = stripeForCurrentThread() * SLOTS_PER_STRIPE;
+        for (int i=start;i<start+SLOTS_PER_STRIPE;i++)
+        {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, pooled))
+            {
+                return;
+            }
+        }
+
+        // Hand off to the time wheel
+        wheel[(int)((now / tickMillis) & (WHEEL_SIZE - 1))].offerLast(pooled);
+    }
+
+    @Override
+    public void cleanUp()
+    {
+        long now = System.currentTimeMillis();
+        int numExpired = 0;
+
+        for (int i=0;i<slots.length();i++)
+        {
+            PooledExecutionContext pooled = slots.get(i);
+            if (pooled != null && (now - pooled.checkInTime) > expirationTime && slots.compareAndSet(i, pooled, null))
+            {
+                idleCount.decrementAndGet();
+                expire(pooled.ec);
+                numExpired++;
+            }
+        }
+
+        for (ConcurrentLinkedDeque<PooledExecutionContext> bucket : wheel)
+        {
+            // Oldest entries of a bucket are at the head
+            PooledExecutionContext pooled;
+            while ((pooled = bucket.peekFirst()) != null && (now - pooled.checkInTime) > expirationTime)
+            {
+                if (bucket.removeFirstOccurrence(pooled))
+                {
+                    idleCount.decrementAndGet();
+                    expire(pooled.ec);
+                    numExpired++;
+                }
+            }
+        }
+
+        FactoryStatistics stats = getStatistics();
+        if (stats != null)
+        {
+            stats.setExecutionContextPoolSize(idleCount.get());
+        }
+        if (numExpired > 0 && NucleusLogger.PERSISTENCE.isDebugEnabled())
+        {
+            NucleusLogger.PERSISTENCE.debug("Expired " + numExpired + " ExecutionContexts from pool");
+        }
+    }
+
+    private int stripeForCurrentThread()
+    {
+        long id = Thread.currentThread().getId();
+        int h = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & stripeMask;
+    }
+
+    static class PooledExecutionContext
+    {
+        final ExecutionContext ec;
+        final long checkInTime;
+
+        PooledExecutionContext(ExecutionContext ec, long checkInTime)
+        {
+            this.ec = ec;
+            this.checkInTime = checkInTime;
+        }
+    }
+}
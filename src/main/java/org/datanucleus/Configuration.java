@@ -42,6 +42,7 @@ import org.datanucleus.plugin.ConfigurationElement;
 import org.datanucleus.properties.BooleanPropertyValidator;
 import org.datanucleus.properties.FrequentlyAccessedProperties;
 import org.datanucleus.properties.IntegerPropertyValidator;
+import org.datanucleus.properties.LongPropertyValidator;
 import org.datanucleus.properties.PropertyValidator;
 import org.datanucleus.properties.PropertyStore;
 import org.datanucleus.util.Localiser;
@@ -324,6 +325,11 @@ public class Configuration extends PropertyStore implements Serializable
         addDefaultProperty(name, internalName, value!=null?""+value:null, IntegerPropertyValidator.class.getName(), datastore, managerOverrideable);
     }
 
+    public void addDefaultLongProperty(String name, String internalName, Long value, boolean datastore, boolean managerOverrideable)
+    {
+        addDefaultProperty(name, internalName, value!=null?""+value:null, LongPropertyValidator.class.getName(), datastore, managerOverrideable);
+    }
+
     public void addDefaultProperty(String name, String internalName, String value, String validatorName, boolean datastore, boolean managerOverrideable)
     {
         managerOverrideableProperties = null;
@@ -365,6 +371,10 @@ public class Configuration extends PropertyStore implements Serializable
         {
             return Integer.valueOf(value);
         }
+        else if (validatorName.equals(LongPropertyValidator.class.getName()))
+        {
+            return Long.valueOf(value);
+        }
         return value;
     }
 
@@ -4922,6 +4922,7 @@ public class ExecutionContextImpl implements ExecutionContext, TransactionEventL
 
         // Set the fields in the CachedPC
         sm.provideFields(fieldsToUpdate, new L2CachePopulateFieldManager(sm, cachedPC));
+        cachedPC.trimToSize();
 
         return cachedPC;
     }
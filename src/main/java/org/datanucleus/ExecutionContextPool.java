@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.datanucleus.management.FactoryStatistics;
 import org.datanucleus.util.NucleusLogger;
 
 /**
@@ -31,15 +32,19 @@ import org.datanucleus.util.NucleusLogger;
  */
 public class ExecutionContextPool
 {
-    private PersistenceNucleusContext nucCtx;
+    protected PersistenceNucleusContext nucCtx;
 
-    private long maxIdle = 20;
-    private long expirationTime;
+    protected long maxIdle = 20;
+    protected long expirationTime;
 
     private Map<ExecutionContext, Long> recyclableECs = new ConcurrentHashMap<>();
 
     private CleanUpThread cleaner;
 
+    /** Statistics for the context, obtained on first use since they may not yet be available at pool construction. */
+    private volatile FactoryStatistics statistics;
+    private volatile boolean statisticsInitialised = false;
+
     public ExecutionContextPool(PersistenceNucleusContext nucCtx)
     {
         this.maxIdle = nucCtx.getConfiguration().getIntProperty(PropertyNames.PROPERTY_EXECUTION_CONTEXT_MAX_IDLE);
@@ -82,6 +87,11 @@ public class ExecutionContextPool
                     {
                         recycIter.remove();
                         ec.initialise(owner, options);
+                        FactoryStatistics stats = getStatistics();
+                        if (stats != null)
+                        {
+                            stats.executionContextPoolHit(recyclableECs.size());
+                        }
                         return ec;
                     }
 
@@ -94,6 +104,22 @@ public class ExecutionContextPool
         }
 
         // no objects available, create a new one
+        FactoryStatistics stats = getStatistics();
+        if (stats != null)
+        {
+            stats.executionContextPoolMiss(recyclableECs.size());
+        }
+        return create(owner, options);
+    }
+
+    /**
+     * Method to create a new ExecutionContext, for when there is no pooled object available.
+     * @param owner Owner object (PM, EM)
+     * @param options Any options affecting startup
+     * @return The ExecutionContext
+     */
+    protected ExecutionContext create(Object owner, Map<String, Object> options)
+    {
         if (nucCtx.getConfiguration().getBooleanProperty(PropertyNames.PROPERTY_MULTITHREADED))
         {
             return new ExecutionContextThreadedImpl(nucCtx, owner, options);
@@ -101,6 +127,20 @@ public class ExecutionContextPool
         return new ExecutionContextImpl(nucCtx, owner, options);
     }
 
+    /**
+     * Accessor for the statistics of the context that we are pooling for, if enabled.
+     * @return The statistics (or null if not enabled)
+     */
+    protected FactoryStatistics getStatistics()
+    {
+        if (!statisticsInitialised)
+        {
+            statistics = nucCtx.statisticsEnabled() ? nucCtx.getStatistics() : null;
+            statisticsInitialised = true;
+        }
+        return statistics;
+    }
+
     public synchronized void cleanUp()
     {
         ExecutionContext ec;
@@ -117,6 +157,11 @@ public class ExecutionContextPool
                 ec = null;
             }
         }
+        FactoryStatistics stats = getStatistics();
+        if (stats != null)
+        {
+            stats.setExecutionContextPoolSize(recyclableECs.size());
+        }
     }
 
     public synchronized void checkIn(ExecutionContext ec)
@@ -125,6 +170,11 @@ public class ExecutionContextPool
         {
             recyclableECs.put(ec, System.currentTimeMillis());
         }
+        FactoryStatistics stats = getStatistics();
+        if (stats != null)
+        {
+            stats.setExecutionContextPoolSize(recyclableECs.size());
+        }
     }
 
     protected boolean validate(ExecutionContext ec)
@@ -38,6 +38,7 @@ import javax.validation.Validation;
 import org.datanucleus.cache.JavaxCacheLevel2Cache;
 import org.datanucleus.cache.Level2Cache;
 import org.datanucleus.cache.NullLevel2Cache;
+import org.datanucleus.cache.OffHeapLevel2Cache;
 import org.datanucleus.cache.SoftLevel2Cache;
 import org.datanucleus.cache.WeakLevel2Cache;
 import org.datanucleus.enhancer.ImplementationCreator;
@@ -200,12 +201,14 @@ public class PersistenceNucleusContextImpl extends AbstractNucleusContext implem
         conf.addDefaultProperty(PropertyNames.PROPERTY_SERVER_TIMEZONE_ID, null, null, CorePropertyValidator.class.getName(), false, false);
         conf.addDefaultProperty(PropertyNames.PROPERTY_PROPERTIES_FILE, null, null, null, false, false);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_PERSISTENCE_UNIT_LOAD_CLASSES, null, false, false, false);
+        conf.addDefaultProperty(PropertyNames.PROPERTY_EXECUTION_CONTEXT_POOL_TYPE, null, "synchronized", CorePropertyValidator.class.getName(), false, false);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_EXECUTION_CONTEXT_REAPER_THREAD, null, false, false, false);
         conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_EXECUTION_CONTEXT_MAX_IDLE, null, 20, false, false);
         conf.addDefaultProperty(PropertyNames.PROPERTY_EXECUTION_CONTEXT_CLOSE_ACTIVE_TX_ACTION, null, "exception", CorePropertyValidator.class.getName(), false, false);
 
-//        conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_STATE_MANAGER_REAPER_THREAD, null, false, false, false);
-//        conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_STATE_MANAGER_MAX_IDLE, null, 0, false, false);
+        conf.addDefaultProperty(PropertyNames.PROPERTY_STATE_MANAGER_POOL_TYPE, null, "none", CorePropertyValidator.class.getName(), false, false);
+        conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_STATE_MANAGER_REAPER_THREAD, null, false, false, false);
+        conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_STATE_MANAGER_MAX_IDLE, null, 100, false, false);
         conf.addDefaultProperty(PropertyNames.PROPERTY_STATE_MANAGER_CLASS_NAME, null, null, null, false, false);
 
         conf.addDefaultProperty(PropertyNames.PROPERTY_DATASTORE_IDENTITY_TYPE, null, "datanucleus", null, false, false);
@@ -221,6 +224,7 @@ public class PersistenceNucleusContextImpl extends AbstractNucleusContext implem
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_TRANSACTION_NONTX_READ, null, true, false, true);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_TRANSACTION_NONTX_WRITE, null, true, false, true);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_TRANSACTION_NONTX_ATOMIC, null, true, false, true);
+        conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_TRANSACTION_XA_MAX_THREADS, null, 0, false, false);
 
         // Flush process
         conf.addDefaultProperty(PropertyNames.PROPERTY_FLUSH_MODE, null, null, CorePropertyValidator.class.getName(), false, true);
@@ -243,6 +247,7 @@ public class PersistenceNucleusContextImpl extends AbstractNucleusContext implem
         // Store Definition
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_DATASTORE_READONLY, null, false, false, true);
         conf.addDefaultProperty(PropertyNames.PROPERTY_DATASTORE_READONLY_ACTION, null, "EXCEPTION", CorePropertyValidator.class.getName(), false, true);
+        conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_FEDERATION_MAX_THREADS, null, 0, false, false);
 
         // Schema Generation
         conf.addDefaultProperty(PropertyNames.PROPERTY_SCHEMA_GENERATE_DATABASE_MODE, null, "none", CorePropertyValidator.class.getName(), false, false);
@@ -265,6 +270,8 @@ public class PersistenceNucleusContextImpl extends AbstractNucleusContext implem
         conf.addDefaultProperty(PropertyNames.PROPERTY_CACHE_L2_MODE, null, "UNSPECIFIED", CorePropertyValidator.class.getName(), false, false);
         conf.addDefaultProperty(PropertyNames.PROPERTY_CACHE_L2_NAME, null, "datanucleus", null, false, false);
         conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_CACHE_L2_MAXSIZE, null, -1, false, false);
+        conf.addDefaultLongProperty(PropertyNames.PROPERTY_CACHE_L2_OFFHEAP_SIZE, null, 64L*1024*1024, false, false);
+        conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_CACHE_L2_OFFHEAP_BLOCK_SIZE, null, 128, false, false);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_CACHE_L2_LOADFIELDS, null, true, false, false);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_CACHE_L2_CLEARATCLOSE, null, true, false, false);
         conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_CACHE_L2_EXPIRY_MILLIS, null, -1, false, false);
@@ -283,6 +290,7 @@ public class PersistenceNucleusContextImpl extends AbstractNucleusContext implem
         conf.addDefaultProperty(PropertyNames.PROPERTY_CACHE_QUERYRESULTS_TYPE, null, "soft", null, false, false);
         conf.addDefaultProperty(PropertyNames.PROPERTY_CACHE_QUERYRESULTS_NAME, null, "datanucleus-query", null, false, false);
         conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_CACHE_QUERYRESULTS_MAXSIZE, null, -1, false, false);
+        conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_CACHE_QUERYRESULTS_MAX_WEIGHT, null, 100000, false, false);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_CACHE_QUERYRESULTS_CLEARATCLOSE, null, true, false, false);
         conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_CACHE_QUERYRESULTS_EXPIRY_MILLIS, null, -1, false, false);
 
@@ -295,12 +303,18 @@ public class PersistenceNucleusContextImpl extends AbstractNucleusContext implem
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_QUERY_USE_FETCHPLAN, null, true, false, false);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_QUERY_CHECK_UNUSED_PARAMS, null, true, false, false);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_QUERY_COMPILE_OPTIMISE_VAR_THIS, null, false, false, false);
+        conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_QUERY_PARAMETERISE_LITERALS, null, false, false, false);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_QUERY_LOAD_RESULTS_AT_COMMIT, null, true, false, false);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_QUERY_COMPILATION_CACHED, null, true, false, false);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_QUERY_RESULTS_CACHED, null, false, false, false);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_QUERY_EVALUATE_IN_MEMORY, null, false, false, false);
+        conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_QUERY_EVALUATE_IN_MEMORY_PARALLEL_THRESHOLD, null, -1, false, false);
+        conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_QUERY_EVALUATE_IN_MEMORY_PREFETCH, null, false, false, false);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_QUERY_RESULTCACHE_VALIDATEOBJECTS, null, true, false, false);
         conf.addDefaultProperty(PropertyNames.PROPERTY_QUERY_RESULT_SIZE_METHOD, null, "last", null, false, false);
+        conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_QUERY_RESULT_PAGE_SIZE, null, 1, false, false);
+        conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_QUERY_RESULT_READ_AHEAD, null, false, false, false);
+        conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_QUERY_RESULT_READ_AHEAD_MAX_THREADS, null, Runtime.getRuntime().availableProcessors(), false, false);
         conf.addDefaultBooleanProperty(PropertyNames.PROPERTY_QUERY_COMPILE_NAMED_QUERIES_AT_STARTUP, null, false, false, false);
         conf.addDefaultIntegerProperty(PropertyNames.PROPERTY_PERSISTENCE_MAXIMUM_COLLECT_NESTED_EXCEPTIONS, null, Integer.MAX_VALUE, false, false);
 
@@ -503,7 +517,14 @@ public class PersistenceNucleusContextImpl extends AbstractNucleusContext implem
 
         if (ecPool == null)
         {
-            ecPool = new ExecutionContextPool(this);
+            if ("concurrent".equalsIgnoreCase(config.getStringProperty(PropertyNames.PROPERTY_EXECUTION_CONTEXT_POOL_TYPE)))
+            {
+                ecPool = new ConcurrentExecutionContextPool(this);
+            }
+            else
+            {
+                ecPool = new ExecutionContextPool(this);
+            }
         }
         if (smFactory == null)
         {
@@ -563,6 +584,11 @@ public class PersistenceNucleusContextImpl extends AbstractNucleusContext implem
             storeMgr.close();
             storeMgr = null;
         }
+        if (txManager != null)
+        {
+            txManager.close();
+            txManager = null;
+        }
         if (metaDataManager != null)
         {
             metaDataManager.close();
@@ -1163,7 +1189,8 @@ public class PersistenceNucleusContextImpl extends AbstractNucleusContext implem
     {
         if (txManager == null)
         {
-            txManager = new ResourcedTransactionManager();
+            txManager = new ResourcedTransactionManager(config.getIntProperty(PropertyNames.PROPERTY_TRANSACTION_XA_MAX_THREADS),
+                statisticsEnabled() ? getStatistics() : null);
         }
         return txManager;
     }
@@ -1337,6 +1364,10 @@ public class PersistenceNucleusContextImpl extends AbstractNucleusContext implem
             {
                 cache = new JavaxCacheLevel2Cache(this);
             }
+            else if (OffHeapLevel2Cache.NAME.equals(level2Type))
+            {
+                cache = new OffHeapLevel2Cache(this);
+            }
             else
             {
                 // Find the L2 cache class name from its plugin name
@@ -26,6 +26,7 @@ public class PropertyNames
     public static final String PROPERTY_PLUGIN_ALLOW_USER_BUNDLES = "datanucleus.plugin.allowUserBundles".toLowerCase();
     public static final String PROPERTY_PLUGIN_VALIDATEPLUGINS = "datanucleus.plugin.validatePlugins".toLowerCase();
     public static final String PROPERTY_PLUGIN_REGISTRYBUNDLECHECK = "datanucleus.plugin.pluginRegistryBundleCheck".toLowerCase();
+    public static final String PROPERTY_PLUGIN_REGISTRY_INDEX = "datanucleus.plugin.registryIndex".toLowerCase();
 
     public static final String PROPERTY_CLASSLOADER_RESOLVER_NAME = "datanucleus.classLoaderResolverName".toLowerCase();
     public static final String PROPERTY_CLASSLOADER_PRIMARY = "datanucleus.primaryClassLoader".toLowerCase();
@@ -34,6 +35,7 @@ public class PropertyNames
     public static final String PROPERTY_METADATA_ALWAYS_DETACHABLE = "datanucleus.metadata.alwaysDetachable".toLowerCase();
     public static final String PROPERTY_METADATA_XML_VALIDATE = "datanucleus.metadata.xml.validate";
     public static final String PROPERTY_METADATA_XML_NAMESPACE_AWARE = "datanucleus.metadata.xml.namespaceaware";
+    public static final String PROPERTY_METADATA_XML_MAX_THREADS = "datanucleus.metadata.xml.maxThreads".toLowerCase();
     public static final String PROPERTY_METADATA_AUTOREGISTER = "datanucleus.metadata.autoregistration";
     public static final String PROPERTY_METADATA_ALLOW_XML = "datanucleus.metadata.allowXML".toLowerCase();
     public static final String PROPERTY_METADATA_ALLOW_ANNOTATIONS = "datanucleus.metadata.allowAnnotations".toLowerCase();
@@ -48,6 +50,7 @@ public class PropertyNames
     public static final String PROPERTY_METADATA_DEFAULT_NULLABLE = "datanucleus.metadata.defaultNullable".toLowerCase();
     public static final String PROPERTY_METADATA_LISTENER_OBJECT = "datanucleus.metadata.listener.object";
     public static final String PROPERTY_METADATA_JAVAX_VALIDATION_SHORTCUTS = "datanucleus.metadata.javaxValidationShortcuts".toLowerCase();
+    public static final String PROPERTY_METADATA_SNAPSHOT = "datanucleus.metadata.snapshot";
 
     public static final String PROPERTY_METADATA_USE_DISCRIMINATOR_FOR_SINGLE_TABLE = "datanucleus.metadata.useDiscriminatorForSingleTable".toLowerCase();
     public static final String PROPERTY_METADATA_USE_DISCRIMINATOR_DEFAULT_CLASS_NAME = "datanucleus.metadata.useDiscriminatorClassNameByDefault".toLowerCase();
@@ -87,12 +90,14 @@ public class PropertyNames
     public static final String PROPERTY_JMX_TYPE = "datanucleus.jmxtype";
     public static final String PROPERTY_ENABLE_STATISTICS = "datanucleus.enablestatistics";
 
+    public static final String PROPERTY_EXECUTION_CONTEXT_POOL_TYPE = "datanucleus.executionContext.poolType".toLowerCase();
     public static final String PROPERTY_EXECUTION_CONTEXT_REAPER_THREAD = "datanucleus.executioncontext.reaperthread";
     public static final String PROPERTY_EXECUTION_CONTEXT_MAX_IDLE = "datanucleus.executioncontext.maxidle";
     public static final String PROPERTY_EXECUTION_CONTEXT_CLOSE_ACTIVE_TX_ACTION = "datanucleus.executioncontext.closeactivetxaction";
     public static final String PROPERTY_EXECUTION_CONTEXT_ENLISTED_CACHE_FACTORY_CLASS = "datanucleus.executioncontext.enlistedSMCacheFactoryClass".toLowerCase();
-//    public static final String PROPERTY_STATE_MANAGER_REAPER_THREAD = "datanucleus.stateManager.reaperThread".toLowerCase();
-//    public static final String PROPERTY_STATE_MANAGER_MAX_IDLE = "datanucleus.stateManager.maxIdle".toLowerCase();
+    public static final String PROPERTY_STATE_MANAGER_POOL_TYPE = "datanucleus.stateManager.poolType".toLowerCase();
+    public static final String PROPERTY_STATE_MANAGER_REAPER_THREAD = "datanucleus.stateManager.reaperThread".toLowerCase();
+    public static final String PROPERTY_STATE_MANAGER_MAX_IDLE = "datanucleus.stateManager.maxIdle".toLowerCase();
     public static final String PROPERTY_STATE_MANAGER_CLASS_NAME = "datanucleus.statemanager.classname";
 
     public static final String PROPERTY_TRANSACTION_TYPE = "datanucleus.transaction.type";
@@ -102,6 +107,7 @@ public class PropertyNames
     public static final String PROPERTY_TRANSACTION_NONTX_READ = "datanucleus.transaction.nontx.read";
     public static final String PROPERTY_TRANSACTION_NONTX_WRITE = "datanucleus.transaction.nontx.write";
     public static final String PROPERTY_TRANSACTION_NONTX_ATOMIC = "datanucleus.transaction.nontx.atomic";
+    public static final String PROPERTY_TRANSACTION_XA_MAX_THREADS = "datanucleus.transaction.xa.maxThreads".toLowerCase();
 
     public static final String PROPERTY_FLUSH_MODE = "datanucleus.flush.mode";
     public static final String PROPERTY_FLUSH_AUTO_OBJECT_LIMIT = "datanucleus.flush.auto.objectLimit".toLowerCase();
@@ -136,6 +142,7 @@ public class PropertyNames
 
     public static final String PROPERTY_DATASTORE_READ_TIMEOUT = "datanucleus.datastorereadtimeout";
     public static final String PROPERTY_DATASTORE_WRITE_TIMEOUT = "datanucleus.datastorewritetimeout";
+    public static final String PROPERTY_FEDERATION_MAX_THREADS = "datanucleus.federation.maxThreads".toLowerCase();
 
     public static final String PROPERTY_CACHE_L1_TYPE = "datanucleus.cache.level1.type";
 
@@ -145,6 +152,8 @@ public class PropertyNames
     public static final String PROPERTY_CACHE_L2_TYPE = "datanucleus.cache.level2.type";
     public static final String PROPERTY_CACHE_L2_NAME = "datanucleus.cache.level2.cachename";
     public static final String PROPERTY_CACHE_L2_MAXSIZE = "datanucleus.cache.level2.maxsize";
+    public static final String PROPERTY_CACHE_L2_OFFHEAP_SIZE = "datanucleus.cache.level2.offheapsize";
+    public static final String PROPERTY_CACHE_L2_OFFHEAP_BLOCK_SIZE = "datanucleus.cache.level2.offheapblocksize";
     public static final String PROPERTY_CACHE_L2_LOADFIELDS = "datanucleus.cache.level2.loadfields";
     public static final String PROPERTY_CACHE_L2_CLEARATCLOSE = "datanucleus.cache.level2.clearatclose";
     public static final String PROPERTY_CACHE_L2_EXPIRY_MILLIS = "datanucleus.cache.level2.expirymillis";
@@ -167,6 +176,7 @@ public class PropertyNames
     public static final String PROPERTY_CACHE_QUERYRESULTS_TYPE = "datanucleus.cache.queryResults.type".toLowerCase();
     public static final String PROPERTY_CACHE_QUERYRESULTS_NAME = "datanucleus.cache.queryResults.cacheName".toLowerCase();
     public static final String PROPERTY_CACHE_QUERYRESULTS_MAXSIZE = "datanucleus.cache.queryResults.maxSize".toLowerCase();
+    public static final String PROPERTY_CACHE_QUERYRESULTS_MAX_WEIGHT = "datanucleus.cache.queryResults.maxWeight".toLowerCase();
     public static final String PROPERTY_CACHE_QUERYRESULTS_CLEARATCLOSE = "datanucleus.cache.queryResults.clearAtClose".toLowerCase();
     public static final String PROPERTY_CACHE_QUERYRESULTS_EXPIRY_MILLIS = "datanucleus.cache.queryResults.expiryMillis".toLowerCase();
     public static final String PROPERTY_CACHE_QUERYRESULTS_CONFIG_FILE = "datanucleus.cache.queryResults.configurationFile".toLowerCase();
@@ -248,12 +258,18 @@ public class PropertyNames
     public static final String PROPERTY_QUERY_USE_FETCHPLAN = "datanucleus.query.usefetchplan";
     public static final String PROPERTY_QUERY_CHECK_UNUSED_PARAMS = "datanucleus.query.checkunusedparameters";
     public static final String PROPERTY_QUERY_COMPILE_OPTIMISE_VAR_THIS = "datanucleus.query.compileoptimisevarthis";
+    public static final String PROPERTY_QUERY_PARAMETERISE_LITERALS = "datanucleus.query.parameteriseliterals";
     public static final String PROPERTY_QUERY_LOAD_RESULTS_AT_COMMIT = "datanucleus.query.loadresultsatcommit";
     public static final String PROPERTY_QUERY_COMPILATION_CACHED = "datanucleus.query.compilation.cached";
     public static final String PROPERTY_QUERY_RESULTS_CACHED = "datanucleus.query.results.cached";
     public static final String PROPERTY_QUERY_EVALUATE_IN_MEMORY = "datanucleus.query.evaluateinmemory";
+    public static final String PROPERTY_QUERY_EVALUATE_IN_MEMORY_PARALLEL_THRESHOLD = "datanucleus.query.evaluateinmemory.parallelthreshold";
+    public static final String PROPERTY_QUERY_EVALUATE_IN_MEMORY_PREFETCH = "datanucleus.query.evaluateinmemory.prefetch";
     public static final String PROPERTY_QUERY_RESULTCACHE_VALIDATEOBJECTS = "datanucleus.query.resultcache.validateobjects";
     public static final String PROPERTY_QUERY_RESULT_SIZE_METHOD = "datanucleus.query.resultsizemethod";
+    public static final String PROPERTY_QUERY_RESULT_PAGE_SIZE = "datanucleus.query.resultpagesize";
+    public static final String PROPERTY_QUERY_RESULT_READ_AHEAD = "datanucleus.query.resultreadahead";
+    public static final String PROPERTY_QUERY_RESULT_READ_AHEAD_MAX_THREADS = "datanucleus.query.resultreadahead.maxthreads";
     public static final String PROPERTY_QUERY_COMPILE_NAMED_QUERIES_AT_STARTUP = "datanucleus.query.compilenamedqueriesatstartup";
     public static final String PROPERTY_LOCKMANAGER_TYPE = "datanucleus.lockmanager.type";
 }
@@ -21,11 +21,18 @@ package org.datanucleus.cache;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.datanucleus.NucleusContext;
 import org.datanucleus.PropertyNames;
@@ -45,7 +52,13 @@ import org.datanucleus.util.Localiser;
  * Maintains collections of the classes and the identities that are to be pinned if they ever are put into the cache. These are defined by the pinAll(), pin() methods.
  * </P>
  * <P>
- * All mutating methods, and the get method have been synchronized to prevent conflicts.
+ * The ids (and unique keys) of cached objects are also indexed by the class of the object, so that operations on a class (evictAll, pinAll, unpinAll)
+ * only visit the objects of that class rather than the whole cache. Since the unpinned and unique key caches hold soft/weak references the index can
+ * retain ids whose objects have since been garbage collected; these are purged when the index has grown to twice its size after the previous purge.
+ * The purge is performed in the background (on the common fork-join pool) so that it is never part of a put.
+ * An object is always stored before its id is indexed, and whenever an id is removed from the index the cache is checked again afterwards,
+ * re-indexing the id if an object was stored concurrently. This way an object in the cache is never left without its index entry.
+ * All maps used are concurrent so no locking is performed.
  * </P>
  */
 public abstract class AbstractReferencedLevel2Cache implements Level2Cache
@@ -67,10 +80,28 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
     /** Unique Key cache. */
     protected transient Map<CacheUniqueKey, CachedPC> uniqueKeyCache; // transient since WeakValueMap is not serialisable
 
+    /** Ids of the objects in the pinned and unpinned caches, keyed by the class of the object. */
+    protected transient Map<Class, Set<Object>> idsByClass;
+
+    /** Unique keys of the objects in the unique key cache, keyed by the class of the object. */
+    protected transient Map<Class, Set<CacheUniqueKey>> uniqueKeysByClass;
+
     protected ApiAdapter apiAdapter;
 
     private int maxSize = -1;
 
+    /** Minimum number of indexed ids/unique keys before we consider purging those of collected objects. */
+    private static final int MIN_INDEX_PURGE_SIZE = 1024;
+
+    /** Number of ids and unique keys currently in the class indexes. */
+    private transient AtomicInteger indexSize;
+
+    /** Size of the class indexes at which we next purge ids/unique keys of collected objects. */
+    private transient volatile int indexPurgeSize;
+
+    /** Whether a purge of the class indexes is currently scheduled or running. */
+    private transient AtomicBoolean indexPurging;
+
     protected AbstractReferencedLevel2Cache()
     {
         // nothing to do
@@ -83,15 +114,25 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
     public AbstractReferencedLevel2Cache(NucleusContext nucleusCtx)
     {
         apiAdapter = nucleusCtx.getApiAdapter();
-        pinnedCache = new HashMap();
+        pinnedCache = new ConcurrentHashMap<>();
 
         initialiseCaches();
+        initialiseIndexes();
 
         maxSize = nucleusCtx.getConfiguration().getIntProperty(PropertyNames.PROPERTY_CACHE_L2_MAXSIZE);
     }
 
     protected abstract void initialiseCaches();
 
+    private void initialiseIndexes()
+    {
+        idsByClass = new ConcurrentHashMap<>();
+        uniqueKeysByClass = new ConcurrentHashMap<>();
+        indexSize = new AtomicInteger();
+        indexPurgeSize = MIN_INDEX_PURGE_SIZE;
+        indexPurging = new AtomicBoolean();
+    }
+
     /**
      * Method to close the cache when no longer needed. Provides a hook to release resources etc.
      */
@@ -101,6 +142,8 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
         pinnedCache = null;
         unpinnedCache = null;
         uniqueKeyCache = null;
+        idsByClass = null;
+        uniqueKeysByClass = null;
     }
 
     /**
@@ -114,8 +157,23 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
             return;
         }
 
-        unpinnedCache.remove(oid);
-        pinnedCache.remove(oid);
+        CachedPC pc = unpinnedCache.remove(oid);
+        CachedPC pinnedPC = pinnedCache.remove(oid);
+        if (pinnedPC != null)
+        {
+            pc = pinnedPC;
+        }
+        if (pc != null)
+        {
+            Set<Object> ids = idsByClass.get(pc.getObjectClass());
+            if (ids != null && ids.remove(oid))
+            {
+                indexSize.decrementAndGet();
+            }
+
+            // Re-index in case the object was put again concurrently
+            reindexIdIfCached(oid, pinnedCache, unpinnedCache);
+        }
     }
 
     /**
@@ -126,6 +184,9 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
         unpinnedCache.clear();
         pinnedCache.clear();
         uniqueKeyCache.clear();
+        idsByClass.clear();
+        uniqueKeysByClass.clear();
+        indexSize.set(0);
     }
 
     /**
@@ -140,41 +201,201 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
             return;
         }
 
-        Collection oidsToEvict = new HashSet();
-
-        // Find objects to evict from pinned
-        Collection pinnedObjects = pinnedCache.entrySet();
-        Iterator pinnedIter = pinnedObjects.iterator();
-        while (pinnedIter.hasNext())
+        for (Class cls : getIndexedClasses(pcClass, subclasses))
         {
-            Map.Entry entry = (Map.Entry) pinnedIter.next();
-            CachedPC pc = (CachedPC) entry.getValue();
-            if (pcClass.getName().equals(pc.getObjectClass().getName()) || (subclasses && pcClass.isAssignableFrom(pc.getObjectClass())))
+            Set<Object> ids = idsByClass.get(cls);
+            if (ids != null)
+            {
+                Iterator<Object> idIter = ids.iterator();
+                while (idIter.hasNext())
+                {
+                    Object oid = idIter.next();
+                    if (ids.remove(oid))
+                    {
+                        indexSize.decrementAndGet();
+                    }
+                    unpinnedCache.remove(oid);
+                    pinnedCache.remove(oid);
+                }
+            }
+
+            // Unique keys of these objects would otherwise refer to evicted objects
+            Set<CacheUniqueKey> keys = uniqueKeysByClass.get(cls);
+            if (keys != null)
             {
-                oidsToEvict.add(entry.getKey());
+                Iterator<CacheUniqueKey> keyIter = keys.iterator();
+                while (keyIter.hasNext())
+                {
+                    CacheUniqueKey key = keyIter.next();
+                    if (keys.remove(key))
+                    {
+                        indexSize.decrementAndGet();
+                    }
+                    uniqueKeyCache.remove(key);
+                }
             }
         }
+    }
 
-        // Find objects to evict from unpinned
-        Collection unpinnedObjects = unpinnedCache.entrySet();
-        Iterator unpinnedIter = unpinnedObjects.iterator();
-        while (unpinnedIter.hasNext())
+    /**
+     * Accessor for the classes present in the class index that are the specified class, or (optionally) one of its subclasses.
+     * @param pcClass The class
+     * @param subclasses Whether to include subclasses
+     * @return The indexed classes
+     */
+    private List<Class> getIndexedClasses(Class pcClass, boolean subclasses)
+    {
+        List<Class> classes = new ArrayList<>();
+        Set<Class> indexedClasses = new HashSet<>(idsByClass.keySet());
+        indexedClasses.addAll(uniqueKeysByClass.keySet());
+        for (Class cls : indexedClasses)
         {
-            Map.Entry entry = (Map.Entry) unpinnedIter.next();
-            CachedPC pc = (CachedPC) entry.getValue();
-            if (pc != null && (pcClass.getName().equals(pc.getObjectClass().getName()) || (subclasses && pcClass.isAssignableFrom(pc.getObjectClass()))))
+            if (pcClass.getName().equals(cls.getName()) || (subclasses && pcClass.isAssignableFrom(cls)))
             {
-                oidsToEvict.add(entry.getKey());
+                classes.add(cls);
             }
         }
+        return classes;
+    }
+
+    /**
+     * Method to add the id of an object to the class index.
+     * @param oid Id of the object
+     * @param cls Class of the object
+     */
+    private void indexId(Object oid, Class cls)
+    {
+        if (idsByClass.computeIfAbsent(cls, c -> ConcurrentHashMap.newKeySet()).add(oid))
+        {
+            checkIndexSize(indexSize.incrementAndGet());
+        }
+    }
+
+    /**
+     * Method to add a unique key of an object to the class index.
+     * @param key The unique key
+     * @param cls Class of the object
+     */
+    private void indexUniqueKey(CacheUniqueKey key, Class cls)
+    {
+        if (uniqueKeysByClass.computeIfAbsent(cls, c -> ConcurrentHashMap.newKeySet()).add(key))
+        {
+            checkIndexSize(indexSize.incrementAndGet());
+        }
+    }
+
+    /**
+     * Method to re-index the id of an object if it is (still) in the cache, to be called after removing the id from the index.
+     * A put that stored the object before the removal is then not left without its index entry.
+     * @param oid Id of the object
+     * @param pinned The pinned cache
+     * @param unpinned The unpinned cache
+     */
+    private void reindexIdIfCached(Object oid, Map<Object, CachedPC> pinned, Map<Object, CachedPC> unpinned)
+    {
+        CachedPC pc = pinned.get(oid);
+        if (pc == null)
+        {
+            pc = unpinned.get(oid);
+        }
+        if (pc != null)
+        {
+            indexId(oid, pc.getObjectClass());
+        }
+    }
+
+    /**
+     * Method to re-index a unique key if it is (still) in the cache, to be called after removing the unique key from the index.
+     * @param key The unique key
+     * @param uniqueKeys The unique key cache
+     */
+    private void reindexUniqueKeyIfCached(CacheUniqueKey key, Map<CacheUniqueKey, CachedPC> uniqueKeys)
+    {
+        CachedPC pc = uniqueKeys.get(key);
+        if (pc != null)
+        {
+            indexUniqueKey(key, pc.getObjectClass());
+        }
+    }
 
-        // Evict the objects
-        if (!oidsToEvict.isEmpty())
+    /**
+     * Method to schedule a purge of the class indexes when they have grown sufficiently since the last purge.
+     * @param size Current size of the index
+     */
+    private void checkIndexSize(int size)
+    {
+        if (size >= indexPurgeSize && indexPurging.compareAndSet(false, true))
         {
-            evictAll(oidsToEvict);
+            ForkJoinPool.commonPool().execute(this::purgeIndexes);
         }
     }
 
+    /**
+     * Method to purge ids and unique keys from the class indexes where the object is no longer in the cache (i.e has been garbage collected).
+     */
+    void purgeIndexes()
+    {
+        // Take the maps up front since the cache could be closed while purging
+        Map<Object, CachedPC> unpinned = unpinnedCache;
+        Map<Object, CachedPC> pinned = pinnedCache;
+        Map<CacheUniqueKey, CachedPC> uniqueKeys = uniqueKeyCache;
+        Map<Class, Set<Object>> ids = idsByClass;
+        Map<Class, Set<CacheUniqueKey>> keys = uniqueKeysByClass;
+        try
+        {
+            if (unpinned == null || pinned == null || uniqueKeys == null || ids == null || keys == null)
+            {
+                return;
+            }
+
+            for (Set<Object> classIds : ids.values())
+            {
+                Iterator<Object> idIter = classIds.iterator();
+                while (idIter.hasNext())
+                {
+                    // Only count it if it wasn't removed concurrently (e.g by an evict)
+                    Object oid = idIter.next();
+                    if (!unpinned.containsKey(oid) && !pinned.containsKey(oid) && classIds.remove(oid))
+                    {
+                        indexSize.decrementAndGet();
+
+                        // Re-index in case the object was put concurrently
+                        reindexIdIfCached(oid, pinned, unpinned);
+                    }
+                }
+            }
+            for (Set<CacheUniqueKey> classKeys : keys.values())
+            {
+                Iterator<CacheUniqueKey> keyIter = classKeys.iterator();
+                while (keyIter.hasNext())
+                {
+                    CacheUniqueKey key = keyIter.next();
+                    if (!uniqueKeys.containsKey(key) && classKeys.remove(key))
+                    {
+                        indexSize.decrementAndGet();
+
+                        // Re-index in case the object was put concurrently
+                        reindexUniqueKeyIfCached(key, uniqueKeys);
+                    }
+                }
+            }
+            indexPurgeSize = Math.max(MIN_INDEX_PURGE_SIZE, 2 * indexSize.get());
+        }
+        finally
+        {
+            indexPurging.set(false);
+        }
+    }
+
+    /**
+     * Accessor for the number of ids and unique keys in the class indexes.
+     * @return The size of the class indexes
+     */
+    int getIndexSize()
+    {
+        return indexSize.get();
+    }
+
     /**
      * Method to evict the objects with the specified ids.
      * @param oids The ids of the objects to evict
@@ -344,15 +565,11 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
             toBePinned = true;
         }
 
-        Object obj = null;
+        CachedPC obj = null;
         if (pinnedCache.get(oid) != null)
         {
             // Update the pinned cache if object is already there
             obj = pinnedCache.put(oid, pc);
-            if (obj != null)
-            {
-                return (CachedPC) obj;
-            }
         }
         else
         {
@@ -366,14 +583,13 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
             {
                 // Update the unpinned cache otherwise
                 obj = unpinnedCache.put(oid, pc);
-                if (obj != null)
-                {
-                    return (CachedPC) obj;
-                }
             }
         }
 
-        return null;
+        // Index after storing, so that a concurrent purge/evict of the index cannot leave the object unindexed
+        indexId(oid, pc.getObjectClass());
+
+        return obj;
     }
 
     /**
@@ -410,7 +626,9 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
     @Override
     public CachedPC putUnique(CacheUniqueKey key, CachedPC pc)
     {
-        return uniqueKeyCache.put(key, pc);
+        CachedPC previous = uniqueKeyCache.put(key, pc);
+        indexUniqueKey(key, pc.getObjectClass());
+        return previous;
     }
 
     /* (non-Javadoc)
@@ -420,6 +638,10 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
     public void putUniqueAll(Map<CacheUniqueKey, CachedPC> objs)
     {
         uniqueKeyCache.putAll(objs);
+        for (Map.Entry<CacheUniqueKey, CachedPC> entry : objs.entrySet())
+        {
+            indexUniqueKey(entry.getKey(), entry.getValue().getObjectClass());
+        }
     }
 
     /* (non-Javadoc)
@@ -428,7 +650,18 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
     @Override
     public void removeUnique(CacheUniqueKey key)
     {
-        uniqueKeyCache.remove(key);
+        CachedPC pc = uniqueKeyCache.remove(key);
+        if (pc != null)
+        {
+            Set<CacheUniqueKey> keys = uniqueKeysByClass.get(pc.getObjectClass());
+            if (keys != null && keys.remove(key))
+            {
+                indexSize.decrementAndGet();
+            }
+
+            // Re-index in case the object was put again concurrently
+            reindexUniqueKeyIfCached(key, uniqueKeyCache);
+        }
     }
 
     private void writeObject(ObjectOutputStream out) throws IOException
@@ -442,6 +675,11 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
         in.defaultReadObject();
 
         initialiseCaches();
+        initialiseIndexes();
+        for (Map.Entry<Object, CachedPC> entry : pinnedCache.entrySet())
+        {
+            indexId(entry.getKey(), entry.getValue().getObjectClass());
+        }
     }
 
     /**
@@ -499,14 +737,21 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
         pinnedClasses.add(pinnedCls);
 
         // Update all currently unpinned objects to comply with the new class specification
-        Collection unpinnedObjects = unpinnedCache.values();
-        Iterator unpinnedIter = unpinnedObjects.iterator();
-        while (unpinnedIter.hasNext())
+        for (Class indexedCls : getIndexedClasses(cls, subs))
         {
-            CachedPC obj = (CachedPC) unpinnedIter.next();
-            if ((subs && cls.isInstance(obj.getObjectClass())) || cls.getName().equals(obj.getObjectClass().getName()))
+            Set<Object> ids = idsByClass.get(indexedCls);
+            if (ids != null)
             {
-                pin(obj);
+                for (Object oid : ids)
+                {
+                    // Add before removing so that the object is always in one of the caches
+                    CachedPC pc = unpinnedCache.get(oid);
+                    if (pc != null)
+                    {
+                        pinnedCache.put(oid, pc);
+                        unpinnedCache.remove(oid);
+                    }
+                }
             }
         }
     }
@@ -591,14 +836,21 @@ public abstract class AbstractReferencedLevel2Cache implements Level2Cache
         }
 
         // Unpin all objects of this type currently pinned
-        Collection pinnedObjects = pinnedCache.values();
-        Iterator pinnedIter = pinnedObjects.iterator();
-        while (pinnedIter.hasNext())
+        for (Class indexedCls : getIndexedClasses(cls, subs))
         {
-            CachedPC obj = (CachedPC) pinnedIter.next();
-            if ((subs && cls.isInstance(obj.getObjectClass())) || cls.getName().equals(obj.getObjectClass().getName()))
+            Set<Object> ids = idsByClass.get(indexedCls);
+            if (ids != null)
             {
-                unpin(obj);
+                for (Object oid : ids)
+                {
+                    // Add before removing so that the object is always in one of the caches
+                    CachedPC pc = pinnedCache.get(oid);
+                    if (pc != null)
+                    {
+                        unpinnedCache.put(oid, pc);
+                        pinnedCache.remove(oid);
+                    }
+                }
             }
         }
     }
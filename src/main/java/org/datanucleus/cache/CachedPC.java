@@ -17,27 +17,47 @@ Contributors:
 **********************************************************************/
 package org.datanucleus.cache;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
-import org.datanucleus.util.ClassUtils;
+import org.datanucleus.ClassLoaderResolver;
+import org.datanucleus.exceptions.ClassNotResolvedException;
 import org.datanucleus.util.StringUtils;
 
 /**
  * An object that is stored in the Level2 Cache keyed by the identity of the persistable object.
- * Comprises a map of the field values keyed by the absolute field number in the class, the loaded fields array, and the version of the object that is represented with these values.
+ * Comprises the field values indexed by the absolute field number in the class, the loaded fields, and the version of the object that is represented with these values.
  * <ul>
- * <li>Where the field is a relation field (PC, Map, Collection, array) we store the id of any referenced persistable object. 
- * This is used when regenerating the object, and recreating its relations. 
+ * <li>Where the field is a relation field (PC, Map, Collection, array) we store the id of any referenced persistable object.
+ * This is used when regenerating the object, and recreating its relations.
  * Note that the "id" is the DatastoreId or SingleFieldId etc where applicable otherwise is CachedId (ensuring that the class of the related object is stored).</li>
  * <li>Where the field contains an embedded/serialised persistable object, we store a nested CachedPC object representing that object (since it doesn't exist in its own right).</li>
  * </ul>
+ * Since there can be very many of these objects in a cache, the layout is kept compact. The loaded fields are held as a bit mask,
+ * object field values in an array indexed by the absolute field number, and primitive field values are held unboxed in a long[]
+ * that only has an element for each primitive field that has a value (with a bit mask of which fields these are).
  */
 public class CachedPC implements Serializable, Comparable<CachedPC>
 {
-    private static final long serialVersionUID = 1326244752228266953L;
+    private static final long serialVersionUID = -3421628305849613452L;
+
+    /** Tags for the forms of object values in the binary form written by writeTo. */
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_CACHEDPC = 1;
+    private static final byte VALUE_STRING = 2;
+    private static final byte VALUE_INTEGER = 3;
+    private static final byte VALUE_LONG = 4;
+    private static final byte VALUE_SERIALISED = 5;
 
     /** Class of the object being cached. */
     private Class cls;
@@ -45,14 +65,29 @@ public class CachedPC implements Serializable, Comparable<CachedPC>
     /** Identity of the object being cached. This is to allow recreation of the object when using uniqueKey lookup. This will be null if embedded/serialised. */
     private Object id;
 
-    /** Values for the fields, keyed by the absolute field number. */
-    private Map<Integer, Object> fieldValues = null;
+    /** Number of (absolute) fields in the class. */
+    private final int numFields;
+
+    /** Values for the (non-primitive) fields, indexed by the absolute field number. */
+    private Object[] fieldValues = null;
+
+    /** Bit mask of the fields whose value is held in primitiveValues. */
+    private long[] primitiveFields = null;
+
+    /** Values for the primitive fields, in order of absolute field number. Floating point values are stored as their raw bits. */
+    private long[] primitiveValues = null;
+
+    /** Type of each value in primitiveValues, using the JVM type descriptor (Z, B, C, S, I, J, F, D). */
+    private byte[] primitiveTypes = null;
+
+    /** Number of values in primitiveValues/primitiveTypes. The arrays can have spare capacity beyond this until trimToSize() is called. */
+    private int numPrimitives = 0;
 
     /** Version of the cached object (if any) - Long, Timestamp etc. */
     private Object version;
 
-    /** The loaded fields array. TODO Note that this could be interpreted from the keys of fieldValues. */
-    private boolean[] loadedFields;
+    /** Bit mask of the loaded fields. */
+    private long[] loadedFields;
 
     /**
      * Constructor.
@@ -65,11 +100,15 @@ public class CachedPC implements Serializable, Comparable<CachedPC>
     {
         this.cls = cls;
         this.id = id;
+        this.numFields = loadedFields.length;
 
-        this.loadedFields = new boolean[loadedFields.length];
-        for (int i = 0; i < loadedFields.length; i++)
+        this.loadedFields = new long[(numFields + 63) >>> 6];
+        for (int i = 0; i < numFields; i++)
         {
-            this.loadedFields[i] = loadedFields[i];
+            if (loadedFields[i])
+            {
+                this.loadedFields[i >>> 6] |= 1L << i;
+            }
         }
         this.version = vers;
     }
@@ -84,18 +123,253 @@ public class CachedPC implements Serializable, Comparable<CachedPC>
         return id;
     }
 
-    public void setFieldValue(Integer fieldNumber, Object value)
+    public void setFieldValue(int fieldNumber, Object value)
     {
+        removePrimitiveFieldValue(fieldNumber);
         if (fieldValues == null)
         {
-            fieldValues = new HashMap<>();
+            if (value == null)
+            {
+                return;
+            }
+            fieldValues = new Object[numFields];
         }
-        fieldValues.put(fieldNumber, value);
+        fieldValues[fieldNumber] = value;
+    }
+
+    /**
+     * Mutator for the value of the specified field.
+     * @param fieldNumber Absolute field number
+     * @param value The value
+     * @deprecated Use setFieldValue(int, Object)
+     */
+    @Deprecated
+    public void setFieldValue(Integer fieldNumber, Object value)
+    {
+        setFieldValue(fieldNumber.intValue(), value);
+    }
+
+    /**
+     * Accessor for the value of the specified field. Primitive field values are returned boxed.
+     * @param fieldNumber Absolute field number
+     * @return The value
+     */
+    public Object getFieldValue(int fieldNumber)
+    {
+        int pos = getPrimitivePosition(fieldNumber);
+        if (pos >= 0)
+        {
+            long bits = primitiveValues[pos];
+            switch (primitiveTypes[pos])
+            {
+                case 'Z':
+                    return bits != 0;
+                case 'B':
+                    return (byte)bits;
+                case 'C':
+                    return (char)bits;
+                case 'S':
+                    return (short)bits;
+                case 'I':
+                    return (int)bits;
+                case 'F':
+                    return Float.intBitsToFloat((int)bits);
+                case 'D':
+                    return Double.longBitsToDouble(bits);
+                default:
+                    return bits;
+            }
+        }
+        return (fieldValues == null) ? null : fieldValues[fieldNumber];
+    }
+
+    public void setBooleanFieldValue(int fieldNumber, boolean value)
+    {
+        setPrimitiveFieldValue(fieldNumber, (byte)'Z', value ? 1 : 0);
+    }
+
+    public void setByteFieldValue(int fieldNumber, byte value)
+    {
+        setPrimitiveFieldValue(fieldNumber, (byte)'B', value);
     }
 
+    public void setCharFieldValue(int fieldNumber, char value)
+    {
+        setPrimitiveFieldValue(fieldNumber, (byte)'C', value);
+    }
+
+    public void setShortFieldValue(int fieldNumber, short value)
+    {
+        setPrimitiveFieldValue(fieldNumber, (byte)'S', value);
+    }
+
+    public void setIntFieldValue(int fieldNumber, int value)
+    {
+        setPrimitiveFieldValue(fieldNumber, (byte)'I', value);
+    }
+
+    public void setLongFieldValue(int fieldNumber, long value)
+    {
+        setPrimitiveFieldValue(fieldNumber, (byte)'J', value);
+    }
+
+    public void setFloatFieldValue(int fieldNumber, float value)
+    {
+        setPrimitiveFieldValue(fieldNumber, (byte)'F', Float.floatToRawIntBits(value));
+    }
+
+    public void setDoubleFieldValue(int fieldNumber, double value)
+    {
+        setPrimitiveFieldValue(fieldNumber, (byte)'D', Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Accessor for the value of the specified field. Primitive field values are returned boxed.
+     * @param fieldNumber Absolute field number
+     * @return The value
+     * @deprecated Use getFieldValue(int)
+     */
+    @Deprecated
     public Object getFieldValue(Integer fieldNumber)
     {
-        return (fieldValues == null) ? null : fieldValues.get(fieldNumber);
+        return getFieldValue(fieldNumber.intValue());
+    }
+
+    public boolean getBooleanFieldValue(int fieldNumber)
+    {
+        int pos = getPrimitivePosition(fieldNumber);
+        return pos >= 0 ? primitiveValues[pos] != 0 : (Boolean)getFieldValue(fieldNumber);
+    }
+
+    public byte getByteFieldValue(int fieldNumber)
+    {
+        int pos = getPrimitivePosition(fieldNumber);
+        return pos >= 0 ? (byte)primitiveValues[pos] : (Byte)getFieldValue(fieldNumber);
+    }
+
+    public char getCharFieldValue(int fieldNumber)
+    {
+        int pos = getPrimitivePosition(fieldNumber);
+        return pos >= 0 ? (char)primitiveValues[pos] : (Character)getFieldValue(fieldNumber);
+    }
+
+    public short getShortFieldValue(int fieldNumber)
+    {
+        int pos = getPrimitivePosition(fieldNumber);
+        return pos >= 0 ? (short)primitiveValues[pos] : (Short)getFieldValue(fieldNumber);
+    }
+
+    public int getIntFieldValue(int fieldNumber)
+    {
+        int pos = getPrimitivePosition(fieldNumber);
+        return pos >= 0 ? (int)primitiveValues[pos] : (Integer)getFieldValue(fieldNumber);
+    }
+
+    public long getLongFieldValue(int fieldNumber)
+    {
+        int pos = getPrimitivePosition(fieldNumber);
+        return pos >= 0 ? primitiveValues[pos] : (Long)getFieldValue(fieldNumber);
+    }
+
+    public float getFloatFieldValue(int fieldNumber)
+    {
+        int pos = getPrimitivePosition(fieldNumber);
+        return pos >= 0 ? Float.intBitsToFloat((int)primitiveValues[pos]) : (Float)getFieldValue(fieldNumber);
+    }
+
+    public double getDoubleFieldValue(int fieldNumber)
+    {
+        int pos = getPrimitivePosition(fieldNumber);
+        return pos >= 0 ? Double.longBitsToDouble(primitiveValues[pos]) : (Double)getFieldValue(fieldNumber);
+    }
+
+    /**
+     * Method to store the value of a primitive field, inserting it into the primitive values in field number order if not yet present.
+     * The arrays of primitive values are initially sized for all loaded fields, so are not normally reallocated while the values of an object
+     * are set, and otherwise grow by doubling.
+     * @param fieldNumber Absolute field number
+     * @param type JVM type descriptor of the field
+     * @param bits The value
+     */
+    private void setPrimitiveFieldValue(int fieldNumber, byte type, long bits)
+    {
+        if (fieldValues != null)
+        {
+            fieldValues[fieldNumber] = null;
+        }
+
+        if (primitiveFields == null)
+        {
+            primitiveFields = new long[(numFields + 63) >>> 6];
+        }
+        int pos = getPrimitiveRank(fieldNumber);
+        if ((primitiveFields[fieldNumber >>> 6] & (1L << fieldNumber)) == 0)
+        {
+            // Not yet present so insert it at its position
+            if (primitiveValues == null)
+            {
+                int capacity = 0;
+                for (long word : loadedFields)
+                {
+                    capacity += Long.bitCount(word);
+                }
+                primitiveValues = new long[Math.max(1, capacity)];
+                primitiveTypes = new byte[primitiveValues.length];
+            }
+            else if (numPrimitives == primitiveValues.length)
+            {
+                primitiveValues = Arrays.copyOf(primitiveValues, numPrimitives * 2);
+                primitiveTypes = Arrays.copyOf(primitiveTypes, numPrimitives * 2);
+            }
+            System.arraycopy(primitiveValues, pos, primitiveValues, pos + 1, numPrimitives - pos);
+            System.arraycopy(primitiveTypes, pos, primitiveTypes, pos + 1, numPrimitives - pos);
+            numPrimitives++;
+            primitiveFields[fieldNumber >>> 6] |= 1L << fieldNumber;
+        }
+        primitiveValues[pos] = bits;
+        primitiveTypes[pos] = type;
+    }
+
+    private void removePrimitiveFieldValue(int fieldNumber)
+    {
+        int pos = getPrimitivePosition(fieldNumber);
+        if (pos >= 0)
+        {
+            System.arraycopy(primitiveValues, pos + 1, primitiveValues, pos, numPrimitives - pos - 1);
+            System.arraycopy(primitiveTypes, pos + 1, primitiveTypes, pos, numPrimitives - pos - 1);
+            numPrimitives--;
+            primitiveFields[fieldNumber >>> 6] &= ~(1L << fieldNumber);
+        }
+    }
+
+    /**
+     * Accessor for the position of the specified field in the primitive values.
+     * @param fieldNumber Absolute field number
+     * @return The position, or -1 if the field value is not held as a primitive
+     */
+    private int getPrimitivePosition(int fieldNumber)
+    {
+        if (primitiveFields == null || (primitiveFields[fieldNumber >>> 6] & (1L << fieldNumber)) == 0)
+        {
+            return -1;
+        }
+        return getPrimitiveRank(fieldNumber);
+    }
+
+    /**
+     * Accessor for the number of primitive field values held for fields before the specified field.
+     * @param fieldNumber Absolute field number
+     * @return The number of primitive values before this field
+     */
+    private int getPrimitiveRank(int fieldNumber)
+    {
+        int word = fieldNumber >>> 6;
+        int rank = 0;
+        for (int i = 0; i < word; i++)
+        {
+            rank += Long.bitCount(primitiveFields[i]);
+        }
+        return rank + Long.bitCount(primitiveFields[word] & ((1L << fieldNumber) - 1));
     }
 
     public void setVersion(Object ver)
@@ -110,44 +384,390 @@ public class CachedPC implements Serializable, Comparable<CachedPC>
 
     /**
      * Accessor for the loaded fields of this object. Use setLoadedField() if you want to update a flag.
-     * @return The loaded fields flags
+     * The flags are held as a bit mask, so this builds a new array on each call, and changes to it have no effect on this object.
+     * Where only some fields need checking use isLoaded(int) or getLoadedFieldNumbers() instead.
+     * @return The loaded fields flags (a copy)
      */
     public boolean[] getLoadedFields()
     {
-        return loadedFields;
+        boolean[] flags = new boolean[numFields];
+        for (int i = 0; i < numFields; i++)
+        {
+            flags[i] = isLoaded(i);
+        }
+        return flags;
     }
 
     public int[] getLoadedFieldNumbers()
     {
-        return ClassUtils.getFlagsSetTo(loadedFields, true);
+        int num = 0;
+        for (long word : loadedFields)
+        {
+            num += Long.bitCount(word);
+        }
+        if (num == 0)
+        {
+            return null;
+        }
+
+        int[] fieldNumbers = new int[num];
+        int pos = 0;
+        for (int i = 0; i < numFields; i++)
+        {
+            if (isLoaded(i))
+            {
+                fieldNumbers[pos++] = i;
+            }
+        }
+        return fieldNumbers;
+    }
+
+    /**
+     * Accessor for those of the specified fields whose loaded flag is set to the specified state.
+     * Equivalent to ClassUtils.getFlagsSetTo(getLoadedFields(), fieldNumbers, loaded) without building the array of flags.
+     * @param fieldNumbers The field numbers to check
+     * @param loaded Whether to return the loaded fields (otherwise the fields that are not loaded)
+     * @return The field numbers, in the order specified (or null if none)
+     */
+    public int[] getFieldNumbersLoaded(int[] fieldNumbers, boolean loaded)
+    {
+        if (fieldNumbers == null)
+        {
+            return null;
+        }
+
+        int[] temp = new int[fieldNumbers.length];
+        int num = 0;
+        for (int fieldNumber : fieldNumbers)
+        {
+            if (isLoaded(fieldNumber) == loaded)
+            {
+                temp[num++] = fieldNumber;
+            }
+        }
+        if (num == 0)
+        {
+            return null;
+        }
+        return num == temp.length ? temp : Arrays.copyOf(temp, num);
+    }
+
+    public boolean isLoaded(int fieldNumber)
+    {
+        return (loadedFields[fieldNumber >>> 6] & (1L << fieldNumber)) != 0;
     }
 
     public void setLoadedField(int fieldNumber, boolean loaded)
     {
-        loadedFields[fieldNumber] = loaded;
+        if (loaded)
+        {
+            loadedFields[fieldNumber >>> 6] |= 1L << fieldNumber;
+        }
+        else
+        {
+            loadedFields[fieldNumber >>> 6] &= ~(1L << fieldNumber);
+        }
+    }
+
+    /**
+     * Method to release any spare capacity of the primitive field values, so that they use no more memory than needed.
+     * The values are held in arrays sized for all loaded fields when the first is set, so call this once the fields are populated
+     * and before putting this object in the cache.
+     */
+    public void trimToSize()
+    {
+        if (primitiveValues != null && primitiveValues.length > numPrimitives)
+        {
+            primitiveValues = Arrays.copyOf(primitiveValues, numPrimitives);
+            primitiveTypes = Arrays.copyOf(primitiveTypes, numPrimitives);
+        }
+    }
+
+    /**
+     * Accessor for the number of primitive field values that can be held without growing the arrays.
+     * @return The capacity
+     */
+    int getPrimitiveCapacity()
+    {
+        return primitiveValues != null ? primitiveValues.length : 0;
     }
 
     public synchronized CachedPC getCopy()
     {
-        CachedPC copy = new CachedPC(cls, loadedFields, version, id);
+        CachedPC copy = new CachedPC(cls, numFields, loadedFields.clone(), version, id);
         if (fieldValues != null)
         {
             // TODO Some (mutable) field values may need copying
-            copy.fieldValues = new HashMap<Integer, Object>(fieldValues.size());
-            for (Map.Entry<Integer, Object> entry : fieldValues.entrySet())
+            copy.fieldValues = new Object[numFields];
+            for (int i = 0; i < numFields; i++)
             {
-                Integer key = entry.getKey();
-                Object val = entry.getValue();
+                Object val = fieldValues[i];
                 if (val != null && val instanceof CachedPC)
                 {
                     val = ((CachedPC) val).getCopy();
                 }
-                copy.fieldValues.put(key, val);
+                copy.fieldValues[i] = val;
             }
         }
+        if (primitiveFields != null)
+        {
+            copy.primitiveFields = primitiveFields.clone();
+            copy.primitiveValues = primitiveValues != null ? Arrays.copyOf(primitiveValues, numPrimitives) : null;
+            copy.primitiveTypes = primitiveTypes != null ? Arrays.copyOf(primitiveTypes, numPrimitives) : null;
+            copy.numPrimitives = numPrimitives;
+        }
         return copy;
     }
 
+    private CachedPC(Class cls, int numFields, long[] loadedFields, Object vers, Object id)
+    {
+        this.cls = cls;
+        this.id = id;
+        this.numFields = numFields;
+        this.loadedFields = loadedFields;
+        this.version = vers;
+    }
+
+    /**
+     * Method to write this object in a compact binary form, for use by caches that store objects in serialised form.
+     * Primitive values are written at their natural width, and object values as described in {@link #writeValue(DataOutput, Object)},
+     * so only values of other types are written using Java serialisation.
+     * @param out The output to write to
+     * @throws IOException if an error occurs writing
+     */
+    synchronized void writeTo(DataOutput out) throws IOException
+    {
+        out.writeUTF(cls.getName());
+        writeValue(out, id);
+        writeValue(out, version);
+        out.writeInt(numFields);
+        for (long word : loadedFields)
+        {
+            out.writeLong(word);
+        }
+
+        out.writeInt(numPrimitives);
+        if (numPrimitives > 0)
+        {
+            for (long word : primitiveFields)
+            {
+                out.writeLong(word);
+            }
+            out.write(primitiveTypes, 0, numPrimitives);
+            for (int i = 0; i < numPrimitives; i++)
+            {
+                switch (primitiveTypes[i])
+                {
+                    case 'Z':
+                    case 'B':
+                        out.writeByte((int)primitiveValues[i]);
+                        break;
+                    case 'C':
+                    case 'S':
+                        out.writeShort((int)primitiveValues[i]);
+                        break;
+                    case 'I':
+                    case 'F':
+                        out.writeInt((int)primitiveValues[i]);
+                        break;
+                    default:
+                        out.writeLong(primitiveValues[i]);
+                        break;
+                }
+            }
+        }
+
+        for (int i = 0; fieldValues != null && i < numFields; i++)
+        {
+            Object value = fieldValues[i];
+            if (value != null)
+            {
+                out.writeInt(i);
+                writeValue(out, value);
+            }
+        }
+        out.writeInt(-1);
+    }
+
+    /**
+     * Method to write an object value, preceded by a tag for its form. Nested CachedPC values are written in the form of
+     * {@link #writeTo(DataOutput)}, String/Integer/Long values directly, and values of any other type using Java serialisation.
+     * @param out The output to write to
+     * @param value The value
+     * @throws IOException if an error occurs writing
+     */
+    private static void writeValue(DataOutput out, Object value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeByte(VALUE_NULL);
+        }
+        else if (value instanceof CachedPC)
+        {
+            out.writeByte(VALUE_CACHEDPC);
+            ((CachedPC)value).writeTo(out);
+        }
+        else if (value instanceof String)
+        {
+            byte[] bytes = ((String)value).getBytes(StandardCharsets.UTF_8);
+            out.writeByte(VALUE_STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        else if (value instanceof Integer)
+        {
+            out.writeByte(VALUE_INTEGER);
+            out.writeInt((Integer)value);
+        }
+        else if (value instanceof Long)
+        {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long)value);
+        }
+        else
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(128);
+            try (ObjectOutputStream oos = new ObjectOutputStream(baos))
+            {
+                oos.writeObject(value);
+            }
+            out.writeByte(VALUE_SERIALISED);
+            out.writeInt(baos.size());
+            out.write(baos.toByteArray());
+        }
+    }
+
+    /**
+     * Method to read an object value in the form written by {@link #writeValue(DataOutput, Object)}.
+     * @param in The input to read from
+     * @param clr ClassLoader resolver for the classes of values
+     * @return The value
+     * @throws IOException if an error occurs reading
+     * @throws ClassNotFoundException if a class of a value cannot be found
+     */
+    private static Object readValue(DataInput in, ClassLoaderResolver clr) throws IOException, ClassNotFoundException
+    {
+        byte tag = in.readByte();
+        switch (tag)
+        {
+            case VALUE_NULL:
+                return null;
+            case VALUE_CACHEDPC:
+                return readFrom(in, clr);
+            case VALUE_INTEGER:
+                return in.readInt();
+            case VALUE_LONG:
+                return in.readLong();
+            case VALUE_STRING:
+            case VALUE_SERIALISED:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                if (tag == VALUE_STRING)
+                {
+                    return new String(bytes, StandardCharsets.UTF_8);
+                }
+                try (ObjectInputStream ois = new ClassLoaderResolverObjectInputStream(new ByteArrayInputStream(bytes), clr))
+                {
+                    return ois.readObject();
+                }
+            default:
+                throw new IOException("Invalid value tag " + tag);
+        }
+    }
+
+    /**
+     * ObjectInputStream that resolves the classes of values using the ClassLoaderResolver.
+     */
+    private static class ClassLoaderResolverObjectInputStream extends ObjectInputStream
+    {
+        final ClassLoaderResolver clr;
+
+        ClassLoaderResolverObjectInputStream(InputStream in, ClassLoaderResolver clr) throws IOException
+        {
+            super(in);
+            this.clr = clr;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+        {
+            try
+            {
+                return clr.classForName(desc.getName());
+            }
+            catch (ClassNotResolvedException cnre)
+            {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+
+    /**
+     * Method to read an object in the form written by {@link #writeTo(DataOutput)}.
+     * @param in The input to read from
+     * @param clr ClassLoader resolver for the class of the object
+     * @return The CachedPC
+     * @throws IOException if an error occurs reading
+     * @throws ClassNotFoundException if a class of a value cannot be found
+     */
+    static CachedPC readFrom(DataInput in, ClassLoaderResolver clr) throws IOException, ClassNotFoundException
+    {
+        Class cls = clr.classForName(in.readUTF());
+        Object id = readValue(in, clr);
+        Object version = readValue(in, clr);
+        int numFields = in.readInt();
+        long[] loadedFields = new long[(numFields + 63) >>> 6];
+        for (int i = 0; i < loadedFields.length; i++)
+        {
+            loadedFields[i] = in.readLong();
+        }
+        CachedPC cachedPC = new CachedPC(cls, numFields, loadedFields, version, id);
+
+        int numPrimitives = in.readInt();
+        if (numPrimitives > 0)
+        {
+            cachedPC.primitiveFields = new long[loadedFields.length];
+            for (int i = 0; i < loadedFields.length; i++)
+            {
+                cachedPC.primitiveFields[i] = in.readLong();
+            }
+            cachedPC.primitiveTypes = new byte[numPrimitives];
+            in.readFully(cachedPC.primitiveTypes);
+            cachedPC.primitiveValues = new long[numPrimitives];
+            cachedPC.numPrimitives = numPrimitives;
+            for (int i = 0; i < numPrimitives; i++)
+            {
+                switch (cachedPC.primitiveTypes[i])
+                {
+                    case 'Z':
+                    case 'B':
+                        cachedPC.primitiveValues[i] = in.readByte();
+                        break;
+                    case 'C':
+                        cachedPC.primitiveValues[i] = in.readChar();
+                        break;
+                    case 'S':
+                        cachedPC.primitiveValues[i] = in.readShort();
+                        break;
+                    case 'I':
+                    case 'F':
+                        cachedPC.primitiveValues[i] = in.readInt();
+                        break;
+                    default:
+                        cachedPC.primitiveValues[i] = in.readLong();
+                        break;
+                }
+            }
+        }
+
+        int fieldNumber;
+        while ((fieldNumber = in.readInt()) >= 0)
+        {
+            cachedPC.setFieldValue(fieldNumber, readValue(in, clr));
+        }
+        return cachedPC;
+    }
+
     /* (non-Javadoc)
      * @see java.lang.Comparable#compareTo(java.lang.Object)
      */
@@ -198,32 +818,37 @@ public class CachedPC implements Serializable, Comparable<CachedPC>
     public String toString(String indent, boolean debug)
     {
         StringBuilder str = new StringBuilder();
-        str.append(indent).append("CachedPC : cls=").append(cls.getName()).append(" version=").append(version).append(" loadedFlags=").append(StringUtils.booleanArrayToString(loadedFields));
-        if (debug && fieldValues != null)
+        str.append(indent).append("CachedPC : cls=").append(cls.getName()).append(" version=").append(version).append(" loadedFlags=").append(StringUtils.booleanArrayToString(getLoadedFields()));
+        if (debug && (fieldValues != null || numPrimitives > 0))
         {
-            str.append(" numValues=").append(fieldValues.size()).append("\n");
-
-            Iterator<Map.Entry<Integer, Object>> fieldValuesIter = fieldValues.entrySet().iterator();
-            while (fieldValuesIter.hasNext())
+            int numValues = numPrimitives;
+            for (int i = 0; fieldValues != null && i < numFields; i++)
             {
-                Map.Entry<Integer, Object> fieldValuesEntry = fieldValuesIter.next();
-                str.append(indent).append("  ").append("field=").append(fieldValuesEntry.getKey()).append(" value=");
-                if (fieldValuesEntry.getValue() instanceof CachedPC)
+                if (fieldValues[i] != null)
                 {
-                    str.append("\n");
-                    str.append(((CachedPC)fieldValuesEntry.getValue()).toString(indent + "  ", debug));
+                    numValues++;
                 }
-                else
+            }
+            str.append(" numValues=").append(numValues);
+
+            for (int i = 0; i < numFields; i++)
+            {
+                Object value = getFieldValue(i);
+                if (value == null)
                 {
-                    str.append(fieldValuesEntry.getValue());
-                    if (fieldValuesEntry.getValue() != null)
-                    {
-                        str.append(" type=" + fieldValuesEntry.getValue().getClass().getName());
-                    }
+                    continue;
                 }
-                if (fieldValuesIter.hasNext())
+
+                str.append("\n");
+                str.append(indent).append("  ").append("field=").append(i).append(" value=");
+                if (value instanceof CachedPC)
                 {
                     str.append("\n");
+                    str.append(((CachedPC)value).toString(indent + "  ", debug));
+                }
+                else
+                {
+                    str.append(value).append(" type=").append(value.getClass().getName());
                 }
             }
         }
@@ -278,4 +903,4 @@ public class CachedPC implements Serializable, Comparable<CachedPC>
             return hashCode() - obj.hashCode();
         }
     }
-}
\ No newline at end of file
+}
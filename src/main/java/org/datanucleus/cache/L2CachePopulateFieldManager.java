@@ -87,7 +87,7 @@ public class L2CachePopulateFieldManager extends AbstractFieldManager
         }
 
         cachedPC.setLoadedField(fieldNumber, true);
-        cachedPC.setFieldValue(fieldNumber, value);
+        cachedPC.setBooleanFieldValue(fieldNumber, value);
     }
 
     /* (non-Javadoc)
@@ -111,7 +111,7 @@ public class L2CachePopulateFieldManager extends AbstractFieldManager
         }
 
         cachedPC.setLoadedField(fieldNumber, true);
-        cachedPC.setFieldValue(fieldNumber, value);
+        cachedPC.setCharFieldValue(fieldNumber, value);
     }
 
     /* (non-Javadoc)
@@ -135,7 +135,7 @@ public class L2CachePopulateFieldManager extends AbstractFieldManager
         }
 
         cachedPC.setLoadedField(fieldNumber, true);
-        cachedPC.setFieldValue(fieldNumber, value);
+        cachedPC.setByteFieldValue(fieldNumber, value);
     }
 
     /* (non-Javadoc)
@@ -159,7 +159,7 @@ public class L2CachePopulateFieldManager extends AbstractFieldManager
         }
 
         cachedPC.setLoadedField(fieldNumber, true);
-        cachedPC.setFieldValue(fieldNumber, value);
+        cachedPC.setShortFieldValue(fieldNumber, value);
     }
 
     /* (non-Javadoc)
@@ -183,7 +183,7 @@ public class L2CachePopulateFieldManager extends AbstractFieldManager
         }
 
         cachedPC.setLoadedField(fieldNumber, true);
-        cachedPC.setFieldValue(fieldNumber, value);
+        cachedPC.setIntFieldValue(fieldNumber, value);
     }
 
     /* (non-Javadoc)
@@ -207,7 +207,7 @@ public class L2CachePopulateFieldManager extends AbstractFieldManager
         }
 
         cachedPC.setLoadedField(fieldNumber, true);
-        cachedPC.setFieldValue(fieldNumber, value);
+        cachedPC.setLongFieldValue(fieldNumber, value);
     }
 
     /* (non-Javadoc)
@@ -231,7 +231,7 @@ public class L2CachePopulateFieldManager extends AbstractFieldManager
         }
 
         cachedPC.setLoadedField(fieldNumber, true);
-        cachedPC.setFieldValue(fieldNumber, value);
+        cachedPC.setFloatFieldValue(fieldNumber, value);
     }
 
     /* (non-Javadoc)
@@ -255,7 +255,7 @@ public class L2CachePopulateFieldManager extends AbstractFieldManager
         }
 
         cachedPC.setLoadedField(fieldNumber, true);
-        cachedPC.setFieldValue(fieldNumber, value);
+        cachedPC.setDoubleFieldValue(fieldNumber, value);
     }
 
     /* (non-Javadoc)
@@ -572,6 +572,7 @@ public class L2CachePopulateFieldManager extends AbstractFieldManager
         {
             // Set the values of any fields that are loaded
             valueSM.provideFields(loadedFields, new L2CachePopulateFieldManager(valueSM, valueCachedPC));
+            valueCachedPC.trimToSize();
         }
 
         return valueCachedPC;
@@ -38,7 +38,6 @@ import org.datanucleus.store.types.SCOUtils;
 import org.datanucleus.store.types.containers.ContainerHandler;
 import org.datanucleus.store.types.containers.ElementContainerAdapter;
 import org.datanucleus.store.types.containers.MapContainerAdapter;
-import org.datanucleus.util.ClassUtils;
 import org.datanucleus.util.NucleusLogger;
 
 /**
@@ -79,7 +78,7 @@ public class L2CacheRetrieveFieldManager extends AbstractFieldManager
     @Override
     public boolean fetchBooleanField(int fieldNumber)
     {
-        return (Boolean)cachedPC.getFieldValue(fieldNumber);
+        return cachedPC.getBooleanFieldValue(fieldNumber);
     }
 
     /* (non-Javadoc)
@@ -88,7 +87,7 @@ public class L2CacheRetrieveFieldManager extends AbstractFieldManager
     @Override
     public byte fetchByteField(int fieldNumber)
     {
-        return (Byte)cachedPC.getFieldValue(fieldNumber);
+        return cachedPC.getByteFieldValue(fieldNumber);
     }
 
     /* (non-Javadoc)
@@ -97,7 +96,7 @@ public class L2CacheRetrieveFieldManager extends AbstractFieldManager
     @Override
     public char fetchCharField(int fieldNumber)
     {
-        return (Character)cachedPC.getFieldValue(fieldNumber);
+        return cachedPC.getCharFieldValue(fieldNumber);
     }
 
     /* (non-Javadoc)
@@ -106,7 +105,7 @@ public class L2CacheRetrieveFieldManager extends AbstractFieldManager
     @Override
     public double fetchDoubleField(int fieldNumber)
     {
-        return (Double)cachedPC.getFieldValue(fieldNumber);
+        return cachedPC.getDoubleFieldValue(fieldNumber);
     }
 
     /* (non-Javadoc)
@@ -115,7 +114,7 @@ public class L2CacheRetrieveFieldManager extends AbstractFieldManager
     @Override
     public float fetchFloatField(int fieldNumber)
     {
-        return (Float)cachedPC.getFieldValue(fieldNumber);
+        return cachedPC.getFloatFieldValue(fieldNumber);
     }
 
     /* (non-Javadoc)
@@ -124,7 +123,7 @@ public class L2CacheRetrieveFieldManager extends AbstractFieldManager
     @Override
     public int fetchIntField(int fieldNumber)
     {
-        return (Integer)cachedPC.getFieldValue(fieldNumber);
+        return cachedPC.getIntFieldValue(fieldNumber);
     }
 
     /* (non-Javadoc)
@@ -133,7 +132,7 @@ public class L2CacheRetrieveFieldManager extends AbstractFieldManager
     @Override
     public long fetchLongField(int fieldNumber)
     {
-        return (Long)cachedPC.getFieldValue(fieldNumber);
+        return cachedPC.getLongFieldValue(fieldNumber);
     }
 
     /* (non-Javadoc)
@@ -142,7 +141,7 @@ public class L2CacheRetrieveFieldManager extends AbstractFieldManager
     @Override
     public short fetchShortField(int fieldNumber)
     {
-        return (Short)cachedPC.getFieldValue(fieldNumber);
+        return cachedPC.getShortFieldValue(fieldNumber);
     }
 
     /* (non-Javadoc)
@@ -419,7 +418,7 @@ public class L2CacheRetrieveFieldManager extends AbstractFieldManager
         DNStateManager valueSM = ec.getNucleusContext().getStateManagerFactory().newForEmbedded(ec, valueCmd, sm, memberNumber, objectType);
 
         // TODO Perhaps only load fetch plan fields?
-        int[] fieldsToLoad = ClassUtils.getFlagsSetTo(cachedPC.getLoadedFields(), valueCmd.getAllMemberPositions(), true);
+        int[] fieldsToLoad = cachedPC.getLoadedFieldNumbers();
         if (fieldsToLoad != null && fieldsToLoad.length > 0)
         {
             valueSM.replaceFields(fieldsToLoad, constructNew(valueSM, cachedPC));
@@ -0,0 +1,556 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.datanucleus.ClassLoaderResolver;
+import org.datanucleus.Configuration;
+import org.datanucleus.NucleusContext;
+import org.datanucleus.PropertyNames;
+import org.datanucleus.util.NucleusLogger;
+
+/**
+ * Level 2 cache that holds the cached objects in serialised form in memory outside of the Java heap, so that a large cache
+ * doesn't add to the work of the garbage collector. Only the key and the location of each object are held on the heap.
+ * <ul>
+ * <li>The memory (<i>datanucleus.cache.level2.offHeapSize</i> bytes) is split across a number of segments, each a direct ByteBuffer
+ * divided into blocks of <i>datanucleus.cache.level2.offHeapBlockSize</i> bytes. An object occupies as many blocks as needed, so there is no fragmentation.
+ * Since a ByteBuffer is limited to 2GB, larger caches use more segments.</li>
+ * <li>Each segment has its own lock, and evicts its least recently used objects when it has insufficient free blocks for an object being put.</li>
+ * <li>Objects are stored using the compact form of CachedPC, where primitive field values are written at their natural width, and only
+ * object values of types other than String/Integer/Long are serialised.</li>
+ * </ul>
+ * Every get() returns a new CachedPC decoded from the stored form, so is equivalent to a copy of the object put in the cache.
+ * put() returns the object that it replaces, decoding it only when there was one.
+ * Pinning of objects is not supported.
+ */
+public class OffHeapLevel2Cache extends AbstractLevel2Cache
+{
+    public static final String NAME = "offheap";
+
+    private static final long serialVersionUID = -6618203949219637165L;
+
+    /** Minimum number of segments. Always a power of 2. */
+    private static final int NUM_SEGMENTS = 16;
+
+    private final transient Segment[] segments;
+
+    /** Identity of the cached object, keyed by the unique key. */
+    final Map<CacheUniqueKey, Object> uniqueIds = new ConcurrentHashMap<>();
+
+    /** Unique keys of the cached object, keyed by its identity, so they can be removed when the object is removed. */
+    final Map<Object, Set<CacheUniqueKey>> uniqueKeysById = new ConcurrentHashMap<>();
+
+    public OffHeapLevel2Cache(NucleusContext nucleusCtx)
+    {
+        super(nucleusCtx);
+
+        Configuration conf = nucleusCtx.getConfiguration();
+        long totalSize = conf.getLongProperty(PropertyNames.PROPERTY_CACHE_L2_OFFHEAP_SIZE);
+        int blockSize = Math.max(16, conf.getIntProperty(PropertyNames.PROPERTY_CACHE_L2_OFFHEAP_BLOCK_SIZE));
+
+        int numSegments = getNumberOfSegments(totalSize, blockSize);
+        int blocksPerSegment = (int)Math.max(1, Math.min(Integer.MAX_VALUE / blockSize, totalSize / blockSize / numSegments));
+        int maxEntriesPerSegment = maxSize > 0 ? Math.max(1, maxSize / numSegments) : -1;
+
+        segments = new Segment[numSegments];
+        for (int i=0;i<numSegments;i++)
+        {
+            segments[i] = new Segment(blockSize, blocksPerSegment, maxEntriesPerSegment, this::removeUniqueKeys);
+        }
+    }
+
+    /**
+     * Method to return the number of segments to split the memory across, being enough that the buffer of each segment
+     * is within the maximum size of a ByteBuffer.
+     * @param totalSize Total size of the memory (bytes)
+     * @param blockSize Size of a block (bytes)
+     * @return The number of segments (a power of 2)
+     */
+    static int getNumberOfSegments(long totalSize, int blockSize)
+    {
+        int maxBlocksPerSegment = Integer.MAX_VALUE / blockSize;
+        int numSegments = NUM_SEGMENTS;
+        while (totalSize / blockSize / numSegments > maxBlocksPerSegment && numSegments < (1 << 30))
+        {
+            numSegments <<= 1;
+        }
+        return numSegments;
+    }
+
+    private Segment segmentFor(Object oid)
+    {
+        int h = oid.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    @Override
+    public void close()
+    {
+        if (clearAtClose)
+        {
+            evictAll();
+        }
+    }
+
+    @Override
+    public boolean containsOid(Object oid)
+    {
+        return oid != null && segmentFor(oid).contains(oid);
+    }
+
+    @Override
+    public CachedPC get(Object oid)
+    {
+        if (oid == null)
+        {
+            return null;
+        }
+
+        byte[] bytes = segmentFor(oid).read(oid);
+        if (bytes == null)
+        {
+            return null;
+        }
+        try
+        {
+            return decode(bytes);
+        }
+        catch (Exception e)
+        {
+            NucleusLogger.CACHE.debug("Object with id " + oid + " not retrieved from cache due to : " + e.getMessage());
+            evict(oid);
+            return null;
+        }
+    }
+
+    @Override
+    public CachedPC put(Object oid, CachedPC pc)
+    {
+        if (oid == null || pc == null)
+        {
+            return null;
+        }
+
+        byte[] bytes;
+        try
+        {
+            bytes = encode(pc);
+        }
+        catch (Exception e)
+        {
+            // Not cached due to some problem. Not serializable?
+            NucleusLogger.CACHE.debug("Object with id " + oid + " for cachedPC=" + pc.toString("", true) + " not cached due to : " + e.getMessage());
+            evict(oid);
+            return null;
+        }
+
+        long expireTime = expiryMillis > 0 ? System.currentTimeMillis() + expiryMillis : Long.MAX_VALUE;
+        byte[] prevBytes = segmentFor(oid).write(oid, pc.getObjectClass(), bytes, expireTime);
+        if (prevBytes == null)
+        {
+            return null;
+        }
+        try
+        {
+            return decode(prevBytes);
+        }
+        catch (Exception e)
+        {
+            NucleusLogger.CACHE.debug("Previous object with id " + oid + " not retrieved from cache due to : " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void evict(Object oid)
+    {
+        if (oid != null)
+        {
+            segmentFor(oid).remove(oid);
+        }
+    }
+
+    @Override
+    public void evictAll()
+    {
+        for (Segment segment : segments)
+        {
+            segment.clear();
+        }
+        uniqueIds.clear();
+        uniqueKeysById.clear();
+    }
+
+    @Override
+    public void evictAll(Object[] oids)
+    {
+        if (oids != null)
+        {
+            for (Object oid : oids)
+            {
+                evict(oid);
+            }
+        }
+    }
+
+    @Override
+    public void evictAll(Collection oids)
+    {
+        if (oids != null)
+        {
+            for (Object oid : oids)
+            {
+                evict(oid);
+            }
+        }
+    }
+
+    @Override
+    public void evictAll(Class pcClass, boolean subclasses)
+    {
+        if (!nucleusCtx.getApiAdapter().isPersistable(pcClass))
+        {
+            return;
+        }
+
+        Set<String> classNames = new HashSet<>();
+        classNames.add(pcClass.getName());
+        if (subclasses)
+        {
+            String[] subclassNames = nucleusCtx.getMetaDataManager().getSubclassesForClass(pcClass.getName(), true);
+            if (subclassNames != null)
+            {
+                for (String subclassName : subclassNames)
+                {
+                    classNames.add(subclassName);
+                }
+            }
+        }
+
+        for (Segment segment : segments)
+        {
+            segment.removeAllOfClass(classNames);
+        }
+    }
+
+    @Override
+    public int getSize()
+    {
+        int size = 0;
+        for (Segment segment : segments)
+        {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public int getNumberOfUnpinnedObjects()
+    {
+        return getSize();
+    }
+
+    @Override
+    public CachedPC getUnique(CacheUniqueKey key)
+    {
+        Object oid = uniqueIds.get(key);
+        if (oid == null)
+        {
+            return null;
+        }
+        CachedPC pc = get(oid);
+        if (pc == null)
+        {
+            removeUnique(key);
+        }
+        return pc;
+    }
+
+    @Override
+    public CachedPC putUnique(CacheUniqueKey key, CachedPC pc)
+    {
+        if (key == null || pc == null || pc.getId() == null)
+        {
+            // Can only find an object by unique key when it has an identity
+            return null;
+        }
+        Object prevId = uniqueIds.put(key, pc.getId());
+        if (prevId != null && !prevId.equals(pc.getId()))
+        {
+            removeUniqueKey(prevId, key);
+        }
+        uniqueKeysById.computeIfAbsent(pc.getId(), k -> ConcurrentHashMap.newKeySet()).add(key);
+        return put(pc.getId(), pc);
+    }
+
+    @Override
+    public void removeUnique(CacheUniqueKey key)
+    {
+        Object oid = uniqueIds.remove(key);
+        if (oid != null)
+        {
+            removeUniqueKey(oid, key);
+        }
+    }
+
+    private void removeUniqueKey(Object oid, CacheUniqueKey key)
+    {
+        uniqueKeysById.computeIfPresent(oid, (k, keys) ->
+        {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /**
+     * Method called when the object with the specified identity is removed from its segment (evicted, expired, or replaced by
+     * an object too large to store), to remove the unique keys of that object.
+     * @param oid Identity of the object
+     */
+    private void removeUniqueKeys(Object oid)
+    {
+        Set<CacheUniqueKey> keys = uniqueKeysById.remove(oid);
+        if (keys != null)
+        {
+            for (CacheUniqueKey key : keys)
+            {
+                uniqueIds.remove(key, oid);
+            }
+        }
+    }
+
+    private byte[] encode(CachedPC pc) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(baos))
+        {
+            pc.writeTo(out);
+        }
+        return baos.toByteArray();
+    }
+
+    private CachedPC decode(byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        ClassLoaderResolver clr = nucleusCtx.getClassLoaderResolver(null);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes)))
+        {
+            return CachedPC.readFrom(in, clr);
+        }
+    }
+
+    /**
+     * Location of a stored object in a segment.
+     */
+    static class Slot
+    {
+        final Class cls;
+        final int[] blocks;
+        final int length;
+        final long expireTime;
+
+        Slot(Class cls, int[] blocks, int length, long expireTime)
+        {
+            this.cls = cls;
+            this.blocks = blocks;
+            this.length = length;
+            this.expireTime = expireTime;
+        }
+    }
+
+    /**
+     * Segment of the cache, comprising a direct ByteBuffer divided into fixed size blocks, and the slots of the objects
+     * stored in it in order of least recently used. The removal listener is notified of the identity of each object removed.
+     */
+    static class Segment
+    {
+        final int blockSize;
+        final int maxEntries;
+        final ByteBuffer buffer;
+        final int[] freeBlocks;
+        int numFreeBlocks;
+        final LinkedHashMap<Object, Slot> slots = new LinkedHashMap<>(16, 0.75f, true);
+        final Consumer<Object> removalListener;
+
+        Segment(int blockSize, int numBlocks, int maxEntries, Consumer<Object> removalListener)
+        {
+            this.blockSize = blockSize;
+            this.maxEntries = maxEntries;
+            this.removalListener = removalListener;
+            this.buffer = ByteBuffer.allocateDirect(blockSize * numBlocks);
+            this.freeBlocks = new int[numBlocks];
+            for (int i=0;i<numBlocks;i++)
+            {
+                freeBlocks[i] = numBlocks - 1 - i;
+            }
+            this.numFreeBlocks = numBlocks;
+        }
+
+        synchronized boolean contains(Object oid)
+        {
+            Slot slot = slots.get(oid);
+            if (slot != null && slot.expireTime < System.currentTimeMillis())
+            {
+                removed(oid, slots.remove(oid));
+                return false;
+            }
+            return slot != null;
+        }
+
+        synchronized int size()
+        {
+            return slots.size();
+        }
+
+        synchronized byte[] read(Object oid)
+        {
+            Slot slot = slots.get(oid);
+            if (slot == null)
+            {
+                return null;
+            }
+            if (slot.expireTime < System.currentTimeMillis())
+            {
+                removed(oid, slots.remove(oid));
+                return null;
+            }
+            return readSlot(slot);
+        }
+
+        private byte[] readSlot(Slot slot)
+        {
+            byte[] bytes = new byte[slot.length];
+            int pos = 0;
+            for (int block : slot.blocks)
+            {
+                int len = Math.min(blockSize, slot.length - pos);
+                buffer.position(block * blockSize);
+                buffer.get(bytes, pos, len);
+                pos += len;
+            }
+            return bytes;
+        }
+
+        /**
+         * Method to store the object with the specified identity, replacing any object stored with that identity.
+         * @return The stored form of the object that was replaced (or null if none, or it had expired)
+         */
+        synchronized byte[] write(Object oid, Class cls, byte[] bytes, long expireTime)
+        {
+            Slot prevSlot = slots.remove(oid);
+            byte[] prevBytes = (prevSlot != null && prevSlot.expireTime >= System.currentTimeMillis()) ? readSlot(prevSlot) : null;
+            release(prevSlot);
+
+            int numBlocks = Math.max(1, (bytes.length + blockSize - 1) / blockSize);
+            if (numBlocks > freeBlocks.length)
+            {
+                // Larger than the segment so can never be cached
+                if (prevSlot != null)
+                {
+                    removalListener.accept(oid);
+                }
+                return prevBytes;
+            }
+
+            // Evict least recently used objects until there is space
+            Iterator<Map.Entry<Object, Slot>> slotIter = slots.entrySet().iterator();
+            while ((numFreeBlocks < numBlocks || (maxEntries > 0 && slots.size() >= maxEntries)) && slotIter.hasNext())
+            {
+                Map.Entry<Object, Slot> eldest = slotIter.next();
+                slotIter.remove();
+                removed(eldest.getKey(), eldest.getValue());
+            }
+
+            int[] blocks = new int[numBlocks];
+            int pos = 0;
+            for (int i=0;i<numBlocks;i++)
+            {
+                blocks[i] = freeBlocks[--numFreeBlocks];
+                int len = Math.min(blockSize, bytes.length - pos);
+                buffer.position(blocks[i] * blockSize);
+                buffer.put(bytes, pos, len);
+                pos += len;
+            }
+            slots.put(oid, new Slot(cls, blocks, bytes.length, expireTime));
+            return prevBytes;
+        }
+
+        synchronized void remove(Object oid)
+        {
+            removed(oid, slots.remove(oid));
+        }
+
+        synchronized void removeAllOfClass(Set<String> classNames)
+        {
+            Iterator<Map.Entry<Object, Slot>> slotIter = slots.entrySet().iterator();
+            while (slotIter.hasNext())
+            {
+                Map.Entry<Object, Slot> entry = slotIter.next();
+                if (classNames.contains(entry.getValue().cls.getName()))
+                {
+                    slotIter.remove();
+                    removed(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        synchronized void clear()
+        {
+            for (Map.Entry<Object, Slot> entry : slots.entrySet())
+            {
+                removed(entry.getKey(), entry.getValue());
+            }
+            slots.clear();
+        }
+
+        private void removed(Object oid, Slot slot)
+        {
+            if (slot != null)
+            {
+                release(slot);
+                removalListener.accept(oid);
+            }
+        }
+
+        private void release(Slot slot)
+        {
+            if (slot != null)
+            {
+                for (int block : slot.blocks)
+                {
+                    freeBlocks[numFreeBlocks++] = block;
+                }
+            }
+        }
+    }
+}
@@ -18,15 +18,23 @@ Contributors:
 package org.datanucleus.flush;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.datanucleus.ExecutionContext;
+import org.datanucleus.exceptions.NucleusException;
 import org.datanucleus.exceptions.NucleusOptimisticException;
 import org.datanucleus.state.DNStateManager;
+import org.datanucleus.state.LifeCycleState;
 import org.datanucleus.store.StorePersistenceHandler;
 import org.datanucleus.util.Localiser;
 import org.datanucleus.util.NucleusLogger;
@@ -76,7 +84,7 @@ public class FlushNonReferential implements FlushProcess
     /**
      * Method that does the flushing of the passed StateManagers, grouping them into all DELETEs, then all INSERTs,
      * finally all UPDATEs. The StorePersistenceHandler will get calls to <i>deleteObjects</i>, <i>insertObjects</i>
-     * and <i>updateObject</i> (for each other one). Note that this is in a separate method to allow calls by
+     * and <i>updateObjects</i> (for each group of the same class and dirty fields). Note that this is in a separate method to allow calls by
      * other FlushProcesses that want to take advantage of the basic flush method without 
      * @param smsToFlush StateManagers to process
      * @param ec ExecutionContext
@@ -202,32 +210,245 @@ public class FlushNonReferential implements FlushProcess
         if (!smsToFlush.isEmpty())
         {
             // Objects to update
-            for (DNStateManager sm : smsToFlush)
+            List<NucleusOptimisticException> updateFailures = flushUpdatesGrouped(smsToFlush, ec);
+            if (updateFailures != null)
             {
+                if (optimisticFailures == null)
+                {
+                    optimisticFailures = new ArrayList();
+                }
+                optimisticFailures.addAll(updateFailures);
+            }
+        }
+
+        if (classesToFlush != null)
+        {
+            // Flush any query results from cache for these types
+            for (Class cls : classesToFlush)
+            {
+                ec.getNucleusContext().getStoreManager().getQueryManager().evictQueryResultsForType(cls);
+            }
+        }
+        
+        return optimisticFailures;
+    }
+
+    /**
+     * Method that flushes updates of the passed StateManagers, grouping them by class and dirty fields so that the
+     * StorePersistenceHandler gets one call to <i>updateObjects</i> per group.
+     * Any StateManager that isn't a plain update of a persistent object (e.g embedded, already flushing, being deleted, not yet inserted, or without identity)
+     * is flushed individually using <i>flush()</i>, as is any StateManager when there is only one to process.
+     * The preStore callbacks are all invoked before grouping, since a callback can update fields of other objects. Any StateManager whose dirty fields
+     * are changed by a callback after it was grouped is flushed again individually, rather than being marked as flushed with those changes unsaved.
+     * @param sms StateManagers to process, in the order to be processed
+     * @param ec ExecutionContext
+     * @return Any optimistic verification exceptions thrown during flush (or null if none)
+     */
+    public static List<NucleusOptimisticException> flushUpdatesGrouped(Collection<DNStateManager> sms, ExecutionContext ec)
+    {
+        List<NucleusOptimisticException> optimisticFailures = null;
+
+        Map<String, List<DNStateManager>> smsByGroup = new LinkedHashMap<>();
+        Map<String, int[]> fieldNumbersByGroup = new HashMap<>();
+        List<DNStateManager> flushingSMs = new ArrayList<>();
+        List<DNStateManager> smsToFlushAgain = new ArrayList<>();
+        try
+        {
+            // Perform preStore
+            for (DNStateManager sm : sms)
+            {
+                if (sms.size() == 1 || !isGroupableUpdate(sm))
+                {
+                    optimisticFailures = flushIndividually(sm, optimisticFailures);
+                    continue;
+                }
+
+                sm.setFlushing(true);
+                flushingSMs.add(sm);
+                ec.getCallbackHandler().preStore(sm.getObject());
+            }
+
+            // Group by class and dirty fields
+            for (DNStateManager sm : flushingSMs)
+            {
+                int[] dirtyFieldNumbers = sm.getDirtyFieldNumbers();
+                if (dirtyFieldNumbers == null)
+                {
+                    // StateManager is dirty but no fields. What happened?
+                    throw new NucleusException(Localiser.msg("026010")).setFatal();
+                }
+                String groupKey = sm.getClassMetaData().getFullClassName() + Arrays.toString(dirtyFieldNumbers);
+                List<DNStateManager> groupSMs = smsByGroup.get(groupKey);
+                if (groupSMs == null)
+                {
+                    groupSMs = new ArrayList<>();
+                    smsByGroup.put(groupKey, groupSMs);
+                    fieldNumbersByGroup.put(groupKey, dirtyFieldNumbers);
+                }
+                groupSMs.add(sm);
+            }
+
+            StorePersistenceHandler persistenceHandler = ec.getStoreManager().getPersistenceHandler();
+            for (Map.Entry<String, List<DNStateManager>> groupEntry : smsByGroup.entrySet())
+            {
+                List<DNStateManager> groupSMs = groupEntry.getValue();
+                int[] fieldNumbers = fieldNumbersByGroup.get(groupEntry.getKey());
+                if (ec.getNucleusContext().isClassCacheable(groupSMs.get(0).getClassMetaData()))
+                {
+                    for (DNStateManager sm : groupSMs)
+                    {
+                        ec.markFieldsForUpdateInLevel2Cache(sm.getInternalObjectId(), sm.getDirtyFields());
+                    }
+                }
+
+                Set<Object> failedObjects = null;
                 try
                 {
-                    sm.flush();
+                    persistenceHandler.updateObjects(fieldNumbers, groupSMs.toArray(new DNStateManager[groupSMs.size()]));
                 }
-                catch (NucleusOptimisticException oe)
+                catch (NucleusOptimisticException noe)
                 {
                     if (optimisticFailures == null)
                     {
-                        optimisticFailures = new ArrayList();
+                        optimisticFailures = new ArrayList<>();
                     }
-                    optimisticFailures.add(oe);
+                    optimisticFailures.addAll(getOptimisticFailures(noe));
+                    failedObjects = getFailedObjects(noe);
+                    if (failedObjects == null)
+                    {
+                        // Can't tell which objects failed, so none of the group is flushed
+                        continue;
+                    }
+                }
+
+                for (DNStateManager sm : groupSMs)
+                {
+                    if (failedObjects != null && failedObjects.contains(sm.getObject()))
+                    {
+                        continue;
+                    }
+                    if (!Arrays.equals(fieldNumbers, sm.getDirtyFieldNumbers()))
+                    {
+                        // Fields updated by a callback since grouping (e.g postStore of an earlier group) so not saved yet
+                        smsToFlushAgain.add(sm);
+                        continue;
+                    }
+
+                    ec.putObjectIntoLevel1Cache(sm);
+                    sm.markAsFlushed();
+                    ec.getCallbackHandler().postStore(sm.getObject());
                 }
             }
         }
+        finally
+        {
+            for (DNStateManager sm : flushingSMs)
+            {
+                sm.setFlushing(false);
+            }
+        }
 
-        if (classesToFlush != null)
+        for (DNStateManager sm : smsToFlushAgain)
         {
-            // Flush any query results from cache for these types
-            for (Class cls : classesToFlush)
+            optimisticFailures = flushIndividually(sm, optimisticFailures);
+        }
+
+        return optimisticFailures;
+    }
+
+    /**
+     * Convenience method to flush a StateManager on its own using <i>flush()</i>, adding any optimistic verification exception to the failures.
+     * @param sm StateManager
+     * @param optimisticFailures Optimistic failures so far (or null if none)
+     * @return The optimistic failures (or null if none)
+     */
+    private static List<NucleusOptimisticException> flushIndividually(DNStateManager sm, List<NucleusOptimisticException> optimisticFailures)
+    {
+        try
+        {
+            sm.flush();
+        }
+        catch (NucleusOptimisticException oe)
+        {
+            if (optimisticFailures == null)
             {
-                ec.getNucleusContext().getStoreManager().getQueryManager().evictQueryResultsForType(cls);
+                optimisticFailures = new ArrayList<>();
             }
+            optimisticFailures.add(oe);
         }
-        
         return optimisticFailures;
     }
+
+    /**
+     * Convenience method to split an optimistic exception thrown by a batch operation into the failures for the individual objects.
+     * @param noe The exception
+     * @return The individual failures (or the exception itself if it has no nested optimistic failures)
+     */
+    private static List<NucleusOptimisticException> getOptimisticFailures(NucleusOptimisticException noe)
+    {
+        List<NucleusOptimisticException> failures = new ArrayList<>();
+        Throwable[] nestedExcs = noe.getNestedExceptions();
+        if (nestedExcs != null && nestedExcs.length > 1)
+        {
+            for (Throwable nestedExc : nestedExcs)
+            {
+                if (nestedExc instanceof NucleusOptimisticException)
+                {
+                    failures.add((NucleusOptimisticException)nestedExc);
+                }
+            }
+        }
+        if (failures.isEmpty())
+        {
+            failures.add(noe);
+        }
+        return failures;
+    }
+
+    /**
+     * Convenience method to return the objects that failed in a batch operation, when these can be identified.
+     * This needs a nested optimistic exception with the failed object for each failure. A single exception for the batch
+     * doesn't identify which of its objects failed, even when it names one.
+     * @param noe The exception
+     * @return The failed objects, or null if they can't all be identified
+     */
+    private static Set<Object> getFailedObjects(NucleusOptimisticException noe)
+    {
+        Throwable[] nestedExcs = noe.getNestedExceptions();
+        if (nestedExcs == null || nestedExcs.length <= 1)
+        {
+            return null;
+        }
+
+        Set<Object> failedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Throwable nestedExc : nestedExcs)
+        {
+            if (!(nestedExc instanceof NucleusOptimisticException) || ((NucleusOptimisticException)nestedExc).getFailedObject() == null)
+            {
+                return null;
+            }
+            failedObjects.add(((NucleusOptimisticException)nestedExc).getFailedObject());
+        }
+        return failedObjects;
+    }
+
+    /**
+     * Convenience method to return whether the StateManager represents a plain update of a persistent object that can be
+     * grouped with others in a call to <i>updateObjects</i>.
+     * @param sm StateManager
+     * @return Whether it can be part of a grouped update
+     */
+    static boolean isGroupableUpdate(DNStateManager sm)
+    {
+        if (sm.isEmbedded() || sm.isFlushing() || sm.isFlushedToDatastore() || sm.isInserting() || sm.isDeleting() || sm.getInternalObjectId() == null)
+        {
+            return false;
+        }
+        LifeCycleState lc = sm.getLifecycleState();
+        if (lc.isDeleted() || (lc.isNew() && !sm.isFlushedNew()))
+        {
+            return false;
+        }
+        return sm.getDirtyFieldNumbers() != null;
+    }
 }
\ No newline at end of file
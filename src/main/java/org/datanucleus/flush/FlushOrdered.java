@@ -88,51 +88,13 @@ public class FlushOrdered implements FlushProcess
             // a). primary dirty objects
             if (toFlushPrimary != null)
             {
-                for (int i = 0; i < toFlushPrimary.length; i++)
-                {
-                    DNStateManager sm = toFlushPrimary[i];
-                    try
-                    {
-                        sm.flush();
-                        if (classesToFlush != null && sm.getObject() != null)
-                        {
-                            classesToFlush.add(sm.getObject().getClass());
-                        }
-                    }
-                    catch (NucleusOptimisticException oe)
-                    {
-                        if (optimisticFailures == null)
-                        {
-                            optimisticFailures = new ArrayList();
-                        }
-                        optimisticFailures.add(oe);
-                    }
-                }
+                optimisticFailures = flushInOrder(toFlushPrimary, ec, classesToFlush, optimisticFailures);
             }
 
             // b). secondary dirty objects
             if (toFlushSecondary != null)
             {
-                for (int i = 0; i < toFlushSecondary.length; i++)
-                {
-                    DNStateManager sm = toFlushSecondary[i];
-                    try
-                    {
-                        sm.flush();
-                        if (classesToFlush != null && sm.getObject() != null)
-                        {
-                            classesToFlush.add(sm.getObject().getClass());
-                        }
-                    }
-                    catch (NucleusOptimisticException oe)
-                    {
-                        if (optimisticFailures == null)
-                        {
-                            optimisticFailures = new ArrayList();
-                        }
-                        optimisticFailures.add(oe);
-                    }
-                }
+                optimisticFailures = flushInOrder(toFlushSecondary, ec, classesToFlush, optimisticFailures);
             }
 
             if (opQueue != null)
@@ -164,4 +126,72 @@ public class FlushOrdered implements FlushProcess
 
         return optimisticFailures;
     }
+
+    /**
+     * Method to flush the supplied StateManagers in the order provided. Any consecutive run of plain updates is
+     * passed to the StorePersistenceHandler as grouped updates (see {@link FlushNonReferential#flushUpdatesGrouped}),
+     * since updates don't affect the referential integrity of each other.
+     * @param sms StateManagers to flush
+     * @param ec ExecutionContext
+     * @param classesToFlush Set to add the class of each flushed object to (if not null)
+     * @param optimisticFailures Any optimistic failures so far (or null)
+     * @return The optimistic failures, including any from this call (or null if none)
+     */
+    private List<NucleusOptimisticException> flushInOrder(DNStateManager[] sms, ExecutionContext ec, Set<Class> classesToFlush,
+            List<NucleusOptimisticException> optimisticFailures)
+    {
+        List<DNStateManager> updateRun = new ArrayList<>();
+        for (int i = 0; i < sms.length; i++)
+        {
+            DNStateManager sm = sms[i];
+            if (FlushNonReferential.isGroupableUpdate(sm))
+            {
+                updateRun.add(sm);
+                if (classesToFlush != null && sm.getObject() != null)
+                {
+                    classesToFlush.add(sm.getObject().getClass());
+                }
+                continue;
+            }
+
+            optimisticFailures = flushUpdateRun(updateRun, ec, optimisticFailures);
+            try
+            {
+                sm.flush();
+                if (classesToFlush != null && sm.getObject() != null)
+                {
+                    classesToFlush.add(sm.getObject().getClass());
+                }
+            }
+            catch (NucleusOptimisticException oe)
+            {
+                if (optimisticFailures == null)
+                {
+                    optimisticFailures = new ArrayList();
+                }
+                optimisticFailures.add(oe);
+            }
+        }
+        return flushUpdateRun(updateRun, ec, optimisticFailures);
+    }
+
+    private List<NucleusOptimisticException> flushUpdateRun(List<DNStateManager> updateRun, ExecutionContext ec, List<NucleusOptimisticException> optimisticFailures)
+    {
+        if (updateRun.isEmpty())
+        {
+            return optimisticFailures;
+        }
+
+        List<NucleusOptimisticException> runFailures = FlushNonReferential.flushUpdatesGrouped(updateRun, ec);
+        updateRun.clear();
+        if (runFailures != null)
+        {
+            if (optimisticFailures == null)
+            {
+                optimisticFailures = new ArrayList();
+            }
+            optimisticFailures.addAll(runFailures);
+        }
+        return optimisticFailures;
+    }
 }
\ No newline at end of file
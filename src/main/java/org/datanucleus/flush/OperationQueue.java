@@ -21,10 +21,15 @@ package org.datanucleus.flush;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
 
 import org.datanucleus.ExecutionContext;
 import org.datanucleus.state.DNStateManager;
@@ -44,11 +49,23 @@ import org.datanucleus.util.StringUtils;
  * The queue will contain all operations to be performed for an ExecutionContext. There are two methods for
  * processing them, one processing all (for use in the future when we support that mode in full), and one
  * that processes all for a particular SCO (backing store).
+ * <p>
+ * SCO operations that have a backing store are also indexed by their owner StateManager and backing store, so that processing 
+ * the operations of one SCO doesn't need to scan the whole queue. Operations processed in this way are removed from the 
+ * queue lazily. When processing the operations of a (non-List) Collection or a Map the operations are reduced to the net change 
+ * to the container, which is then applied using the bulk methods of the backing store.
+ * </p>
  */
 public class OperationQueue
 {
     protected List<Operation> queuedOperations = new ArrayList<>();
 
+    /** SCO operations with a backing store, keyed by their owner StateManager and backing store, in the order they were queued. */
+    protected Map<DNStateManager, Map<Store, List<SCOOperation>>> queuedOperationsByOwner = new IdentityHashMap<>();
+
+    /** Operations that have been performed but are still to be removed from "queuedOperations". */
+    protected Set<Operation> performedOperations = new HashSet<>();
+
     /**
      * Method to add the specified operation to the operation queue.
      * @param oper Operation
@@ -64,15 +81,63 @@ public class OperationQueue
                 NucleusLogger.PERSISTENCE.info(">> OperationQueue : not adding operation since owner not yet flushed - " + oper);
                 return;
             }
+
+            Store store = ((SCOOperation)oper).getStore();
+            if (store != null)
+            {
+                queuedOperationsByOwner.computeIfAbsent(sm, k -> new IdentityHashMap<>()).computeIfAbsent(store, k -> new ArrayList<>()).add((SCOOperation)oper);
+            }
         }
         queuedOperations.add(oper);
     }
 
+    /**
+     * Convenience method to remove any performed operations from the queue.
+     */
+    protected void removePerformedOperations()
+    {
+        if (!performedOperations.isEmpty())
+        {
+            queuedOperations.removeIf(performedOperations::contains);
+            performedOperations.clear();
+        }
+    }
+
+    /**
+     * Convenience method to remove the specified operation from the index of SCO operations.
+     * @param oper The operation
+     */
+    protected void unindexOperation(Operation oper)
+    {
+        if (oper instanceof SCOOperation && ((SCOOperation)oper).getStore() != null)
+        {
+            Map<Store, List<SCOOperation>> opersByStore = queuedOperationsByOwner.get(oper.getStateManager());
+            if (opersByStore != null)
+            {
+                Store store = ((SCOOperation)oper).getStore();
+                List<SCOOperation> opers = opersByStore.get(store);
+                if (opers != null)
+                {
+                    opers.remove(oper);
+                    if (opers.isEmpty())
+                    {
+                        opersByStore.remove(store);
+                        if (opersByStore.isEmpty())
+                        {
+                            queuedOperationsByOwner.remove(oper.getStateManager());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Convenience method to log the current operation queue.
      */
     public void log()
     {
+        removePerformedOperations();
         NucleusLogger.PERSISTENCE.debug(">> OperationQueue :" + (queuedOperations.isEmpty() ? " Empty" : ("" + queuedOperations.size() + " operations")));
         for (Operation oper : queuedOperations)
         {
@@ -83,6 +148,8 @@ public class OperationQueue
     public void clear()
     {
         queuedOperations.clear();
+        queuedOperationsByOwner.clear();
+        performedOperations.clear();
     }
 
     /**
@@ -91,12 +158,18 @@ public class OperationQueue
      */
     public List<Operation> getOperations()
     {
+        removePerformedOperations();
         return Collections.unmodifiableList(queuedOperations);
     }
 
     public void removeOperations(List<Operation> removedOps)
     {
+        removePerformedOperations();
         queuedOperations.removeAll(removedOps);
+        for (Operation oper : removedOps)
+        {
+            unindexOperation(oper);
+        }
     }
 
     /**
@@ -105,11 +178,13 @@ public class OperationQueue
      */
     public void performAll()
     {
+        removePerformedOperations();
         for (Operation op : queuedOperations)
         {
             op.perform();
         }
         queuedOperations.clear();
+        queuedOperationsByOwner.clear();
     }
 
     /**
@@ -126,58 +201,219 @@ public class OperationQueue
         }
 
         // Extract those operations for the specified backing store
-        List<Operation> flushOperations = new ArrayList<Operation>();
-        ListIterator<Operation> operIter = queuedOperations.listIterator();
-        while (operIter.hasNext())
+        Map<Store, List<SCOOperation>> opersByStore = queuedOperationsByOwner.get(sm);
+        if (opersByStore == null)
+        {
+            return;
+        }
+        List<SCOOperation> flushOperations = opersByStore.remove(store);
+        if (opersByStore.isEmpty())
+        {
+            queuedOperationsByOwner.remove(sm);
+        }
+        if (flushOperations == null)
+        {
+            return;
+        }
+
+        // Mark as performed, and only remove them from the queue when a significant proportion has been performed
+        performedOperations.addAll(flushOperations);
+        if (2 * performedOperations.size() >= queuedOperations.size())
         {
-            Operation oper = operIter.next();
-            if (oper.getStateManager() == sm && oper instanceof SCOOperation && ((SCOOperation)oper).getStore() == store)
+            removePerformedOperations();
+        }
+
+        // TODO Cater for Lists where cascade delete is enabled but we want to only allow cascade delete if the element isn't later added at a different place in the list.
+        if (store instanceof CollectionStore && !(store instanceof ListStore))
+        {
+            performCollectionOperations((CollectionStore)store, sm, flushOperations);
+        }
+        else if (store instanceof MapStore)
+        {
+            performMapOperations((MapStore)store, sm, flushOperations);
+        }
+        else
+        {
+            for (Operation oper : flushOperations)
             {
-                // Process operations for this Store and this StateManager
-                flushOperations.add(oper);
-                operIter.remove();
+                oper.perform();
             }
         }
+    }
 
-        // TODO Cater for Lists where cascade delete is enabled but we want to only allow cascade delete if the element isn't later added at a different place in the list.
-        ListIterator<Operation> flushOperIter = flushOperations.listIterator();
-        while (flushOperIter.hasNext())
+    /**
+     * Method to perform the supplied operations on a (non-List) Collection backing store.
+     * Consecutive add/remove operations are reduced to the net change for each element (so an add and a remove of the same element
+     * cancel each other out), which is then applied using removeAll/addAll. Elements are matched using equals(), as the collection
+     * would match them, so removing an element equal to one that was added cancels that add. Any other operation (e.g clear) is
+     * performed in its position in the sequence.
+     * @param store The backing store
+     * @param sm StateManager of the owner
+     * @param opers The operations, in the order they were queued
+     */
+    protected void performCollectionOperations(CollectionStore store, DNStateManager sm, List<SCOOperation> opers)
+    {
+        Map<Object, ElementChange> changes = new HashMap<>();
+        List<ElementChange> orderedChanges = new ArrayList<>();
+        for (SCOOperation oper : opers)
         {
-            Operation oper = flushOperIter.next();
-            if (store instanceof CollectionStore)
+            if (oper instanceof CollectionAddOperation || oper instanceof CollectionRemoveOperation)
             {
-                if (!(store instanceof ListStore))
+                boolean add = oper instanceof CollectionAddOperation;
+                Object element = add ? ((CollectionAddOperation)oper).getValue() : ((CollectionRemoveOperation)oper).getValue();
+                ElementChange change = changes.get(element);
+                if (change == null)
                 {
-                    if (isAddFollowedByRemoveOnSameSCO(store, sm, oper, flushOperIter))
-                    {
-                        // add+remove of the same element - ignore this and the next one
-                        flushOperIter.next();
-                    }
-                    else if (isRemoveFollowedByAddOnSameSCO(store, sm, oper, flushOperIter))
+                    change = new ElementChange();
+                    changes.put(element, change);
+                    orderedChanges.add(change);
+                }
+                if (add)
+                {
+                    change.count++;
+                    change.addedElements.add(element);
+                }
+                else
+                {
+                    change.count--;
+                    change.lastRemoveOperation = (CollectionRemoveOperation)oper;
+                }
+            }
+            else
+            {
+                applyCollectionChanges(store, sm, orderedChanges);
+                changes.clear();
+                orderedChanges.clear();
+                oper.perform();
+            }
+        }
+        applyCollectionChanges(store, sm, orderedChanges);
+    }
+
+    private void applyCollectionChanges(CollectionStore store, DNStateManager sm, List<ElementChange> changes)
+    {
+        if (changes.isEmpty())
+        {
+            return;
+        }
+
+        List<Object> elementsToRemove = new ArrayList<>();
+        List<Object> elementsToAdd = new ArrayList<>();
+        for (ElementChange change : changes)
+        {
+            if (change.count == 0)
+            {
+                if (NucleusLogger.PERSISTENCE.isDebugEnabled())
+                {
+                    NucleusLogger.PERSISTENCE.debug("Member " + store.getOwnerMemberMetaData().getFullFieldName() + " of " + StringUtils.toJVMIDString(sm.getObject()) + 
+                        " had an add and a remove of element " + StringUtils.toJVMIDString(change.addedElements.get(0)) + " - operations ignored");
+                }
+            }
+            else if (change.count > 0)
+            {
+                // Add the most recently added instances
+                int numAdded = change.addedElements.size();
+                for (int i=numAdded-change.count;i<numAdded;i++)
+                {
+                    elementsToAdd.add(change.addedElements.get(i));
+                }
+            }
+            else
+            {
+                for (int i=0;i<-change.count;i++)
+                {
+                    if (change.lastRemoveOperation.allowCascadeDelete)
                     {
-                        // remove+add of the same element - ignore this and the next one
-                        flushOperIter.next();
+                        elementsToRemove.add(change.lastRemoveOperation.getValue());
                     }
                     else
                     {
-                        oper.perform();
+                        // removeAll has no way of suppressing cascade delete, so remove individually
+                        change.lastRemoveOperation.perform();
                     }
                 }
-                else
-                {
-                    oper.perform();
-                }
             }
-            else if (store instanceof MapStore)
+        }
+
+        if (elementsToRemove.size() == 1)
+        {
+            store.remove(sm, elementsToRemove.get(0), -1, true);
+        }
+        else if (!elementsToRemove.isEmpty())
+        {
+            store.removeAll(sm, elementsToRemove, -1);
+        }
+
+        if (elementsToAdd.size() == 1)
+        {
+            store.add(sm, elementsToAdd.get(0), -1);
+        }
+        else if (!elementsToAdd.isEmpty())
+        {
+            store.addAll(sm, elementsToAdd, -1);
+        }
+    }
+
+    /**
+     * Method to perform the supplied operations on a Map backing store.
+     * Consecutive put/remove operations are reduced to the last operation for each key, with the puts applied using putAll.
+     * A put followed by a remove of the same key cancel each other out. Any other operation (e.g clear) is performed in its
+     * position in the sequence.
+     * @param store The backing store
+     * @param sm StateManager of the owner
+     * @param opers The operations, in the order they were queued
+     */
+    protected void performMapOperations(MapStore store, DNStateManager sm, List<SCOOperation> opers)
+    {
+        Map<Object, SCOOperation> lastOperationByKey = new LinkedHashMap<>();
+        Set<Object> keysFirstPut = new HashSet<>();
+        for (SCOOperation oper : opers)
+        {
+            if (oper instanceof MapPutOperation)
             {
-                if (isPutFollowedByRemoveOnSameSCO(store, sm, oper, flushOperIter))
+                Object key = ((MapPutOperation)oper).getKey();
+                if (!lastOperationByKey.containsKey(key))
                 {
-                    // put+remove of the same key - ignore this and the next one
-                    flushOperIter.next();
+                    keysFirstPut.add(key);
                 }
-                else
+                lastOperationByKey.put(key, oper);
+            }
+            else if (oper instanceof MapRemoveOperation)
+            {
+                lastOperationByKey.put(((MapRemoveOperation)oper).getKey(), oper);
+            }
+            else
+            {
+                applyMapChanges(store, sm, lastOperationByKey, keysFirstPut);
+                lastOperationByKey.clear();
+                keysFirstPut.clear();
+                oper.perform();
+            }
+        }
+        applyMapChanges(store, sm, lastOperationByKey, keysFirstPut);
+    }
+
+    private void applyMapChanges(MapStore store, DNStateManager sm, Map<Object, SCOOperation> lastOperationByKey, Set<Object> keysFirstPut)
+    {
+        if (lastOperationByKey.isEmpty())
+        {
+            return;
+        }
+
+        Map<Object, Object> entriesToPut = new LinkedHashMap<>();
+        for (Map.Entry<Object, SCOOperation> entry : lastOperationByKey.entrySet())
+        {
+            SCOOperation oper = entry.getValue();
+            if (oper instanceof MapPutOperation)
+            {
+                entriesToPut.put(entry.getKey(), ((MapPutOperation)oper).getValue());
+            }
+            else if (keysFirstPut.contains(entry.getKey()))
+            {
+                if (NucleusLogger.PERSISTENCE.isDebugEnabled())
                 {
-                    oper.perform();
+                    NucleusLogger.PERSISTENCE.debug("Member " + store.getOwnerMemberMetaData().getFullFieldName() + " of " + StringUtils.toJVMIDString(sm.getObject()) + 
+                        " had a put then a remove of key " + StringUtils.toJVMIDString(entry.getKey()) + " - operations ignored");
                 }
             }
             else
@@ -185,12 +421,37 @@ public class OperationQueue
                 oper.perform();
             }
         }
+
+        if (entriesToPut.size() == 1)
+        {
+            Map.Entry<Object, Object> entry = entriesToPut.entrySet().iterator().next();
+            store.put(sm, entry.getKey(), entry.getValue());
+        }
+        else if (!entriesToPut.isEmpty())
+        {
+            store.putAll(sm, entriesToPut);
+        }
+    }
+
+    /**
+     * Net change to an element of a Collection, from a sequence of add/remove operations.
+     */
+    private static class ElementChange
+    {
+        /** Instances added, in the order they were added. */
+        final List<Object> addedElements = new ArrayList<>();
+
+        /** Number of adds less number of removes. */
+        int count = 0;
+
+        CollectionRemoveOperation lastRemoveOperation;
     }
 
     public void clearPersistDeleteUpdateOperations()
     {
         if (queuedOperations != null)
         {
+            removePerformedOperations();
             Iterator<Operation> opsIter = queuedOperations.iterator();
             while (opsIter.hasNext())
             {
@@ -214,6 +475,7 @@ public class OperationQueue
     {
         if (queuedOperations != null && !ec.getStoreManager().usesBackedSCOWrappers())
         {
+            removePerformedOperations();
             // Make use of OperationQueue for any cascade deletes that may be needed as a result of removal from collections/maps
             List<Operation> opersToIgnore = new ArrayList<>();
             List<Object> objectsToCascadeDelete = null;
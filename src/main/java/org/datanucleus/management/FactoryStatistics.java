@@ -18,6 +18,7 @@ Contributors:
 package org.datanucleus.management;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Statistics for a factory of persistence (PMF/EMF).
@@ -29,6 +30,22 @@ public class FactoryStatistics extends AbstractStatistics implements FactoryStat
     final AtomicInteger connectionActiveHigh = new AtomicInteger();
     final AtomicInteger connectionActiveTotal = new AtomicInteger();
 
+    final AtomicLong ecPoolHitCount = new AtomicLong();
+    final AtomicLong ecPoolMissCount = new AtomicLong();
+    final AtomicInteger ecPoolSize = new AtomicInteger();
+
+    final AtomicLong queryResultsCacheHitCount = new AtomicLong();
+    final AtomicLong queryResultsCacheMissCount = new AtomicLong();
+    final AtomicLong queryResultsCacheEvictionCount = new AtomicLong();
+
+    final AtomicLong txnPreparePhaseCount = new AtomicLong();
+    final AtomicLong txnPreparePhaseTotalTime = new AtomicLong();
+    final AtomicLong txnPreparePhaseTimeHigh = new AtomicLong();
+    final AtomicLong txnCommitPhaseCount = new AtomicLong();
+    final AtomicLong txnCommitPhaseTotalTime = new AtomicLong();
+    final AtomicLong txnCommitPhaseTimeHigh = new AtomicLong();
+    final AtomicLong txnReadOnlyBranchCount = new AtomicLong();
+
     public FactoryStatistics(ManagementManager mgmtManager)
     {
         super(mgmtManager, null);
@@ -60,4 +77,143 @@ public class FactoryStatistics extends AbstractStatistics implements FactoryStat
     {
         this.connectionActiveCurrent.decrementAndGet();
     }
+
+    public long getExecutionContextPoolHitCount()
+    {
+        return this.ecPoolHitCount.longValue();
+    }
+
+    public long getExecutionContextPoolMissCount()
+    {
+        return this.ecPoolMissCount.longValue();
+    }
+
+    public int getExecutionContextPoolSize()
+    {
+        return this.ecPoolSize.intValue();
+    }
+
+    /**
+     * Method to register that an ExecutionContext was obtained from the pool.
+     * @param poolSize Number of idle ExecutionContexts remaining in the pool
+     */
+    public void executionContextPoolHit(int poolSize)
+    {
+        this.ecPoolHitCount.incrementAndGet();
+        this.ecPoolSize.set(poolSize);
+    }
+
+    /**
+     * Method to register that an ExecutionContext had to be created since none was available in the pool.
+     * @param poolSize Number of idle ExecutionContexts in the pool
+     */
+    public void executionContextPoolMiss(int poolSize)
+    {
+        this.ecPoolMissCount.incrementAndGet();
+        this.ecPoolSize.set(poolSize);
+    }
+
+    public void setExecutionContextPoolSize(int poolSize)
+    {
+        this.ecPoolSize.set(poolSize);
+    }
+
+    public long getQueryResultsCacheHitCount()
+    {
+        return this.queryResultsCacheHitCount.longValue();
+    }
+
+    public long getQueryResultsCacheMissCount()
+    {
+        return this.queryResultsCacheMissCount.longValue();
+    }
+
+    public long getQueryResultsCacheEvictionCount()
+    {
+        return this.queryResultsCacheEvictionCount.longValue();
+    }
+
+    public void queryResultsCacheHit()
+    {
+        this.queryResultsCacheHitCount.incrementAndGet();
+    }
+
+    public void queryResultsCacheMiss()
+    {
+        this.queryResultsCacheMissCount.incrementAndGet();
+    }
+
+    /**
+     * Method to register that entries were evicted from the query results cache due to its capacity or their expiry.
+     * @param numEvicted Number of entries evicted
+     */
+    public void queryResultsCacheEviction(int numEvicted)
+    {
+        this.queryResultsCacheEvictionCount.addAndGet(numEvicted);
+    }
+
+    public long getTransactionPreparePhaseCount()
+    {
+        return this.txnPreparePhaseCount.longValue();
+    }
+
+    public long getTransactionPreparePhaseTotalTime()
+    {
+        return this.txnPreparePhaseTotalTime.longValue();
+    }
+
+    public long getTransactionPreparePhaseTimeHigh()
+    {
+        return this.txnPreparePhaseTimeHigh.longValue();
+    }
+
+    public long getTransactionCommitPhaseCount()
+    {
+        return this.txnCommitPhaseCount.longValue();
+    }
+
+    public long getTransactionCommitPhaseTotalTime()
+    {
+        return this.txnCommitPhaseTotalTime.longValue();
+    }
+
+    public long getTransactionCommitPhaseTimeHigh()
+    {
+        return this.txnCommitPhaseTimeHigh.longValue();
+    }
+
+    public long getTransactionReadOnlyBranchCount()
+    {
+        return this.txnReadOnlyBranchCount.longValue();
+    }
+
+    /**
+     * Method to register that the prepare phase of a (resourced) transaction commit has completed.
+     * @param time Time taken to prepare all branches (ms)
+     */
+    public void transactionPreparePhaseCompleted(long time)
+    {
+        this.txnPreparePhaseCount.incrementAndGet();
+        this.txnPreparePhaseTotalTime.addAndGet(time);
+        this.txnPreparePhaseTimeHigh.accumulateAndGet(time, Math::max);
+    }
+
+    /**
+     * Method to register that the commit (or rollback) phase of a (resourced) transaction commit has completed.
+     * @param time Time taken to commit all branches (ms)
+     */
+    public void transactionCommitPhaseCompleted(long time)
+    {
+        this.txnCommitPhaseCount.incrementAndGet();
+        this.txnCommitPhaseTotalTime.addAndGet(time);
+        this.txnCommitPhaseTimeHigh.accumulateAndGet(time, Math::max);
+    }
+
+    /**
+     * Method to register that a branch of a (resourced) transaction voted read-only when prepared, so was not committed.
+     */
+    public void transactionBranchReadOnly()
+    {
+        this.txnReadOnlyBranchCount.incrementAndGet();
+    }
 }
\ No newline at end of file
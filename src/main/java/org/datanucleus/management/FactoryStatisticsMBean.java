@@ -75,4 +75,30 @@ public interface FactoryStatisticsMBean
     int getConnectionActiveHigh();
 
     int getConnectionActiveTotal();
+
+    long getExecutionContextPoolHitCount();
+
+    long getExecutionContextPoolMissCount();
+
+    int getExecutionContextPoolSize();
+
+    long getQueryResultsCacheHitCount();
+
+    long getQueryResultsCacheMissCount();
+
+    long getQueryResultsCacheEvictionCount();
+
+    long getTransactionPreparePhaseCount();
+
+    long getTransactionPreparePhaseTotalTime();
+
+    long getTransactionPreparePhaseTimeHigh();
+
+    long getTransactionCommitPhaseCount();
+
+    long getTransactionCommitPhaseTotalTime();
+
+    long getTransactionCommitPhaseTimeHigh();
+
+    long getTransactionReadOnlyBranchCount();
 }
\ No newline at end of file
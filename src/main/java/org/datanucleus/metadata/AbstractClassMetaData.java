@@ -185,6 +185,15 @@ public abstract class AbstractClassMetaData extends MetaData
     /** Positions of all fields/properties (inc superclasses). */
     protected int[] allMemberPositions;
 
+    /** Managed fields/properties (inc superclasses, allowing for overrides) indexed by absolute position. Frozen when initialised. */
+    protected AbstractMemberMetaData[] managedMembersByAbsolutePosition;
+
+    /** Absolute positions of the managed fields/properties (inc superclasses) mapped by name. Frozen when initialised. */
+    protected Map<String, Integer> absoluteMemberPositionsByName;
+
+    /** All fields/properties (inc superclasses) mapped by name, as returned by getMetaDataForMember. Frozen when initialised. */
+    protected Map<String, AbstractMemberMetaData> membersByName;
+
     /** Positions of the primary-key fields/properties (inc superclasses). */
     protected int[] pkMemberPositions;
 
@@ -453,6 +462,16 @@ public abstract class AbstractClassMetaData extends MetaData
         return mmgr;
     }
 
+    /**
+     * Method to set the MetaDataManager for this metadata when it wasn't populated by that manager, for example when
+     * read from a snapshot of previously initialised metadata.
+     * @param mmgr MetaData manager
+     */
+    void setMetaDataManager(MetaDataManager mmgr)
+    {
+        this.mmgr = mmgr;
+    }
+
     public boolean isInstantiable()
     {
         return instantiable;
@@ -1442,6 +1461,8 @@ public abstract class AbstractClassMetaData extends MetaData
     protected void initialiseMemberPositionInformation()
     {
         memberCount = noOfInheritedManagedMembers + managedMembers.length;
+        initialiseMemberLookups();
+
         dfgMemberFlags = new boolean[memberCount];
         scoMutableMemberFlags = new boolean[memberCount];
         nonPkMemberFlags = new boolean[memberCount];
@@ -1561,6 +1582,50 @@ public abstract class AbstractClassMetaData extends MetaData
         }
     }
 
+    /**
+     * Method to freeze a flattened view of the members of this class and its superclasses, so that lookups of members by name or
+     * absolute position don't need to navigate up the inheritance tree. Relies on the superclass having been initialised.
+     */
+    private void initialiseMemberLookups()
+    {
+        managedMembersByAbsolutePosition = null;
+        AbstractMemberMetaData[] managedMmds = new AbstractMemberMetaData[memberCount];
+        for (int i=0;i<memberCount;i++)
+        {
+            managedMmds[i] = getMetaDataForManagedMemberAtAbsolutePositionInternal(i);
+        }
+        managedMembersByAbsolutePosition = managedMmds;
+
+        if (pcSuperclassMetaData != null && (pcSuperclassMetaData.absoluteMemberPositionsByName == null || pcSuperclassMetaData.membersByName == null))
+        {
+            // Superclass has no flattened view, so navigate up the inheritance tree when looking up by name
+            absoluteMemberPositionsByName = null;
+            membersByName = null;
+            return;
+        }
+
+        Map<String, Integer> positionsByName = pcSuperclassMetaData != null ? new HashMap<>(pcSuperclassMetaData.absoluteMemberPositionsByName) : new HashMap<>();
+        for (Map.Entry<String, Integer> entry : memberPositionsByName.entrySet())
+        {
+            positionsByName.put(entry.getKey(), entry.getValue() + noOfInheritedManagedMembers);
+        }
+        absoluteMemberPositionsByName = positionsByName;
+
+        Map<String, AbstractMemberMetaData> mmdsByName = new HashMap<>();
+        for (AbstractMemberMetaData mmd : members)
+        {
+            mmdsByName.putIfAbsent(mmd.getName(), mmd);
+        }
+        if (pcSuperclassMetaData != null)
+        {
+            for (Map.Entry<String, AbstractMemberMetaData> entry : pcSuperclassMetaData.membersByName.entrySet())
+            {
+                mmdsByName.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+        membersByName = mmdsByName;
+    }
+
     /**
      * Convenience method to find the discriminator MetaData defining the discrim for the same table
      * as this class is using. Traverses up the inheritance tree to find the highest class that uses
@@ -2088,6 +2153,12 @@ public abstract class AbstractClassMetaData extends MetaData
             return null;
         }
 
+        Map<String, AbstractMemberMetaData> mmdsByName = membersByName;
+        if (mmdsByName != null)
+        {
+            return mmdsByName.get(name);
+        }
+
         for (AbstractMemberMetaData mmd : members)
         {
             if (mmd.getName().equals(name))
@@ -2264,6 +2335,12 @@ public abstract class AbstractClassMetaData extends MetaData
      */
     protected AbstractMemberMetaData getMetaDataForManagedMemberAtAbsolutePositionInternal(int abs_position)
     {
+        AbstractMemberMetaData[] managedMmds = managedMembersByAbsolutePosition;
+        if (managedMmds != null)
+        {
+            return (abs_position < 0 || abs_position >= managedMmds.length) ? null : managedMmds[abs_position];
+        }
+
         // If the field is in a superclass, go there
         if (abs_position < noOfInheritedManagedMembers)
         {
@@ -2333,6 +2410,13 @@ public abstract class AbstractClassMetaData extends MetaData
             return -1;
         }
 
+        Map<String, Integer> positionsByName = absoluteMemberPositionsByName;
+        if (positionsByName != null)
+        {
+            Integer pos = positionsByName.get(memberName);
+            return pos == null ? -1 : pos.intValue();
+        }
+
         int i = getRelativePositionOfMember(memberName);
         if (i < 0)
         {
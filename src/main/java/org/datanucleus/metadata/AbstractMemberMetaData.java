@@ -19,6 +19,10 @@ Contributors:
 **********************************************************************/
 package org.datanucleus.metadata;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.lang.reflect.Member;
@@ -193,11 +197,11 @@ public abstract class AbstractMemberMetaData extends MetaData implements Compara
     /** Cache result of {@link #getFullFieldName()}. */
     protected String fullFieldName = null;
 
-    /** Field type being represented. */
-    protected Class<?> type;
+    /** Field type being represented. Serialised as its name. */
+    protected transient Class<?> type;
 
-    /** The member (field/method) being represented here. Note, this prevents Serialization. */
-    protected Member memberRepresented;
+    /** The member (field/method) being represented here. Serialised as its declaring class and name. */
+    protected transient Member memberRepresented;
 
     /** Id of the field in its class (only for fields that are managed). If the value is -1, the field is NOT managed or the object hasn't been populated. */
     protected int fieldId=-1;
@@ -3187,6 +3191,60 @@ public abstract class AbstractMemberMetaData extends MetaData implements Compara
         return getFullFieldName().hashCode();
     }*/
 
+    /**
+     * Serialisation of this metadata. The type is written as its name, and the member being represented (which is not Serializable)
+     * as the name of its declaring class, whether it is a field, and its name. This means that the serialised form holds no classes
+     * of the application, so can be read through a filter allowing only the metadata types.
+     * @param out Output stream
+     * @throws IOException if an error occurs writing the metadata
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        out.defaultWriteObject();
+        out.writeObject(type != null ? type.getName() : null);
+        if (memberRepresented != null)
+        {
+            out.writeObject(memberRepresented.getDeclaringClass().getName());
+            out.writeBoolean(memberRepresented instanceof Field);
+            out.writeUTF(memberRepresented.getName());
+        }
+        else
+        {
+            out.writeObject(null);
+        }
+    }
+
+    /**
+     * Deserialisation of this metadata, resolving the type and the member being represented from their class names.
+     * @param in Input stream
+     * @throws IOException if an error occurs reading the metadata
+     * @throws ClassNotFoundException if a class of the metadata cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        String typeName = (String) in.readObject();
+        if (typeName != null)
+        {
+            type = MetaDataSnapshot.classForName(in, typeName);
+        }
+        String declaringClassName = (String) in.readObject();
+        if (declaringClassName != null)
+        {
+            Class<?> declaringClass = MetaDataSnapshot.classForName(in, declaringClassName);
+            boolean isField = in.readBoolean();
+            String memberName = in.readUTF();
+            try
+            {
+                memberRepresented = isField ? declaringClass.getDeclaredField(memberName) : declaringClass.getDeclaredMethod(memberName);
+            }
+            catch (NoSuchFieldException | NoSuchMethodException e)
+            {
+                throw new InvalidObjectException("Member " + declaringClass.getName() + "." + memberName + " no longer exists");
+            }
+        }
+    }
+
     /**
      * Comparator method. This allows the ClassMetaData to search for an AbstractMemberMetaData with a particular name.
      * @param other The object to compare against
@@ -198,8 +198,8 @@ public class MetaData implements Serializable
     /** Index : orderings of columns in an index, comma separated series of "ASC", "DESC" etc. */
     public static final String EXTENSION_INDEX_COLUMN_ORDERING = "index-column-ordering";
 
-    /** State of the MetaData. */
-    protected State metaDataState = State.CREATED;
+    /** State of the MetaData. Volatile so that metadata initialised by one thread is fully visible to other threads. */
+    protected volatile State metaDataState = State.CREATED;
 
     /** Parent MetaData object, allowing hierarchical MetaData structure. */
     protected MetaData parent;
@@ -0,0 +1,151 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.metadata;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Locks used when loading metadata, one per class hierarchy, so that the metadata of independent class hierarchies can be
+ * populated and initialised concurrently, whilst threads requiring a class hierarchy that is being loaded wait for it to complete.
+ * A lock is reentrant, and a thread can hold the locks of several class hierarchies, since loading the metadata of one class can require
+ * the metadata of related classes.
+ * <p>
+ * Where a thread requires a class hierarchy that is being loaded by a thread that is (directly or indirectly) waiting for this thread, waiting
+ * would deadlock. In this case the lock is not acquired, and the caller should proceed as it would when loading metadata recursively in a
+ * single thread, making use of whatever metadata is currently loaded for that class hierarchy. The other thread is blocked until this thread
+ * releases its locks, so will not be changing that metadata in the meantime.
+ */
+class MetaDataLoadLocks
+{
+    /** Lock of a class hierarchy, held by a thread. */
+    private static class HierarchyLock
+    {
+        final Thread owner;
+        int holdCount = 1;
+
+        HierarchyLock(Thread owner)
+        {
+            this.owner = owner;
+        }
+    }
+
+    /** Locks that are currently held, keyed by the class hierarchy name. */
+    private final Map<String, HierarchyLock> locksByHierarchy = new HashMap<>();
+
+    /** Name of the class hierarchy that a thread is waiting to lock, keyed by the thread. */
+    private final Map<Thread, String> hierarchyAwaitedByThread = new HashMap<>();
+
+    /**
+     * Method to lock the specified class hierarchy for the current thread, waiting for any other thread that holds the lock to release it.
+     * @param hierarchyName Name of the class hierarchy
+     * @return Whether the lock was acquired (in which case unlock must be called). Returns false when waiting would deadlock
+     */
+    synchronized boolean lock(String hierarchyName)
+    {
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                HierarchyLock lock = locksByHierarchy.get(hierarchyName);
+                if (lock == null)
+                {
+                    locksByHierarchy.put(hierarchyName, new HierarchyLock(current));
+                    return true;
+                }
+                if (lock.owner == current)
+                {
+                    lock.holdCount++;
+                    return true;
+                }
+                if (isWaitingForThread(lock.owner, current))
+                {
+                    return false;
+                }
+
+                hierarchyAwaitedByThread.put(current, hierarchyName);
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException ie)
+                {
+                    // Loading of metadata is not interruptible, so continue waiting and restore the interrupt status when done
+                    interrupted = true;
+                }
+                finally
+                {
+                    hierarchyAwaitedByThread.remove(current);
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+            {
+                current.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Method to release the lock of the specified class hierarchy held by the current thread.
+     * @param hierarchyName Name of the class hierarchy
+     */
+    synchronized void unlock(String hierarchyName)
+    {
+        HierarchyLock lock = locksByHierarchy.get(hierarchyName);
+        if (lock == null || lock.owner != Thread.currentThread())
+        {
+            throw new IllegalMonitorStateException("Lock for class hierarchy " + hierarchyName + " is not held by this thread");
+        }
+        if (--lock.holdCount == 0)
+        {
+            locksByHierarchy.remove(hierarchyName);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Convenience method to return whether the specified thread is waiting (directly or indirectly) for a lock held by another thread.
+     * @param thread The thread that may be waiting
+     * @param other The other thread
+     * @return Whether the thread is waiting for the other thread
+     */
+    private boolean isWaitingForThread(Thread thread, Thread other)
+    {
+        Thread waitingThread = thread;
+        for (int i=0;i<=hierarchyAwaitedByThread.size();i++)
+        {
+            String awaitedHierarchy = hierarchyAwaitedByThread.get(waitingThread);
+            HierarchyLock awaitedLock = awaitedHierarchy != null ? locksByHierarchy.get(awaitedHierarchy) : null;
+            if (awaitedLock == null)
+            {
+                return false;
+            }
+            if (awaitedLock.owner == other)
+            {
+                return true;
+            }
+            waitingThread = awaitedLock.owner;
+        }
+        return false;
+    }
+}
@@ -20,6 +20,7 @@ package org.datanucleus.metadata;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.net.URI;
 import java.net.URL;
@@ -32,13 +33,19 @@ import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -58,6 +65,7 @@ import org.datanucleus.util.ClassUtils;
 import org.datanucleus.util.Localiser;
 import org.datanucleus.util.NucleusLogger;
 import org.datanucleus.util.StringUtils;
+import org.datanucleus.util.ThreadPoolUtils;
 
 /**
  * Manager of metadata information in DataNucleus having scope of an NucleusContext.
@@ -88,6 +96,8 @@ import org.datanucleus.util.StringUtils;
  * <p>
  * MetaDataManager is intended to be thread-safe. All maps are ConcurrentHashMap to provide basic multithread usage.
  * In addition all mutating methods make use of an update "lock" so that only one thread can update the metadata definition at any time.
+ * Loading of metadata for a class when required locks only the hierarchy of that class, so independent class hierarchies can be
+ * loaded concurrently, whilst threads requiring a class hierarchy that is being loaded wait for it.
  */
 public abstract class MetaDataManagerImpl implements Serializable, MetaDataManager
 {
@@ -123,7 +133,7 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
     protected Lock updateLock = null;
 
     /** Cache of class names that are known to not have MetaData/annotations. */
-    protected Collection<String> classesWithoutPersistenceInfo = new HashSet<>();
+    protected Collection<String> classesWithoutPersistenceInfo = ConcurrentHashMap.newKeySet();
 
     /** Map of ClassMetaData, keyed by the class name. */
     protected Map<String, AbstractClassMetaData> classMetaDataByClass = new ConcurrentHashMap<>();
@@ -164,13 +174,22 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
     protected Map<String, QueryResultMetaData> queryResultMetaDataByName = null;
 
     /** Map of class metadata, keyed by the application-id object-id class name (not SingleField). */
-    protected Map<String, Collection<AbstractClassMetaData>> classMetaDataByAppIdClassName = new HashMap<>();
+    protected Map<String, Collection<AbstractClassMetaData>> classMetaDataByAppIdClassName = new ConcurrentHashMap<>();
 
     /** Listeners for metadata load. */
     protected Set<MetaDataListener> listeners = null;
 
-    /** Temporary list of class metadata loaded during the current call, for use with listeners. */
-    private List<AbstractClassMetaData> listenersLoadedMetaData = null;
+    /** Temporary list of class metadata loaded during the current call of each thread, for use with listeners. Recreated on deserialisation. */
+    private transient ThreadLocal<List<AbstractClassMetaData>> listenersLoadedMetaData = new ThreadLocal<>();
+
+    /** Locks for the class hierarchies whose metadata is being loaded. Recreated on deserialisation. */
+    private transient MetaDataLoadLocks loadLocks = new MetaDataLoadLocks();
+
+    /** Whether we have checked for a metadata snapshot to register. */
+    private volatile boolean snapshotChecked = false;
+
+    /** FileMetaData registered from a metadata snapshot (if any). */
+    protected Set<FileMetaData> snapshotFileMetaData = null;
 
     /** Number of user metadata items. */
     protected int userMetaDataNumber = 0;
@@ -179,8 +198,8 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
 
     private class DiscriminatorLookup
     {
-        Map<String, String> discrimValueByClass = new HashMap<String, String>();
-        Map<String, String> discrimClassByValue = new HashMap<String, String>();
+        Map<String, String> discrimValueByClass = new ConcurrentHashMap<String, String>();
+        Map<String, String> discrimClassByValue = new ConcurrentHashMap<String, String>();
         public void addValue(String className, String value)
         {
             this.discrimValueByClass.put(className, value);
@@ -318,6 +337,15 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
         }
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+
+        // Transient state for the loading of metadata
+        listenersLoadedMetaData = new ThreadLocal<>();
+        loadLocks = new MetaDataLoadLocks();
+    }
+
     /* (non-Javadoc)
      * @see org.datanucleus.metadata.MetaDataManager#registerListener(org.datanucleus.metadata.MetaDataListener)
      */
@@ -496,10 +524,10 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
             return null;
         }
         boolean originatingLoadCall = false;
-        if (listenersLoadedMetaData == null && listeners != null)
+        if (listenersLoadedMetaData.get() == null && listeners != null)
         {
             originatingLoadCall = true;
-            listenersLoadedMetaData = new ArrayList<AbstractClassMetaData>();
+            listenersLoadedMetaData.set(new ArrayList<AbstractClassMetaData>());
         }
 
         try
@@ -516,6 +544,7 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
 
             // Load MetaData files - will throw NucleusUserException if problems found
             ClassLoaderResolver clr = nucleusContext.getClassLoaderResolver(loader);
+            loadMetaDataSnapshot(clr);
             Collection<FileMetaData> fileMetaData = loadFiles(metadataFiles, clr);
             if (!fileMetaData.isEmpty())
             {
@@ -554,10 +583,10 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
             return null;
         }
         boolean originatingLoadCall = false;
-        if (listenersLoadedMetaData == null && listeners != null)
+        if (listenersLoadedMetaData.get() == null && listeners != null)
         {
             originatingLoadCall = true;
-            listenersLoadedMetaData = new ArrayList<AbstractClassMetaData>();
+            listenersLoadedMetaData.set(new ArrayList<AbstractClassMetaData>());
         }
 
         try
@@ -574,6 +603,7 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
 
             // Load classes
             ClassLoaderResolver clr = nucleusContext.getClassLoaderResolver(loader);
+            loadMetaDataSnapshot(clr);
             Collection<FileMetaData> fileMetaData = new ArrayList<>();
             Set<Exception> exceptions = new HashSet<>();
             for (String className : classNames)
@@ -666,10 +696,10 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
             return null;
         }
         boolean originatingLoadCall = false;
-        if (listenersLoadedMetaData == null && listeners != null)
+        if (listenersLoadedMetaData.get() == null && listeners != null)
         {
             originatingLoadCall = true;
-            listenersLoadedMetaData = new ArrayList<AbstractClassMetaData>();
+            listenersLoadedMetaData.set(new ArrayList<AbstractClassMetaData>());
         }
 
         try
@@ -685,6 +715,7 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
             }
 
             ClassLoaderResolver clr = nucleusContext.getClassLoaderResolver(loader);
+            loadMetaDataSnapshot(clr);
             List<FileMetaData> fileMetaData = new ArrayList<>();
 
             // Generate list of package.jdo and classes present in the jar
@@ -718,18 +749,18 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
 
             if (allowXML && !mappingFileNames.isEmpty())
             {
-                // Load XML metadata
-                for (String mappingFileName : mappingFileNames)
+                // Load XML metadata, parsing the files (in parallel when enabled) before registering them in order
+                Map<String, List<URL>> urlsByMappingFileName = getURLsForMappingFiles(mappingFileNames, clr, jarFileName);
+                Map<String, Future<FileMetaData>> parsedFiles = parseXmlFiles(urlsByMappingFileName.values().stream().flatMap(List::stream).collect(Collectors.toList()));
+                for (List<URL> urls : urlsByMappingFileName.values())
                 {
                     try
                     {
-                        Enumeration files = clr.getResources(mappingFileName, Thread.currentThread().getContextClassLoader());
-                        while (files.hasMoreElements())
+                        for (URL url : urls)
                         {
-                            URL url = (URL)files.nextElement();
-                            if (url != null && fileMetaDataByURLString.get(url.toString()) == null)
+                            if (fileMetaDataByURLString.get(url.toString()) == null)
                             {
-                                FileMetaData filemd = parseXmlFile(url);
+                                FileMetaData filemd = getParsedXmlFile(parsedFiles, url);
                                 if (filemd != null)
                                 {
                                     // Register the file
@@ -745,10 +776,6 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
                         NucleusLogger.METADATA.error(StringUtils.getStringFromStackTrace(imde));
                         exceptions.add(imde);
                     }
-                    catch (IOException ioe)
-                    {
-                        NucleusLogger.METADATA.error(Localiser.msg("044027", jarFileName, mappingFileName, ioe.getMessage()), ioe);
-                    }
                 }
             }
 
@@ -829,10 +856,10 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
             return null;
         }
         boolean originatingLoadCall = false;
-        if (listenersLoadedMetaData == null && listeners != null)
+        if (listenersLoadedMetaData.get() == null && listeners != null)
         {
             originatingLoadCall = true;
-            listenersLoadedMetaData = new ArrayList<AbstractClassMetaData>();
+            listenersLoadedMetaData.set(new ArrayList<AbstractClassMetaData>());
         }
 
         try
@@ -869,6 +896,7 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
             }
 
             ClassLoaderResolver clr = nucleusContext.getClassLoaderResolver(loader);
+            loadMetaDataSnapshot(clr);
             Set<Throwable> exceptions = new HashSet<>();
             List<FileMetaData> fileMetaData = new ArrayList<>();
 
@@ -1032,32 +1060,34 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
 
             if (allowXML && !mappingFileNames.isEmpty())
             {
-                // Load XML metadata for all <mapping-file> specifications
-                for (String mappingFileName : mappingFileNames)
+                // Load XML metadata for all <mapping-file> specifications, parsing the files (in parallel when enabled) before registering them in order
+                Map<String, List<URL>> urlsByMappingFileName = getURLsForMappingFiles(mappingFileNames, clr, pumd.getName());
+                Map<String, Future<FileMetaData>> parsedFiles = parseXmlFiles(urlsByMappingFileName.values().stream().flatMap(List::stream).collect(Collectors.toList()));
+                for (Map.Entry<String, List<URL>> entry : urlsByMappingFileName.entrySet())
                 {
                     try
                     {
-                        Enumeration files = clr.getResources(mappingFileName, Thread.currentThread().getContextClassLoader());
-                        if (!files.hasMoreElements())
+                        if (entry.getValue().isEmpty())
                         {
-                            NucleusLogger.METADATA.debug("Not found any metadata mapping files for resource name " + mappingFileName + " in CLASSPATH");
+                            NucleusLogger.METADATA.debug("Not found any metadata mapping files for resource name " + entry.getKey() + " in CLASSPATH");
                         }
-                        else
+                        for (URL url : entry.getValue())
                         {
-                            while (files.hasMoreElements())
+                            if (fileMetaDataByURLString.get(url.toString()) == null)
                             {
-                                URL url = (URL)files.nextElement();
-                                if (url != null && fileMetaDataByURLString.get(url.toString()) == null)
+                                FileMetaData filemd = getParsedXmlFile(parsedFiles, url);
+                                if (filemd != null)
                                 {
-                                    FileMetaData filemd = parseXmlFile(url);
-                                    if (filemd != null)
-                                    {
-                                        // Register the file
-                                        registerFile(url.toString(), filemd, clr);
-                                        fileMetaData.add(filemd);
-                                    }
+                                    // Register the file
+                                    registerFile(url.toString(), filemd, clr);
+                                    fileMetaData.add(filemd);
                                 }
                             }
+                            else if (snapshotFileMetaData != null && snapshotFileMetaData.contains(fileMetaDataByURLString.get(url.toString())))
+                            {
+                                // Registered from the metadata snapshot
+                                fileMetaData.add(fileMetaDataByURLString.get(url.toString()));
+                            }
                         }
                     }
                     catch (InvalidMetaDataException imde)
@@ -1066,10 +1096,6 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
                         NucleusLogger.METADATA.error(StringUtils.getStringFromStackTrace(imde));
                         exceptions.add(imde);
                     }
-                    catch (IOException ioe)
-                    {
-                        NucleusLogger.METADATA.error(Localiser.msg("044027", pumd.getName(), mappingFileName, ioe.getMessage()), ioe);
-                    }
                 }
             }
 
@@ -1107,6 +1133,15 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
                             exceptions.add(e);
                         }
                     }
+                    else if (snapshotFileMetaData != null && snapshotFileMetaData.contains(cmd.getPackageMetaData().getFileMetaData()))
+                    {
+                        // Registered from the metadata snapshot
+                        FileMetaData filemd = cmd.getPackageMetaData().getFileMetaData();
+                        if (!fileMetaData.contains(filemd))
+                        {
+                            fileMetaData.add(filemd);
+                        }
+                    }
                     else
                     {
                         // We have MetaData, and any annotations will be merged in during the populate process
@@ -1175,10 +1210,10 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
             return;
         }
         boolean originatingLoadCall = false;
-        if (listenersLoadedMetaData == null && listeners != null)
+        if (listenersLoadedMetaData.get() == null && listeners != null)
         {
             originatingLoadCall = true;
-            listenersLoadedMetaData = new ArrayList<AbstractClassMetaData>();
+            listenersLoadedMetaData.set(new ArrayList<AbstractClassMetaData>());
         }
 
         try
@@ -1373,6 +1408,152 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
         }
     }
 
+    /**
+     * Method to register the metadata held in the snapshot specified by the persistence property "datanucleus.metadata.snapshot" (if any),
+     * in place of parsing metadata files and reading annotations for that metadata. The snapshot is only used when nothing is loaded yet,
+     * and when the classes and metadata files that it was generated from are unchanged. Only the first call checks for the snapshot.
+     * @param clr ClassLoader resolver
+     */
+    protected void loadMetaDataSnapshot(ClassLoaderResolver clr)
+    {
+        if (snapshotChecked)
+        {
+            return;
+        }
+
+        boolean originatingLoadCall = false;
+        updateLock.lock();
+        try
+        {
+            if (snapshotChecked)
+            {
+                return;
+            }
+            snapshotChecked = true;
+
+            String snapshotFilename = nucleusContext.getConfiguration().getStringProperty(PropertyNames.PROPERTY_METADATA_SNAPSHOT);
+            if (snapshotFilename == null || isEnhancing())
+            {
+                return;
+            }
+            if (!fileMetaDataByURLString.isEmpty())
+            {
+                NucleusLogger.METADATA.debug("Metadata is already loaded so ignoring metadata snapshot " + snapshotFilename);
+                return;
+            }
+
+            if (clr == null)
+            {
+                clr = nucleusContext.getClassLoaderResolver(null);
+            }
+            Map<String, FileMetaData> snapshotFileMetaDataByURLString = MetaDataSnapshot.read(new File(snapshotFilename), clr);
+            if (snapshotFileMetaDataByURLString == null)
+            {
+                return;
+            }
+
+            if (listenersLoadedMetaData.get() == null && listeners != null)
+            {
+                originatingLoadCall = true;
+                listenersLoadedMetaData.set(new ArrayList<AbstractClassMetaData>());
+            }
+
+            // Register all files, and then the (initialised) classes since they can refer to classes in other files
+            Set<FileMetaData> fileMetaData = Collections.newSetFromMap(new IdentityHashMap<>());
+            List<AbstractClassMetaData> cmds = new ArrayList<>();
+            for (Map.Entry<String, FileMetaData> entry : snapshotFileMetaDataByURLString.entrySet())
+            {
+                FileMetaData filemd = entry.getValue();
+                for (int i = 0; i < filemd.getNoOfPackages(); i++)
+                {
+                    PackageMetaData pmd = filemd.getPackage(i);
+                    for (int j = 0; j < pmd.getNoOfClasses(); j++)
+                    {
+                        cmds.add(pmd.getClass(j));
+                    }
+                    for (int j = 0; j < pmd.getNoOfInterfaces(); j++)
+                    {
+                        cmds.add(pmd.getInterface(j));
+                    }
+                }
+                registerFile(entry.getKey(), filemd, clr);
+                fileMetaData.add(filemd);
+            }
+            for (AbstractClassMetaData cmd : cmds)
+            {
+                cmd.setMetaDataManager(this);
+            }
+            for (AbstractClassMetaData cmd : cmds)
+            {
+                abstractClassMetaDataInitialised(cmd);
+
+                DiscriminatorMetaData dismd = cmd.getInheritanceMetaData() != null ? cmd.getInheritanceMetaData().getDiscriminatorMetaData() : null;
+                if (dismd != null && cmd.getDiscriminatorStrategy() == DiscriminatorStrategy.VALUE_MAP && dismd.getValue() != null)
+                {
+                    registerDiscriminatorValueForClass(cmd, dismd.getValue());
+                }
+            }
+            snapshotFileMetaData = fileMetaData;
+            NucleusLogger.METADATA.info("Registered metadata for " + cmds.size() + " classes from metadata snapshot " + snapshotFilename);
+
+            if (originatingLoadCall)
+            {
+                processListenerLoadingCall();
+            }
+        }
+        finally
+        {
+            if (originatingLoadCall)
+            {
+                listenersLoadedMetaData.remove();
+            }
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Method to write a snapshot of the (initialised) metadata currently loaded to the specified file. The snapshot can then be specified
+     * using the persistence property "datanucleus.metadata.snapshot" to register this metadata in place of loading it.
+     * @param file The snapshot file
+     * @param clr ClassLoader resolver
+     */
+    public void writeMetaDataSnapshot(File file, ClassLoaderResolver clr)
+    {
+        updateLock.lock();
+        try
+        {
+            // Only include files whose classes are all initialised
+            Map<String, FileMetaData> initialisedFileMetaDataByURLString = new HashMap<>();
+            for (Map.Entry<String, FileMetaData> entry : fileMetaDataByURLString.entrySet())
+            {
+                FileMetaData filemd = entry.getValue();
+                boolean initialised = true;
+                for (int i = 0; i < filemd.getNoOfPackages() && initialised; i++)
+                {
+                    PackageMetaData pmd = filemd.getPackage(i);
+                    for (int j = 0; j < pmd.getNoOfClasses() && initialised; j++)
+                    {
+                        initialised = pmd.getClass(j).isInitialised();
+                    }
+                    for (int j = 0; j < pmd.getNoOfInterfaces() && initialised; j++)
+                    {
+                        initialised = pmd.getInterface(j).isInitialised();
+                    }
+                }
+                if (initialised)
+                {
+                    initialisedFileMetaDataByURLString.put(entry.getKey(), filemd);
+                }
+            }
+            MetaDataSnapshot.write(file, initialisedFileMetaDataByURLString, clr);
+            NucleusLogger.METADATA.info("Written metadata snapshot of " + initialisedFileMetaDataByURLString.size() + " files to " + file);
+        }
+        finally
+        {
+            updateLock.unlock();
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.datanucleus.metadata.MetaDataManager#loadFiles(java.lang.String[], org.datanucleus.ClassLoaderResolver)
      */
@@ -1384,39 +1565,48 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
         Set<Throwable> exceptions = new HashSet<>();
         if (allowXML)
         {
+            // Find the files, and parse them (in parallel when enabled) before registering them in the order specified
+            Map<String, URL> urlByMetadataFile = new LinkedHashMap<>();
             for (String metadataFile : metadataFiles)
             {
-                try 
+                URL fileURL = null;
+                try
                 {
-                    URL fileURL = null;
-                    try
-                    {
-                        // Try as file
-                        File file = new File(metadataFile);
-                        fileURL = file.toURI().toURL();
-                        if (!file.exists())
-                        {
-                            // Try as CLASSPATH resource
-                            fileURL = clr.getResource(metadataFile, null);        
-                        }
-                    }
-                    catch (Exception mue)
+                    // Try as file
+                    File file = new File(metadataFile);
+                    fileURL = file.toURI().toURL();
+                    if (!file.exists())
                     {
                         // Try as CLASSPATH resource
-                        fileURL = clr.getResource(metadataFile, null);
-                    }
-                    if (fileURL == null)
-                    {
-                        // User provided a filename which doesn't exist
-                        NucleusLogger.METADATA.warn("Metadata file " + metadataFile + " not found in CLASSPATH");
-                        continue;
+                        fileURL = clr.getResource(metadataFile, null);        
                     }
+                }
+                catch (Exception mue)
+                {
+                    // Try as CLASSPATH resource
+                    fileURL = clr.getResource(metadataFile, null);
+                }
+                if (fileURL == null)
+                {
+                    // User provided a filename which doesn't exist
+                    NucleusLogger.METADATA.warn("Metadata file " + metadataFile + " not found in CLASSPATH");
+                    continue;
+                }
+                urlByMetadataFile.put(metadataFile, fileURL);
+            }
+            Map<String, Future<FileMetaData>> parsedFiles = parseXmlFiles(urlByMetadataFile.values());
 
+            for (Map.Entry<String, URL> entry : urlByMetadataFile.entrySet())
+            {
+                String metadataFile = entry.getKey();
+                URL fileURL = entry.getValue();
+                try 
+                {
                     FileMetaData filemd = fileMetaDataByURLString.get(fileURL.toString());
                     if (filemd == null)
                     {
                         // Valid metadata, and not already loaded
-                        filemd = parseXmlFile(fileURL);
+                        filemd = getParsedXmlFile(parsedFiles, fileURL);
                         if (filemd != null)
                         {
                             registerFile(fileURL.toString(), filemd, clr);
@@ -1449,6 +1639,127 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
         return fileMetaData;
     }
 
+    /**
+     * Convenience method to find the URLs of the specified mapping files in the CLASSPATH.
+     * @param mappingFileNames Names of the mapping files
+     * @param clr ClassLoader resolver
+     * @param source Name of the persistence-unit or jar specifying the mapping files (for logging)
+     * @return The URLs of each mapping file, keyed by the mapping file name
+     */
+    private Map<String, List<URL>> getURLsForMappingFiles(Collection<String> mappingFileNames, ClassLoaderResolver clr, String source)
+    {
+        Map<String, List<URL>> urlsByMappingFileName = new LinkedHashMap<>();
+        for (String mappingFileName : mappingFileNames)
+        {
+            try
+            {
+                List<URL> urls = new ArrayList<>();
+                Enumeration files = clr.getResources(mappingFileName, Thread.currentThread().getContextClassLoader());
+                while (files.hasMoreElements())
+                {
+                    URL url = (URL)files.nextElement();
+                    if (url != null)
+                    {
+                        urls.add(url);
+                    }
+                }
+                urlsByMappingFileName.put(mappingFileName, urls);
+            }
+            catch (IOException ioe)
+            {
+                NucleusLogger.METADATA.error(Localiser.msg("044027", source, mappingFileName, ioe.getMessage()), ioe);
+            }
+        }
+        return urlsByMappingFileName;
+    }
+
+    /**
+     * Method to start parsing the specified XML metadata files that are not yet registered, in parallel using up to the number of threads
+     * defined by the persistence property "datanucleus.metadata.xml.maxThreads". The parsed metadata is then obtained, in the order required,
+     * using {@link #getParsedXmlFile(Map, URL)}, so that the files are registered in the same order as when parsed sequentially.
+     * Files are only parsed in parallel when {@link #supportsConcurrentXmlParsing()} is true, since {@link #parseXmlFile(URL)} is
+     * then called from multiple threads at once.
+     * @param fileURLs URLs of the XML metadata files
+     * @return The parse of each file keyed by its URL string, or null when not parsing in parallel
+     */
+    protected Map<String, Future<FileMetaData>> parseXmlFiles(Collection<URL> fileURLs)
+    {
+        if (!supportsConcurrentXmlParsing())
+        {
+            return null;
+        }
+
+        int maxThreads = nucleusContext.getConfiguration().getIntProperty(PropertyNames.PROPERTY_METADATA_XML_MAX_THREADS);
+        Map<String, URL> urlsToParse = new LinkedHashMap<>();
+        for (URL fileURL : fileURLs)
+        {
+            if (!fileMetaDataByURLString.containsKey(fileURL.toString()))
+            {
+                urlsToParse.putIfAbsent(fileURL.toString(), fileURL);
+            }
+        }
+        if (maxThreads <= 1 || urlsToParse.size() <= 1)
+        {
+            return null;
+        }
+
+        ExecutorService executor = ThreadPoolUtils.newFixedThreadPool("DataNucleus-MetaData", Math.min(maxThreads, urlsToParse.size()));
+        try
+        {
+            Map<String, Future<FileMetaData>> parsedFiles = new HashMap<>();
+            for (Map.Entry<String, URL> entry : urlsToParse.entrySet())
+            {
+                parsedFiles.put(entry.getKey(), executor.submit(() -> parseXmlFile(entry.getValue())));
+            }
+            return parsedFiles;
+        }
+        finally
+        {
+            // No more files for this executor, so its threads end once these are parsed
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Accessor for the metadata of the specified XML metadata file, waiting for it to be parsed when started by
+     * {@link #parseXmlFiles(Collection)}, otherwise parsing it now.
+     * @param parsedFiles The parse of each file keyed by its URL string (or null if not parsing in parallel)
+     * @param fileURL URL of the XML metadata file
+     * @return The FileMetaData for the file
+     */
+    protected FileMetaData getParsedXmlFile(Map<String, Future<FileMetaData>> parsedFiles, URL fileURL)
+    {
+        Future<FileMetaData> parsedFile = (parsedFiles != null) ? parsedFiles.get(fileURL.toString()) : null;
+        if (parsedFile == null)
+        {
+            return parseXmlFile(fileURL);
+        }
+
+        try
+        {
+            return parsedFile.get();
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new NucleusException("Interrupted waiting for the parse of metadata file " + fileURL, ie);
+        }
+        catch (ExecutionException ee)
+        {
+            // Rethrow the exception from parsing the file, as when parsing it in this thread
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+            throw new NucleusException(cause.getMessage(), cause);
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.datanucleus.metadata.MetaDataManager#isClassPersistable(java.lang.String)
      */
@@ -1557,45 +1868,43 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
             return null;
         }
 
-        synchronized(this)
+        // Check if we have the MetaData already
+        cmd = classMetaDataByClass.get(className);
+        if (cmd != null && cmd.isPopulated() && cmd.isInitialised() && cmd instanceof ClassMetaData)
         {
-            // Check if we have the MetaData already
-            cmd = classMetaDataByClass.get(className);
-            if (cmd != null && cmd.isPopulated() && cmd.isInitialised() && cmd instanceof ClassMetaData)
-            {
-                // We explicitly don't return metadata for persistent interfaces here since they should return the impl CMD
-                return cmd;
-            }
+            // We explicitly don't return metadata for persistent interfaces here since they should return the impl CMD
+            return cmd;
+        }
 
-            // Resolve the class
-            Class<?> c = null;
-            try
-            {
-                c = (clr == null) ? Class.forName(className) : clr.classForName(className, null, false);
-            }
-            catch (ClassNotFoundException | ClassNotResolvedException cne)
-            {
-            }
-            if (c == null)
+        // Resolve the class
+        Class<?> c = null;
+        try
+        {
+            c = (clr == null) ? Class.forName(className) : clr.classForName(className, null, false);
+        }
+        catch (ClassNotFoundException | ClassNotResolvedException cne)
+        {
+        }
+        if (c == null)
+        {
+            if (cmd != null && cmd.isPopulated() && cmd.isInitialised())
             {
-                if (cmd != null && cmd.isPopulated() && cmd.isInitialised())
-                {
-                    // Return any previously loaded metadata
-                    return cmd;
-                }
-                return null;
+                // Return any previously loaded metadata
+                return cmd;
             }
+            return null;
+        }
 
-            cmd = getMetaDataForClass(c, clr);
-            if (cmd != null)
-            {
-                usableClassMetaDataByClass.put(className, cmd);
-            }
-            return cmd;
+        // Load it (locking its class hierarchy)
+        cmd = getMetaDataForClass(c, clr);
+        if (cmd != null)
+        {
+            usableClassMetaDataByClass.put(className, cmd);
         }
+        return cmd;
     }
 
-    /** Temporary list of the FileMetaData objects utilised in this call for metadata. */
+    /** Temporary list of the FileMetaData objects utilised in calls for metadata. Access is synchronised on the list. */
     protected ArrayList<FileMetaData> utilisedFileMetaData = new ArrayList<>();
 
     /* (non-Javadoc)
@@ -1621,13 +1930,31 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
             return null;
         }
 
-        synchronized(this)
+        // Register any metadata snapshot before taking any class hierarchy lock
+        loadMetaDataSnapshot(clr);
+
+        // Lock the class hierarchy, so that only one thread loads it but independent class hierarchies can be loaded concurrently
+        String hierarchyName = getClassHierarchyName(c);
+        if (!loadLocks.lock(hierarchyName))
+        {
+            // Class hierarchy is being loaded by a thread waiting for this thread, so return what is loaded (as when loading recursively)
+            return getMetaDataForClassInternal(c, clr);
+        }
+
+        boolean originatingLoadCall = false;
+        try
         {
-            boolean originatingLoadCall = false;
-            if (listenersLoadedMetaData == null && listeners != null)
+            cmd = usableClassMetaDataByClass.get(c.getName());
+            if (cmd != null)
+            {
+                // Loaded by another thread while waiting
+                return cmd;
+            }
+
+            if (listenersLoadedMetaData.get() == null && listeners != null)
             {
                 originatingLoadCall = true;
-                listenersLoadedMetaData = new ArrayList<AbstractClassMetaData>();
+                listenersLoadedMetaData.set(new ArrayList<AbstractClassMetaData>());
             }
 
             // Find the metadata if present, allowing it to be loaded
@@ -1648,26 +1975,27 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
                 }
 
                 // Make sure all FileMetaData that were subsequently loaded as a result of this call are all initialised before return
-                if (!utilisedFileMetaData.isEmpty())
+                // Pass 1 - initialise anything loaded during the initialise of the requested class
+                // Pass 2 - initialise anything loaded during the initialise of pass 1
+                for (int pass=0;pass<2;pass++)
                 {
-                    // Pass 1 - initialise anything loaded during the initialise of the requested class
-                    List<FileMetaData> utilisedFileMetaData1 = List.copyOf(utilisedFileMetaData);
-                    utilisedFileMetaData.clear();
-                    for (FileMetaData filemd : utilisedFileMetaData1)
+                    List<FileMetaData> filemds = null;
+                    synchronized (utilisedFileMetaData)
                     {
-                        initialiseFileMetaData(filemd, clr,c.getClassLoader());
-                    }
-
-                    if (!utilisedFileMetaData.isEmpty())
-                    {
-                        // Pass 2 - initialise anything loaded during the initialise of pass 1
-                        List<FileMetaData> utilisedFileMetaData2 = List.copyOf(utilisedFileMetaData);
-                        utilisedFileMetaData.clear();
-                        for (FileMetaData filemd : utilisedFileMetaData2)
+                        if (!utilisedFileMetaData.isEmpty())
                         {
-                            initialiseFileMetaData(filemd, clr,c.getClassLoader());
+                            filemds = List.copyOf(utilisedFileMetaData);
+                            utilisedFileMetaData.clear();
                         }
                     }
+                    if (filemds == null)
+                    {
+                        break;
+                    }
+                    for (FileMetaData filemd : filemds)
+                    {
+                        initialiseFileMetaData(filemd, clr, c.getClassLoader());
+                    }
                 }
             }
             else
@@ -1677,10 +2005,10 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
                     classesWithoutPersistenceInfo.add(c.getName());
                 }
             }
-            utilisedFileMetaData.clear();
 
             if (originatingLoadCall)
             {
+                originatingLoadCall = false;
                 processListenerLoadingCall();
             }
 
@@ -1690,14 +2018,55 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
             }
             return cmd;
         }
+        finally
+        {
+            if (originatingLoadCall)
+            {
+                // Failed to load, so discard the record of metadata loaded during this call
+                listenersLoadedMetaData.remove();
+            }
+            loadLocks.unlock(hierarchyName);
+        }
+    }
+
+    /**
+     * Accessor for the name of the class hierarchy that the specified class is part of, for locking when loading its metadata.
+     * This is the name of the topmost superclass (other than java.lang.Object), since persistable superclasses are not known until
+     * the metadata is loaded.
+     * @param c The class
+     * @return Name of the class hierarchy
+     */
+    protected String getClassHierarchyName(Class c)
+    {
+        Class rootClass = c;
+        while (rootClass.getSuperclass() != null && rootClass.getSuperclass() != Object.class)
+        {
+            rootClass = rootClass.getSuperclass();
+        }
+        return rootClass.getName();
+    }
+
+    /**
+     * Method to register a FileMetaData that was loaded as part of the current call to getMetaDataForClass, so that it is
+     * initialised before that call returns.
+     * @param filemd The FileMetaData
+     */
+    protected void addUtilisedFileMetaData(FileMetaData filemd)
+    {
+        synchronized (utilisedFileMetaData)
+        {
+            utilisedFileMetaData.add(filemd);
+        }
     }
 
     protected void processListenerLoadingCall()
     {
-        if (!listenersLoadedMetaData.isEmpty() && listeners != null)
+        List<AbstractClassMetaData> loadedCmds = listenersLoadedMetaData.get();
+        listenersLoadedMetaData.remove();
+        if (loadedCmds != null && !loadedCmds.isEmpty() && listeners != null)
         {
             // Notify any listeners of the metadata loaded during this call
-            Iterator<AbstractClassMetaData> loadedIter = new ArrayList<>(listenersLoadedMetaData).iterator();
+            Iterator<AbstractClassMetaData> loadedIter = new ArrayList<>(loadedCmds).iterator();
             while (loadedIter.hasNext())
             {
                 AbstractClassMetaData acmd = loadedIter.next();
@@ -1707,8 +2076,6 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
                 }
             }
         }
-
-        listenersLoadedMetaData = null;
     }
 
     /* (non-Javadoc)
@@ -1768,13 +2135,36 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
 
         // Check if we have the MetaData loaded
         AbstractClassMetaData cmd = classMetaDataByClass.get(c.getName());
-        if (cmd != null)
+        if (cmd != null && cmd.isInitialised())
         {
             return cmd;
         }
 
-        // Try to load metadata for this class
-        return loadMetaDataForClass(c, clr);
+        // Lock the class hierarchy, so we don't see metadata part way through being loaded by another thread
+        String hierarchyName = getClassHierarchyName(c);
+        boolean locked = loadLocks.lock(hierarchyName);
+        try
+        {
+            cmd = classMetaDataByClass.get(c.getName());
+            if (cmd != null)
+            {
+                return cmd;
+            }
+            if (isClassWithoutPersistenceInfo(c.getName()))
+            {
+                return null;
+            }
+
+            // Try to load metadata for this class
+            return loadMetaDataForClass(c, clr);
+        }
+        finally
+        {
+            if (locked)
+            {
+                loadLocks.unlock(hierarchyName);
+            }
+        }
     }
 
     /**
@@ -2218,11 +2608,23 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
 
     /**
      * Utility to parse an XML metadata file.
+     * This is only called from multiple threads at once when {@link #supportsConcurrentXmlParsing()} is overridden to return true,
+     * in which case the implementation must be thread-safe, e.g using a separate parser for each thread.
      * @param fileURL URL of the file
      * @return The FileMetaData for this file
      */
     protected abstract FileMetaData parseXmlFile(URL fileURL);
 
+    /**
+     * Whether {@link #parseXmlFile(URL)} is thread-safe, so that XML metadata files can be parsed in parallel when the persistence
+     * property "datanucleus.metadata.xml.maxThreads" is set. Returns false, so override this where the implementation is thread-safe.
+     * @return Whether XML metadata files can be parsed concurrently
+     */
+    protected boolean supportsConcurrentXmlParsing()
+    {
+        return false;
+    }
+
     @Override
     public abstract void registerFile(String fileURLString, FileMetaData filemd, ClassLoaderResolver clr);
 
@@ -2230,12 +2632,7 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
     public void registerDiscriminatorValueForClass(AbstractClassMetaData cmd, String discrimValue)
     {
         AbstractClassMetaData rootCmd = cmd.getBaseAbstractClassMetaData();
-        DiscriminatorLookup lookup = discriminatorLookupByRootClassName.get(rootCmd.getFullClassName());
-        if (lookup == null)
-        {
-            lookup = new DiscriminatorLookup();
-            discriminatorLookupByRootClassName.put(rootCmd.getFullClassName(), lookup);
-        }
+        DiscriminatorLookup lookup = discriminatorLookupByRootClassName.computeIfAbsent(rootCmd.getFullClassName(), k -> new DiscriminatorLookup());
         lookup.addValue(cmd.getFullClassName(), discrimValue);
     }
 
@@ -2704,21 +3101,35 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
      */
     protected void initialiseClassMetaData(ClassMetaData cmd, Class cls, ClassLoaderResolver clr)
     {
-        synchronized(cmd)
+        String hierarchyName = getClassHierarchyName(cls);
+        if (!loadLocks.lock(hierarchyName))
         {
-            if (getNucleusContext() instanceof PersistenceNucleusContext && 
-                cmd.getPersistenceModifier() == ClassPersistenceModifier.PERSISTENCE_CAPABLE &&
-                !getNucleusContext().getApiAdapter().isPersistable(cls))
+            // Class hierarchy is being loaded by a thread waiting for this thread, so leave its file to be initialised by that thread
+            addUtilisedFileMetaData(cmd.getPackageMetaData().getFileMetaData());
+            return;
+        }
+        try
+        {
+            synchronized(cmd)
             {
-                throw new NucleusUserException(Localiser.msg("044059", cls.getName()));
-            }
+                if (getNucleusContext() instanceof PersistenceNucleusContext && 
+                    cmd.getPersistenceModifier() == ClassPersistenceModifier.PERSISTENCE_CAPABLE &&
+                    !getNucleusContext().getApiAdapter().isPersistable(cls))
+                {
+                    throw new NucleusUserException(Localiser.msg("044059", cls.getName()));
+                }
 
-            boolean populated = populateAbstractClassMetaData(cmd, clr, cls.getClassLoader());
-            if (populated)
-            {
-                initialiseAbstractClassMetaData(cmd, clr);
+                boolean populated = populateAbstractClassMetaData(cmd, clr, cls.getClassLoader());
+                if (populated)
+                {
+                    initialiseAbstractClassMetaData(cmd, clr);
+                }
             }
         }
+        finally
+        {
+            loadLocks.unlock(hierarchyName);
+        }
     }
 
     /**
@@ -2732,14 +3143,28 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
      */
     protected void initialiseInterfaceMetaData(InterfaceMetaData imd, ClassLoaderResolver clr, ClassLoader primary)
     {
-        synchronized (imd)
+        String hierarchyName = imd.getFullClassName();
+        if (!loadLocks.lock(hierarchyName))
         {
-            boolean populated = populateAbstractClassMetaData(imd, clr, primary);
-            if (populated)
+            // Interface is being loaded by a thread waiting for this thread, so leave its file to be initialised by that thread
+            addUtilisedFileMetaData(imd.getPackageMetaData().getFileMetaData());
+            return;
+        }
+        try
+        {
+            synchronized (imd)
             {
-                initialiseAbstractClassMetaData(imd, clr);
+                boolean populated = populateAbstractClassMetaData(imd, clr, primary);
+                if (populated)
+                {
+                    initialiseAbstractClassMetaData(imd, clr);
+                }
             }
         }
+        finally
+        {
+            loadLocks.unlock(hierarchyName);
+        }
     }
 
     /**
@@ -2885,17 +3310,7 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
         if (cmd.getIdentityType() == IdentityType.APPLICATION && !cmd.usesSingleFieldIdentityClass())
         {
             // Register the app-id object-id class lookup
-            Collection<AbstractClassMetaData> appIdCmds = classMetaDataByAppIdClassName.get(cmd.getObjectidClass());
-            if (appIdCmds == null)
-            {
-                appIdCmds = new HashSet<>();
-                classMetaDataByAppIdClassName.put(cmd.getObjectidClass(), appIdCmds);
-                appIdCmds.add(cmd);
-            }
-            else
-            {
-                appIdCmds.add(cmd);
-            }
+            classMetaDataByAppIdClassName.computeIfAbsent(cmd.getObjectidClass(), k -> ConcurrentHashMap.newKeySet()).add(cmd);
         }
 
         if (cmd instanceof ClassMetaData)
@@ -2903,13 +3318,7 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
             if (cmd.getPersistableSuperclass() != null)
             {
                 // Add to direct subclasses for the superclass
-                Set<String> directSubclasses = directSubclassesByClass.get(cmd.getPersistableSuperclass());
-                if (directSubclasses == null)
-                {
-                    directSubclasses = new HashSet<String>();
-                    directSubclassesByClass.put(cmd.getPersistableSuperclass(), directSubclasses);
-                }
-                directSubclasses.add(cmd.getFullClassName());
+                directSubclassesByClass.computeIfAbsent(cmd.getPersistableSuperclass(), k -> ConcurrentHashMap.newKeySet()).add(cmd.getFullClassName());
 
                 if (!((ClassMetaData)cmd).isAbstract())
                 {
@@ -2918,21 +3327,16 @@ public abstract class MetaDataManagerImpl implements Serializable, MetaDataManag
                     while (theCmd.getPersistableSuperclass() != null)
                     {
                         theCmd = theCmd.getSuperAbstractClassMetaData();
-                        Set<String> subclassNames = concreteSubclassNamesByClassName.get(theCmd.getFullClassName());
-                        if (subclassNames == null)
-                        {
-                            subclassNames = new HashSet<>();
-                            concreteSubclassNamesByClassName.put(theCmd.getFullClassName(), subclassNames);
-                        }
-                        subclassNames.add(cmd.getFullClassName());
+                        concreteSubclassNamesByClassName.computeIfAbsent(theCmd.getFullClassName(), k -> ConcurrentHashMap.newKeySet()).add(cmd.getFullClassName());
                     }
                 }
             }
         }
 
-        if (listeners != null && listenersLoadedMetaData != null)
+        List<AbstractClassMetaData> loadedCmds = listenersLoadedMetaData.get();
+        if (listeners != null && loadedCmds != null)
         {
-            listenersLoadedMetaData.add(cmd);
+            loadedCmds.add(cmd);
         }
     }
 
@@ -0,0 +1,273 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.datanucleus.ClassLoaderResolver;
+import org.datanucleus.exceptions.ClassNotResolvedException;
+import org.datanucleus.exceptions.NucleusException;
+import org.datanucleus.util.NucleusLogger;
+import org.datanucleus.util.SnapshotFileUtils;
+
+/**
+ * Snapshot of populated and initialised metadata, stored in a file so that a MetaDataManager can register that metadata in place
+ * of parsing metadata files and reading annotations. The snapshot holds the FileMetaData keyed by the URL string they were registered
+ * under (see {@link SnapshotFileUtils} for the form of the file), together with a key formed from a hash of the classpath resources
+ * (metadata files and classes) that the metadata was generated from. A snapshot is only used when the key of those resources is unchanged.
+ * When read, the snapshot may only contain the metadata types together with the JDK types that they use (strings, primitive wrappers
+ * and collections), so a snapshot file cannot be used to instantiate any other classes.
+ */
+class MetaDataSnapshot
+{
+    /** Header identifying a metadata snapshot, including the version of its format. */
+    static final String HEADER = "DataNucleus-MetaDataSnapshot-2";
+
+    /** Primitive types, keyed by their name, since these cannot be loaded by name. */
+    private static final Map<String, Class<?>> PRIMITIVE_TYPES = Map.of("boolean", boolean.class, "byte", byte.class, "char", char.class,
+        "short", short.class, "int", int.class, "long", long.class, "float", float.class, "double", double.class, "void", void.class);
+
+    private MetaDataSnapshot()
+    {
+    }
+
+    /**
+     * Method to write a snapshot of the provided metadata to the specified file.
+     * @param file The snapshot file
+     * @param fileMetaDataByURLString The (initialised) FileMetaData, keyed by the URL string they were registered under
+     * @param clr ClassLoader resolver
+     */
+    static void write(File file, Map<String, FileMetaData> fileMetaDataByURLString, ClassLoaderResolver clr)
+    {
+        String key = getKey(fileMetaDataByURLString, clr);
+        if (key == null)
+        {
+            throw new NucleusException("Unable to write metadata snapshot to " + file + " since the resources of the metadata could not be read");
+        }
+
+        try
+        {
+            SnapshotFileUtils.write(file, HEADER, key, new HashMap<>(fileMetaDataByURLString));
+        }
+        catch (IOException ioe)
+        {
+            throw new NucleusException("Error writing metadata snapshot to " + file, ioe);
+        }
+    }
+
+    /**
+     * Method to read the metadata from the snapshot in the specified file.
+     * @param file The snapshot file
+     * @param clr ClassLoader resolver
+     * @return The FileMetaData keyed by the URL string they were registered under, or null if the file is not a valid snapshot or
+     *     the classes/metadata files it was generated from have changed
+     */
+    static Map<String, FileMetaData> read(File file, ClassLoaderResolver clr)
+    {
+        try (ObjectInputStream in = SnapshotFileUtils.openForRead(file, HEADER, str -> new MetaDataSnapshotInputStream(str, clr),
+            MetaDataSnapshot::isAllowedClass, NucleusLogger.METADATA, "Metadata snapshot"))
+        {
+            if (in == null)
+            {
+                return null;
+            }
+
+            String key = in.readUTF();
+            Map<String, FileMetaData> fileMetaDataByURLString = (Map<String, FileMetaData>) in.readObject();
+            if (!key.equals(getKey(fileMetaDataByURLString, clr)))
+            {
+                NucleusLogger.METADATA.info("Metadata snapshot " + file + " is out of date with the classes/metadata it was generated from so ignoring it");
+                return null;
+            }
+            return fileMetaDataByURLString;
+        }
+        catch (IOException | ClassNotFoundException | ClassCastException e)
+        {
+            NucleusLogger.METADATA.warn("Unable to read metadata snapshot " + file + " so ignoring it : " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Method to generate the key for the provided metadata, being a (SHA-256) hash of the contents of the metadata files and the
+     * classes that the metadata is for.
+     * @param fileMetaDataByURLString The FileMetaData, keyed by the URL string they were registered under
+     * @param clr ClassLoader resolver
+     * @return The key, or null if a metadata file could not be read
+     */
+    static String getKey(Map<String, FileMetaData> fileMetaDataByURLString, ClassLoaderResolver clr)
+    {
+        MessageDigest digest = SnapshotFileUtils.newDigest();
+        for (String urlString : new TreeSet<>(fileMetaDataByURLString.keySet()))
+        {
+            digest.update(urlString.getBytes(StandardCharsets.UTF_8));
+            URL fileURL = null;
+            try
+            {
+                fileURL = new URL(urlString);
+            }
+            catch (MalformedURLException mue)
+            {
+                // Not a real file, e.g "annotations:{className}"
+            }
+            if (fileURL != null && !updateDigest(digest, fileURL))
+            {
+                return null;
+            }
+
+            FileMetaData filemd = fileMetaDataByURLString.get(urlString);
+            for (int i = 0; i < filemd.getNoOfPackages(); i++)
+            {
+                PackageMetaData pmd = filemd.getPackage(i);
+                for (int j = 0; j < pmd.getNoOfClasses(); j++)
+                {
+                    updateDigestForClass(digest, pmd.getClass(j).getFullClassName(), clr);
+                }
+                for (int j = 0; j < pmd.getNoOfInterfaces(); j++)
+                {
+                    updateDigestForClass(digest, pmd.getInterface(j).getFullClassName(), clr);
+                }
+            }
+        }
+
+        return SnapshotFileUtils.getKey(digest);
+    }
+
+    private static void updateDigestForClass(MessageDigest digest, String className, ClassLoaderResolver clr)
+    {
+        digest.update(className.getBytes(StandardCharsets.UTF_8));
+        URL classURL = clr.getResource(className.replace('.', '/') + ".class", null);
+        if (classURL == null || !updateDigest(digest, classURL))
+        {
+            // Class not present, so record that (metadata for missing classes may be ignored)
+            digest.update((byte)0);
+        }
+    }
+
+    private static boolean updateDigest(MessageDigest digest, URL url)
+    {
+        try (InputStream in = url.openStream())
+        {
+            SnapshotFileUtils.updateDigest(digest, in);
+            return true;
+        }
+        catch (IOException ioe)
+        {
+            NucleusLogger.METADATA.debug("Unable to read " + url + " for metadata snapshot key : " + ioe.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Method to resolve a class (e.g the type of a member) when reading serialised metadata. Uses the ClassLoaderResolver when
+     * reading a snapshot.
+     * @param in The stream being read
+     * @param className Name of the class
+     * @return The class
+     * @throws ClassNotFoundException if the class cannot be found
+     */
+    static Class<?> classForName(ObjectInputStream in, String className) throws ClassNotFoundException
+    {
+        Class<?> cls = PRIMITIVE_TYPES.get(className);
+        if (cls != null)
+        {
+            return cls;
+        }
+        if (in instanceof MetaDataSnapshotInputStream)
+        {
+            try
+            {
+                return ((MetaDataSnapshotInputStream)in).clr.classForName(className, null, false);
+            }
+            catch (ClassNotResolvedException cnre)
+            {
+                // Array types, or not visible to the resolver
+            }
+        }
+        return Class.forName(className, false, Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Whether instances of the specified class may be read from a snapshot.
+     * @param cls The class
+     * @return Whether it is one of the metadata types, or a JDK type used by them
+     */
+    static boolean isAllowedClass(Class<?> cls)
+    {
+        while (cls.isArray())
+        {
+            cls = cls.getComponentType();
+        }
+        if (cls.isPrimitive())
+        {
+            return true;
+        }
+
+        String packageName = cls.getPackageName();
+        if (packageName.equals("org.datanucleus.metadata") || packageName.startsWith("org.datanucleus.metadata."))
+        {
+            return true;
+        }
+        else if (packageName.equals("java.util"))
+        {
+            // Collections and maps (including their internal implementations, e.g unmodifiable/empty forms)
+            return true;
+        }
+        return cls == Object.class || cls == String.class || cls == Boolean.class || cls == Character.class || cls == Enum.class || cls == Number.class ||
+            (Number.class.isAssignableFrom(cls) && packageName.equals("java.lang"));
+    }
+
+    /**
+     * ObjectInputStream resolving the classes of the metadata using the ClassLoaderResolver.
+     */
+    private static class MetaDataSnapshotInputStream extends ObjectInputStream
+    {
+        private final ClassLoaderResolver clr;
+
+        MetaDataSnapshotInputStream(InputStream in, ClassLoaderResolver clr) throws IOException
+        {
+            super(in);
+            this.clr = clr;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+        {
+            try
+            {
+                return clr.classForName(desc.getName(), null, false);
+            }
+            catch (ClassNotResolvedException cnre)
+            {
+                // Primitive or array types, or not visible to the resolver
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
@@ -53,6 +53,9 @@ import org.xml.sax.helpers.DefaultHandler;
  * <P>
  * Provides 3 different entry points depending on whether the caller has a URL, a file, or an InputStream.
  * </P>
+ * <P>
+ * Can be used by multiple threads concurrently, with each thread using its own SAXParser.
+ * </P>
  */
 public class XmlMetaDataParser extends DefaultHandler
 {
@@ -71,8 +74,11 @@ public class XmlMetaDataParser extends DefaultHandler
     /** Whether to support namespaces. */
     protected final boolean namespaceAware;
 
-    /** SAXParser being used. SAXParser instances are NOT thread-safe. Obtain a lock on this instance when using it. */
-    private final SAXParser parser;
+    /** Factory for SAXParsers, with any (compiled) schema for validation shared by all parsers. Obtain a lock on this instance when using it. */
+    private final SAXParserFactory parserFactory;
+
+    /** SAXParser for each thread parsing with this parser, since SAXParser instances are NOT thread-safe. */
+    private final ThreadLocal<SAXParser> parser = ThreadLocal.withInitial(this::createSAXParser);
 
     /**
      * Constructor.
@@ -88,10 +94,10 @@ public class XmlMetaDataParser extends DefaultHandler
         this.validate = validate;
         this.namespaceAware = namespaceAware;
         this.entityResolver = new XmlMetaDataEntityResolver(pluginMgr);
-        this.parser = createSAXParser();
+        this.parserFactory = createSAXParserFactory();
     }
 
-    private SAXParser createSAXParser()
+    private SAXParserFactory createSAXParserFactory()
     {
         // Create a SAXParser (use JDK parser for now)
         SAXParserFactory factory = SAXParserFactory.newInstance();
@@ -132,17 +138,24 @@ public class XmlMetaDataParser extends DefaultHandler
                 NucleusLogger.METADATA.info(e.getMessage());
             }
         }
+        return factory;
+    }
 
+    private SAXParser createSAXParser()
+    {
         SAXParser saxParser = null;
         try
         {
-            saxParser = factory.newSAXParser();
+            synchronized (parserFactory)
+            {
+                saxParser = parserFactory.newSAXParser();
+            }
         }
         catch (Exception e)
         {
             NucleusLogger.METADATA.warn(e.getMessage());
         }
-        
+
         return saxParser;
     }
 
@@ -251,47 +264,47 @@ public class XmlMetaDataParser extends DefaultHandler
         }
         try
         {
-            synchronized (parser) 
+            // Use the SAXParser for this thread
+            SAXParser parser = this.parser.get();
+
+            // Generate the required handler to process this metadata
+            DefaultHandler handler = null;
+            try 
             {
-                // Generate the required handler to process this metadata
-                DefaultHandler handler = null;
-                try 
-                {
-                    parser.getXMLReader().setEntityResolver(entityResolver);
+                parser.getXMLReader().setEntityResolver(entityResolver);
 
-                    if ("persistence".equalsIgnoreCase(handlerName)) 
-                    {
-                        // "persistence.xml"
-                        handler = new PersistenceXmlMetaDataHandler(mgr, filename, entityResolver);
-                    }
-                    else
+                if ("persistence".equalsIgnoreCase(handlerName)) 
+                {
+                    // "persistence.xml"
+                    handler = new PersistenceXmlMetaDataHandler(mgr, filename, entityResolver);
+                }
+                else
+                {
+                    // Fallback to the plugin mechanism for other MetaData handlers
+                    Class[] argTypes = new Class[]{ClassConstants.METADATA_MANAGER, ClassConstants.JAVA_LANG_STRING, EntityResolver.class};
+                    Object[] argValues = new Object[]{mgr, filename, entityResolver};
+                    handler = (DefaultHandler) pluginMgr.createExecutableExtension("org.datanucleus.metadata_handler", "name", handlerName, "class-name", argTypes, argValues);
+                    if (handler == null) 
                     {
-                        // Fallback to the plugin mechanism for other MetaData handlers
-                        Class[] argTypes = new Class[]{ClassConstants.METADATA_MANAGER, ClassConstants.JAVA_LANG_STRING, EntityResolver.class};
-                        Object[] argValues = new Object[]{mgr, filename, entityResolver};
-                        handler = (DefaultHandler) pluginMgr.createExecutableExtension("org.datanucleus.metadata_handler", "name", handlerName, "class-name", argTypes, argValues);
-                        if (handler == null) 
-                        {
-                            // Plugin of this name not found
-                            throw new NucleusUserException(Localiser.msg("044028", handlerName)).setFatal();
-                        }
+                        // Plugin of this name not found
+                        throw new NucleusUserException(Localiser.msg("044028", handlerName)).setFatal();
                     }
-                } 
-                catch (Exception e) 
-                {
-                    String msg = Localiser.msg("044029", handlerName, e.getMessage());
-                    throw new NucleusException(msg, e);
                 }
+            } 
+            catch (Exception e) 
+            {
+                String msg = Localiser.msg("044029", handlerName, e.getMessage());
+                throw new NucleusException(msg, e);
+            }
 
-                // Set whether to validate
-                ((AbstractXmlMetaDataHandler) handler).setValidate(validate);
+            // Set whether to validate
+            ((AbstractXmlMetaDataHandler) handler).setValidate(validate);
 
-                // Parse the metadata
-                parser.parse(in, handler);
+            // Parse the metadata
+            parser.parse(in, handler);
 
-                // Return the FileMetaData that has been parsed
-                return ((AbstractXmlMetaDataHandler) handler).getMetaData();
-            }
+            // Return the FileMetaData that has been parsed
+            return ((AbstractXmlMetaDataHandler) handler).getMetaData();
         }
         catch (NucleusException e)
         {
@@ -18,6 +18,7 @@ Contributors:
  **********************************************************************/
 package org.datanucleus.plugin;
 
+import java.io.Serializable;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
@@ -26,8 +27,10 @@ import java.util.Map;
 /**
  * A Plug-in (OSGi Bundle) definition. Represents the XML declaration.
  */
-public class Bundle
+public class Bundle implements Serializable
 {
+    private static final long serialVersionUID = -1474587217371519812L;
+
     /** unique id - bundle symbolic name * */
     final private String symbolicName;
 
@@ -133,8 +136,10 @@ public class Bundle
      * </pre>
      * See OSGI 3.0 $ 1.4.2
      */
-    public static class BundleDescription
+    public static class BundleDescription implements Serializable
     {
+        private static final long serialVersionUID = 4127303582104861549L;
+
         private String bundleSymbolicName;
 
         /** List of parameters for the BundleDescription. */
@@ -18,14 +18,17 @@ Contributors:
 **********************************************************************/
 package org.datanucleus.plugin;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Represents XML elements declared nested in the extension element
  */
-public class ConfigurationElement
+public class ConfigurationElement implements Serializable
 {
+    private static final long serialVersionUID = 8960398462711307154L;
+
     /** parent element **/
     final private ConfigurationElement parent;
     /** child elements **/
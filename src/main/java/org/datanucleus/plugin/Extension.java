@@ -18,11 +18,15 @@ Contributors:
  **********************************************************************/
 package org.datanucleus.plugin;
 
+import java.io.Serializable;
+
 /**
  * Extension declared in a plug-in. Represents the XML element
  */
-public class Extension
+public class Extension implements Serializable
 {
+    private static final long serialVersionUID = 6354880167214507320L;
+
     /** reference to the extension point this extension implements * */
     private ExtensionPoint point;
 
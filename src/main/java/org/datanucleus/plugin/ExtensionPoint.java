@@ -18,6 +18,7 @@ Contributors:
  **********************************************************************/
 package org.datanucleus.plugin;
 
+import java.io.Serializable;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -25,8 +26,10 @@ import java.util.Comparator;
 /**
  * Extension Point declared in a plug-in. Represents the XML declaration.
  */
-public class ExtensionPoint
+public class ExtensionPoint implements Serializable
 {
+    private static final long serialVersionUID = -3081519546817361953L;
+
     /** unique id * */
     final private String id;
 
@@ -112,6 +112,9 @@ public class NonManagedPluginRegistry implements PluginRegistry
     /** Whether to load up any user (third-party) bundles. */
     private boolean allowUserBundles = false;
 
+    /** File holding the index of the registry, loaded in place of parsing the plugins when valid (optional). */
+    private File registryIndexFile = null;
+
     /**
      * Constructor.
      * @param clr the ClassLoaderResolver
@@ -119,12 +122,25 @@ public class NonManagedPluginRegistry implements PluginRegistry
      * @param allowUserBundles Whether to only load DataNucleus bundles (org.datanucleus).
      */
     public NonManagedPluginRegistry(ClassLoaderResolver clr, String bundleCheckType, boolean allowUserBundles)
+    {
+        this(clr, bundleCheckType, allowUserBundles, null);
+    }
+
+    /**
+     * Constructor.
+     * @param clr the ClassLoaderResolver
+     * @param bundleCheckType Type of check on bundles (EXCEPTION, LOG, NONE)
+     * @param allowUserBundles Whether to only load DataNucleus bundles (org.datanucleus).
+     * @param registryIndexFile File to load the registry index from, and to store it in when not valid (optional)
+     */
+    public NonManagedPluginRegistry(ClassLoaderResolver clr, String bundleCheckType, boolean allowUserBundles, File registryIndexFile)
     {
         this.clr = clr;
         extensionPoints = new ExtensionPoint[0];
 
         this.bundleCheckType = bundleCheckType != null ? bundleCheckType.toUpperCase() : "EXCEPTION";
         this.allowUserBundles = allowUserBundles;
+        this.registryIndexFile = registryIndexFile;
     }
 
     @Override
@@ -153,39 +169,69 @@ public class NonManagedPluginRegistry implements PluginRegistry
             return;
         }
 
-        List<Extension> registeringExtensions = new ArrayList<>();
-
-        // parse the plugin files
-        DocumentBuilder docBuilder = PluginParser.getDocumentBuilder();
+        // Search and retrieve the URL for the "/plugin.xml" files located in the classpath.
+        List<URL> pluginURLs = new ArrayList<>();
         try
         {
-            // Search and retrieve the URL for the "/plugin.xml" files located in the classpath.
             Enumeration<URL> paths = clr.getResources(PLUGIN_DIR + "plugin.xml", ClassConstants.NUCLEUS_CONTEXT_LOADER);
             while (paths.hasMoreElements())
             {
-                URL pluginURL = paths.nextElement();
-                URL manifest = getManifestURL(pluginURL);
-                if (manifest == null)
-                {
-                    // No MANIFEST.MF for this plugin.xml so ignore it
-                    continue;
-                }
+                pluginURLs.add(paths.nextElement());
+            }
+        }
+        catch (IOException e)
+        {
+            throw new NucleusException("Error loading resource", e).setFatal();
+        }
 
-                Bundle bundle = registerBundle(manifest);
-                if (bundle == null)
+        String indexKey = null;
+        if (registryIndexFile != null)
+        {
+            // Use the index when it was generated from these same plugins
+            List<URL> indexURLs = new ArrayList<>();
+            for (URL pluginURL : pluginURLs)
+            {
+                indexURLs.add(pluginURL);
+                URL manifest = getManifestURL(pluginURL);
+                if (manifest != null && !manifest.toExternalForm().equals(pluginURL.toExternalForm()))
                 {
-                    // No MANIFEST.MF for this plugin.xml so ignore it
-                    continue;
+                    indexURLs.add(manifest);
                 }
-
-                List[] elements = PluginParser.parsePluginElements(docBuilder, this, pluginURL, bundle, clr);
-                registerExtensionPointsForPluginInternal(elements[0], false);
-                registeringExtensions.addAll(elements[1]);
+            }
+            indexKey = PluginRegistryIndex.getKey(indexURLs, bundleCheckType, allowUserBundles);
+            PluginRegistryIndex index = indexKey != null ? PluginRegistryIndex.read(registryIndexFile, indexKey) : null;
+            if (index != null)
+            {
+                registeredPluginByPluginId.putAll(index.getBundlesBySymbolicName());
+                extensionPointsByUniqueId.putAll(index.getExtensionPointsByUniqueId());
+                extensionPoints = extensionPointsByUniqueId.values().toArray(new ExtensionPoint[extensionPointsByUniqueId.values().size()]);
+                return;
             }
         }
-        catch (IOException e)
+
+        List<Extension> registeringExtensions = new ArrayList<>();
+
+        // parse the plugin files
+        DocumentBuilder docBuilder = PluginParser.getDocumentBuilder();
+        for (URL pluginURL : pluginURLs)
         {
-            throw new NucleusException("Error loading resource", e).setFatal();
+            URL manifest = getManifestURL(pluginURL);
+            if (manifest == null)
+            {
+                // No MANIFEST.MF for this plugin.xml so ignore it
+                continue;
+            }
+
+            Bundle bundle = registerBundle(manifest);
+            if (bundle == null)
+            {
+                // No MANIFEST.MF for this plugin.xml so ignore it
+                continue;
+            }
+
+            List[] elements = PluginParser.parsePluginElements(docBuilder, this, pluginURL, bundle, clr);
+            registerExtensionPointsForPluginInternal(elements[0], false);
+            registeringExtensions.addAll(elements[1]);
         }
 
         extensionPoints = extensionPointsByUniqueId.values().toArray(new ExtensionPoint[extensionPointsByUniqueId.values().size()]);
@@ -219,6 +265,11 @@ public class NonManagedPluginRegistry implements PluginRegistry
                 pt.sortExtensions(sorter);
             }
         }
+
+        if (indexKey != null)
+        {
+            PluginRegistryIndex.write(registryIndexFile, indexKey, registeredPluginByPluginId, extensionPointsByUniqueId);
+        }
     }
 
     /**
@@ -57,7 +57,9 @@ public class PluginManager
         String allowUserBundles = props.getProperty("allow-user-bundles");
         boolean userBundles = allowUserBundles != null ? Boolean.valueOf(allowUserBundles) : true;
 
-        registry = PluginRegistryFactory.newPluginRegistry(registryClassName, bundleCheckAction, userBundles, clr);
+        String registryIndex = props.getProperty("registry-index");
+
+        registry = PluginRegistryFactory.newPluginRegistry(registryClassName, bundleCheckAction, userBundles, registryIndex, clr);
 
         // Register extension points declared in "/plugin.xml", and then register the extensions of these
         registry.registerExtensionPoints();
@@ -387,6 +389,7 @@ public class PluginManager
      * <li>datanucleus.plugin.pluginRegistryBundleCheck</li>
      * <li>datanucleus.plugin.allowUserBundles</li>
      * <li>datanucleus.plugin.validatePlugins</li>
+     * <li>datanucleus.plugin.registryIndex</li>
      * </ul>
      * @param props Any properties defining the plugin manager capabilities
      * @param loader Any class loader to make use of when loading
@@ -418,6 +421,10 @@ public class PluginManager
             {
                 pluginProps.setProperty("validate-plugins", (String)props.get(PropertyNames.PROPERTY_PLUGIN_VALIDATEPLUGINS));
             }
+            if (props.get(PropertyNames.PROPERTY_PLUGIN_REGISTRY_INDEX) != null)
+            {
+                pluginProps.setProperty("registry-index", (String)props.get(PropertyNames.PROPERTY_PLUGIN_REGISTRY_INDEX));
+            }
         }
         return new PluginManager(registryClassName, clr, pluginProps);
     }
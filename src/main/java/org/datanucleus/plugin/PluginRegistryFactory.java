@@ -18,6 +18,8 @@ Contributors:
 **********************************************************************/
 package org.datanucleus.plugin;
 
+import java.io.File;
+
 import org.datanucleus.ClassConstants;
 import org.datanucleus.ClassLoaderResolver;
 import org.datanucleus.util.NucleusLogger;
@@ -39,6 +41,21 @@ public class PluginRegistryFactory
      * @return instance of the PluginRegistry
      */
     public static PluginRegistry newPluginRegistry(String registryClassName, String registryBundleCheck, boolean allowUserBundles, ClassLoaderResolver clr)
+    {
+        return newPluginRegistry(registryClassName, registryBundleCheck, allowUserBundles, null, clr);
+    }
+
+    /**
+     * Instantiates a PluginRegistry. Will typically use NonManagedPluginRegistry in non-OSGi environments and OSGiPluginRegistry otherwise, subject to user input.
+     * @param registryClassName Name of the registry
+     * @param registryBundleCheck What to do on check of bundles (Only for Non-OSGi)
+     * @param allowUserBundles Whether to only load DataNucleus bundles (org.datanucleus) (Only for Non-OSGi)
+     * @param registryIndex Path of a file to load the registry index from, and to store it in when not valid (Only for Non-OSGi)
+     * @param clr the ClassLoaderResolver
+     * @return instance of the PluginRegistry
+     */
+    public static PluginRegistry newPluginRegistry(String registryClassName, String registryBundleCheck, boolean allowUserBundles, String registryIndex,
+            ClassLoaderResolver clr)
     {
         PluginRegistry registry = null;
         if (registryClassName != null)
@@ -59,7 +76,7 @@ public class PluginRegistryFactory
         {
             NucleusLogger.GENERAL.debug("Using PluginRegistry " + NonManagedPluginRegistry.class.getName());
         }
-        return new NonManagedPluginRegistry(clr, registryBundleCheck, allowUserBundles);
+        return new NonManagedPluginRegistry(clr, registryBundleCheck, allowUserBundles, registryIndex != null ? new File(registryIndex) : null);
     }
 
     /**
@@ -0,0 +1,227 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.datanucleus.util.NucleusLogger;
+import org.datanucleus.util.SnapshotFileUtils;
+
+/**
+ * Index of a plugin registry, stored in a file so that a NonManagedPluginRegistry can load its bundles and extension points
+ * in place of parsing each "plugin.xml" and "MANIFEST.MF" on the CLASSPATH. The index holds the registered bundles keyed by their
+ * symbolic name and the extension points keyed by their unique id (with their extensions linked and sorted) (see {@link SnapshotFileUtils}
+ * for the form of the file), together with a key formed from a hash of the plugin resources (URLs, timestamps and sizes) that it was generated from.
+ * An index is only used when the key of those resources is unchanged. When read, the index may only contain the types of the
+ * registry (see {@link #isAllowedClass(Class)}), so an index file cannot be used to instantiate any other classes.
+ */
+class PluginRegistryIndex implements Serializable
+{
+    private static final long serialVersionUID = 5497611583726489350L;
+
+    /** Header identifying a plugin registry index, including the version of its format. */
+    static final String HEADER = "DataNucleus-PluginRegistryIndex-1";
+
+    /** Registered bundles keyed by bundle symbolic name. */
+    private final Map<String, Bundle> bundlesBySymbolicName;
+
+    /** Extension points keyed by unique id, with their extensions. */
+    private final Map<String, ExtensionPoint> extensionPointsByUniqueId;
+
+    private PluginRegistryIndex(Map<String, Bundle> bundlesBySymbolicName, Map<String, ExtensionPoint> extensionPointsByUniqueId)
+    {
+        this.bundlesBySymbolicName = new HashMap<>(bundlesBySymbolicName);
+        this.extensionPointsByUniqueId = new HashMap<>(extensionPointsByUniqueId);
+    }
+
+    Map<String, Bundle> getBundlesBySymbolicName()
+    {
+        return bundlesBySymbolicName;
+    }
+
+    Map<String, ExtensionPoint> getExtensionPointsByUniqueId()
+    {
+        return extensionPointsByUniqueId;
+    }
+
+    /**
+     * Method to write an index of the provided bundles and extension points to the specified file.
+     * Any problem writing the index is logged, since the registry is usable without it.
+     * @param file The index file
+     * @param key Key of the plugin resources that the registry was generated from
+     * @param bundlesBySymbolicName Registered bundles keyed by symbolic name
+     * @param extensionPointsByUniqueId Extension points keyed by unique id
+     */
+    static void write(File file, String key, Map<String, Bundle> bundlesBySymbolicName, Map<String, ExtensionPoint> extensionPointsByUniqueId)
+    {
+        try
+        {
+            SnapshotFileUtils.write(file, HEADER, key, new PluginRegistryIndex(bundlesBySymbolicName, extensionPointsByUniqueId));
+            NucleusLogger.GENERAL.debug("Plugin registry index written to " + file);
+        }
+        catch (IOException ioe)
+        {
+            NucleusLogger.GENERAL.warn("Unable to write plugin registry index to " + file + " : " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Method to read the index in the specified file.
+     * @param file The index file
+     * @param key Key of the plugin resources currently on the CLASSPATH
+     * @return The index, or null if the file is not a valid index or the plugins it was generated from have changed
+     */
+    static PluginRegistryIndex read(File file, String key)
+    {
+        try (ObjectInputStream in = SnapshotFileUtils.openForRead(file, HEADER, ObjectInputStream::new, PluginRegistryIndex::isAllowedClass,
+            NucleusLogger.GENERAL, "Plugin registry index"))
+        {
+            if (in == null)
+            {
+                return null;
+            }
+            if (!key.equals(in.readUTF()))
+            {
+                NucleusLogger.GENERAL.info("Plugin registry index " + file + " is out of date with the plugins in the CLASSPATH so ignoring it");
+                return null;
+            }
+
+            PluginRegistryIndex index = (PluginRegistryIndex) in.readObject();
+            NucleusLogger.GENERAL.debug("Plugin registry loaded from index " + file + " with " + index.bundlesBySymbolicName.size() + " bundles");
+            return index;
+        }
+        catch (IOException | ClassNotFoundException | ClassCastException e)
+        {
+            NucleusLogger.GENERAL.warn("Unable to read plugin registry index " + file + " so ignoring it : " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Whether instances of the specified class may be read from an index. These are the classes of the registry (bundles, extension points,
+     * extensions and configuration elements), and the JDK types that they use (strings, URLs and collections).
+     * @param cls The class
+     * @return Whether it is allowed
+     */
+    static boolean isAllowedClass(Class<?> cls)
+    {
+        while (cls.isArray())
+        {
+            cls = cls.getComponentType();
+        }
+        if (cls.isPrimitive())
+        {
+            return true;
+        }
+        else if (cls == PluginRegistryIndex.class || cls == Bundle.class || cls == Bundle.BundleDescription.class || cls == ExtensionPoint.class ||
+            cls == Extension.class || cls == ConfigurationElement.class)
+        {
+            return true;
+        }
+        return cls == Object.class || cls == String.class || cls == URL.class || cls.getPackageName().equals("java.util");
+    }
+
+    /**
+     * Method to generate the key for the provided plugin resources, being a (SHA-256) hash of the URL of each resource and the
+     * timestamp and size of the file (or jar) containing it, together with the registry settings that affect which bundles are registered.
+     * @param urls URLs of the "plugin.xml" and "MANIFEST.MF" resources
+     * @param bundleCheckType Type of check on bundles (EXCEPTION, LOG, NONE)
+     * @param allowUserBundles Whether user (non-DataNucleus) bundles are registered
+     * @return The key, or null if a resource could not be accessed
+     */
+    static String getKey(List<URL> urls, String bundleCheckType, boolean allowUserBundles)
+    {
+        MessageDigest digest = SnapshotFileUtils.newDigest();
+        digest.update((bundleCheckType + ":" + allowUserBundles).getBytes(StandardCharsets.UTF_8));
+        for (URL url : urls)
+        {
+            digest.update(url.toExternalForm().getBytes(StandardCharsets.UTF_8));
+            if (!updateDigest(digest, url))
+            {
+                return null;
+            }
+        }
+
+        return SnapshotFileUtils.getKey(digest);
+    }
+
+    private static boolean updateDigest(MessageDigest digest, URL url)
+    {
+        try
+        {
+            URL fileURL = url;
+            URLConnection conn = null;
+            if (!"file".equals(url.getProtocol()))
+            {
+                conn = url.openConnection();
+                if (conn instanceof JarURLConnection)
+                {
+                    // Resource in a jar, so use the jar itself
+                    fileURL = ((JarURLConnection)conn).getJarFileURL();
+                    conn = "file".equals(fileURL.getProtocol()) ? null : fileURL.openConnection();
+                }
+            }
+
+            long lastModified;
+            long length;
+            if (conn == null)
+            {
+                File file = new File(fileURL.toURI());
+                lastModified = file.lastModified();
+                length = file.length();
+            }
+            else
+            {
+                lastModified = conn.getLastModified();
+                length = conn.getContentLengthLong();
+            }
+
+            if (lastModified == 0 && length < 0)
+            {
+                // Timestamp and size not provided for this protocol, so use the contents
+                try (InputStream in = url.openStream())
+                {
+                    SnapshotFileUtils.updateDigest(digest, in);
+                }
+            }
+            else
+            {
+                digest.update((":" + lastModified + ":" + length).getBytes(StandardCharsets.UTF_8));
+            }
+            return true;
+        }
+        catch (IOException | URISyntaxException | IllegalArgumentException e)
+        {
+            NucleusLogger.GENERAL.debug("Unable to access " + url + " for plugin registry index key : " + e.getMessage());
+            return false;
+        }
+    }
+}
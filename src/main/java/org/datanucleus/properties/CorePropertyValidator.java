@@ -334,6 +334,31 @@ public class CorePropertyValidator implements PropertyValidator
                 }
             }
         }
+        else if (name.equals(PropertyNames.PROPERTY_EXECUTION_CONTEXT_POOL_TYPE))
+        {
+            if (value instanceof String)
+            {
+                String strVal = ((String)value).toLowerCase();
+                if (strVal.equals("synchronized") ||
+                    strVal.equals("concurrent"))
+                {
+                    return true;
+                }
+            }
+        }
+        else if (name.equals(PropertyNames.PROPERTY_STATE_MANAGER_POOL_TYPE))
+        {
+            if (value instanceof String)
+            {
+                String strVal = ((String)value).toLowerCase();
+                if (strVal.equals("none") ||
+                    strVal.equals("synchronized") ||
+                    strVal.equals("striped"))
+                {
+                    return true;
+                }
+            }
+        }
         else if (name.equals(PropertyNames.PROPERTY_TYPE_WRAPPER_BASIS))
         {
             if (value instanceof String)
@@ -109,6 +109,36 @@ public abstract class PropertyStore
         throw new PropertyTypeInvalidException(name, "int");
     }
 
+    /**
+     * Accessor for the specified property as a long.
+     * If the specified property isn't found returns 0.
+     * @param name Name of the property
+     * @return Long value for the property
+     * @throws PropertyTypeInvalidException thrown when the property is not available as this type
+     */
+    public long getLongProperty(String name)
+    {
+        Object obj = getProperty(name);
+        if (obj != null)
+        {
+            if (obj instanceof Number)
+            {
+                return ((Number)obj).longValue();
+            }
+            else if (obj instanceof String)
+            {
+                Long longVal = Long.valueOf((String)obj);
+                setPropertyInternal(name, longVal); // Replace String value with Long
+                return longVal.longValue();
+            }
+        }
+        else
+        {
+            return 0;
+        }
+        throw new PropertyTypeInvalidException(name, "long");
+    }
+
     /**
      * Accessor for the specified property as a boolean.
      * If the specified property isn't found returns false.
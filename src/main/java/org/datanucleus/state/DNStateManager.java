@@ -379,6 +379,12 @@ public interface DNStateManager<T> extends StateManager
 
     void setFlushing(boolean flushing);
 
+    /**
+     * Accessor for whether this StateManager is currently flushing its changes to the datastore.
+     * @return Whether it is flushing
+     */
+    boolean isFlushing();
+
     /**
      * Method to notify the StateManager that the object has now been flushed to the datastore.
      * This is performed when handling inserts or deletes in a batch external to StateManager.
@@ -451,6 +457,20 @@ public interface DNStateManager<T> extends StateManager
      */
     void loadField(int fieldNumber);
 
+    /**
+     * Convenience method to load the specified fields from the L2 cached version of this object, where they are loaded in that.
+     * @param fieldNumbers Absolute field numbers
+     * @return The fields that are still not loaded
+     */
+    int[] loadFieldsFromLevel2Cache(int[] fieldNumbers);
+
+    /**
+     * Convenience method to update the L2 cached version of this object with the specified fields, if cacheable
+     * and not modified in this transaction.
+     * @param fieldNumbers Absolute field numbers
+     */
+    void updateLevel2CacheForFields(int[] fieldNumbers);
+
     /**
      * Convenience method to load the specified field from the stored associated value cache if available.
      * @param fieldNumber Absolute field number
@@ -30,6 +30,9 @@ import org.datanucleus.store.FieldValues;
  * A user can specify the persistence property <b>datanucleus.stateManager.className</b> to define the StateManager class to instantiate, otherwise it will 
  * instantiate either <i>org.datanucleus.state.StateManagerImpl</i>, 
  * or the preferred StateManager required by the particular datastore (see <i>storeMgr.getDefaultStateManagerClassName()</i>).
+ * <p>
+ * StateManagers can optionally be pooled for reuse, using the persistence property <b>datanucleus.stateManager.poolType</b>
+ * set to <i>synchronized</i> (see {@link StateManagerPool}) or <i>striped</i> (see {@link StripedStateManagerPool}). Default is <i>none</i>.
  */
 public interface StateManagerFactory
 {
@@ -19,6 +19,7 @@ package org.datanucleus.state;
 
 import org.datanucleus.ClassConstants;
 import org.datanucleus.ClassLoaderResolver;
+import org.datanucleus.Configuration;
 import org.datanucleus.ExecutionContext;
 import org.datanucleus.PersistableObjectType;
 import org.datanucleus.PersistenceNucleusContext;
@@ -49,8 +50,8 @@ public class StateManagerFactoryImpl implements StateManagerFactory
     /** Cache of initialised PC classes - for performance */
     private volatile Set<Class<?>> initializedPcClasses = Collections.emptySet();
 
-    // Single pool of all StateManager objects. TODO Consider having one pool per object type.
-//    StateManagerPool smPool = null;
+    /** Optional pool of all StateManager objects (null when pooling is disabled). TODO Consider having one pool per object type. */
+    StateManagerPool smPool = null;
 
     public StateManagerFactoryImpl(PersistenceNucleusContext nucCtx)
     {
@@ -63,15 +64,29 @@ public class StateManagerFactoryImpl implements StateManagerFactory
         }
         smClass = nucCtx.getClassLoaderResolver(null).classForName(smClassName);
 
-//        smPool = new StateManagerPool(conf.getIntProperty(PropertyNames.PROPERTY_OBJECT_PROVIDER_MAX_IDLE),
-//            conf.getBooleanProperty(PropertyNames.PROPERTY_OBJECT_PROVIDER_REAPER_THREAD),
-//            smClass);
+        // Pooling of StateManagers is opt-in since a StateManager is only reusable once nothing else holds a reference to it [NUCCORE-1007]
+        Configuration conf = nucCtx.getConfiguration();
+        String poolType = conf.getStringProperty(PropertyNames.PROPERTY_STATE_MANAGER_POOL_TYPE);
+        if ("striped".equalsIgnoreCase(poolType))
+        {
+            smPool = new StripedStateManagerPool(conf.getIntProperty(PropertyNames.PROPERTY_STATE_MANAGER_MAX_IDLE),
+                conf.getBooleanProperty(PropertyNames.PROPERTY_STATE_MANAGER_REAPER_THREAD), smClass);
+        }
+        else if ("synchronized".equalsIgnoreCase(poolType))
+        {
+            smPool = new StateManagerPool(conf.getIntProperty(PropertyNames.PROPERTY_STATE_MANAGER_MAX_IDLE),
+                conf.getBooleanProperty(PropertyNames.PROPERTY_STATE_MANAGER_REAPER_THREAD), smClass);
+        }
     }
 
     @Override
     public void close()
     {
-//        smPool.close();
+        if (smPool != null)
+        {
+            smPool.close();
+            smPool = null;
+        }
     }
 
     @Override
@@ -208,17 +223,21 @@ public class StateManagerFactoryImpl implements StateManagerFactory
     @Override
     public void disconnectStateManager(DNStateManager sm)
     {
-        // TODO Enable this when the pool is working in multithreaded mode [NUCCORE-1007]
-//        smPool.checkIn(sm);
+        if (smPool != null)
+        {
+            smPool.checkIn(sm);
+        }
     }
 
     protected DNStateManager getStateManager(ExecutionContext ec, AbstractClassMetaData cmd)
     {
+        if (smPool != null)
+        {
+            return smPool.checkOut(ec, cmd);
+        }
+
         // TODO Potentially could allow SM class to use to be defined in the cmd
         return ClassUtils.newInstance(smClass, STATE_MANAGER_CTR_ARG_CLASSES, new Object[] {ec, cmd});
-
-        // TODO Enable this when the pool is working in multithreaded mode [NUCCORE-1007]
-//        return smPool.checkOut(ec, cmd);
     }
 
     private Class getInitialisedClassForClass(Class pcCls, ClassLoaderResolver clr)
@@ -281,6 +281,7 @@ public class StateManagerImpl implements DNStateManager<Persistable>
      */
     public void disconnect()
     {
+        ExecutionContext ec = myEC;
         if (NucleusLogger.PERSISTENCE.isDebugEnabled())
         {
             NucleusLogger.PERSISTENCE.debug(Localiser.msg("026011", IdentityUtils.getPersistableIdentityForId(getInternalObjectId()), this));
@@ -350,7 +351,8 @@ public class StateManagerImpl implements DNStateManager<Persistable>
         dirtyFields = null;
         loadedFields = null;
 
-        // TODO Remove the object from any pooling (when we enable it) via nucCtx.getStateManagerFactory().disconnectStateManager(this);
+        // Hand back to the factory for any pooling
+        ec.getNucleusContext().getStateManagerFactory().disconnectStateManager(this);
     }
 
     @Override
@@ -714,7 +716,7 @@ public class StateManagerImpl implements DNStateManager<Persistable>
         myLC = myEC.getNucleusContext().getApiAdapter().getLifeCycleState(LifeCycleState.P_CLEAN);
         persistenceFlags = Persistable.READ_OK;
 
-        int[] fieldsToLoad = ClassUtils.getFlagsSetTo(cachedPC.getLoadedFields(), myFP.getMemberNumbers(), true);
+        int[] fieldsToLoad = cachedPC.getFieldNumbersLoaded(myFP.getMemberNumbers(), true);
         if (fieldsToLoad != null)
         {
             // Put this object in L1 cache for easy referencing
@@ -1007,7 +1009,8 @@ public class StateManagerImpl implements DNStateManager<Persistable>
         }
     }
 
-    protected boolean isFlushing()
+    @Override
+    public boolean isFlushing()
     {
         return (flags&FLAG_FLUSHING)!=0;
     }
@@ -1427,7 +1430,8 @@ public class StateManagerImpl implements DNStateManager<Persistable>
      * and has not been modified during this transaction.
      * @param fieldNumbers Numbers of fields to update in L2 cached object
      */
-    protected void updateLevel2CacheForFields(int[] fieldNumbers)
+    @Override
+    public void updateLevel2CacheForFields(int[] fieldNumbers)
     {
         String updateMode = myEC.getStringProperty(PropertyNames.PROPERTY_CACHE_L2_UPDATE_MODE);
         if (updateMode != null && updateMode.equalsIgnoreCase("commit-only"))
@@ -1447,7 +1451,7 @@ public class StateManagerImpl implements DNStateManager<Persistable>
             {
                 // This originally just updated the L2 cache for fields where the L2 cache didn't have a value for that field, like this
                 /*
-                int[] cacheFieldsToLoad = ClassUtils.getFlagsSetTo(cachedPC.getLoadedFields(), fieldNumbers, false);
+                int[] cacheFieldsToLoad = cachedPC.getFieldNumbersLoaded(fieldNumbers, false);
                 if (cacheFieldsToLoad == null || cacheFieldsToLoad.length == 0)
                 {
                     return;
@@ -1461,6 +1465,7 @@ public class StateManagerImpl implements DNStateManager<Persistable>
                 }
 
                 provideFields(cacheFieldsToLoad, constructL2CachePopulateFieldManager(this, copyCachedPC));
+                copyCachedPC.trimToSize();
 
                 // Replace the current L2 cached object with this one
                 myEC.getNucleusContext().getLevel2Cache().put(getInternalObjectId(), copyCachedPC);
@@ -1479,7 +1484,8 @@ public class StateManagerImpl implements DNStateManager<Persistable>
      * @param fieldNumbers Numbers of fields to load from the L2 cache
      * @return The fields that couldn't be loaded
      */
-    protected int[] loadFieldsFromLevel2Cache(int[] fieldNumbers)
+    @Override
+    public int[] loadFieldsFromLevel2Cache(int[] fieldNumbers)
     {
         // Only continue if there are fields, and not being deleted/flushed etc
         if (fieldNumbers == null || fieldNumbers.length == 0 || myEC.isFlushing() || myLC.isDeleted() || isDeleting() || myEC.getTransaction().isCommitting())
@@ -1498,7 +1504,7 @@ public class StateManagerImpl implements DNStateManager<Persistable>
             CachedPC cachedPC = l2cache.get(myID);
             if (cachedPC != null)
             {
-                int[] cacheFieldsToLoad = ClassUtils.getFlagsSetTo(cachedPC.getLoadedFields(), fieldNumbers, true);
+                int[] cacheFieldsToLoad = cachedPC.getFieldNumbersLoaded(fieldNumbers, true);
                 if (cacheFieldsToLoad != null && cacheFieldsToLoad.length > 0)
                 {
                     if (NucleusLogger.CACHE.isDebugEnabled())
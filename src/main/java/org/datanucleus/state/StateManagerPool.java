@@ -68,6 +68,7 @@ public class StateManagerPool
         {
             cleaner.interrupt();
         }
+        recyclableSMs.clear();
     }
 
     protected DNStateManager create(ExecutionContext ec, AbstractClassMetaData cmd)
@@ -77,8 +78,8 @@ public class StateManagerPool
 
     public boolean validate(DNStateManager sm)
     {
-        // TODO Any situations where we don't want to reuse it?
-        return true;
+        // Never hand out a StateManager that is still connected to an object
+        return !sm.isConnected();
     }
 
     public void expire(DNStateManager sm)
@@ -143,7 +144,7 @@ public class StateManagerPool
 
     public synchronized void checkIn(DNStateManager sm)
     {
-        if (recyclableSMs.size() < maxIdle)
+        if (recyclableSMs.size() < maxIdle && validate(sm))
         {
             recyclableSMs.put(sm, System.currentTimeMillis());
         }
@@ -0,0 +1,353 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.state;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.datanucleus.ExecutionContext;
+import org.datanucleus.metadata.AbstractClassMetaData;
+import org.datanucleus.util.NucleusLogger;
+
+/**
+ * Pool of StateManager objects that avoids any monitor on checkOut/checkIn.
+ * Each thread has its own "magazine" (small bounded stack) of StateManagers that it checks out from and in to.
+ * When a thread's magazine is full it is handed to a shared lock-free depot and the thread starts a new magazine,
+ * and when a thread's magazine is empty it takes a full magazine from the depot if one is available.
+ * Expiry is only applied to magazines in the depot, and is performed by {@link #cleanUp()} (typically from the reaper thread),
+ * so is never on the checkOut/checkIn path.
+ * The number of magazines (whether held by a thread or in the depot) is limited so that the pool never holds more than
+ * <i>maxIdle</i> StateManagers. A thread that cannot get a magazine simply doesn't pool its StateManagers.
+ * All magazines are registered with the pool so that {@link #close()} can release the StateManagers held by any thread,
+ * and so that the magazines of threads that have ended can be reclaimed. This is done by {@link #cleanUp()}, and by checkIn when the pool
+ * is at capacity, though checkIn only scans the magazines at most once per {@link #RECLAIM_INTERVAL} so that the scan stays off its path.
+ */
+public class StripedStateManagerPool extends StateManagerPool
+{
+    /** Default number of StateManagers held in each magazine. */
+    public static final int DEFAULT_MAGAZINE_SIZE = 16;
+
+    /** Minimum interval (ms) between checkIn scans for the magazines of ended threads. */
+    public static final long RECLAIM_INTERVAL = 1000;
+
+    private final long expirationTime;
+
+    private final int magazineSize;
+
+    /** Maximum number of magazines, held by threads or in the depot. */
+    private final int maxMagazines;
+
+    /** Number of magazines currently registered. */
+    private final AtomicInteger numMagazines = new AtomicInteger();
+
+    /** Time (ms) from which checkIn can next scan for the magazines of ended threads. */
+    private final AtomicLong nextReclaimTime = new AtomicLong();
+
+    /** Full magazines available for any thread, most recently returned first. */
+    private final ConcurrentLinkedDeque<Magazine> depot = new ConcurrentLinkedDeque<>();
+
+    private final ThreadLocal<Magazine> localMagazine = ThreadLocal.withInitial(() -> Magazine.NONE);
+
+    /** All magazines currently in use by a thread or in the depot, so that they can be emptied on close. */
+    private final Set<Magazine> magazines = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean closed = false;
+
+    public StripedStateManagerPool(int maxIdle, boolean reaperThread, Class<? extends DNStateManager> smClass)
+    {
+        super(maxIdle, reaperThread, smClass);
+
+        this.expirationTime = 30000; // 30 seconds
+        this.magazineSize = Math.max(1, Math.min(DEFAULT_MAGAZINE_SIZE, maxIdle));
+        this.maxMagazines = Math.max(1, maxIdle / magazineSize);
+    }
+
+    /**
+     * Method to register a new magazine for the current thread, if the pool is not at capacity.
+     * @return The magazine, or null if the pool already has its maximum number of magazines
+     */
+    private Magazine newMagazine()
+    {
+        if (numMagazines.incrementAndGet() > maxMagazines)
+        {
+            numMagazines.decrementAndGet();
+            return null;
+        }
+
+        Magazine mag = new Magazine(magazineSize);
+        mag.owner = new WeakReference<>(Thread.currentThread());
+        magazines.add(mag);
+        return mag;
+    }
+
+    /**
+     * Method to remove a magazine from the pool, expiring any StateManagers it holds.
+     * @param mag The magazine
+     * @return The number of StateManagers expired
+     */
+    private int releaseMagazine(Magazine mag)
+    {
+        if (!magazines.remove(mag))
+        {
+            // Already released
+            return 0;
+        }
+        numMagazines.decrementAndGet();
+
+        int numExpired = 0;
+        DNStateManager sm;
+        while ((sm = mag.pop()) != null)
+        {
+            expire(sm);
+            numExpired++;
+        }
+        return numExpired;
+    }
+
+    /**
+     * Method to release the magazines of any threads that have ended, since they can no longer be used.
+     * @return The number of StateManagers expired
+     */
+    private int releaseMagazinesOfEndedThreads()
+    {
+        int numExpired = 0;
+        for (Magazine mag : magazines)
+        {
+            WeakReference<Thread> owner = mag.owner;
+            if (owner != null)
+            {
+                // The end of a thread happens-before isAlive() returns false, so its magazine can safely be read here
+                Thread thread = owner.get();
+                if (thread == null || !thread.isAlive())
+                {
+                    numExpired += releaseMagazine(mag);
+                }
+            }
+        }
+        return numExpired;
+    }
+
+    /**
+     * Method to decide whether the calling thread should scan for the magazines of ended threads, allowing only one thread
+     * per {@link #RECLAIM_INTERVAL}.
+     * @return Whether to scan
+     */
+    private boolean startReclaim()
+    {
+        long now = System.currentTimeMillis();
+        long next = nextReclaimTime.get();
+        return now >= next && nextReclaimTime.compareAndSet(next, now + RECLAIM_INTERVAL);
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        super.close();
+
+        // Release the StateManagers held by all threads, since thread-local magazines would otherwise live as long as their thread
+        for (Magazine mag : magazines)
+        {
+            mag.clear();
+        }
+        magazines.clear();
+        depot.clear();
+        numMagazines.set(0);
+        localMagazine.remove();
+    }
+
+    /**
+     * Accessor for the number of StateManagers currently held by the pool (in all magazines).
+     * @return The number of pooled StateManagers
+     */
+    int getNumberPooled()
+    {
+        int num = 0;
+        for (Magazine mag : magazines)
+        {
+            num += mag.size;
+        }
+        return num;
+    }
+
+    @Override
+    public DNStateManager checkOut(ExecutionContext ec, AbstractClassMetaData cmd)
+    {
+        if (closed)
+        {
+            return create(ec, cmd);
+        }
+
+        Magazine mag = localMagazine.get();
+        DNStateManager sm = mag.pop();
+        if (sm == null)
+        {
+            // Local magazine is empty, so try to swap in a full one from the depot
+            Magazine full = depot.pollFirst();
+            if (full != null)
+            {
+                if (mag != Magazine.NONE)
+                {
+                    releaseMagazine(mag);
+                }
+                full.owner = new WeakReference<>(Thread.currentThread());
+                localMagazine.set(full);
+                sm = full.pop();
+            }
+        }
+
+        if (sm != null)
+        {
+            if (validate(sm))
+            {
+                sm.connect(ec, cmd);
+                return sm;
+            }
+
+            // object failed validation
+            expire(sm);
+        }
+
+        // no objects available, create a new one
+        return create(ec, cmd);
+    }
+
+    @Override
+    public void checkIn(DNStateManager sm)
+    {
+        if (closed || !validate(sm))
+        {
+            return;
+        }
+
+        Magazine mag = localMagazine.get();
+        if (mag.push(sm))
+        {
+            return;
+        }
+
+        if (mag != Magazine.NONE)
+        {
+            // Local magazine is full, so hand it to the depot
+            mag.owner = null;
+            mag.timestamp = System.currentTimeMillis();
+            depot.offerFirst(mag);
+            localMagazine.set(Magazine.NONE);
+        }
+
+        // Start a new magazine, reclaiming those of ended threads if the pool is at capacity (and not scanned recently)
+        Magazine newMag = newMagazine();
+        if (newMag == null && startReclaim())
+        {
+            releaseMagazinesOfEndedThreads();
+            newMag = newMagazine();
+        }
+        if (newMag != null)
+        {
+            newMag.push(sm);
+            localMagazine.set(newMag);
+        }
+        // else pool is at capacity so just drop this StateManager
+    }
+
+    @Override
+    public void cleanUp()
+    {
+        long now = System.currentTimeMillis();
+        int numExpired = releaseMagazinesOfEndedThreads();
+
+        // Oldest magazines are at the end of the depot
+        Iterator<Magazine> magIter = depot.descendingIterator();
+        while (magIter.hasNext())
+        {
+            Magazine mag = magIter.next();
+            if ((now - mag.timestamp) <= expirationTime)
+            {
+                break;
+            }
+
+            // Only expire it if no other thread has taken it in the meantime
+            if (depot.removeLastOccurrence(mag))
+            {
+                numExpired += releaseMagazine(mag);
+            }
+        }
+
+        if (numExpired > 0 && NucleusLogger.PERSISTENCE.isDebugEnabled())
+        {
+            NucleusLogger.PERSISTENCE.debug("Expired " + numExpired + " StateManagers from pool");
+        }
+    }
+
+    /**
+     * Bounded stack of StateManagers. Only ever accessed by one thread at a time, since it is either
+     * thread-local or held in the depot (and the handoff via the depot is safely published).
+     */
+    static class Magazine
+    {
+        /** Magazine with no capacity, for a thread that has no magazine. */
+        static final Magazine NONE = new Magazine(0);
+
+        final DNStateManager[] sms;
+        int size = 0;
+        long timestamp;
+
+        /** Thread using this magazine, or null when in the depot. */
+        volatile WeakReference<Thread> owner;
+
+        Magazine(int capacity)
+        {
+            this.sms = new DNStateManager[capacity];
+        }
+
+        boolean push(DNStateManager sm)
+        {
+            if (size == sms.length)
+            {
+                return false;
+            }
+            sms[size++] = sm;
+            return true;
+        }
+
+        DNStateManager pop()
+        {
+            if (size == 0)
+            {
+                return null;
+            }
+            DNStateManager sm = sms[--size];
+            sms[size] = null;
+            return sm;
+        }
+
+        void clear()
+        {
+            for (int i=0;i<sms.length;i++)
+            {
+                sms[i] = null;
+            }
+            size = 0;
+        }
+    }
+}
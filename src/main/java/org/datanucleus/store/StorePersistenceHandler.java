@@ -18,11 +18,16 @@ Contributors:
 **********************************************************************/
 package org.datanucleus.store;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.datanucleus.ExecutionContext;
 import org.datanucleus.exceptions.NucleusDataStoreException;
 import org.datanucleus.exceptions.NucleusObjectNotFoundException;
+import org.datanucleus.exceptions.NucleusOptimisticException;
 import org.datanucleus.metadata.AbstractClassMetaData;
 import org.datanucleus.state.DNStateManager;
+import org.datanucleus.util.Localiser;
 
 /**
  * Interface defining persistence operations of a StoreManager.
@@ -95,6 +100,50 @@ public interface StorePersistenceHandler
      */
     void updateObject(DNStateManager sm, int fieldNumbers[]);
 
+    /**
+     * Updates the specified fields of several persistent objects (of the same type) in the datastore.
+     * The flush process groups dirty objects by class and dirty fields and calls this once per group, so a store can
+     * send them in a single round trip. The default implementation calls <i>updateObject</i> for each object in turn.
+     * @param fieldNumbers The numbers of the fields to be updated (same for all objects)
+     * @param sms StateManagers of the objects to be updated
+     * @throws NucleusOptimisticException if one or more objects fail optimistic verification (nested for each failure when more than one)
+     * @throws NucleusDataStoreException when an error occurs in the datastore communication
+     */
+    default void updateObjects(int[] fieldNumbers, DNStateManager... sms)
+    {
+        if (sms.length == 1)
+        {
+            updateObject(sms[0], fieldNumbers);
+            return;
+        }
+
+        // Continue past any optimistic failure, so the caller gets the same outcome as updating each object separately
+        List<NucleusOptimisticException> failures = null;
+        for (DNStateManager sm : sms)
+        {
+            try
+            {
+                updateObject(sm, fieldNumbers);
+            }
+            catch (NucleusOptimisticException noe)
+            {
+                if (failures == null)
+                {
+                    failures = new ArrayList<>();
+                }
+                failures.add(noe);
+            }
+        }
+        if (failures != null)
+        {
+            if (failures.size() == 1)
+            {
+                throw failures.get(0);
+            }
+            throw new NucleusOptimisticException(Localiser.msg("010031"), failures.toArray(new NucleusOptimisticException[failures.size()]));
+        }
+    }
+
     /**
      * Deletes a persistent object from the datastore.
      * @param sm StateManager of the object to be deleted.
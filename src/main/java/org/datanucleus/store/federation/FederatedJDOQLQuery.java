@@ -17,14 +17,33 @@ Contributors:
 **********************************************************************/
 package org.datanucleus.store.federation;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
 import org.datanucleus.ExecutionContext;
+import org.datanucleus.exceptions.NucleusUserException;
+import org.datanucleus.metadata.QueryLanguage;
 import org.datanucleus.store.StoreManager;
 import org.datanucleus.store.query.AbstractJDOQLQuery;
+import org.datanucleus.store.query.Query;
+import org.datanucleus.store.query.inmemory.JDOQLInMemoryEvaluator;
+import org.datanucleus.util.NucleusLogger;
 
 /**
- * JDOQL query that is federated across multiple datastores
+ * JDOQL query that is federated across multiple datastores.
+ * <p>
+ * When executed the StoreManager(s) holding objects of the candidate (and subclasses) are found. If only one datastore is involved 
+ * the query is simply delegated to it. Otherwise the filter is executed against each datastore (in parallel when the ExecutionContext is 
+ * multithreaded), returning the candidate objects, and the results are merged in-memory applying any ordering, result (including aggregates 
+ * and grouping), and range. Where the query returns the candidate objects, the ordering and the end of the range are also applied in each 
+ * datastore, so that no datastore returns more objects than needed.
+ * </p>
  */
 public class FederatedJDOQLQuery extends AbstractJDOQLQuery
 {
@@ -68,7 +87,189 @@ public class FederatedJDOQLQuery extends AbstractJDOQLQuery
     @Override
     protected Object performExecute(Map parameters)
     {
-        // TODO Find StoreManager(s) involved in this query and distribute it
-        return null;
+        if (candidateCollection != null)
+        {
+            // Candidates provided so just evaluate in-memory
+            JDOQLInMemoryEvaluator evaluator = new JDOQLInMemoryEvaluator(this, new ArrayList<>(candidateCollection), compilation, parameters, clr);
+            return evaluator.execute(true, true, true, true, true);
+        }
+
+        String candidateName = compilation.getCandidateClass().getName();
+        Map<StoreManager, List<String>> candidatesByStoreMgr = ((FederatedStoreManager)storeMgr).getStoreManagersForClass(candidateName, subclasses, clr);
+        if (candidatesByStoreMgr.size() == 1)
+        {
+            Map.Entry<StoreManager, List<String>> entry = candidatesByStoreMgr.entrySet().iterator().next();
+            if (entry.getValue().size() == 1 && entry.getValue().get(0).equals(candidateName))
+            {
+                // Only one datastore involved, so just delegate the query to it
+                return performExecuteInDatastore(entry.getKey(), parameters);
+            }
+        }
+
+        if (type != QueryType.SELECT)
+        {
+            throw new NucleusUserException("Query " + this + " is of type " + type + " but objects of " + candidateName + " are in multiple datastores. Not supported");
+        }
+
+        // Only push ordering and range down into the datastore queries where they return the candidates
+        boolean candidateResults = result == null && grouping == null && having == null;
+        List<Query> datastoreQueries = new ArrayList<>();
+        for (Map.Entry<StoreManager, List<String>> entry : candidatesByStoreMgr.entrySet())
+        {
+            for (String datastoreCandidateName : entry.getValue())
+            {
+                Query datastoreQuery = newDatastoreQuery(entry.getKey(), datastoreCandidateName);
+                if (candidateResults)
+                {
+                    datastoreQuery.setOrdering(ordering);
+                    if (toExclNo != Long.MAX_VALUE)
+                    {
+                        datastoreQuery.setRange(0, toExclNo);
+                    }
+                }
+                datastoreQueries.add(datastoreQuery);
+            }
+        }
+
+        if (NucleusLogger.QUERY.isDebugEnabled())
+        {
+            NucleusLogger.QUERY.debug("Query " + this + " will be executed as " + datastoreQueries.size() + " queries across " + candidatesByStoreMgr.size() + " datastores");
+        }
+
+        List<Object> candidates = new ArrayList<>();
+        ExecutorService executor = ec.getMultithreaded() && datastoreQueries.size() > 1 ? ((FederatedStoreManager)storeMgr).getExecutorService() : null;
+        if (executor != null)
+        {
+            // Execute the datastore queries concurrently, and merge the results in the order of the datastores
+            List<CompletableFuture<List<Object>>> futures = new ArrayList<>(datastoreQueries.size());
+            for (Query datastoreQuery : datastoreQueries)
+            {
+                futures.add(CompletableFuture.supplyAsync(() -> getDatastoreQueryResults(datastoreQuery, parameters), executor));
+            }
+            try
+            {
+                for (CompletableFuture<List<Object>> future : futures)
+                {
+                    candidates.addAll(future.join());
+                }
+            }
+            catch (CompletionException ce)
+            {
+                if (ce.getCause() instanceof RuntimeException)
+                {
+                    throw (RuntimeException)ce.getCause();
+                }
+                throw ce;
+            }
+        }
+        else
+        {
+            for (Query datastoreQuery : datastoreQueries)
+            {
+                candidates.addAll(getDatastoreQueryResults(datastoreQuery, parameters));
+            }
+        }
+
+        // Merge the results, applying ordering, result and range across all datastores
+        JDOQLInMemoryEvaluator evaluator = new JDOQLInMemoryEvaluator(this, candidates, compilation, parameters, clr);
+        return evaluator.execute(false, true, true, true, true);
+    }
+
+    /**
+     * Method to execute this query in the specified datastore, where it is the only datastore holding objects of the candidate.
+     * @param datastoreMgr StoreManager for the datastore
+     * @param parameters Input parameters
+     * @return The result of the query
+     */
+    protected Object performExecuteInDatastore(StoreManager datastoreMgr, Map parameters)
+    {
+        if (type != QueryType.SELECT)
+        {
+            // Bulk update/delete, so use single-string form
+            Query datastoreQuery = datastoreMgr.newQuery(QueryLanguage.JDOQL.name(), ec, getSingleStringQuery());
+            copySettingsToQuery(datastoreQuery);
+            return datastoreQuery.executeWithMap(parameters);
+        }
+
+        Query datastoreQuery = newDatastoreQuery(datastoreMgr, compilation.getCandidateClass().getName());
+        datastoreQuery.setResult(result);
+        datastoreQuery.setResultDistinct(resultDistinct);
+        if (resultClass != null)
+        {
+            datastoreQuery.setResultClass(resultClass);
+        }
+        else if (resultClassName != null)
+        {
+            datastoreQuery.setResultClassName(resultClassName);
+        }
+        datastoreQuery.setGrouping(grouping);
+        datastoreQuery.setHaving(having);
+        datastoreQuery.setOrdering(ordering);
+        datastoreQuery.setRange(fromInclNo, toExclNo);
+
+        Object results = datastoreQuery.executeWithMap(parameters);
+        if (results instanceof Collection)
+        {
+            return results;
+        }
+        // Single row returned (e.g aggregate), so return as collection since this query handles uniqueness
+        return results != null ? Collections.singletonList(results) : Collections.EMPTY_LIST;
+    }
+
+    /**
+     * Method to create a query for the specified datastore with the candidate, filter, parameters, variables and imports of this query.
+     * @param datastoreMgr StoreManager for the datastore
+     * @param datastoreCandidateName Name of the candidate class for the datastore
+     * @return The datastore query
+     */
+    protected Query newDatastoreQuery(StoreManager datastoreMgr, String datastoreCandidateName)
+    {
+        Query datastoreQuery = datastoreMgr.newQuery(QueryLanguage.JDOQL.name(), ec);
+        datastoreQuery.setCandidateClassName(datastoreCandidateName);
+        datastoreQuery.setSubclasses(subclasses);
+        datastoreQuery.setFilter(getCompilationFilter());
+        datastoreQuery.declareImports(imports);
+        datastoreQuery.declareExplicitParameters(explicitParameters);
+        datastoreQuery.declareExplicitVariables(explicitVariables);
+        copySettingsToQuery(datastoreQuery);
+        return datastoreQuery;
+    }
+
+    private void copySettingsToQuery(Query datastoreQuery)
+    {
+        datastoreQuery.setIgnoreCache(ignoreCache);
+        datastoreQuery.setFetchPlan(getFetchPlan());
+        if (extensions != null)
+        {
+            datastoreQuery.setExtensions(extensions);
+        }
+        if (subqueries != null)
+        {
+            for (Object subqueryValue : subqueries.values())
+            {
+                SubqueryDefinition subqueryDefinition = (SubqueryDefinition)subqueryValue;
+                datastoreQuery.addSubquery(subqueryDefinition.getQuery(), subqueryDefinition.getVariableDeclaration(), 
+                    subqueryDefinition.getCandidateExpression(), subqueryDefinition.getParameterMap());
+            }
+        }
+    }
+
+    /**
+     * Method to execute the datastore query, and return its results.
+     * @param datastoreQuery The datastore query
+     * @param parameters Input parameters
+     * @return The results (objects of the candidate)
+     */
+    private List<Object> getDatastoreQueryResults(Query datastoreQuery, Map parameters)
+    {
+        Collection datastoreResults = (Collection)datastoreQuery.executeWithMap(parameters);
+        try
+        {
+            return new ArrayList<>(datastoreResults);
+        }
+        finally
+        {
+            datastoreQuery.close(datastoreResults);
+        }
     }
-}
\ No newline at end of file
+}
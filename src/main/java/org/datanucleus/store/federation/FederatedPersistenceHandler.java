@@ -17,8 +17,23 @@ Contributors:
 **********************************************************************/
 package org.datanucleus.store.federation;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
 import org.datanucleus.ExecutionContext;
+import org.datanucleus.PropertyNames;
+import org.datanucleus.exceptions.NucleusException;
 import org.datanucleus.metadata.AbstractClassMetaData;
+import org.datanucleus.metadata.TransactionType;
 import org.datanucleus.state.DNStateManager;
 import org.datanucleus.store.StoreManager;
 import org.datanucleus.store.StorePersistenceHandler;
@@ -26,12 +41,35 @@ import org.datanucleus.store.StorePersistenceHandler;
 /**
  * Persistence handler for federated datastores.
  * Distributes the inserts/updates/deletes/fetches to the appropriate datastore.
+ * Where multiple objects are passed in, they are split by datastore and each datastore is passed its objects in a single call,
+ * so it can use its own batching. When the objects are in multiple datastores, the federation has an executor
+ * (see "datanucleus.federation.maxThreads") and the ExecutionContext is multithreaded and not using JTA, then the datastores are processed
+ * concurrently; otherwise they are processed in turn on the calling thread, so they use the connections and transaction of that thread.
+ * A batch (see {@link #batchStart(ExecutionContext, PersistenceBatchType)}) is only started in the datastores that an operation of the
+ * batch is performed on.
  */
 public class FederatedPersistenceHandler implements StorePersistenceHandler
 {
     /** Manager for the store. */
     FederatedStoreManager storeMgr;
 
+    /** Batches in progress, keyed by their ExecutionContext. */
+    private final Map<ExecutionContext, Batch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * A batch of operations of an ExecutionContext, with the StoreManagers that the batch has been started in.
+     */
+    private static class Batch
+    {
+        final PersistenceBatchType type;
+        final Set<StoreManager> storeMgrs = new LinkedHashSet<>();
+
+        Batch(PersistenceBatchType type)
+        {
+            this.type = type;
+        }
+    }
+
     /**
      * Constructor.
      * @param storeMgr StoreManager
@@ -61,11 +99,16 @@ public class FederatedPersistenceHandler implements StorePersistenceHandler
      */
     public void insertObjects(DNStateManager... sms)
     {
-        // TODO Support splitting the array into the respective datastore
-        for (int i=0;i<sms.length;i++)
-        {
-            insertObject(sms[i]);
-        }
+        performForStoreManagers(sms, (handler, storeSMs) -> handler.insertObjects(storeSMs));
+    }
+
+    /* (non-Javadoc)
+     * @see org.datanucleus.store.StorePersistenceHandler#updateObjects(int[], org.datanucleus.state.DNStateManager[])
+     */
+    @Override
+    public void updateObjects(int[] fieldNumbers, DNStateManager... sms)
+    {
+        performForStoreManagers(sms, (handler, storeSMs) -> handler.updateObjects(fieldNumbers, storeSMs));
     }
 
     /* (non-Javadoc)
@@ -73,11 +116,120 @@ public class FederatedPersistenceHandler implements StorePersistenceHandler
      */
     public void deleteObjects(DNStateManager... sms)
     {
-        // TODO Support splitting the array into the respective datastore
-        for (int i=0;i<sms.length;i++)
+        performForStoreManagers(sms, (handler, storeSMs) -> handler.deleteObjects(storeSMs));
+    }
+
+    /**
+     * Method to split the provided StateManagers by the StoreManager of their class, and perform the operation on the persistence
+     * handler of each StoreManager with its StateManagers. When more than one StoreManager is involved, the federation has an
+     * executor, and the ExecutionContext is multithreaded and not using JTA, the StoreManagers are processed concurrently,
+     * with this method returning when all have completed.
+     * @param sms StateManagers
+     * @param operation The operation to perform for each persistence handler
+     */
+    protected void performForStoreManagers(DNStateManager[] sms, BiConsumer<StorePersistenceHandler, DNStateManager[]> operation)
+    {
+        if (sms == null || sms.length == 0)
         {
-            deleteObject(sms[i]);
+            return;
         }
+
+        Map<StoreManager, List<DNStateManager>> smsByStoreMgr = new LinkedHashMap<>();
+        for (DNStateManager sm : sms)
+        {
+            smsByStoreMgr.computeIfAbsent(storeMgr.getStoreManagerForClass(sm.getClassMetaData()), k -> new ArrayList<>()).add(sm);
+        }
+
+        ExecutionContext ec = sms[0].getExecutionContext();
+        ExecutorService executor = smsByStoreMgr.size() > 1 && isConcurrent(ec) ? storeMgr.getExecutorService() : null;
+        if (executor == null)
+        {
+            for (Map.Entry<StoreManager, List<DNStateManager>> entry : smsByStoreMgr.entrySet())
+            {
+                List<DNStateManager> storeSMs = entry.getValue();
+                operation.accept(getPersistenceHandler(entry.getKey(), ec), storeSMs.toArray(new DNStateManager[storeSMs.size()]));
+            }
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(smsByStoreMgr.size());
+        for (Map.Entry<StoreManager, List<DNStateManager>> entry : smsByStoreMgr.entrySet())
+        {
+            List<DNStateManager> storeSMs = entry.getValue();
+            StorePersistenceHandler handler = getPersistenceHandler(entry.getKey(), ec);
+            futures.add(executor.submit(() -> operation.accept(handler, storeSMs.toArray(new DNStateManager[storeSMs.size()]))));
+        }
+
+        // Wait for all datastores to complete, and then report the first failure (if any)
+        RuntimeException failure = null;
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (ExecutionException ee)
+            {
+                if (failure == null)
+                {
+                    Throwable cause = ee.getCause();
+                    failure = cause instanceof RuntimeException ? (RuntimeException)cause : new NucleusException(cause.getMessage(), cause);
+                }
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+                if (failure == null)
+                {
+                    failure = new NucleusException("Interrupted while waiting for datastore operations to complete", ie);
+                }
+            }
+        }
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * Whether the operations of the specified ExecutionContext can be performed on multiple datastores concurrently.
+     * This requires the ExecutionContext to be multithreaded, and not use JTA since the JTA transaction (and the connections
+     * enlisted in it) are bound to the calling thread.
+     * @param ec ExecutionContext
+     * @return Whether the datastores can be processed concurrently
+     */
+    protected boolean isConcurrent(ExecutionContext ec)
+    {
+        if (ec == null || !ec.getMultithreaded())
+        {
+            return false;
+        }
+        String txType = storeMgr.getNucleusContext().getConfiguration().getStringProperty(PropertyNames.PROPERTY_TRANSACTION_TYPE);
+        return !TransactionType.JTA.toString().equalsIgnoreCase(txType);
+    }
+
+    /**
+     * Accessor for the persistence handler of the specified datastore to perform an operation of the ExecutionContext with.
+     * If the ExecutionContext has a batch in progress that is not yet started in this datastore then it is started.
+     * @param datastoreMgr StoreManager of the datastore
+     * @param ec ExecutionContext
+     * @return The persistence handler
+     */
+    protected StorePersistenceHandler getPersistenceHandler(StoreManager datastoreMgr, ExecutionContext ec)
+    {
+        StorePersistenceHandler handler = datastoreMgr.getPersistenceHandler();
+        Batch batch = ec != null ? batches.get(ec) : null;
+        if (batch != null)
+        {
+            synchronized (batch)
+            {
+                if (batch.storeMgrs.add(datastoreMgr))
+                {
+                    handler.batchStart(ec, batch.type);
+                }
+            }
+        }
+        return handler;
     }
 
     /* (non-Javadoc)
@@ -85,8 +237,8 @@ public class FederatedPersistenceHandler implements StorePersistenceHandler
      */
     public void batchStart(ExecutionContext ec, PersistenceBatchType batchType)
     {
-        // TODO Auto-generated method stub
-        
+        // Started in each datastore when an operation of the batch is first performed there
+        batches.put(ec, new Batch(batchType));
     }
 
     /* (non-Javadoc)
@@ -94,8 +246,17 @@ public class FederatedPersistenceHandler implements StorePersistenceHandler
      */
     public void batchEnd(ExecutionContext ec, PersistenceBatchType type)
     {
-        // TODO Auto-generated method stub
-        
+        Batch batch = batches.remove(ec);
+        if (batch != null)
+        {
+            synchronized (batch)
+            {
+                for (StoreManager datastoreMgr : batch.storeMgrs)
+                {
+                    datastoreMgr.getPersistenceHandler().batchEnd(ec, type);
+                }
+            }
+        }
     }
 
     /* (non-Javadoc)
@@ -104,7 +265,7 @@ public class FederatedPersistenceHandler implements StorePersistenceHandler
     public void insertObject(DNStateManager sm)
     {
         StoreManager classStoreMgr = storeMgr.getStoreManagerForClass(sm.getClassMetaData());
-        classStoreMgr.getPersistenceHandler().insertObject(sm);
+        getPersistenceHandler(classStoreMgr, sm.getExecutionContext()).insertObject(sm);
     }
 
     /* (non-Javadoc)
@@ -113,7 +274,7 @@ public class FederatedPersistenceHandler implements StorePersistenceHandler
     public void updateObject(DNStateManager sm, int[] fieldNumbers)
     {
         StoreManager classStoreMgr = storeMgr.getStoreManagerForClass(sm.getClassMetaData());
-        classStoreMgr.getPersistenceHandler().updateObject(sm, fieldNumbers);
+        getPersistenceHandler(classStoreMgr, sm.getExecutionContext()).updateObject(sm, fieldNumbers);
     }
 
     /* (non-Javadoc)
@@ -122,7 +283,7 @@ public class FederatedPersistenceHandler implements StorePersistenceHandler
     public void deleteObject(DNStateManager sm)
     {
         StoreManager classStoreMgr = storeMgr.getStoreManagerForClass(sm.getClassMetaData());
-        classStoreMgr.getPersistenceHandler().deleteObject(sm);
+        getPersistenceHandler(classStoreMgr, sm.getExecutionContext()).deleteObject(sm);
     }
 
     /* (non-Javadoc)
@@ -140,11 +301,7 @@ public class FederatedPersistenceHandler implements StorePersistenceHandler
     @Override
     public void fetchObjects(int[] fieldNumbers, DNStateManager... sms)
     {
-        // Override this to provide bulk fetching of the same fields from multiple objects
-        for (DNStateManager sm : sms)
-        {
-            fetchObject(sm, fieldNumbers);
-        }
+        performForStoreManagers(sms, (handler, storeSMs) -> handler.fetchObjects(fieldNumbers, storeSMs));
     }
 
     /* (non-Javadoc)
@@ -161,8 +318,7 @@ public class FederatedPersistenceHandler implements StorePersistenceHandler
      */
     public void locateObjects(DNStateManager[] sms)
     {
-        StoreManager classStoreMgr = storeMgr.getStoreManagerForClass(sms[0].getClassMetaData());
-        classStoreMgr.getPersistenceHandler().locateObjects(sms);
+        performForStoreManagers(sms, (handler, storeSMs) -> handler.locateObjects(storeSMs));
     }
 
     /* (non-Javadoc)
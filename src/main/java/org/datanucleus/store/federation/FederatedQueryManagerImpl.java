@@ -65,6 +65,11 @@ public class FederatedQueryManagerImpl extends QueryManagerImpl
         // Find the query support for this language and this datastore
         if (query == null)
         {
+            if (languageImpl.equals(QueryLanguage.JDOQL.name()))
+            {
+                // Federated JDOQL query decides on the StoreManager(s) when executed
+                return storeMgr.newQuery(languageImpl, ec);
+            }
             // TODO We don't have candidate so don't know the StoreManager to use
             throw new NucleusException("Not yet supported for queries with unknown candidate");
         }
@@ -84,6 +89,11 @@ public class FederatedQueryManagerImpl extends QueryManagerImpl
             if (candidateName != null)
             {
                 ClassLoaderResolver clr = nucleusCtx.getClassLoaderResolver(null);
+                if (((FederatedStoreManager)storeMgr).getStoreManagersForClass(candidateName, true, clr).size() > 1)
+                {
+                    // Candidate hierarchy spans multiple datastores
+                    return new FederatedJDOQLQuery(storeMgr, ec, queryString);
+                }
                 AbstractClassMetaData cmd = nucleusCtx.getMetaDataManager().getMetaDataForClass(candidateName, clr);
                 StoreManager classStoreMgr = ((FederatedStoreManager)storeMgr).getStoreManagerForClass(cmd);
                 return classStoreMgr.newQuery(languageImpl, ec, (String)query);
@@ -22,9 +22,13 @@ import java.io.PrintStream;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.datanucleus.ClassLoaderResolver;
 import org.datanucleus.ExecutionContext;
@@ -62,6 +66,7 @@ import org.datanucleus.store.valuegenerator.ValueGenerationManager;
 import org.datanucleus.transaction.TransactionUtils;
 import org.datanucleus.util.NucleusLogger;
 import org.datanucleus.util.StringUtils;
+import org.datanucleus.util.ThreadPoolUtils;
 
 /**
  * A federated StoreManager orchestrates the persistence/retrieval for multiple datastores.
@@ -97,6 +102,9 @@ public class FederatedStoreManager implements StoreManager
     /** Query Manager. Lazy initialised, so use getQueryManager() to access. */
     protected QueryManager queryMgr = null;
 
+    /** Executor for performing operations on multiple datastores concurrently. Lazy initialised, so use getExecutorService() to access. */
+    protected ExecutorService executorService = null;
+
     public FederatedStoreManager(ClassLoaderResolver clr, PersistenceNucleusContext nucleusContext)
     {
         this.nucleusContext = nucleusContext;
@@ -143,6 +151,20 @@ public class FederatedStoreManager implements StoreManager
         this.persistenceHandler = new FederatedPersistenceHandler(this);
     }
 
+    /**
+     * Constructor for a federation of the specified (already created) StoreManagers.
+     * @param nucleusContext Nucleus context
+     * @param primaryStoreMgr The primary StoreManager
+     * @param secondaryStoreMgrMap The secondary StoreManagers, keyed by the datastore name (if any)
+     */
+    protected FederatedStoreManager(PersistenceNucleusContext nucleusContext, StoreManager primaryStoreMgr, Map<String, StoreManager> secondaryStoreMgrMap)
+    {
+        this.nucleusContext = nucleusContext;
+        this.primaryStoreMgr = primaryStoreMgr;
+        this.secondaryStoreMgrMap = secondaryStoreMgrMap;
+        this.persistenceHandler = new FederatedPersistenceHandler(this);
+    }
+
     public PersistenceNucleusContext getNucleusContext()
     {
         return nucleusContext;
@@ -185,6 +207,12 @@ public class FederatedStoreManager implements StoreManager
 
         persistenceHandler.close();
 
+        if (executorService != null)
+        {
+            executorService.shutdown();
+            executorService = null;
+        }
+
         if (queryMgr != null)
         {
             queryMgr.close();
@@ -234,6 +262,49 @@ public class FederatedStoreManager implements StoreManager
         return getStoreManagerForClass(cmd);
     }
 
+    /**
+     * Accessor for the StoreManagers holding objects of the specified class (and optionally its subclasses), together with the classes
+     * to use as query candidates for each. For a StoreManager the candidates are those classes of the hierarchy that are persisted to it
+     * but whose superclass (up to the specified class) is not, so querying each of them including subclasses covers the objects of
+     * the hierarchy in that datastore.
+     * @param className Name of the class
+     * @param subclasses Whether to include subclasses
+     * @param clr ClassLoader resolver
+     * @return The candidate class names, keyed by the StoreManager
+     */
+    public Map<StoreManager, List<String>> getStoreManagersForClass(String className, boolean subclasses, ClassLoaderResolver clr)
+    {
+        Map<StoreManager, List<String>> candidatesByStoreMgr = new LinkedHashMap<>();
+        MetaDataManager mmgr = nucleusContext.getMetaDataManager();
+        AbstractClassMetaData cmd = mmgr.getMetaDataForClass(className, clr);
+        candidatesByStoreMgr.computeIfAbsent(getStoreManagerForClass(cmd), k -> new ArrayList<>()).add(className);
+        if (subclasses)
+        {
+            String[] subclassNames = mmgr.getSubclassesForClass(className, true);
+            if (subclassNames != null)
+            {
+                for (String subclassName : subclassNames)
+                {
+                    AbstractClassMetaData subCmd = mmgr.getMetaDataForClass(subclassName, clr);
+                    StoreManager subStoreMgr = getStoreManagerForClass(subCmd);
+
+                    boolean queriedViaSuperclass = false;
+                    AbstractClassMetaData superCmd = subCmd.getSuperAbstractClassMetaData();
+                    while (superCmd != null && !queriedViaSuperclass)
+                    {
+                        queriedViaSuperclass = getStoreManagerForClass(superCmd) == subStoreMgr;
+                        superCmd = superCmd.getFullClassName().equals(className) ? null : superCmd.getSuperAbstractClassMetaData();
+                    }
+                    if (!queriedViaSuperclass)
+                    {
+                        candidatesByStoreMgr.computeIfAbsent(subStoreMgr, k -> new ArrayList<>()).add(subclassName);
+                    }
+                }
+            }
+        }
+        return candidatesByStoreMgr;
+    }
+
     public void manageClasses(ClassLoaderResolver clr, String... classNames)
     {
         if (classNames != null)
@@ -245,6 +316,42 @@ public class FederatedStoreManager implements StoreManager
         }
     }
 
+    /**
+     * Accessor for all StoreManagers of the federation, the primary first.
+     * @return The StoreManagers
+     */
+    public List<StoreManager> getStoreManagers()
+    {
+        List<StoreManager> storeMgrs = new ArrayList<>();
+        storeMgrs.add(primaryStoreMgr);
+        if (secondaryStoreMgrMap != null)
+        {
+            storeMgrs.addAll(secondaryStoreMgrMap.values());
+        }
+        return storeMgrs;
+    }
+
+    /**
+     * Accessor for the executor to use for performing operations on multiple datastores concurrently.
+     * Uses a pool with the number of threads specified by "datanucleus.federation.maxThreads"; when this is not positive then
+     * returns null, and operations on multiple datastores are performed in turn.
+     * @return The executor (if any)
+     */
+    public synchronized ExecutorService getExecutorService()
+    {
+        if (executorService == null)
+        {
+            int maxThreads = nucleusContext.getConfiguration().getIntProperty(PropertyNames.PROPERTY_FEDERATION_MAX_THREADS);
+            if (maxThreads <= 0)
+            {
+                return null;
+            }
+
+            executorService = ThreadPoolUtils.newFixedThreadPool("DataNucleus-Federation", maxThreads);
+        }
+        return executorService;
+    }
+
     public NamingFactory getNamingFactory()
     {
         return primaryStoreMgr.getNamingFactory();
@@ -328,6 +435,11 @@ public class FederatedStoreManager implements StoreManager
     @Override
     public Query newQuery(String language, ExecutionContext ec)
     {
+        if (secondaryStoreMgrMap != null && QueryLanguage.JDOQL.name().equalsIgnoreCase(language))
+        {
+            // Candidate not yet known, so decide on the StoreManager(s) at execution
+            return new FederatedJDOQLQuery(this, ec);
+        }
         return primaryStoreMgr.newQuery(language, ec);
     }
 
@@ -358,6 +470,12 @@ public class FederatedStoreManager implements StoreManager
         StoreManager storeMgr = primaryStoreMgr;
         if (candidateClassName != null)
         {
+            if (secondaryStoreMgrMap != null && QueryLanguage.JDOQL.name().equalsIgnoreCase(language) &&
+                getStoreManagersForClass(candidateClassName, true, ec.getClassLoaderResolver()).size() > 1)
+            {
+                // Candidate hierarchy spans multiple datastores, so query each of them at execution
+                return new FederatedJDOQLQuery(this, ec, queryString);
+            }
             storeMgr = getStoreManagerForClass(candidateClassName, ec.getClassLoaderResolver());
         }
         return storeMgr.newQuery(language, ec, queryString);
@@ -369,6 +487,10 @@ public class FederatedStoreManager implements StoreManager
     @Override
     public Query newQuery(String language, ExecutionContext ec, Query q)
     {
+        if (q instanceof FederatedJDOQLQuery)
+        {
+            return new FederatedJDOQLQuery(this, ec, (FederatedJDOQLQuery)q);
+        }
         return getStoreManagerForClass(q.getCandidateClassName(), ec.getClassLoaderResolver()).newQuery(language, ec, q);
     }
 
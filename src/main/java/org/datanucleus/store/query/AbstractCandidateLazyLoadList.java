@@ -37,7 +37,12 @@ public abstract class AbstractCandidateLazyLoadList extends AbstractLazyLoadList
 
     public AbstractCandidateLazyLoadList(Class cls, boolean subclasses, ExecutionContext ec, String cacheType)
     {
-        super(cacheType);
+        this(cls, subclasses, ec, cacheType, 1);
+    }
+
+    public AbstractCandidateLazyLoadList(Class cls, boolean subclasses, ExecutionContext ec, String cacheType, int pageSize)
+    {
+        super(cacheType, pageSize);
         this.ec = ec;
         this.cmds = MetaDataUtils.getMetaDataForCandidates(cls, subclasses, ec);
     }
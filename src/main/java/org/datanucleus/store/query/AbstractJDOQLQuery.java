@@ -17,6 +17,7 @@ Contributors:
 **********************************************************************/
 package org.datanucleus.store.query;
 
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -78,6 +79,8 @@ public abstract class AbstractJDOQLQuery extends AbstractJavaQuery
         toExclNo = q!=null ? q.toExclNo : Long.MAX_VALUE;
         fromInclParam = q!=null ? q.fromInclParam : null;
         toExclParam = q!=null ? q.toExclParam : null;
+        literalParameters = q!=null && q.literalParameters != null ? new HashMap<>(q.literalParameters) : null;
+        parameterisedFilter = q!=null ? q.parameterisedFilter : null;
         if (q != null)
         {
             ignoreCache = q.ignoreCache;
@@ -214,20 +217,7 @@ public abstract class AbstractJDOQLQuery extends AbstractJavaQuery
      */
     protected String getQueryCacheKey() 
     {
-        String queryCacheKey = toString();
-
-        if (getFetchPlan() != null)
-        {
-            queryCacheKey += (" " + getFetchPlan().toString());
-        }
-
-        String multiTenancyId = ec.getTenantId();
-        if (multiTenancyId != null)
-        {
-            queryCacheKey += (" " + multiTenancyId);
-        }
-
-        return queryCacheKey;
+        return getFingerprint().getCompilationKey();
 	}
 
     /**
@@ -237,11 +227,16 @@ public abstract class AbstractJDOQLQuery extends AbstractJavaQuery
      */
     public String getSingleStringQuery()
     {
-        if (singleString != null)
+        if (singleString == null)
         {
-            return singleString;
+            singleString = getSingleStringQuery(filter);
         }
+        return singleString;
+    }
 
+    @Override
+    protected String getSingleStringQuery(String queryFilter)
+    {
         StringBuilder str = new StringBuilder();
         if (type == QueryType.BULK_UPDATE)
         {
@@ -286,9 +281,9 @@ public abstract class AbstractJDOQLQuery extends AbstractJavaQuery
                 str.append("EXCLUDE SUBCLASSES ");
             }
         }
-        if (filter != null)
+        if (queryFilter != null)
         {
-            str.append("WHERE " + dereferenceFilter(filter) + " ");
+            str.append("WHERE " + dereferenceFilter(queryFilter) + " ");
         }
         if (explicitVariables != null)
         {
@@ -324,8 +319,7 @@ public abstract class AbstractJDOQLQuery extends AbstractJavaQuery
             str.append("RANGE " + fromInclNo + "," + toExclNo + " ");
         }
 
-        singleString = str.toString().trim();
-        return singleString;
+        return str.toString().trim();
     }
 
     /* (non-Javadoc)
@@ -339,6 +333,8 @@ public abstract class AbstractJDOQLQuery extends AbstractJavaQuery
             return;
         }
 
+        parameteriseLiterals(parameterValues);
+
         QueryManager queryMgr = getQueryManager();
         String queryCacheKey = getQueryCacheKey();
         if (useCaching() && queryCacheKey != null)
@@ -367,7 +363,7 @@ public abstract class AbstractJDOQLQuery extends AbstractJavaQuery
             NucleusLogger.QUERY.debug(Localiser.msg("021044", getLanguage(), getSingleStringQuery()));
         }
         JDOQLCompiler compiler = new JDOQLCompiler(ec.getNucleusContext(), ec.getClassLoaderResolver(), from, candidateClass, candidateCollection, 
-            this.filter, getParsedImports(), this.ordering, this.result, this.grouping, this.having, explicitParameters, explicitVariables, this.update);
+            getCompilationFilter(), getParsedImports(), this.ordering, this.result, this.grouping, this.having, explicitParameters, explicitVariables, this.update);
         if (getBooleanExtensionProperty(EXTENSION_COMPILE_OPTIMISE_VAR_THIS, false))
         {
             compiler.setOption(EXTENSION_COMPILE_OPTIMISE_VAR_THIS, true);
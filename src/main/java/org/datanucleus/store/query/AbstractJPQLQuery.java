@@ -17,6 +17,7 @@ Contributors:
 **********************************************************************/
 package org.datanucleus.store.query;
 
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -81,6 +82,8 @@ public abstract class AbstractJPQLQuery extends AbstractJavaQuery
         toExclNo = q!=null ? q.toExclNo : Long.MAX_VALUE;
         fromInclParam = q!=null ? q.fromInclParam : null;
         toExclParam = q!=null ? q.toExclParam : null;
+        literalParameters = q!=null && q.literalParameters != null ? new HashMap<>(q.literalParameters) : null;
+        parameterisedFilter = q!=null ? q.parameterisedFilter : null;
         if (q != null)
         {
             ignoreCache = q.ignoreCache;
@@ -164,33 +167,28 @@ public abstract class AbstractJPQLQuery extends AbstractJavaQuery
      */
     protected String getQueryCacheKey()
     {
-        String queryCacheKey = toString();
+        return getFingerprint().getCompilationKey();
+    }
+
+    @Override
+    protected String getFingerprintString()
+    {
+        String queryString = super.getFingerprintString();
 
 		// JPQL single string doesn't include range so add it since (datastore) compile will depend on it if evaluated in datastore
         if (range != null)
         {
-            queryCacheKey += (" RANGE " + range);
+            queryString += (" RANGE " + range);
         }
         else if (fromInclNo > 0 || toExclNo != Long.MAX_VALUE)
         {
-            queryCacheKey += (" RANGE " + fromInclNo + "," + toExclNo);
-        }
-        if (getFetchPlan() != null)
-        {
-            queryCacheKey += (" " + getFetchPlan().toString());
+            queryString += (" RANGE " + fromInclNo + "," + toExclNo);
         }
         if (!subclasses)
         {
-            queryCacheKey += " EXCLUDE SUBCLASSES";
-        }
-
-        String multiTenancyId = ec.getTenantId();
-        if (multiTenancyId != null)
-        {
-            queryCacheKey += (" " + multiTenancyId);
+            queryString += " EXCLUDE SUBCLASSES";
         }
-
-        return queryCacheKey;
+        return queryString;
     }
 
 	/**
@@ -200,11 +198,16 @@ public abstract class AbstractJPQLQuery extends AbstractJavaQuery
      */
     public String getSingleStringQuery()
     {
-        if (singleString != null)
+        if (singleString == null)
         {
-            return singleString;
+            singleString = getSingleStringQuery(filter);
         }
+        return singleString;
+    }
 
+    @Override
+    protected String getSingleStringQuery(String queryFilter)
+    {
         StringBuilder str = new StringBuilder();
         if (type == QueryType.BULK_INSERT)
         {
@@ -215,17 +218,17 @@ public abstract class AbstractJPQLQuery extends AbstractJavaQuery
         else if (type == QueryType.BULK_UPDATE)
         {
             str.append("UPDATE ").append(from).append(" SET ").append(update).append(' ');
-            if (!StringUtils.isWhitespace(filter))
+            if (!StringUtils.isWhitespace(queryFilter))
             {
-                str.append("WHERE ").append(dereferenceFilter(filter));
+                str.append("WHERE ").append(dereferenceFilter(queryFilter));
             }
         }
         else if (type == QueryType.BULK_DELETE)
         {
             str.append("DELETE FROM ").append(from).append(' ');
-            if (!StringUtils.isWhitespace(filter))
+            if (!StringUtils.isWhitespace(queryFilter))
             {
-                str.append("WHERE ").append(dereferenceFilter(filter));
+                str.append("WHERE ").append(dereferenceFilter(queryFilter));
             }
         }
         else
@@ -248,9 +251,9 @@ public abstract class AbstractJPQLQuery extends AbstractJavaQuery
             }
 
             str.append("FROM " + from + " ");
-            if (filter != null)
+            if (queryFilter != null)
             {
-                str.append("WHERE " + dereferenceFilter(filter)).append(' ');
+                str.append("WHERE " + dereferenceFilter(queryFilter)).append(' ');
             }
             if (grouping != null)
             {
@@ -266,8 +269,7 @@ public abstract class AbstractJPQLQuery extends AbstractJavaQuery
             }
         }
 
-        singleString = str.toString().trim();
-        return singleString;
+        return str.toString().trim();
     }
 
     /* (non-Javadoc)
@@ -281,6 +283,8 @@ public abstract class AbstractJPQLQuery extends AbstractJavaQuery
             return;
         }
 
+        parameteriseLiterals(parameterValues);
+
         QueryManager queryMgr = getQueryManager();
         String queryCacheKey = getQueryCacheKey();
         if (useCaching() && queryCacheKey != null)
@@ -312,7 +316,7 @@ public abstract class AbstractJPQLQuery extends AbstractJavaQuery
             from += " this";
         }
         JavaQueryCompiler compiler = new JPQLCompiler(ec.getNucleusContext(), ec.getClassLoaderResolver(), from, candidateClass, candidateCollection, 
-            this.filter, getParsedImports(), this.ordering, this.result, this.grouping, this.having, explicitParameters, update);
+            getCompilationFilter(), getParsedImports(), this.ordering, this.result, this.grouping, this.having, explicitParameters, update);
         if (getBooleanExtensionProperty(EXTENSION_JPQL_STRICT, false))
         {
             compiler.setOption(EXTENSION_JPQL_STRICT, "true");
@@ -18,11 +18,14 @@ Contributors:
 package org.datanucleus.store.query;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
 import org.datanucleus.ExecutionContext;
+import org.datanucleus.metadata.QueryLanguage;
 import org.datanucleus.store.StoreManager;
+import org.datanucleus.util.NucleusLogger;
 import org.datanucleus.util.StringUtils;
 
 /**
@@ -91,6 +94,50 @@ public abstract class AbstractJavaQuery<T> extends Query<T>
         singleString = null;
     }
 
+    /**
+     * Method to replace the literals in the filter by implicit parameters (when enabled by extension), so that queries that only
+     * differ in their literal values share the same compilation. Not applied to a query that has parameters or subqueries.
+     * The filter of the query is retained, and the parameterised form of it is compiled (and used for the fingerprint) instead.
+     * The values of the literals are added to the supplied parameter values, and are bound on all subsequent executions.
+     * @param parameterValues Values for any parameters
+     */
+    protected void parameteriseLiterals(Map parameterValues)
+    {
+        if (filter == null || literalParameters != null || explicitParameters != null || subqueries != null ||
+            (implicitParameters != null && !implicitParameters.isEmpty()) || (parameterValues != null && !parameterValues.isEmpty()) ||
+            !getBooleanExtensionProperty(EXTENSION_PARAMETERISE_LITERALS, false))
+        {
+            return;
+        }
+
+        Map<String, Object> literals = new HashMap<>();
+        String parameterisedFilter = QueryUtils.parameteriseLiterals(filter, QueryLanguage.JPQL.name().equals(getLanguage()), literals);
+        if (parameterisedFilter != null)
+        {
+            if (NucleusLogger.QUERY.isDebugEnabled())
+            {
+                NucleusLogger.QUERY.debug("Query filter \"" + filter + "\" has literals replaced by parameters as \"" + parameterisedFilter + "\"");
+            }
+            this.parameterisedFilter = parameterisedFilter;
+            literalParameters = literals;
+            fingerprint = null;
+            if (parameterValues != null)
+            {
+                parameterValues.putAll(literals);
+            }
+        }
+    }
+
+    /**
+     * Accessor for the filter to compile, being the filter with its literals replaced by parameters when they have been
+     * parameterised, otherwise the filter.
+     * @return The filter to compile
+     */
+    protected String getCompilationFilter()
+    {
+        return parameterisedFilter != null ? parameterisedFilter : filter;
+    }
+
     /**
      * Method to generate the generic compilation of this query.
      * @param parameterValues Values for any parameters
@@ -119,6 +166,24 @@ public abstract class AbstractJavaQuery<T> extends Query<T>
      */
     public abstract String getSingleStringQuery();
 
+    /**
+     * Accessor for a single string form of the query with the specified filter in place of the filter of the query.
+     * @param queryFilter The filter
+     * @return Single string form of the query
+     */
+    protected abstract String getSingleStringQuery(String queryFilter);
+
+    /**
+     * Accessor for the string form of this query to use in its fingerprint. Where the literals of the filter have been replaced
+     * by parameters this uses the parameterised form of the filter, so that queries only differing in their literals share it.
+     * @return The string form of the query
+     */
+    @Override
+    protected String getFingerprintString()
+    {
+        return parameterisedFilter != null ? getSingleStringQuery(parameterisedFilter) : super.getFingerprintString();
+    }
+
     /**
      * Stringifier method
      * @return Single-string form of this query.
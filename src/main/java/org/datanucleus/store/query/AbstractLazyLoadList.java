@@ -17,6 +17,7 @@ Contributors:
 **********************************************************************/
 package org.datanucleus.store.query;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -34,6 +35,8 @@ import org.datanucleus.util.Localiser;
  * Needs to be extended to implement the <code>retrieveObjectForIndex()</code> method to retrieve the object at the specified index 
  * from whatever datasource is being used, and to implement the <code>getSize()</code> method to return the size of the list. 
  * The "datasource" could be results for a query, or a connection to a datastore, or whatever ... just a source of objects.
+ * Where a page size greater than 1 is specified the objects are retrieved a page at a time, using <code>retrieveObjectsForIndexRange()</code>,
+ * which should be overridden to retrieve the objects of a page in one operation where the datasource supports it.
  * TODO Change Localised message numbers to be generic
  * @param <E> Type of the element of this list
  */
@@ -45,12 +48,33 @@ public abstract class AbstractLazyLoadList<E> implements List<E>
     /** Cached size of the list. -1 when not known. */
     protected int size = -1;
 
+    /** Number of objects to retrieve at once (1 = retrieve each object when accessed). */
+    protected int pageSize = 1;
+
+    /** Index of the first object of the current page (-1 if no page). */
+    private int pageStart = -1;
+
+    /** Objects of the current page. */
+    private List<E> page = null;
+
     /**
      * Constructor for a lazy load list.
      * @param cacheType Type of caching of objects in the list
      */
     public AbstractLazyLoadList(String cacheType)
     {
+        this(cacheType, 1);
+    }
+
+    /**
+     * Constructor for a lazy load list.
+     * @param cacheType Type of caching of objects in the list
+     * @param pageSize Number of objects to retrieve at once (1 = retrieve each object when accessed)
+     */
+    public AbstractLazyLoadList(String cacheType, int pageSize)
+    {
+        this.pageSize = Math.max(1, pageSize);
+
         // Process any supported extensions
         if (cacheType != null)
         {
@@ -90,6 +114,59 @@ public abstract class AbstractLazyLoadList<E> implements List<E>
      */
     protected abstract E retrieveObjectForIndex(int index);
 
+    /**
+     * Accessor to retrieve the objects for a range of indexes. Is called when the page size is greater than 1, and the object
+     * at an index in the range is not currently cached. This implementation retrieves each object in turn, so should be overridden
+     * to retrieve the objects in one operation.
+     * @param startIndex The first index (inclusive)
+     * @param endIndex The last index (exclusive)
+     * @return The objects
+     */
+    protected List<E> retrieveObjectsForIndexRange(int startIndex, int endIndex)
+    {
+        List<E> objs = new ArrayList<>(endIndex - startIndex);
+        for (int i=startIndex;i<endIndex;i++)
+        {
+            objs.add(retrieveObjectForIndex(i));
+        }
+        return objs;
+    }
+
+    /**
+     * Convenience method to get the object at an index, taking it from the cache if present, otherwise retrieving it
+     * (or the page containing it) and caching it.
+     * @param index The list index
+     * @return The object
+     */
+    private E getObjectForIndex(int index)
+    {
+        if (itemsByIndex != null && itemsByIndex.containsKey(index))
+        {
+            return itemsByIndex.get(index);
+        }
+
+        E obj;
+        if (pageSize > 1)
+        {
+            int start = index - (index % pageSize);
+            if (start != pageStart)
+            {
+                page = retrieveObjectsForIndexRange(start, Math.min(start + pageSize, size()));
+                pageStart = start;
+            }
+            obj = page.get(index - pageStart);
+        }
+        else
+        {
+            obj = retrieveObjectForIndex(index);
+        }
+        if (itemsByIndex != null)
+        {
+            itemsByIndex.put(index, obj);
+        }
+        return obj;
+    }
+
     /**
      * Method to return the size of the list.
      * @return The size
@@ -169,17 +246,7 @@ public abstract class AbstractLazyLoadList<E> implements List<E>
     public E get(int index)
     {
         // TODO Add check on isOpen() and throw exception accordingly
-        if (itemsByIndex != null && itemsByIndex.containsKey(index))
-        {
-            return itemsByIndex.get(index);
-        }
-
-        E obj = retrieveObjectForIndex(index);
-        if (itemsByIndex != null)
-        {
-            itemsByIndex.put(index, obj);
-        }
-        return obj;
+        return getObjectForIndex(index);
     }
 
     /* (non-Javadoc)
@@ -300,14 +367,7 @@ public abstract class AbstractLazyLoadList<E> implements List<E>
         Object[] array = new Object[size()];
         for (int i=0;i<array.length;i++)
         {
-            if (itemsByIndex != null && itemsByIndex.containsKey(i))
-            {
-                array[i] = itemsByIndex.get(i);
-            }
-            else
-            {
-                array[i] = retrieveObjectForIndex(i);
-            }
+            array[i] = getObjectForIndex(i);
         }
         return array;
     }
@@ -330,14 +390,7 @@ public abstract class AbstractLazyLoadList<E> implements List<E>
 
         for (int i=0;i<ourSize;i++)
         {
-            if (itemsByIndex != null && itemsByIndex.containsKey(i))
-            {
-                array[i] = itemsByIndex.get(i);
-            }
-            else
-            {
-                array[i] = retrieveObjectForIndex(i);
-            }
+            array[i] = getObjectForIndex(i);
         }
 
         return (T[]) array;
@@ -387,16 +440,7 @@ public abstract class AbstractLazyLoadList<E> implements List<E>
                 throw new NoSuchElementException("No next element");
             }
 
-            if (itemsByIndex != null && itemsByIndex.containsKey(iteratorIndex))
-            {
-                return itemsByIndex.get(iteratorIndex);
-            }
-
-            E obj = retrieveObjectForIndex(iteratorIndex);
-            if (itemsByIndex != null)
-            {
-                itemsByIndex.put(iteratorIndex, obj);
-            }
+            E obj = getObjectForIndex(iteratorIndex);
             iteratorIndex++;
             return obj;
         }
@@ -424,18 +468,7 @@ public abstract class AbstractLazyLoadList<E> implements List<E>
             }
 
             iteratorIndex--;
-            if (itemsByIndex != null &&itemsByIndex.containsKey(iteratorIndex))
-            {
-                return itemsByIndex.get(iteratorIndex);
-            }
-
-            E obj = retrieveObjectForIndex(iteratorIndex);
-            if (itemsByIndex != null)
-            {
-                itemsByIndex.put(iteratorIndex, obj);
-            }
-            iteratorIndex++;
-            return obj;
+            return getObjectForIndex(iteratorIndex);
         }
 
         public int previousIndex()
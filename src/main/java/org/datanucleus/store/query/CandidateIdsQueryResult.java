@@ -24,9 +24,13 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.datanucleus.ExecutionContext;
 import org.datanucleus.exceptions.NucleusUserException;
+import org.datanucleus.util.NucleusLogger;
 import org.datanucleus.util.ConcurrentReferenceHashMap;
 import org.datanucleus.util.StringUtils;
 import org.datanucleus.util.ConcurrentReferenceHashMap.ReferenceType;
@@ -37,6 +41,11 @@ import org.datanucleus.util.ConcurrentReferenceHashMap.ReferenceType;
  * User can define the query extension "datanucleus.query.resultCache.type" to define the type of internal caching of objects once they are found.
  * User can also define whether the returned objects are validated against the datastore upon retrieval using the query extension 
  * "datanucleus.query.resultCache.validateObjects" (default=true).
+ * The objects can be found a page at a time, defining the page size using the query extension "datanucleus.query.resultPageSize"
+ * (default=1, meaning find each object when accessed). Each page is found with a single call to ExecutionContext.findObjectsById,
+ * so taken from the L1 cache, L2 cache, and then the datastore in one operation. Where the ExecutionContext is multithreaded
+ * the next page can be found in the background (using the read-ahead executor of the QueryManager) while the current page is consumed,
+ * using the query extension "datanucleus.query.resultReadAhead" (default=false).
  */
 public class CandidateIdsQueryResult<E> extends AbstractQueryResult<E>
 {
@@ -48,6 +57,24 @@ public class CandidateIdsQueryResult<E> extends AbstractQueryResult<E>
     /** Whether to validate the objects if getting from the cache. */
     boolean validateObjects = true;
 
+    /** Number of objects to find at once (1 = find each object when accessed). */
+    int pageSize = 1;
+
+    /** Whether to find the next page of objects in the background while the current page is consumed. */
+    boolean readAhead = false;
+
+    /** Index of the first object of the current page (-1 if no page). */
+    int pageStart = -1;
+
+    /** Objects of the current page. */
+    Object[] page = null;
+
+    /** Index of the first object of the page being found in the background (-1 if none). */
+    int readAheadPageStart = -1;
+
+    /** Page being found in the background. */
+    Future<Object[]> readAheadPage = null;
+
     public CandidateIdsQueryResult(Query query, List<Object> inputIds)
     {
         super(query);
@@ -57,6 +84,19 @@ public class CandidateIdsQueryResult<E> extends AbstractQueryResult<E>
         // Allow override of validate setting
         validateObjects = query.getBooleanExtensionProperty(Query.EXTENSION_RESULT_CACHE_VALIDATE_OBJECTS, true);
 
+        pageSize = Math.max(1, query.getIntExtensionProperty(Query.EXTENSION_RESULT_PAGE_SIZE, 1));
+        if (pageSize > 1 && query.getBooleanExtensionProperty(Query.EXTENSION_RESULT_READ_AHEAD, false))
+        {
+            if (query.getExecutionContext().getMultithreaded())
+            {
+                readAhead = true;
+            }
+            else
+            {
+                NucleusLogger.QUERY.debug("Query results will not be read ahead since the ExecutionContext is not multithreaded");
+            }
+        }
+
         // Cache the results in whatever form they are required
         String ext = (String)query.getExtension(Query.EXTENSION_RESULT_CACHE_TYPE);
         if (ext != null)
@@ -91,7 +131,9 @@ public class CandidateIdsQueryResult<E> extends AbstractQueryResult<E>
 
     protected void closeResults()
     {
-        // No results to close
+        discardReadAheadPage();
+        page = null;
+        pageStart = -1;
     }
 
     protected void closingConnection()
@@ -183,7 +225,7 @@ public class CandidateIdsQueryResult<E> extends AbstractQueryResult<E>
         else
         {
             ExecutionContext ec = query.getExecutionContext();
-            E obj = (E) ec.findObject(id, validateObjects, false, null);
+            E obj = (pageSize > 1) ? getObjectFromPage(ec, index) : (E) ec.findObject(id, validateObjects, false, null);
             if (results != null)
             {
                 results.put(index, obj);
@@ -192,6 +234,96 @@ public class CandidateIdsQueryResult<E> extends AbstractQueryResult<E>
         }
     }
 
+    /**
+     * Convenience method to get the object for a particular index from the page containing it, finding the objects
+     * of that page if it is not the current page (and starting to find the next page when reading ahead).
+     * @param ec ExecutionContext
+     * @param index The index
+     * @return The object
+     */
+    private E getObjectFromPage(ExecutionContext ec, int index)
+    {
+        int start = index - (index % pageSize);
+        if (start != pageStart)
+        {
+            Object[] objs = null;
+            if (readAheadPage != null && readAheadPageStart == start)
+            {
+                try
+                {
+                    objs = readAheadPage.get();
+                }
+                catch (InterruptedException | ExecutionException e)
+                {
+                    // Find the page here instead, reporting any problem with it
+                    NucleusLogger.QUERY.debug("Read-ahead of query results from index " + start + " failed : " + e.getMessage());
+                    if (e instanceof InterruptedException)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                readAheadPage = null;
+                readAheadPageStart = -1;
+            }
+            else
+            {
+                // Not accessing the results in order, so discard any page read ahead
+                discardReadAheadPage();
+            }
+            if (objs == null)
+            {
+                objs = findObjectsForPage(ec, start);
+            }
+            page = objs;
+            pageStart = start;
+
+            int nextStart = start + pageSize;
+            if (readAhead && nextStart < size)
+            {
+                readAheadPageStart = nextStart;
+                readAheadPage = query.getQueryManager().getReadAheadExecutor().submit(() -> findObjectsForPage(ec, nextStart));
+            }
+        }
+        return (E) page[index - pageStart];
+    }
+
+    /**
+     * Method to discard any page being found in the background. Waits for the find to complete (if started) so that
+     * the ExecutionContext is no longer in use by the find when the results are closed, or other objects are found.
+     */
+    private void discardReadAheadPage()
+    {
+        if (readAheadPage != null)
+        {
+            try
+            {
+                readAheadPage.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException | CancellationException e)
+            {
+                // Page is not used, so ignore
+            }
+            readAheadPage = null;
+            readAheadPageStart = -1;
+        }
+    }
+
+    /**
+     * Method to find the objects for the page starting at the specified index.
+     * @param ec ExecutionContext
+     * @param start Index of the first object of the page
+     * @return The objects of the page
+     */
+    private Object[] findObjectsForPage(ExecutionContext ec, int start)
+    {
+        int end = Math.min(start + pageSize, size);
+        return ec.findObjectsById(ids.subList(start, end).toArray(), validateObjects);
+    }
+
     /**
      * Iterator for results for this query.
      */
@@ -34,6 +34,7 @@ import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.datanucleus.ClassLoaderResolver;
+import org.datanucleus.Configuration;
 import org.datanucleus.ExecutionContext;
 import org.datanucleus.ExecutionContextListener;
 import org.datanucleus.FetchPlan;
@@ -72,15 +73,21 @@ public abstract class Query<T> implements Serializable, ExecutionContextListener
     public static final String EXTENSION_FLUSH_BEFORE_EXECUTION = PropertyNames.PROPERTY_QUERY_FLUSH_BEFORE_EXECUTE;
     public static final String EXTENSION_USE_FETCH_PLAN = PropertyNames.PROPERTY_QUERY_USE_FETCHPLAN;
     public static final String EXTENSION_RESULT_SIZE_METHOD = PropertyNames.PROPERTY_QUERY_RESULT_SIZE_METHOD;
+    public static final String EXTENSION_RESULT_PAGE_SIZE = PropertyNames.PROPERTY_QUERY_RESULT_PAGE_SIZE;
+    public static final String EXTENSION_RESULT_READ_AHEAD = PropertyNames.PROPERTY_QUERY_RESULT_READ_AHEAD;
     public static final String EXTENSION_LOAD_RESULTS_AT_COMMIT = PropertyNames.PROPERTY_QUERY_LOAD_RESULTS_AT_COMMIT;
     public static final String EXTENSION_RESULT_CACHE_TYPE = "datanucleus.query.resultCacheType".toLowerCase();
     public static final String EXTENSION_RESULT_CACHE_VALIDATE_OBJECTS = PropertyNames.PROPERTY_QUERY_RESULTCACHE_VALIDATEOBJECTS;
+    public static final String EXTENSION_RESULT_CACHE_EXPIRY_MILLIS = "datanucleus.query.resultCacheExpiryMillis".toLowerCase();
     public static final String EXTENSION_RESULTS_CACHED = PropertyNames.PROPERTY_QUERY_RESULTS_CACHED;
     public static final String EXTENSION_COMPILATION_CACHED = PropertyNames.PROPERTY_QUERY_COMPILATION_CACHED;
     public static final String EXTENSION_EVALUATE_IN_MEMORY = PropertyNames.PROPERTY_QUERY_EVALUATE_IN_MEMORY;
+    public static final String EXTENSION_EVALUATE_IN_MEMORY_PARALLEL_THRESHOLD = PropertyNames.PROPERTY_QUERY_EVALUATE_IN_MEMORY_PARALLEL_THRESHOLD;
+    public static final String EXTENSION_EVALUATE_IN_MEMORY_PREFETCH = PropertyNames.PROPERTY_QUERY_EVALUATE_IN_MEMORY_PREFETCH;
     public static final String EXTENSION_CLOSE_RESULTS_AT_EC_CLOSE = "datanucleus.query.closeResultsAtManagerClose".toLowerCase();
     public static final String EXTENSION_CHECK_UNUSED_PARAMETERS = PropertyNames.PROPERTY_QUERY_CHECK_UNUSED_PARAMS;
     public static final String EXTENSION_COMPILE_OPTIMISE_VAR_THIS = PropertyNames.PROPERTY_QUERY_COMPILE_OPTIMISE_VAR_THIS;
+    public static final String EXTENSION_PARAMETERISE_LITERALS = PropertyNames.PROPERTY_QUERY_PARAMETERISE_LITERALS;
 
     public static final String EXTENSION_UPDATE_ALL_CANDIDATE_FIELDS = "datanucleus.query.updateAllCandidateFields".toLowerCase();
 
@@ -219,6 +226,15 @@ public abstract class Query<T> implements Serializable, ExecutionContextListener
      */
     protected transient Map<Object, Object> implicitParameters = null;
 
+    /**
+     * Values of literals that have been replaced in the filter by implicit parameters, keyed by the parameter name.
+     * These are bound along with the input parameters on each execution.
+     */
+    protected Map<String, Object> literalParameters = null;
+
+    /** Form of the filter with its literals replaced by implicit parameters (see literalParameters), compiled in place of the filter. */
+    protected String parameterisedFilter = null;
+
     /** The imports definition. */
     protected transient Imports parsedImports = null;
 
@@ -228,6 +244,9 @@ public abstract class Query<T> implements Serializable, ExecutionContextListener
     /** Query compilation (when using the generic query compiler). */
     protected transient QueryCompilation compilation = null;
 
+    /** Fingerprint of this query, used for the cache keys. Discarded whenever the query is changed. */
+    protected transient QueryFingerprint fingerprint = null;
+
     /**
      * All query results obtained from this query.
      * This is required because the query can be executed multiple times changing
@@ -302,6 +321,45 @@ public abstract class Query<T> implements Serializable, ExecutionContextListener
         parsedImports = null;
         parameterNames = null;
         compilation = null;
+        fingerprint = null;
+    }
+
+    /**
+     * Accessor for the fingerprint of this query, used as the basis of the keys for the query caches.
+     * The fingerprint is created once, and only recreated when the query, its fetch plan groups or the tenant are changed.
+     * @return The fingerprint
+     */
+    public QueryFingerprint getFingerprint()
+    {
+        Set<String> fetchGroups = getFetchPlan() != null ? getFetchPlan().getGroups() : null;
+        String tenantId = ec.getTenantId();
+        QueryFingerprint fp = fingerprint;
+        if (fp == null || !fp.matches(fetchGroups, tenantId))
+        {
+            fp = new QueryFingerprint(getLanguage(), getFingerprintString(), fetchGroups, tenantId);
+            fingerprint = fp;
+        }
+        return fp;
+    }
+
+    /**
+     * Accessor for the fingerprint of this query with the specified parameter values.
+     * @param params The parameter values (or null if none)
+     * @return The fingerprint
+     */
+    public QueryFingerprint getFingerprint(Map params)
+    {
+        return getFingerprint().withParameters(params, ec.getApiAdapter());
+    }
+
+    /**
+     * Accessor for the string form of this query to use in its fingerprint. This should include anything that affects the
+     * compilation of the query. Defaults to the single-string form of the query.
+     * @return The string form of the query
+     */
+    protected String getFingerprintString()
+    {
+        return toString();
     }
 
     /**
@@ -675,6 +733,34 @@ public abstract class Query<T> implements Serializable, ExecutionContextListener
         return ec.getNucleusContext().getConfiguration().getBooleanProperty(name, resultIfNotSet);
     }
 
+    /**
+     * Convenience accessor to return whether an extension is set (or whether the persistence property
+     * of the same name is set), and what is its int value. Returns "resultIfNotSet" if not set.
+     * @param name The extension/property name
+     * @param resultIfNotSet The value to return if there is neither an extension nor a persistence property of the same name
+     * @return The int value
+     */
+    public int getIntExtensionProperty(String name, int resultIfNotSet)
+    {
+        if (extensions != null && extensions.containsKey(name))
+        {
+            Object value = extensions.get(name);
+            if (value instanceof Number)
+            {
+                return ((Number)value).intValue();
+            }
+            return Integer.valueOf((String)value);
+        }
+
+        Integer propVal = ec.getIntProperty(name);
+        if (propVal != null)
+        {
+            return propVal;
+        }
+        Configuration conf = ec.getNucleusContext().getConfiguration();
+        return conf.hasProperty(name) ? conf.getIntProperty(name) : resultIfNotSet;
+    }
+
     /**
      * Convenience accessor to return whether an extension is set (or whether the persistence property
      * of the same name is set), and what is its String value. Returns "resultIfNotSet" if not set.
@@ -709,14 +795,20 @@ public abstract class Query<T> implements Serializable, ExecutionContextListener
         extensions.add(EXTENSION_FLUSH_BEFORE_EXECUTION);
         extensions.add(EXTENSION_USE_FETCH_PLAN);
         extensions.add(EXTENSION_RESULT_SIZE_METHOD);
+        extensions.add(EXTENSION_RESULT_PAGE_SIZE);
+        extensions.add(EXTENSION_RESULT_READ_AHEAD);
         extensions.add(EXTENSION_LOAD_RESULTS_AT_COMMIT);
         extensions.add(EXTENSION_RESULT_CACHE_TYPE);
         extensions.add(EXTENSION_RESULT_CACHE_VALIDATE_OBJECTS);
+        extensions.add(EXTENSION_RESULT_CACHE_EXPIRY_MILLIS);
         extensions.add(EXTENSION_RESULTS_CACHED);
         extensions.add(EXTENSION_COMPILATION_CACHED);
         extensions.add(EXTENSION_EVALUATE_IN_MEMORY);
+        extensions.add(EXTENSION_EVALUATE_IN_MEMORY_PARALLEL_THRESHOLD);
+        extensions.add(EXTENSION_EVALUATE_IN_MEMORY_PREFETCH);
         extensions.add(EXTENSION_CLOSE_RESULTS_AT_EC_CLOSE);
         extensions.add(EXTENSION_CHECK_UNUSED_PARAMETERS);
+        extensions.add(EXTENSION_PARAMETERISE_LITERALS);
         extensions.add(EXTENSION_JDOQL_STRICT);
         extensions.add(EXTENSION_JPQL_STRICT);
         extensions.add(EXTENSION_SQL_SYNTAX_CHECKS);
@@ -918,6 +1010,8 @@ public abstract class Query<T> implements Serializable, ExecutionContextListener
 
         discardCompiled();
         this.filter = StringUtils.isWhitespace(filter) ? null : StringUtils.removeSpecialTagsFromString(filter).trim();
+        this.literalParameters = null;
+        this.parameterisedFilter = null;
     }
 
     /**
@@ -1954,6 +2048,10 @@ public abstract class Query<T> implements Serializable, ExecutionContextListener
             {
                 inputParameters.putAll(implicitParameters);
             }
+            if (literalParameters != null)
+            {
+                inputParameters.putAll(literalParameters);
+            }
             if (parameters != null)
             {
                 inputParameters.putAll(parameters);
@@ -0,0 +1,451 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.query;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.datanucleus.api.ApiAdapter;
+import org.datanucleus.exceptions.NucleusException;
+
+/**
+ * Immutable fingerprint of a query, used as the basis for the keys of the query compilation, datastore compilation
+ * and results caches. Holds the single-string form of the query, the fetch plan groups, the tenant, and (optionally)
+ * the typed values of the parameters, together with a 128-bit hash of these.
+ * Equality is structural, so two fingerprints are only equal when all of these components are equal.
+ * <p>
+ * A query creates its fingerprint once (see {@link Query#getFingerprint()}) and reuses it for all executions until it is
+ * changed, and the cache keys are precomputed from it rather than being built on each execution.
+ * </p>
+ */
+public final class QueryFingerprint
+{
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** Query language. */
+    private final String language;
+
+    /** Single-string form of the query, including anything else that affects its compilation. */
+    private final String queryString;
+
+    /** Names of the fetch plan groups (sorted). */
+    private final Set<String> fetchGroups;
+
+    /** Tenant that the query is for (if any). */
+    private final String tenantId;
+
+    /** Parameter keys and their values (sorted by key), or null when the parameters are not part of this fingerprint. */
+    private final Object[] parameters;
+
+    /** Canonical (typed) form of the parameter values, used when forming the hash. */
+    private final String parametersString;
+
+    /** High 64 bits of the hash. */
+    private final long hashHigh;
+
+    /** Low 64 bits of the hash. */
+    private final long hashLow;
+
+    /** Key for the query compilation caches. */
+    private final String compilationKey;
+
+    /** Key for the query results cache. */
+    private final String resultsKey;
+
+    /**
+     * Constructor for the fingerprint of the structure of a query.
+     * @param language Query language
+     * @param queryString Single-string form of the query
+     * @param fetchGroups Names of the fetch plan groups (if any)
+     * @param tenantId Tenant that the query is for (if any)
+     */
+    public QueryFingerprint(String language, String queryString, Collection<String> fetchGroups, String tenantId)
+    {
+        this(language, queryString, fetchGroups != null ? Collections.unmodifiableSet(new TreeSet<>(fetchGroups)) : Collections.emptySet(),
+            tenantId, null, null);
+    }
+
+    private QueryFingerprint(String language, String queryString, Set<String> fetchGroups, String tenantId, Object[] parameters, String parametersString)
+    {
+        this.language = language;
+        this.queryString = queryString;
+        this.fetchGroups = fetchGroups;
+        this.tenantId = tenantId;
+        this.parameters = parameters;
+        this.parametersString = parametersString;
+
+        StringBuilder str = new StringBuilder(queryString);
+        str.append(" FetchPlan ").append(fetchGroups);
+        if (tenantId != null)
+        {
+            str.append(' ').append(tenantId);
+        }
+        this.compilationKey = str.toString();
+
+        byte[] hash = digest(language, compilationKey, parametersString);
+        long high = 0;
+        long low = 0;
+        for (int i=0;i<8;i++)
+        {
+            high = (high << 8) | (hash[i] & 0xff);
+            low = (low << 8) | (hash[i+8] & 0xff);
+        }
+        this.hashHigh = high;
+        this.hashLow = low;
+
+        // Results depend on the parameter values but not the fetch plan or tenant (with or without parameters), so the hash of the
+        // parameters excludes the compilation key. All results for a query share the key prefix, to allow eviction by key prefix
+        StringBuilder resultsStr = new StringBuilder();
+        resultsStr.append(language).append(':').append(queryString).append(':');
+        if (parametersString != null)
+        {
+            for (byte b : digest(language, queryString, parametersString))
+            {
+                resultsStr.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+            }
+        }
+        this.resultsKey = resultsStr.toString();
+    }
+
+    /**
+     * Method to return a fingerprint for this query with the specified parameter values.
+     * @param params The parameter values, keyed by name or position (or null if none)
+     * @param api Adapter used to find the identity of any persistable parameter values (or null)
+     * @return The fingerprint including the parameters (or this fingerprint if there are no parameters)
+     */
+    public QueryFingerprint withParameters(Map params, ApiAdapter api)
+    {
+        if (params == null || params.isEmpty())
+        {
+            return this;
+        }
+
+        // Sort the parameters by key so that the fingerprint is independent of the ordering of the map
+        Map<String, Map.Entry> entriesByKey = new TreeMap<>();
+        for (Object entryObj : params.entrySet())
+        {
+            Map.Entry entry = (Map.Entry) entryObj;
+            entriesByKey.put(entry.getKey() instanceof Integer ? "?" + entry.getKey() : "" + entry.getKey(), entry);
+        }
+
+        Object[] paramArray = new Object[entriesByKey.size() * 2];
+        StringBuilder str = new StringBuilder();
+        int i = 0;
+        for (Map.Entry<String, Map.Entry> entry : entriesByKey.entrySet())
+        {
+            paramArray[i++] = entry.getValue().getKey();
+            paramArray[i++] = entry.getValue().getValue();
+            appendToken(str, entry.getKey());
+            appendValue(str, entry.getValue().getValue(), api);
+        }
+        return new QueryFingerprint(language, queryString, fetchGroups, tenantId, paramArray, str.toString());
+    }
+
+    public String getLanguage()
+    {
+        return language;
+    }
+
+    public String getQueryString()
+    {
+        return queryString;
+    }
+
+    public Set<String> getFetchGroups()
+    {
+        return fetchGroups;
+    }
+
+    public String getTenantId()
+    {
+        return tenantId;
+    }
+
+    /**
+     * Accessor for whether this fingerprint includes parameter values.
+     * @return Whether parameters are included
+     */
+    public boolean hasParameters()
+    {
+        return parameters != null;
+    }
+
+    /**
+     * Accessor for whether this fingerprint is for the specified fetch plan groups and tenant.
+     * Used by a query to check whether its existing fingerprint is still valid.
+     * @param groups The fetch plan groups
+     * @param tenant The tenant
+     * @return Whether the fingerprint is for these
+     */
+    public boolean matches(Set<String> groups, String tenant)
+    {
+        return Objects.equals(tenantId, tenant) && (groups == null ? fetchGroups.isEmpty() : fetchGroups.equals(groups));
+    }
+
+    /**
+     * Accessor for the key to use for this query in the query compilation caches.
+     * This is the single-string form of the query together with the fetch plan groups and the tenant.
+     * @return The compilation key
+     */
+    public String getCompilationKey()
+    {
+        return compilationKey;
+    }
+
+    /**
+     * Accessor for the key to use for this query in the query results cache.
+     * This is of the form "{language}:{queryString}:{hash}", where the hash is of the parameter values and is omitted when there are
+     * no parameters, so all results for a query share the key prefix of the fingerprint without parameters.
+     * The key doesn't depend on the fetch plan groups or tenant.
+     * @return The results key
+     */
+    public String getResultsKey()
+    {
+        return resultsKey;
+    }
+
+    /**
+     * Accessor for the 128-bit hash as a hex string.
+     * @return The hash
+     */
+    public String getHashString()
+    {
+        char[] chars = new char[32];
+        for (int i=0;i<16;i++)
+        {
+            chars[i] = HEX_DIGITS[(int) (hashHigh >>> (60 - 4*i)) & 0xf];
+            chars[i+16] = HEX_DIGITS[(int) (hashLow >>> (60 - 4*i)) & 0xf];
+        }
+        return new String(chars);
+    }
+
+    public long getHashHigh()
+    {
+        return hashHigh;
+    }
+
+    public long getHashLow()
+    {
+        return hashLow;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return (int) (hashLow ^ (hashLow >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj == this)
+        {
+            return true;
+        }
+        if (!(obj instanceof QueryFingerprint))
+        {
+            return false;
+        }
+        QueryFingerprint other = (QueryFingerprint) obj;
+        return hashHigh == other.hashHigh && hashLow == other.hashLow &&
+            language.equals(other.language) && compilationKey.equals(other.compilationKey) &&
+            Objects.equals(parametersString, other.parametersString) && Arrays.deepEquals(parameters, other.parameters);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "QueryFingerprint[" + language + " " + compilationKey + (parameters != null ? " params=" + parametersString : "") + " hash=" + getHashString() + "]";
+    }
+
+    /**
+     * Method to return the 128-bit (MD5) hash of the specified strings, any of which can be null.
+     */
+    private static byte[] digest(String... strs)
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new NucleusException("Unable to generate fingerprint for query", e);
+        }
+        for (String str : strs)
+        {
+            updateDigest(digest, str);
+        }
+        return digest.digest();
+    }
+
+    private static void updateDigest(MessageDigest digest, String str)
+    {
+        if (str == null)
+        {
+            digest.update((byte) 0);
+            return;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 1);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    /**
+     * Append a length-prefixed token, so that the concatenation of tokens is unambiguous.
+     */
+    private static void appendToken(StringBuilder str, String token)
+    {
+        str.append(token.length()).append(':').append(token);
+    }
+
+    /**
+     * Append the canonical typed form of the specified parameter value.
+     * Persistable values are represented by their identity, and containers by their elements. Date/time and BigDecimal values
+     * are represented exactly (independent of the default timezone), and other values by their hashCode and string form.
+     */
+    private static void appendValue(StringBuilder str, Object value, ApiAdapter api)
+    {
+        if (value == null)
+        {
+            str.append('N');
+            return;
+        }
+
+        if (api != null && api.isPersistable(value))
+        {
+            Object id = api.getIdForObject(value);
+            str.append('P');
+            appendToken(str, value.getClass().getName());
+            if (id != null)
+            {
+                appendToken(str, id.getClass().getName());
+                appendToken(str, id.toString());
+            }
+            else
+            {
+                // Not persistent, so only equal to itself
+                appendToken(str, "@" + System.identityHashCode(value));
+            }
+        }
+        else if (value instanceof Collection)
+        {
+            Collection coll = (Collection) value;
+            str.append('C');
+            appendToken(str, value.getClass().getName());
+            str.append(coll.size()).append('[');
+            for (Object element : coll)
+            {
+                appendValue(str, element, api);
+            }
+            str.append(']');
+        }
+        else if (value instanceof Map)
+        {
+            Map map = (Map) value;
+            str.append('M');
+            appendToken(str, value.getClass().getName());
+            str.append(map.size()).append('[');
+            for (Object entryObj : map.entrySet())
+            {
+                Map.Entry entry = (Map.Entry) entryObj;
+                appendValue(str, entry.getKey(), api);
+                appendValue(str, entry.getValue(), api);
+            }
+            str.append(']');
+        }
+        else if (value.getClass().isArray())
+        {
+            int length = Array.getLength(value);
+            str.append('A');
+            appendToken(str, value.getClass().getName());
+            str.append(length).append('[');
+            for (int i=0;i<length;i++)
+            {
+                appendValue(str, Array.get(value, i), api);
+            }
+            str.append(']');
+        }
+        else if (value instanceof Date)
+        {
+            // Date.toString is only to the second, and uses the default timezone
+            str.append('D');
+            appendToken(str, value.getClass().getName());
+            str.append(((Date) value).getTime());
+            if (value instanceof Timestamp)
+            {
+                str.append('.').append(((Timestamp) value).getNanos());
+            }
+            str.append(';');
+        }
+        else if (value instanceof Calendar)
+        {
+            Calendar cal = (Calendar) value;
+            str.append('K');
+            appendToken(str, value.getClass().getName());
+            str.append(cal.getTimeInMillis()).append(';');
+            appendToken(str, cal.getTimeZone().getID());
+        }
+        else if (value instanceof TemporalAccessor)
+        {
+            // java.time types have an exact string form, including any offset or zone
+            str.append('T');
+            appendToken(str, value.getClass().getName());
+            appendToken(str, value.toString());
+        }
+        else if (value instanceof BigDecimal)
+        {
+            // Numerically equal values (e.g 1.0 and 1.00) have the same form
+            BigDecimal decimal = ((BigDecimal) value).stripTrailingZeros();
+            str.append('B');
+            appendToken(str, decimal.unscaledValue().toString());
+            str.append(decimal.scale()).append(';');
+        }
+        else if (value instanceof Enum)
+        {
+            str.append('E');
+            appendToken(str, ((Enum) value).getDeclaringClass().getName());
+            appendToken(str, ((Enum) value).name());
+        }
+        else
+        {
+            // Values with the same string form (but not equal) are distinguished by their hashCode
+            str.append('V');
+            appendToken(str, value.getClass().getName());
+            str.append(value.hashCode()).append(';');
+            appendToken(str, value.toString());
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.datanucleus.store.query;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.datanucleus.store.query.cache.QueryCompilationCache;
 import org.datanucleus.store.query.cache.QueryDatastoreCompilationCache;
@@ -37,6 +38,14 @@ public interface QueryManager
      */
     void close();
 
+    /**
+     * Accessor for the executor to use for reading ahead the results of queries in the background.
+     * The executor is shared by all queries, has at most "datanucleus.query.resultReadAhead.maxThreads" threads,
+     * and ends its threads when idle. It is shut down when this QueryManager is closed.
+     * @return The executor
+     */
+    ExecutorService getReadAheadExecutor();
+
     /**
      * Accessor for the generic compilation cache.
      * @return The cache of generic compilations
@@ -23,16 +23,20 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 import org.datanucleus.ClassConstants;
 import org.datanucleus.ClassLoaderResolver;
 import org.datanucleus.NucleusContext;
 import org.datanucleus.Configuration;
+import org.datanucleus.PersistenceNucleusContext;
 import org.datanucleus.PropertyNames;
 import org.datanucleus.exceptions.NucleusUserException;
+import org.datanucleus.management.FactoryStatistics;
 import org.datanucleus.plugin.ConfigurationElement;
 import org.datanucleus.plugin.PluginManager;
 import org.datanucleus.store.StoreManager;
+import org.datanucleus.store.query.cache.BoundedQueryResultsCache;
 import org.datanucleus.store.query.cache.JavaxCacheQueryCompilationCache;
 import org.datanucleus.store.query.cache.JavaxCacheQueryDatastoreCompilationCache;
 import org.datanucleus.store.query.cache.JavaxCacheQueryResultCache;
@@ -55,6 +59,7 @@ import org.datanucleus.store.query.inmemory.method.ArraySizeMethod;
 import org.datanucleus.util.Localiser;
 import org.datanucleus.util.NucleusLogger;
 import org.datanucleus.util.StringUtils;
+import org.datanucleus.util.ThreadPoolUtils;
 
 /**
  * Manages the creation, compilation and results of queries.
@@ -80,6 +85,16 @@ public class QueryManagerImpl implements QueryManager
 
     protected Map<String, String> queryMethodAliasByPrefix = null;
 
+    /** Time (millisecs) that a read-ahead thread can be idle before it is ended. */
+    private static final long READ_AHEAD_KEEP_ALIVE_MILLIS = 60000;
+
+    /** Executor for reading ahead the results of queries in the background (created when first needed). */
+    private ExecutorService readAheadExecutor = null;
+
+    /** Statistics for the factory, if enabled (lazily looked up). */
+    private volatile FactoryStatistics statistics;
+    private volatile boolean statisticsInitialised = false;
+
     public QueryManagerImpl(NucleusContext nucleusContext, StoreManager storeMgr)
     {
         this.nucleusCtx = nucleusContext;
@@ -205,6 +220,10 @@ public class QueryManagerImpl implements QueryManager
         {
             queryResultsCache = new StrongQueryResultsCache(nucleusCtx);
         }
+        else if ("bounded".equalsIgnoreCase(cacheType))
+        {
+            queryResultsCache = new BoundedQueryResultsCache(nucleusCtx);
+        }
         else if ("javax.cache".equalsIgnoreCase(cacheType))
         {
             queryResultsCache = new JavaxCacheQueryResultCache(nucleusCtx);
@@ -276,6 +295,29 @@ public class QueryManagerImpl implements QueryManager
 
         inmemoryQueryMethodEvaluatorByName.clear();
         inmemoryQueryMethodEvaluatorByName = null;
+
+        synchronized (this)
+        {
+            if (readAheadExecutor != null)
+            {
+                readAheadExecutor.shutdown();
+                readAheadExecutor = null;
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.datanucleus.store.query.QueryManager#getReadAheadExecutor()
+     */
+    @Override
+    public synchronized ExecutorService getReadAheadExecutor()
+    {
+        if (readAheadExecutor == null)
+        {
+            int maxThreads = Math.max(1, nucleusCtx.getConfiguration().getIntProperty(PropertyNames.PROPERTY_QUERY_RESULT_READ_AHEAD_MAX_THREADS));
+            readAheadExecutor = ThreadPoolUtils.newIdleTimeoutThreadPool("DataNucleus-Query-ReadAhead", maxThreads, READ_AHEAD_KEEP_ALIVE_MILLIS);
+        }
+        return readAheadExecutor;
     }
 
     /* (non-Javadoc)
@@ -429,7 +471,9 @@ public class QueryManagerImpl implements QueryManager
         if (queryResultsCache != null)
         {
             String queryKey = QueryUtils.getKeyForQueryResultsCache(query, params);
-            queryResultsCache.put(queryKey, results);
+            QueryCompilation compilation = query.getCompilation();
+            queryResultsCache.put(queryKey, results, compilation != null ? QueryUtils.getClassNamesForQueryResultsCache(compilation) : null,
+                query.getIntExtensionProperty(Query.EXTENSION_RESULT_CACHE_EXPIRY_MILLIS, -1));
             if (NucleusLogger.QUERY.isDebugEnabled())
             {
                 NucleusLogger.QUERY.debug(Localiser.msg("021081", query, results.size()));
@@ -454,11 +498,41 @@ public class QueryManagerImpl implements QueryManager
                     NucleusLogger.QUERY.debug(Localiser.msg("021082", query, results.size()));
                 }
             }
+
+            FactoryStatistics stats = getStatistics();
+            if (stats != null)
+            {
+                if (results != null)
+                {
+                    stats.queryResultsCacheHit();
+                }
+                else
+                {
+                    stats.queryResultsCacheMiss();
+                }
+            }
             return results;
         }
         return null;
     }
 
+    /**
+     * Accessor for the factory statistics, to register query results cache hits/misses against.
+     * @return The statistics, or null if not enabled
+     */
+    protected FactoryStatistics getStatistics()
+    {
+        if (!statisticsInitialised)
+        {
+            if (nucleusCtx instanceof PersistenceNucleusContext && ((PersistenceNucleusContext)nucleusCtx).statisticsEnabled())
+            {
+                statistics = ((PersistenceNucleusContext)nucleusCtx).getStatistics();
+            }
+            statisticsInitialised = true;
+        }
+        return statistics;
+    }
+
     /* (non-Javadoc)
      * @see org.datanucleus.store.query.QueryManager#getInMemoryEvaluatorForMethod(java.lang.Class, java.lang.String)
      */
@@ -29,14 +29,18 @@ import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.datanucleus.ClassLoaderResolver;
@@ -47,7 +51,10 @@ import org.datanucleus.exceptions.NucleusUserException;
 import org.datanucleus.metadata.QueryLanguage;
 import org.datanucleus.store.query.compiler.JPQLCompiler;
 import org.datanucleus.store.query.compiler.JavaQueryCompiler;
+import org.datanucleus.store.query.compiler.Lexer;
 import org.datanucleus.store.query.compiler.QueryCompilation;
+import org.datanucleus.store.query.compiler.Symbol;
+import org.datanucleus.store.query.compiler.SymbolTable;
 import org.datanucleus.store.query.expression.DyadicExpression;
 import org.datanucleus.store.query.expression.Expression;
 import org.datanucleus.store.query.expression.InvokeExpression;
@@ -72,6 +79,9 @@ public class QueryUtils
     /** Convenience Class[] for parameter types in getMethod call. */
     final static Class[] MAP_PUT_METHOD_ARG_TYPES = new Class[]{Object.class, Object.class};
 
+    /** Prefix for the names of the implicit parameters that literals are replaced by. */
+    public static final String LITERAL_PARAMETER_PREFIX = "DN_LITERAL_";
+
     /**
      * Utility to return if the passed result class is a user-type, and so requires fields matching up.
      * @param className the class name looked for 
@@ -1218,21 +1228,218 @@ public class QueryUtils
      * Convenience method to generate the "key" for storing the query results of a query with parameters.
      * The key will be of the form
      * <pre>
-     * JDOQL:SELECT FROM myClass WHERE myFilter:123456
+     * JDOQL:SELECT FROM myClass WHERE myFilter:0123456789abcdef0123456789abcdef
      * </pre>
-     * where "123456" is the hashCode of the parameters for the query
+     * where the suffix is the 128-bit hash of the query fingerprint including the (typed) parameter values, and is omitted when there are no parameters.
      * @param query The query
      * @param params The params
      * @return The key
      */
     public static String getKeyForQueryResultsCache(Query query, Map params)
     {
-        if (params != null && !params.isEmpty())
+        return query.getFingerprint(params).getResultsKey();
+    }
+
+    /**
+     * Method to replace the literals in a JDOQL/JPQL filter that are operands of a comparison (e.g "id == 17") by implicit parameters, so that
+     * queries that only differ in these literal values can share the same compilation. Only String and numeric literals are replaced; boolean,
+     * null and character literals, and literals used in any other way (method arguments, LIKE patterns etc) are left in the filter.
+     * The name of each parameter includes the type of the literal, so that literals of different types still result in different compilations.
+     * The filter is not changed if it already has any parameters.
+     * @param filter The filter
+     * @param jpql Whether the filter is JPQL (otherwise JDOQL)
+     * @param literals Map that the values of the replaced literals are added to, keyed by the parameter name
+     * @return The filter with literals replaced, or null if no literals were replaced
+     */
+    public static String parameteriseLiterals(String filter, boolean jpql, Map<String, Object> literals)
+    {
+        Lexer lexer = new Lexer(filter, jpql ? ":?" : ":", !jpql);
+        StringBuilder str = new StringBuilder(filter.length());
+        Map<String, Object> values = new HashMap<>();
+        int i = 0;
+        while (i < filter.length())
         {
-            // TODO Check if the params hashCode is adequate to use as a defining key
-            return query.getLanguage() + ":" + query.toString() + ":" + params.hashCode();
+            char c = filter.charAt(i);
+            Object value = null;
+            if (c == '"' || c == '\'')
+            {
+                lexer.setIndex(i);
+                try
+                {
+                    value = lexer.parseStringLiteral();
+                }
+                catch (NucleusUserException nue)
+                {
+                    // Invalid literal, so leave it for the compiler to report
+                    return null;
+                }
+                if (c == '\'' && ((String) value).length() == 1)
+                {
+                    // Character literal
+                    value = null;
+                }
+            }
+            else if (c >= '0' && c <= '9')
+            {
+                lexer.setIndex(i);
+                value = lexer.parseFloatingPointLiteral();
+                if (value == null)
+                {
+                    value = lexer.parseIntegerLiteral();
+                }
+                if (lexer.getIndex() < filter.length() && Character.isJavaIdentifierPart(filter.charAt(lexer.getIndex())))
+                {
+                    // Not a valid literal, so leave it for the compiler to report
+                    return null;
+                }
+            }
+            else if (Character.isJavaIdentifierStart(c))
+            {
+                // Identifier, so just copy it (including any digits)
+                int end = i + 1;
+                while (end < filter.length() && Character.isJavaIdentifierPart(filter.charAt(end)))
+                {
+                    end++;
+                }
+                str.append(filter, i, end);
+                i = end;
+                continue;
+            }
+            else if ((c == ':' || (jpql && c == '?')) && i + 1 < filter.length() && Character.isJavaIdentifierPart(filter.charAt(i + 1)))
+            {
+                // Filter already has parameters, so leave it as it is
+                return null;
+            }
+            else
+            {
+                str.append(c);
+                i++;
+                continue;
+            }
+
+            int end = lexer.getIndex();
+            if (value != null && isComparisonOperand(str, filter, end, jpql))
+            {
+                String paramName = LITERAL_PARAMETER_PREFIX + value.getClass().getSimpleName().toUpperCase() + "_" + values.size();
+                values.put(paramName, value);
+                str.append(':').append(paramName);
+            }
+            else
+            {
+                str.append(filter, i, end);
+            }
+            i = end;
+        }
+
+        if (values.isEmpty())
+        {
+            return null;
+        }
+        literals.putAll(values);
+        return str.toString();
+    }
+
+    /**
+     * Convenience method to return whether the literal that ends at the specified position of the filter is directly compared with something.
+     * @param prior The filter prior to the literal
+     * @param filter The filter
+     * @param end Position of the end of the literal in the filter
+     * @param jpql Whether the filter is JPQL (otherwise JDOQL)
+     * @return Whether it is an operand of a comparison operator
+     */
+    private static boolean isComparisonOperand(CharSequence prior, String filter, int end, boolean jpql)
+    {
+        int next = end;
+        while (next < filter.length() && Character.isWhitespace(filter.charAt(next)))
+        {
+            next++;
+        }
+        char nextChar = next < filter.length() ? filter.charAt(next) : 0;
+        if (nextChar == '.')
+        {
+            // Method invoked on the literal
+            return false;
+        }
+
+        int prev = prior.length() - 1;
+        while (prev >= 0 && Character.isWhitespace(prior.charAt(prev)))
+        {
+            prev--;
+        }
+        char prevChar = prev >= 0 ? prior.charAt(prev) : 0;
+        char prevChar2 = prev > 0 ? prior.charAt(prev - 1) : 0;
+        if (prevChar == '<' || prevChar == '>')
+        {
+            return prevChar2 != prevChar;
+        }
+        else if (prevChar == '=')
+        {
+            return jpql || prevChar2 == '=' || prevChar2 == '!' || prevChar2 == '<' || prevChar2 == '>';
+        }
+
+        char nextChar2 = next + 1 < filter.length() ? filter.charAt(next + 1) : 0;
+        if (nextChar == '<' || nextChar == '>')
+        {
+            return nextChar2 != nextChar;
+        }
+        else if (nextChar == '=')
+        {
+            return jpql || nextChar2 == '=';
+        }
+        else if (nextChar == '!')
+        {
+            return nextChar2 == '=';
+        }
+        return false;
+    }
+
+    /**
+     * Convenience method to return the names of the classes that the results of a query depend on, for use
+     * in invalidating the query results cache. This is the candidate class together with the type of any
+     * (join) alias or variable, including those of any subqueries.
+     * @param compilation The query compilation
+     * @return Names of the classes
+     */
+    public static Set<String> getClassNamesForQueryResultsCache(QueryCompilation compilation)
+    {
+        Set<String> classNames = new HashSet<>();
+        addClassNamesForQueryResultsCache(compilation, classNames);
+        return classNames;
+    }
+
+    private static void addClassNamesForQueryResultsCache(QueryCompilation compilation, Set<String> classNames)
+    {
+        if (compilation == null)
+        {
+            return;
+        }
+
+        if (compilation.getCandidateClass() != null)
+        {
+            classNames.add(compilation.getCandidateClass().getName());
+        }
+        SymbolTable symtbl = compilation.getSymbolTable();
+        if (symtbl != null)
+        {
+            for (String symbolName : symtbl.getSymbolNames())
+            {
+                Symbol sym = symtbl.getSymbol(symbolName);
+                Class valueType = sym.getValueType();
+                if (sym.getType() != Symbol.PARAMETER && valueType != null && !valueType.isPrimitive() && !valueType.getName().startsWith("java."))
+                {
+                    classNames.add(valueType.getName());
+                }
+            }
+        }
+
+        String[] subqueryAliases = compilation.getSubqueryAliases();
+        if (subqueryAliases != null)
+        {
+            for (String subqueryAlias : subqueryAliases)
+            {
+                addClassNamesForQueryResultsCache(compilation.getCompilationForSubquery(subqueryAlias), classNames);
+            }
         }
-        return query.getLanguage() + ":" + query.toString() + ":";
     }
 
     /**
@@ -1288,6 +1495,28 @@ public class QueryUtils
      */
     public static List orderCandidates(List candidates, final Expression[] ordering, final Map state, final String candidateAlias, final ExecutionContext ec, 
             final ClassLoaderResolver clr, final Map parameterValues, final Imports imports, final String queryLanguage)
+    {
+        return orderCandidates(candidates, ordering, state, candidateAlias, ec, clr, parameterValues, imports, queryLanguage, -1);
+    }
+
+    /**
+     * Convenience method to order the input List of objects to the ordering defined by the compilation, optionally only
+     * returning the first "maxResults" of the ordered objects. When only the first few are required this retains just those
+     * in a bounded heap rather than sorting all candidates.
+     * @param candidates Candidates
+     * @param ordering Ordering expression(s)
+     * @param state Map of state information (see JavaQueryEvaluator)
+     * @param candidateAlias Candidate alias
+     * @param ec ExecutionContext
+     * @param clr ClassLoader resolver
+     * @param parameterValues Any parameter values (maybe used by the ordering clause)
+     * @param imports Imports for the query
+     * @param queryLanguage The language of this query (JDOQL, JPQL etc)
+     * @param maxResults Maximum number of (ordered) results required, or -1 for all
+     * @return The ordered List of candidates
+     */
+    public static List orderCandidates(List candidates, final Expression[] ordering, final Map state, final String candidateAlias, final ExecutionContext ec, 
+            final ClassLoaderResolver clr, final Map parameterValues, final Imports imports, final String queryLanguage, long maxResults)
     {
         if (ordering == null)
         {
@@ -1295,8 +1524,34 @@ public class QueryUtils
             return candidates;
         }
 
+        Comparator comparator = getOrderingComparator(ordering, state, candidateAlias, ec, clr, parameterValues, imports, queryLanguage);
+        if (maxResults >= 0 && maxResults < candidates.size())
+        {
+            return sortTopK(candidates, comparator, (int)maxResults);
+        }
+
         Object[] o = candidates.toArray();
-        Arrays.sort(o, new Comparator()
+        Arrays.sort(o, comparator);
+        return Arrays.asList(o);
+    }
+
+    /**
+     * Convenience method to return a Comparator for candidates using the ordering defined by the compilation.
+     * Note that the Comparator updates the candidate in the provided state map when evaluating the ordering expressions.
+     * @param ordering Ordering expression(s)
+     * @param state Map of state information (see JavaQueryEvaluator)
+     * @param candidateAlias Candidate alias
+     * @param ec ExecutionContext
+     * @param clr ClassLoader resolver
+     * @param parameterValues Any parameter values (maybe used by the ordering clause)
+     * @param imports Imports for the query
+     * @param queryLanguage The language of this query (JDOQL, JPQL etc)
+     * @return The Comparator
+     */
+    public static Comparator getOrderingComparator(final Expression[] ordering, final Map state, final String candidateAlias, final ExecutionContext ec, 
+            final ClassLoaderResolver clr, final Map parameterValues, final Imports imports, final String queryLanguage)
+    {
+        return new Comparator()
         {
             public int compare(Object obj1, Object obj2)
             {
@@ -1354,7 +1609,54 @@ public class QueryUtils
                 }
                 return 0;
             }
-        });
-        return Arrays.asList(o);
+        };
+    }
+
+    /**
+     * Convenience method to return the first "k" of the supplied objects when sorted using the comparator.
+     * Only ever retains k objects (in a bounded heap), and the result is the same as a (stable) sort of all
+     * objects followed by taking the first k.
+     * @param objects The objects
+     * @param comparator Comparator for the objects
+     * @param k Number of objects required
+     * @return The first k objects in order
+     * @param <T> Type of the objects
+     */
+    public static <T> List<T> sortTopK(Collection<T> objects, final Comparator<? super T> comparator, int k)
+    {
+        if (k <= 0)
+        {
+            return new ArrayList<>();
+        }
+
+        // Max-heap (of the retained objects) where ties are broken by position, so later objects are "greater"
+        Comparator<Object[]> heapComparator = (o1, o2) ->
+        {
+            int result = comparator.compare((T)o2[0], (T)o1[0]);
+            return result != 0 ? result : Integer.compare((Integer)o2[1], (Integer)o1[1]);
+        };
+        PriorityQueue<Object[]> heap = new PriorityQueue<>(k, heapComparator);
+        int position = 0;
+        for (T obj : objects)
+        {
+            if (heap.size() < k)
+            {
+                heap.add(new Object[] {obj, position});
+            }
+            else if (comparator.compare(obj, (T)heap.peek()[0]) < 0)
+            {
+                // Better than the worst retained object (a tie would lose since this is later in the input)
+                heap.poll();
+                heap.add(new Object[] {obj, position});
+            }
+            position++;
+        }
+
+        Object[] sorted = new Object[heap.size()];
+        for (int i=sorted.length-1;i>=0;i--)
+        {
+            sorted[i] = heap.poll()[0];
+        }
+        return (List<T>)Arrays.asList(sorted);
     }
 }
\ No newline at end of file
@@ -17,12 +17,17 @@ Contributors:
 **********************************************************************/
 package org.datanucleus.store.query.cache;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,6 +40,13 @@ import org.datanucleus.util.NucleusLogger;
 
 /**
  * Abstract representation of a query results cache for the query based on a map.
+ * Maintains an index of the cached query keys by the names of the classes that they depend on, so that
+ * eviction for a type only touches the affected entries. Entries whose results are garbage collected (soft/weak caches)
+ * are purged from the index once it has grown to twice its size after the previous purge, in the background (on the common
+ * fork-join pool) so that the purge is never part of a put.
+ * All of the maps are concurrent (as are the lists of pinned results), so the cache operations need no common lock; the
+ * changes to the results and index entries of a query key are made atomic for that key by updating them within a
+ * compute on {@link #classNamesByKey}.
  */
 public class AbstractMapQueryResultsCache implements QueryResultsCache
 {
@@ -43,14 +55,29 @@ public class AbstractMapQueryResultsCache implements QueryResultsCache
     private static final Pattern EVICT_PATTERN = Pattern.compile("(JDOQL|JPQL):.* FROM (.*)");
 
     /** Keys to pin, if entering into the cache. */
-    Set<String> keysToPin = new HashSet<String>();
+    Set<String> keysToPin = ConcurrentHashMap.newKeySet();
 
     /** Cache of pinned objects. */
-    Map<String, List<Object>> pinnedCache = new HashMap<String, List<Object>>();
+    Map<String, List<Object>> pinnedCache = new ConcurrentHashMap<>();
 
     /** Cache of unpinned objects. */
     Map<String, List<Object>> cache = null;
 
+    /** Index of cached query keys, keyed by the name of the class (or entity name) that the query results depend on. */
+    final Map<String, Set<String>> keysByClassName = new ConcurrentHashMap<>();
+
+    /** Names of the classes that each cached query key is indexed under. */
+    final Map<String, Collection<String>> classNamesByKey = new ConcurrentHashMap<>();
+
+    /** Minimum number of indexed query keys before we consider purging those whose results were garbage collected. */
+    private static final int MIN_INDEX_PURGE_SIZE = 1024;
+
+    /** Number of indexed query keys at which we next purge those whose results were garbage collected. */
+    private volatile int indexPurgeSize = MIN_INDEX_PURGE_SIZE;
+
+    /** Whether a purge of the index is currently scheduled or running. */
+    private final AtomicBoolean indexPurging = new AtomicBoolean();
+
     private int maxSize = -1;
     private final NucleusContext nucCtx;
 
@@ -69,6 +96,8 @@ public class AbstractMapQueryResultsCache implements QueryResultsCache
         cache = null;
         pinnedCache.clear();
         pinnedCache = null;
+        keysByClassName.clear();
+        classNamesByKey.clear();
     }
 
     /* (non-Javadoc)
@@ -82,56 +111,221 @@ public class AbstractMapQueryResultsCache implements QueryResultsCache
     /* (non-Javadoc)
      * @see org.datanucleus.store.query.cache.QueryResultsCache#evict(java.lang.Class)
      */
-    public synchronized void evict(Class candidate)
+    public void evict(Class candidate)
+    {
+        for (String className : getClassNamesForEviction(nucCtx, candidate))
+        {
+            evictKeysForClassName(className);
+        }
+    }
+
+    /**
+     * Convenience method to return the class (and entity) names whose cached query results need evicting when an instance of
+     * the specified type is changed. This is the type itself and any supertype (since a query of a supertype can return instances of this type).
+     * @param nucCtx NucleusContext
+     * @param candidate The type
+     * @return The class and entity names
+     */
+    static Collection<String> getClassNamesForEviction(NucleusContext nucCtx, Class candidate)
     {
-        AbstractClassMetaData cmd = nucCtx.getMetaDataManager().getMetaDataForClass(candidate, nucCtx.getClassLoaderResolver(candidate.getClassLoader()));
-        Iterator<String> iter = cache.keySet().iterator();
-        while (iter.hasNext())
+        Collection<String> classNames = new HashSet<>();
+        Class cls = candidate;
+        while (cls != null && cls != Object.class)
+        {
+            classNames.add(cls.getName());
+            AbstractClassMetaData cmd = nucCtx.getMetaDataManager().getMetaDataForClass(cls, nucCtx.getClassLoaderResolver(cls.getClassLoader()));
+            if (cmd != null && cmd.getEntityName() != null)
+            {
+                classNames.add(cmd.getEntityName());
+            }
+            cls = cls.getSuperclass();
+        }
+        return classNames;
+    }
+
+    /**
+     * Convenience method to return the name of the candidate of the query with the specified key, for use where the
+     * class names that the results depend on are not known. Returns the class (or entity) name following the last FROM.
+     * @param queryKey The query key (e.g "JDOQL:SELECT FROM mydomain.MyClass ...")
+     * @return The candidate name, or null if not determinable
+     */
+    static String getCandidateNameForKey(String queryKey)
+    {
+        Matcher m = EVICT_PATTERN.matcher(queryKey);
+        if (m.matches())
+        {
+            String rest = m.group(2).trim();
+            int endPos = rest.indexOf(' ');
+            return endPos > 0 ? rest.substring(0, endPos) : rest;
+        }
+        return null;
+    }
+
+    /**
+     * Method to evict all (unpinned) cached query results indexed under the specified class (or entity) name.
+     * @param className Name of the class
+     */
+    protected void evictKeysForClassName(String className)
+    {
+        Set<String> keys = keysByClassName.get(className);
+        if (keys == null)
+        {
+            return;
+        }
+
+        for (String key : keys)
         {
-            String key = iter.next();
-            Matcher m = EVICT_PATTERN.matcher(key);
-            if (m.matches())
+            if (!pinnedCache.containsKey(key))
             {
-                String rest = m.group(2);
-                if (rest.startsWith(candidate.getName()) || rest.startsWith(cmd.getEntityName()))
+                if (NucleusLogger.CACHE.isDebugEnabled())
                 {
-                    NucleusLogger.GENERAL.info(">> Evicting query results for key=" + key);
-                    iter.remove();
+                    NucleusLogger.CACHE.debug("Evicting query results for key=" + key);
                 }
+                removeKey(key, false);
+            }
+        }
+    }
+
+    /**
+     * Method to remove the cached results for the specified query key, together with its index entries.
+     * @param queryKey The query key
+     * @param includePinned Whether to also remove pinned results (otherwise a pinned key is left alone)
+     */
+    protected void removeKey(String queryKey, boolean includePinned)
+    {
+        classNamesByKey.compute(queryKey, (key, classNames) ->
+        {
+            if (!includePinned && pinnedCache.containsKey(key))
+            {
+                return classNames;
+            }
+            cache.remove(key);
+            pinnedCache.remove(key);
+            if (classNames != null)
+            {
+                removeKeyFromIndex(key, classNames);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Method to register the specified query key in the index under the specified class names, replacing the class names
+     * it was previously indexed under. Must be called within the compute of the key on {@link #classNamesByKey}.
+     * When no class names are provided they are derived from the candidate in the key (e.g "JDOQL:SELECT FROM mydomain.MyClass ...").
+     * @param queryKey The query key
+     * @param prevClassNames Names of the classes the key is currently indexed under (or null)
+     * @param classNames Names of the classes the results depend on (or null)
+     * @return The class names that the key is now indexed under
+     */
+    private Collection<String> indexKey(String queryKey, Collection<String> prevClassNames, Collection<String> classNames)
+    {
+        if (classNames == null)
+        {
+            String candidateName = getCandidateNameForKey(queryKey);
+            classNames = candidateName != null ? Collections.singleton(candidateName) : Collections.emptySet();
+        }
+
+        if (prevClassNames != null)
+        {
+            removeKeyFromIndex(queryKey, prevClassNames);
+        }
+        for (String className : classNames)
+        {
+            keysByClassName.computeIfAbsent(className, k -> ConcurrentHashMap.newKeySet()).add(queryKey);
+        }
+        return classNames;
+    }
+
+    /**
+     * Method to schedule a purge of the index when it has grown sufficiently since the last purge, and holds more keys than are cached.
+     */
+    private void checkIndexSize()
+    {
+        int indexSize = classNamesByKey.size();
+        if (indexSize >= indexPurgeSize && indexSize > cache.size() + pinnedCache.size() && indexPurging.compareAndSet(false, true))
+        {
+            ForkJoinPool.commonPool().execute(this::purgeIndex);
+        }
+    }
+
+    /**
+     * Method to purge query keys from the index where the results are no longer cached (i.e have been garbage collected).
+     * Each key is checked within its compute on {@link #classNamesByKey}, so a concurrent put of the key is never unindexed.
+     */
+    void purgeIndex()
+    {
+        // Take the maps up front since the cache could be closed while purging
+        Map<String, List<Object>> unpinned = cache;
+        Map<String, List<Object>> pinned = pinnedCache;
+        try
+        {
+            if (unpinned == null || pinned == null)
+            {
+                return;
             }
+
+            for (String queryKey : classNamesByKey.keySet())
+            {
+                classNamesByKey.computeIfPresent(queryKey, (key, classNames) ->
+                {
+                    if (unpinned.containsKey(key) || pinned.containsKey(key))
+                    {
+                        return classNames;
+                    }
+                    removeKeyFromIndex(key, classNames);
+                    return null;
+                });
+            }
+            indexPurgeSize = Math.max(MIN_INDEX_PURGE_SIZE, 2 * classNamesByKey.size());
+        }
+        finally
+        {
+            indexPurging.set(false);
+        }
+    }
+
+    private void removeKeyFromIndex(String queryKey, Collection<String> classNames)
+    {
+        for (String className : classNames)
+        {
+            keysByClassName.computeIfPresent(className, (k, keys) ->
+            {
+                keys.remove(queryKey);
+                return keys.isEmpty() ? null : keys;
+            });
         }
     }
 
     /* (non-Javadoc)
      * @see org.datanucleus.store.query.cache.QueryResultsCache#evictAll()
      */
-    public synchronized void evictAll()
+    public void evictAll()
     {
-        cache.clear();
+        for (String key : cache.keySet())
+        {
+            removeKey(key, false);
+        }
     }
 
     /* (non-Javadoc)
      * @see org.datanucleus.store.query.cache.QueryResultsCache#evict(org.datanucleus.store.query.Query)
      */
-    public synchronized void evict(Query query)
+    public void evict(Query query)
     {
         String baseKey = QueryUtils.getKeyForQueryResultsCache(query, null);
-        Iterator<String> iter = cache.keySet().iterator();
-        while (iter.hasNext())
+        for (String key : cache.keySet())
         {
-            String key = iter.next();
             if (key.startsWith(baseKey))
             {
-                iter.remove();
+                removeKey(key, true);
             }
         }
-        iter = pinnedCache.keySet().iterator();
-        while (iter.hasNext())
+        for (String key : pinnedCache.keySet())
         {
-            String key = iter.next();
             if (key.startsWith(baseKey))
             {
-                iter.remove();
+                removeKey(key, true);
             }
         }
     }
@@ -139,11 +333,9 @@ public class AbstractMapQueryResultsCache implements QueryResultsCache
     /* (non-Javadoc)
      * @see org.datanucleus.store.query.cache.QueryResultsCache#evict(org.datanucleus.store.query.Query, java.util.Map)
      */
-    public synchronized void evict(Query query, Map params)
+    public void evict(Query query, Map params)
     {
-        String key = QueryUtils.getKeyForQueryResultsCache(query, params);
-        cache.remove(key);
-        pinnedCache.remove(key);
+        removeKey(QueryUtils.getKeyForQueryResultsCache(query, params), true);
     }
 
     /* (non-Javadoc)
@@ -151,14 +343,7 @@ public class AbstractMapQueryResultsCache implements QueryResultsCache
      */
     public void pin(Query query, Map params)
     {
-        String key = QueryUtils.getKeyForQueryResultsCache(query, params);
-        List<Object> results = cache.get(key);
-        if (results != null)
-        {
-            keysToPin.add(key);
-            pinnedCache.put(key, results);
-            cache.remove(key);
-        }
+        pinKey(QueryUtils.getKeyForQueryResultsCache(query, params));
     }
 
     /* (non-Javadoc)
@@ -166,14 +351,22 @@ public class AbstractMapQueryResultsCache implements QueryResultsCache
      */
     public void pin(Query query)
     {
-        String key = QueryUtils.getKeyForQueryResultsCache(query, null);
-        List<Object> results = cache.get(key);
-        if (results != null)
+        pinKey(QueryUtils.getKeyForQueryResultsCache(query, null));
+    }
+
+    private void pinKey(String queryKey)
+    {
+        // Cached results are always indexed, so there is nothing to pin when the key is not
+        classNamesByKey.computeIfPresent(queryKey, (key, classNames) ->
         {
-            keysToPin.add(key);
-            pinnedCache.put(key, results);
-            cache.remove(key);
-        }
+            List<Object> results = cache.remove(key);
+            if (results != null)
+            {
+                keysToPin.add(key);
+                pinnedCache.put(key, new CopyOnWriteArrayList<>(results));
+            }
+            return classNames;
+        });
     }
 
     /* (non-Javadoc)
@@ -181,14 +374,7 @@ public class AbstractMapQueryResultsCache implements QueryResultsCache
      */
     public void unpin(Query query, Map params)
     {
-        String key = QueryUtils.getKeyForQueryResultsCache(query, params);
-        List<Object> results = pinnedCache.get(key);
-        if (results != null)
-        {
-            keysToPin.remove(key);
-            cache.put(key, results);
-            pinnedCache.remove(key);
-        }
+        unpinKey(QueryUtils.getKeyForQueryResultsCache(query, params));
     }
 
     /* (non-Javadoc)
@@ -196,14 +382,21 @@ public class AbstractMapQueryResultsCache implements QueryResultsCache
      */
     public void unpin(Query query)
     {
-        String key = QueryUtils.getKeyForQueryResultsCache(query, null);
-        List<Object> results = pinnedCache.get(key);
-        if (results != null)
+        unpinKey(QueryUtils.getKeyForQueryResultsCache(query, null));
+    }
+
+    private void unpinKey(String queryKey)
+    {
+        classNamesByKey.computeIfPresent(queryKey, (key, classNames) ->
         {
-            keysToPin.remove(key);
-            cache.put(key, results);
-            pinnedCache.remove(key);
-        }
+            List<Object> results = pinnedCache.remove(key);
+            if (results != null)
+            {
+                keysToPin.remove(key);
+                cache.put(key, results);
+            }
+            return classNames;
+        });
     }
 
     /* (non-Javadoc)
@@ -211,11 +404,8 @@ public class AbstractMapQueryResultsCache implements QueryResultsCache
      */
     public List<Object> get(String queryKey)
     {
-        if (pinnedCache.containsKey(queryKey))
-        {
-            return pinnedCache.get(queryKey);
-        }
-        return cache.get(queryKey);
+        List<Object> results = pinnedCache.get(queryKey);
+        return results != null ? results : cache.get(queryKey);
     }
 
     /* (non-Javadoc)
@@ -229,18 +419,31 @@ public class AbstractMapQueryResultsCache implements QueryResultsCache
     /* (non-Javadoc)
      * @see org.datanucleus.store.query.cache.QueryResultsCache#put(java.lang.String, java.util.List)
      */
-    public synchronized List<Object> put(String queryKey, List<Object> results)
+    public List<Object> put(String queryKey, List<Object> results)
+    {
+        return put(queryKey, results, null);
+    }
+
+    /* (non-Javadoc)
+     * @see org.datanucleus.store.query.cache.QueryResultsCache#put(java.lang.String, java.util.List, java.util.Collection)
+     */
+    @Override
+    public List<Object> put(String queryKey, List<Object> results, Collection<String> classNames)
     {
         if (maxSize >= 0 && size() == maxSize)
         {
             return null;
         }
 
-        if (keysToPin.contains(queryKey))
+        List<List<Object>> prevResults = new ArrayList<>(1);
+        classNamesByKey.compute(queryKey, (key, prevClassNames) ->
         {
-            return pinnedCache.put(queryKey, results);
-        }
-        return cache.put(queryKey, results);
+            Collection<String> keyClassNames = indexKey(key, prevClassNames, classNames);
+            prevResults.add(keysToPin.contains(key) ? pinnedCache.put(key, new CopyOnWriteArrayList<>(results)) : cache.put(key, results));
+            return keyClassNames;
+        });
+        checkIndexSize();
+        return prevResults.get(0);
     }
 
     /* (non-Javadoc)
@@ -0,0 +1,541 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.query.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.datanucleus.NucleusContext;
+import org.datanucleus.PersistenceNucleusContext;
+import org.datanucleus.PropertyNames;
+import org.datanucleus.management.FactoryStatistics;
+import org.datanucleus.store.query.Query;
+import org.datanucleus.store.query.QueryUtils;
+import org.datanucleus.util.NucleusLogger;
+
+/**
+ * Query results cache bounded by the total number of result ids held, rather than by the number of queries.
+ * Each entry is weighted by the size of its result list, and the total weight is limited by the persistence property
+ * <i>datanucleus.cache.queryResults.maxWeight</i> (as well as by <i>datanucleus.cache.queryResults.maxSize</i> if set).
+ * Uses a W-TinyLFU policy :-
+ * <ul>
+ * <li>New entries go into a small LRU "window" (1% of the weight).</li>
+ * <li>Entries leaving the window go into the "probation" segment of a segmented LRU, and are promoted to the "protected" segment (80%
+ * of the main weight) when accessed again.</li>
+ * <li>When over capacity the entry most recently added to probation is only retained in place of the least recently used entry in probation
+ * if it is estimated to be accessed more frequently, using a count-min sketch of the access frequency of query keys.</li>
+ * </ul>
+ * Entries expire after <i>datanucleus.cache.queryResults.expiryMillis</i>, or after the expiry specified for the query.
+ * The number of evictions due to capacity or expiry is registered with the factory statistics when enabled.
+ * Pinning of queries is not supported.
+ */
+public class BoundedQueryResultsCache extends AbstractQueryResultsCache
+{
+    private static final long serialVersionUID = 3924681637428217359L;
+
+    static final int WINDOW = 0;
+    static final int PROBATION = 1;
+    static final int PROTECTED = 2;
+
+    private final long maxWeight;
+    private final long maxWindowWeight;
+    private final long maxProtectedWeight;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private final EntryQueue window = new EntryQueue();
+    private final EntryQueue probation = new EntryQueue();
+    private final EntryQueue protectedQueue = new EntryQueue();
+
+    /** Index of cached query keys, keyed by the name of the class (or entity name) that the query results depend on. */
+    private final Map<String, Set<String>> keysByClassName = new HashMap<>();
+
+    private final FrequencySketch sketch;
+
+    private transient FactoryStatistics statistics;
+
+    public BoundedQueryResultsCache(NucleusContext nucleusCtx)
+    {
+        super(nucleusCtx);
+
+        maxWeight = Math.max(1, nucleusCtx.getConfiguration().getIntProperty(PropertyNames.PROPERTY_CACHE_QUERYRESULTS_MAX_WEIGHT));
+        maxWindowWeight = Math.max(1, maxWeight / 100);
+        maxProtectedWeight = (long)((maxWeight - maxWindowWeight) * 0.8);
+        sketch = new FrequencySketch(maxSize > 0 ? maxSize : (int)Math.min(maxWeight, 1 << 16));
+
+        if (nucleusCtx instanceof PersistenceNucleusContext && ((PersistenceNucleusContext)nucleusCtx).statisticsEnabled())
+        {
+            statistics = ((PersistenceNucleusContext)nucleusCtx).getStatistics();
+        }
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (clearAtClose)
+        {
+            evictAll();
+        }
+    }
+
+    @Override
+    public synchronized boolean contains(String queryKey)
+    {
+        Entry entry = entries.get(queryKey);
+        return entry != null && !entry.hasExpired(System.currentTimeMillis());
+    }
+
+    @Override
+    public synchronized void evict(Class candidate)
+    {
+        for (String className : AbstractMapQueryResultsCache.getClassNamesForEviction(nucleusCtx, candidate))
+        {
+            Set<String> keys = keysByClassName.get(className);
+            if (keys != null)
+            {
+                for (String key : keys.toArray(new String[keys.size()]))
+                {
+                    if (NucleusLogger.CACHE.isDebugEnabled())
+                    {
+                        NucleusLogger.CACHE.debug("Evicting query results for key=" + key);
+                    }
+                    removeEntry(entries.get(key));
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void evict(Query query)
+    {
+        String baseKey = QueryUtils.getKeyForQueryResultsCache(query, null);
+        Iterator<Entry> entryIter = entries.values().iterator();
+        while (entryIter.hasNext())
+        {
+            Entry entry = entryIter.next();
+            if (entry.key.startsWith(baseKey))
+            {
+                entryIter.remove();
+                unlinkEntry(entry);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void evict(Query query, Map params)
+    {
+        removeEntry(entries.get(QueryUtils.getKeyForQueryResultsCache(query, params)));
+    }
+
+    @Override
+    public synchronized void evictAll()
+    {
+        entries.clear();
+        keysByClassName.clear();
+        window.clear();
+        probation.clear();
+        protectedQueue.clear();
+    }
+
+    @Override
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Accessor for the total weight (number of result ids) of the entries in the cache.
+     * @return The weight
+     */
+    public synchronized long getWeight()
+    {
+        return window.weight + probation.weight + protectedQueue.weight;
+    }
+
+    @Override
+    public synchronized List<Object> get(String queryKey)
+    {
+        sketch.increment(queryKey.hashCode());
+
+        Entry entry = entries.get(queryKey);
+        if (entry == null)
+        {
+            return null;
+        }
+        if (entry.hasExpired(System.currentTimeMillis()))
+        {
+            removeEntry(entry);
+            registerEvictions(1);
+            return null;
+        }
+
+        if (entry.queue == WINDOW)
+        {
+            window.moveToTail(entry);
+        }
+        else if (entry.queue == PROBATION)
+        {
+            // Accessed again, so promote to protected, demoting the least recently used of protected if necessary
+            probation.remove(entry);
+            entry.queue = PROTECTED;
+            protectedQueue.addLast(entry);
+            while (protectedQueue.weight > maxProtectedWeight && protectedQueue.head != entry)
+            {
+                Entry demoted = protectedQueue.pollFirst();
+                demoted.queue = PROBATION;
+                probation.addLast(demoted);
+            }
+        }
+        else
+        {
+            protectedQueue.moveToTail(entry);
+        }
+        return entry.results;
+    }
+
+    @Override
+    public List<Object> put(String queryKey, List<Object> results)
+    {
+        return put(queryKey, results, null, -1);
+    }
+
+    @Override
+    public List<Object> put(String queryKey, List<Object> results, Collection<String> classNames)
+    {
+        return put(queryKey, results, classNames, -1);
+    }
+
+    @Override
+    public synchronized List<Object> put(String queryKey, List<Object> results, Collection<String> classNames, long expiryMillis)
+    {
+        if (results == null)
+        {
+            return null;
+        }
+
+        Entry existing = entries.get(queryKey);
+        int weight = Math.max(1, results.size());
+        if (weight > maxWeight)
+        {
+            // Too big to ever be held, so just drop any previous results
+            removeEntry(existing);
+            return null;
+        }
+
+        sketch.increment(queryKey.hashCode());
+
+        long expiry = expiryMillis >= 0 ? expiryMillis : this.expiryMillis;
+        long expireTime = expiry >= 0 ? System.currentTimeMillis() + expiry : Long.MAX_VALUE;
+
+        List<Object> previous = null;
+        if (existing != null)
+        {
+            previous = existing.results;
+            removeEntry(existing);
+        }
+
+        if (classNames == null)
+        {
+            String candidateName = AbstractMapQueryResultsCache.getCandidateNameForKey(queryKey);
+            classNames = candidateName != null ? Collections.singleton(candidateName) : Collections.emptySet();
+        }
+
+        Entry entry = new Entry(queryKey, results, weight, expireTime, classNames);
+        entries.put(queryKey, entry);
+        for (String className : classNames)
+        {
+            keysByClassName.computeIfAbsent(className, k -> new HashSet<>()).add(queryKey);
+        }
+        entry.queue = WINDOW;
+        window.addLast(entry);
+
+        evictEntries();
+        return previous;
+    }
+
+    /**
+     * Method to evict entries until the cache is within its bounds.
+     */
+    private void evictEntries()
+    {
+        // Move any excess from the window into probation
+        while (window.weight > maxWindowWeight && window.head != null)
+        {
+            Entry entry = window.pollFirst();
+            entry.queue = PROBATION;
+            probation.addLast(entry);
+        }
+
+        int numEvicted = 0;
+        while (getWeight() > maxWeight || (maxSize > 0 && entries.size() > maxSize))
+        {
+            Entry victim = probation.head != null ? probation.head : (protectedQueue.head != null ? protectedQueue.head : window.head);
+            Entry candidate = probation.tail;
+            Entry toEvict = victim;
+            if (victim.queue == PROBATION && candidate != victim)
+            {
+                // Only admit the candidate in place of the victim if it is more frequently used
+                toEvict = sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode()) ? victim : candidate;
+            }
+
+            removeEntry(toEvict);
+            numEvicted++;
+        }
+        registerEvictions(numEvicted);
+    }
+
+    private void registerEvictions(int numEvicted)
+    {
+        if (numEvicted > 0 && statistics != null)
+        {
+            statistics.queryResultsCacheEviction(numEvicted);
+        }
+    }
+
+    private void removeEntry(Entry entry)
+    {
+        if (entry != null)
+        {
+            entries.remove(entry.key);
+            unlinkEntry(entry);
+        }
+    }
+
+    /**
+     * Method to remove the entry from its queue and from the class name index.
+     * @param entry The entry
+     */
+    private void unlinkEntry(Entry entry)
+    {
+        if (entry.queue == WINDOW)
+        {
+            window.remove(entry);
+        }
+        else if (entry.queue == PROBATION)
+        {
+            probation.remove(entry);
+        }
+        else
+        {
+            protectedQueue.remove(entry);
+        }
+
+        for (String className : entry.classNames)
+        {
+            Set<String> keys = keysByClassName.get(className);
+            if (keys != null)
+            {
+                keys.remove(entry.key);
+                if (keys.isEmpty())
+                {
+                    keysByClassName.remove(className);
+                }
+            }
+        }
+    }
+
+    static class Entry
+    {
+        final String key;
+        final List<Object> results;
+        final int weight;
+        final long expireTime;
+        final Collection<String> classNames;
+        int queue;
+        Entry prev;
+        Entry next;
+
+        Entry(String key, List<Object> results, int weight, long expireTime, Collection<String> classNames)
+        {
+            this.key = key;
+            this.results = results;
+            this.weight = weight;
+            this.expireTime = expireTime;
+            this.classNames = classNames;
+        }
+
+        boolean hasExpired(long now)
+        {
+            return now > expireTime;
+        }
+    }
+
+    /**
+     * Doubly-linked queue of entries, in order of least recently used (head) to most recently used (tail).
+     */
+    static class EntryQueue
+    {
+        Entry head;
+        Entry tail;
+        long weight;
+
+        void addLast(Entry entry)
+        {
+            entry.prev = tail;
+            entry.next = null;
+            if (tail == null)
+            {
+                head = entry;
+            }
+            else
+            {
+                tail.next = entry;
+            }
+            tail = entry;
+            weight += entry.weight;
+        }
+
+        Entry pollFirst()
+        {
+            Entry entry = head;
+            if (entry != null)
+            {
+                remove(entry);
+            }
+            return entry;
+        }
+
+        void remove(Entry entry)
+        {
+            if (entry.prev == null)
+            {
+                head = entry.next;
+            }
+            else
+            {
+                entry.prev.next = entry.next;
+            }
+            if (entry.next == null)
+            {
+                tail = entry.prev;
+            }
+            else
+            {
+                entry.next.prev = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+            weight -= entry.weight;
+        }
+
+        void moveToTail(Entry entry)
+        {
+            if (entry != tail)
+            {
+                remove(entry);
+                addLast(entry);
+            }
+        }
+
+        void clear()
+        {
+            head = null;
+            tail = null;
+            weight = 0;
+        }
+    }
+
+    /**
+     * Count-min sketch of the access frequency of keys, using 4-bit counters with a depth of 4.
+     * Periodically halves all counters so that the frequencies reflect recent usage.
+     */
+    static class FrequencySketch
+    {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int size;
+
+        FrequencySketch(int maxEntries)
+        {
+            int capacity = 16;
+            while (capacity < maxEntries && capacity < (1 << 24))
+            {
+                capacity <<= 1;
+            }
+            table = new long[capacity];
+            tableMask = capacity - 1;
+            sampleSize = 10 * capacity;
+        }
+
+        int frequency(int hashCode)
+        {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i=0;i<4;i++)
+            {
+                int index = indexOf(hash, i);
+                int count = (int)((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(int hashCode)
+        {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i=0;i<4;i++)
+            {
+                int index = indexOf(hash, i);
+                int offset = (start + i) << 2;
+                long mask = 0xfL << offset;
+                if ((table[index] & mask) != mask)
+                {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+
+            if (added && ++size >= sampleSize)
+            {
+                for (int i=0;i<table.length;i++)
+                {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                size /= 2;
+            }
+        }
+
+        private int indexOf(int hash, int i)
+        {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return ((int)h) & tableMask;
+        }
+
+        private static int spread(int x)
+        {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
@@ -18,6 +18,7 @@ Contributors:
 package org.datanucleus.store.query.cache;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -115,6 +116,34 @@ public interface QueryResultsCache extends Serializable
         return 0;
     }
 
+    /**
+     * Method to put an object in the cache, providing the names of the classes that the results depend on so that
+     * {@link #evict(Class)} can find the entry without inspecting every key.
+     * Implementations that don't maintain such an index can just ignore the class names.
+     * @param queryKey The query key
+     * @param results The results for this query
+     * @param classNames Names of the classes that the query results depend on (or null if not known)
+     * @return The result ids previously associated with this query (if any)
+     */
+    default List<Object> put(String queryKey, List<Object> results, Collection<String> classNames)
+    {
+        return put(queryKey, results);
+    }
+
+    /**
+     * Method to put an object in the cache, providing the names of the classes that the results depend on and
+     * the time after which the results should expire. Implementations that don't support per-query expiry just ignore it.
+     * @param queryKey The query key
+     * @param results The results for this query
+     * @param classNames Names of the classes that the query results depend on (or null if not known)
+     * @param expiryMillis Time (millisecs) after which these results expire, or -1 to use the default for the cache
+     * @return The result ids previously associated with this query (if any)
+     */
+    default List<Object> put(String queryKey, List<Object> results, Collection<String> classNames, long expiryMillis)
+    {
+        return put(queryKey, results, classNames);
+    }
+
     /**
      * Accessor for the results from the cache.
      * @param queryKey The query key
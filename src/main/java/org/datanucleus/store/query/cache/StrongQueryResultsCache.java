@@ -17,7 +17,7 @@ Contributors:
 **********************************************************************/
 package org.datanucleus.store.query.cache;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.datanucleus.NucleusContext;
 
@@ -31,6 +31,6 @@ public class StrongQueryResultsCache extends AbstractMapQueryResultsCache
     public StrongQueryResultsCache(NucleusContext ctx)
     {
         super(ctx);
-        cache = new HashMap();
+        cache = new ConcurrentHashMap<>();
     }
 }
\ No newline at end of file
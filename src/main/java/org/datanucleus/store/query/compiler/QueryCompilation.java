@@ -25,6 +25,7 @@ import java.util.Map;
 import org.datanucleus.store.query.QueryUtils;
 import org.datanucleus.store.query.expression.Expression;
 import org.datanucleus.store.query.expression.ParameterExpression;
+import org.datanucleus.store.query.inmemory.InMemoryCompilation;
 
 /**
  * Representation of the components of a compiled java "string-based" query.
@@ -81,6 +82,9 @@ public class QueryCompilation implements Serializable
     /** Compilations of any subqueries, keyed by the subquery variable name. */
     protected Map<String, QueryCompilation> subqueryCompilations = null;
 
+    /** Compiled form of this compilation for in-memory evaluation, when evaluated in-memory. */
+    protected transient volatile InMemoryCompilation inmemoryCompilation = null;
+
     public QueryCompilation(Class candidateCls, String candidateAlias, SymbolTable symtbl, 
             Expression[] results, Expression[] froms, Expression filter, Expression[] groupings, 
             Expression having, Expression[] orderings, Expression[] updates)
@@ -265,6 +269,7 @@ public class QueryCompilation implements Serializable
     public void setExprFilter(Expression filter)
     {
         exprFilter = filter;
+        inmemoryCompilation = null;
     }
 
     /**
@@ -288,6 +293,21 @@ public class QueryCompilation implements Serializable
     public void setExprHaving(Expression having)
     {
         exprHaving = having;
+        inmemoryCompilation = null;
+    }
+
+    /**
+     * Accessor for the compiled form of this compilation for in-memory evaluation.
+     * @return The in-memory compilation (if compiled)
+     */
+    public InMemoryCompilation getInMemoryCompilation()
+    {
+        return inmemoryCompilation;
+    }
+
+    public void setInMemoryCompilation(InMemoryCompilation inmemoryCompilation)
+    {
+        this.inmemoryCompilation = inmemoryCompilation;
     }
 
     /**
@@ -0,0 +1,470 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.query.inmemory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.datanucleus.exceptions.NucleusUserException;
+import org.datanucleus.metadata.AbstractMemberMetaData;
+import org.datanucleus.state.DNStateManager;
+import org.datanucleus.store.query.QueryManager;
+import org.datanucleus.store.query.compiler.QueryCompilation;
+import org.datanucleus.store.query.expression.ArrayExpression;
+import org.datanucleus.store.query.expression.CaseExpression;
+import org.datanucleus.store.query.expression.CaseExpression.ExpressionPair;
+import org.datanucleus.store.query.expression.CreatorExpression;
+import org.datanucleus.store.query.expression.Expression;
+import org.datanucleus.store.query.expression.InvokeExpression;
+import org.datanucleus.store.query.expression.PrimaryExpression;
+import org.datanucleus.store.query.expression.TypeExpression;
+import org.datanucleus.util.ClassUtils;
+import org.datanucleus.util.NucleusLogger;
+
+/**
+ * Compiled form of a generic query compilation for evaluation in-memory.
+ * Binds each PrimaryExpression of the result, filter, grouping, having and ordering to a chain of member accessors,
+ * and each InvokeExpression to its InvocationEvaluator, so that the name lookups (member metadata, fields, method evaluators)
+ * are made once per query (and class of value) rather than for every candidate. The accessors and evaluators are bound
+ * lazily against each class of value they are used with, and the binding for each class retained, so that polymorphic
+ * candidates don't cause rebinding.
+ * Also records the paths of the members of the candidate that each component of the query uses, so that they can be loaded
+ * for all candidates before evaluation.
+ * An InMemoryCompilation is stored with its QueryCompilation (see {@link #getForCompilation(QueryCompilation)}),
+ * so is cached along with it, and is safe for use by multiple threads.
+ */
+public class InMemoryCompilation
+{
+    /** Member accessors for each tuple of the PrimaryExpressions. */
+    private final Map<PrimaryExpression, MemberAccessor[]> accessorsByPrimaryExpression = new IdentityHashMap<>();
+
+    /** Method bindings for the InvokeExpressions. */
+    private final Map<InvokeExpression, MethodBinding> bindingsByInvokeExpression = new IdentityHashMap<>();
+
+    /** Alias of the candidate. */
+    private final String candidateAlias;
+
+    /** Paths of the members of the candidate used by the filter. */
+    private final MemberPath filterMemberPaths = new MemberPath();
+
+    /** Paths of the members of the candidate used by the ordering. */
+    private final MemberPath orderingMemberPaths = new MemberPath();
+
+    /** Paths of the members of the candidate used by the result, grouping and having. */
+    private final MemberPath resultMemberPaths = new MemberPath();
+
+    /**
+     * Accessor for the in-memory compilation of the specified query compilation, compiling it if not yet compiled.
+     * @param compilation The query compilation
+     * @return The in-memory compilation
+     */
+    public static InMemoryCompilation getForCompilation(QueryCompilation compilation)
+    {
+        InMemoryCompilation inmemoryCompilation = compilation.getInMemoryCompilation();
+        if (inmemoryCompilation == null)
+        {
+            // Benign race : concurrent callers may each compile, and one will be retained
+            inmemoryCompilation = new InMemoryCompilation(compilation);
+            compilation.setInMemoryCompilation(inmemoryCompilation);
+        }
+        return inmemoryCompilation;
+    }
+
+    /**
+     * Constructor, compiling the components of the query compilation.
+     * @param compilation The query compilation
+     */
+    public InMemoryCompilation(QueryCompilation compilation)
+    {
+        this.candidateAlias = compilation.getCandidateAlias();
+
+        compileExpressions(compilation.getExprResult(), resultMemberPaths);
+        compileExpression(compilation.getExprFilter(), filterMemberPaths);
+        compileExpressions(compilation.getExprGrouping(), resultMemberPaths);
+        compileExpression(compilation.getExprHaving(), resultMemberPaths);
+        compileExpressions(compilation.getExprOrdering(), orderingMemberPaths);
+    }
+
+    private void compileExpressions(Expression[] exprs, MemberPath paths)
+    {
+        if (exprs != null)
+        {
+            for (Expression expr : exprs)
+            {
+                compileExpression(expr, paths);
+            }
+        }
+    }
+
+    private void compileExpressions(List<Expression> exprs, MemberPath paths)
+    {
+        if (exprs != null)
+        {
+            for (Expression expr : exprs)
+            {
+                compileExpression(expr, paths);
+            }
+        }
+    }
+
+    private void compileExpression(Expression expr, MemberPath paths)
+    {
+        if (expr == null)
+        {
+            return;
+        }
+
+        if (expr instanceof PrimaryExpression)
+        {
+            List<String> tuples = ((PrimaryExpression)expr).getTuples();
+            MemberAccessor[] accessors = new MemberAccessor[tuples.size()];
+            for (int i=0;i<accessors.length;i++)
+            {
+                accessors[i] = new MemberAccessor(tuples.get(i));
+            }
+            accessorsByPrimaryExpression.put((PrimaryExpression)expr, accessors);
+
+            if (expr.getLeft() == null)
+            {
+                // Path of members from the candidate (those that aren't members of the candidate will be ignored when used)
+                MemberPath path = paths;
+                for (int i=0;i<tuples.size();i++)
+                {
+                    if (i > 0 || !tuples.get(i).equals(candidateAlias))
+                    {
+                        path = path.addMember(tuples.get(i));
+                    }
+                }
+            }
+        }
+        else if (expr instanceof InvokeExpression)
+        {
+            bindingsByInvokeExpression.put((InvokeExpression)expr, new MethodBinding(((InvokeExpression)expr).getOperation()));
+            compileExpressions(((InvokeExpression)expr).getArguments(), paths);
+        }
+        else if (expr instanceof CreatorExpression)
+        {
+            compileExpressions(((CreatorExpression)expr).getArguments(), paths);
+        }
+        else if (expr instanceof CaseExpression)
+        {
+            for (ExpressionPair pair : ((CaseExpression)expr).getConditions())
+            {
+                compileExpression(pair.getWhenExpression(), paths);
+                compileExpression(pair.getActionExpression(), paths);
+            }
+            compileExpression(((CaseExpression)expr).getElseExpression(), paths);
+        }
+        else if (expr instanceof ArrayExpression)
+        {
+            ArrayExpression arrExpr = (ArrayExpression)expr;
+            for (int i=0;i<arrExpr.getArraySize();i++)
+            {
+                compileExpression(arrExpr.getElement(i), paths);
+            }
+        }
+        else if (expr instanceof TypeExpression)
+        {
+            compileExpression(((TypeExpression)expr).getContainedExpression(), paths);
+        }
+
+        compileExpression(expr.getLeft(), paths);
+        compileExpression(expr.getRight(), paths);
+    }
+
+    /**
+     * Accessor for the paths of the members of the candidate that the filter uses.
+     * @return The member paths
+     */
+    public MemberPath getFilterMemberPaths()
+    {
+        return filterMemberPaths;
+    }
+
+    /**
+     * Accessor for the paths of the members of the candidate that the ordering uses.
+     * @return The member paths
+     */
+    public MemberPath getOrderingMemberPaths()
+    {
+        return orderingMemberPaths;
+    }
+
+    /**
+     * Accessor for the paths of the members of the candidate that the result, grouping and having use.
+     * @return The member paths
+     */
+    public MemberPath getResultMemberPaths()
+    {
+        return resultMemberPaths;
+    }
+
+    /**
+     * Accessor for the member accessors for the tuples of a PrimaryExpression.
+     * @param primExpr The PrimaryExpression
+     * @return The accessors (one per tuple), or null if the expression is not part of this compilation
+     */
+    public MemberAccessor[] getMemberAccessors(PrimaryExpression primExpr)
+    {
+        return accessorsByPrimaryExpression.get(primExpr);
+    }
+
+    /**
+     * Accessor for the method binding of an InvokeExpression.
+     * @param invokeExpr The InvokeExpression
+     * @return The binding, or null if the expression is not part of this compilation
+     */
+    public MethodBinding getMethodBinding(InvokeExpression invokeExpr)
+    {
+        return bindingsByInvokeExpression.get(invokeExpr);
+    }
+
+    /**
+     * Paths of members used from an object, as a tree of the members used from the object and the members used from their values.
+     */
+    public static class MemberPath
+    {
+        final Map<String, MemberPath> members = new LinkedHashMap<>();
+
+        MemberPath addMember(String memberName)
+        {
+            return members.computeIfAbsent(memberName, k -> new MemberPath());
+        }
+
+        /**
+         * Accessor for the members used, and the paths used from each of their values.
+         * @return The paths of the members, keyed by the member name
+         */
+        public Map<String, MemberPath> getMembers()
+        {
+            return members;
+        }
+
+        public boolean isEmpty()
+        {
+            return members.isEmpty();
+        }
+    }
+
+    /**
+     * Accessor for the value of a member of an object, bound to each class of object that it is used with.
+     */
+    public static class MemberAccessor
+    {
+        final String memberName;
+
+        /** Binding of the member for each class of object that it has been used with. */
+        final Map<Class, MemberBinding> bindings = new ConcurrentHashMap<>(4);
+
+        MemberAccessor(String memberName)
+        {
+            this.memberName = memberName;
+        }
+
+        public String getMemberName()
+        {
+            return memberName;
+        }
+
+        /**
+         * Method to return the value of this member of the provided object. Takes the value from the StateManager (loading it
+         * if necessary) when the object is persistent and the member is managed, and otherwise from the field of the object.
+         * @param value The object
+         * @param sm StateManager for the object (if persistent)
+         * @return The member value, or InMemoryFailure if the member is not present
+         */
+        public Object getValue(Object value, DNStateManager sm)
+        {
+            if (value == null)
+            {
+                return null;
+            }
+
+            MemberBinding b = bindings.get(value.getClass());
+            if (b == null)
+            {
+                b = bindings.computeIfAbsent(value.getClass(), MemberBinding::new);
+            }
+
+            if (sm != null)
+            {
+                int fieldNumber = b.fieldNumber;
+                if (fieldNumber == MemberBinding.UNRESOLVED)
+                {
+                    AbstractMemberMetaData mmd = sm.getClassMetaData().getMetaDataForMember(memberName);
+                    fieldNumber = mmd != null ? mmd.getAbsoluteFieldNumber() : MemberBinding.NOT_PRESENT;
+                    b.fieldNumber = fieldNumber;
+                }
+                if (fieldNumber == MemberBinding.NOT_PRESENT)
+                {
+                    NucleusLogger.QUERY.error("Cannot find " + memberName + " member of " + sm.getClassMetaData().getFullClassName());
+                    return new InMemoryFailure();
+                }
+                if (fieldNumber >= 0)
+                {
+                    // Field is managed so make sure it is loaded, and get its value
+                    sm.isLoaded(fieldNumber);
+                    return sm.provideField(fieldNumber);
+                }
+            }
+
+            MethodHandle getter = b.getter;
+            if (getter == null)
+            {
+                getter = getGetter(b.cls);
+                b.getter = getter;
+            }
+            if (getter == MemberBinding.NO_GETTER)
+            {
+                return ClassUtils.getValueOfFieldByReflection(value, memberName);
+            }
+            try
+            {
+                return getter.invokeExact(value);
+            }
+            catch (Throwable thr)
+            {
+                throw new NucleusUserException("Cannot access field: " + memberName, thr);
+            }
+        }
+
+        private MethodHandle getGetter(Class cls)
+        {
+            Field field = ClassUtils.getFieldForClass(cls, memberName);
+            if (field == null)
+            {
+                throw new NucleusUserException("Cannot access field: " + memberName + " in type " + cls);
+            }
+
+            try
+            {
+                field.setAccessible(true);
+                MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+                if (Modifier.isStatic(field.getModifiers()))
+                {
+                    getter = MethodHandles.dropArguments(getter, 0, Object.class);
+                }
+                return getter.asType(MethodType.methodType(Object.class, Object.class));
+            }
+            catch (RuntimeException | IllegalAccessException e)
+            {
+                // Not accessible via a MethodHandle, so fall back to reflection for each access
+                NucleusLogger.QUERY.debug("Unable to bind accessor for field " + memberName + " of " + cls.getName() + " : " + e.getMessage());
+                return MemberBinding.NO_GETTER;
+            }
+        }
+    }
+
+    /**
+     * Binding of a member to a class.
+     */
+    static class MemberBinding
+    {
+        static final int UNRESOLVED = -3;
+        static final int NOT_PRESENT = -2;
+        static final MethodHandle NO_GETTER = MethodHandles.constant(Object.class, null);
+
+        final Class cls;
+
+        /** Absolute field number of the member in the metadata for this class, or -1 if not managed. */
+        volatile int fieldNumber = UNRESOLVED;
+
+        /** Getter for the field of this class. */
+        volatile MethodHandle getter;
+
+        MemberBinding(Class cls)
+        {
+            this.cls = cls;
+        }
+    }
+
+    /**
+     * Binding of a method invocation to its InvocationEvaluator, for each type of value that it is invoked on.
+     */
+    public static class MethodBinding
+    {
+        final String methodName;
+
+        /** Binding of the method for each type that it has been invoked on. */
+        final Map<Class, EvaluatorBinding> bindings = new ConcurrentHashMap<>(4);
+
+        /** Binding of the method as a static function (no type invoked on). */
+        volatile EvaluatorBinding staticBinding;
+
+        MethodBinding(String methodName)
+        {
+            this.methodName = methodName;
+        }
+
+        public String getMethodName()
+        {
+            return methodName;
+        }
+
+        /**
+         * Accessor for the evaluator for this method when invoked on the specified type.
+         * @param type The type invoked on (null for static functions)
+         * @param queryMgr Query manager
+         * @return The evaluator, or null if not supported
+         */
+        public InvocationEvaluator getEvaluator(Class type, QueryManager queryMgr)
+        {
+            if (type == null)
+            {
+                EvaluatorBinding b = staticBinding;
+                if (b == null)
+                {
+                    b = new EvaluatorBinding(null, queryMgr.getInMemoryEvaluatorForMethod(null, methodName));
+                    staticBinding = b;
+                }
+                return b.evaluator;
+            }
+
+            EvaluatorBinding b = bindings.get(type);
+            if (b == null)
+            {
+                b = bindings.computeIfAbsent(type, t -> new EvaluatorBinding(t, queryMgr.getInMemoryEvaluatorForMethod(t, methodName)));
+            }
+            return b.evaluator;
+        }
+    }
+
+    /**
+     * Binding of a method to the InvocationEvaluator for a type.
+     */
+    static class EvaluatorBinding
+    {
+        final Class type;
+
+        final InvocationEvaluator evaluator;
+
+        EvaluatorBinding(Class type, InvocationEvaluator evaluator)
+        {
+            this.type = type;
+            this.evaluator = evaluator;
+        }
+    }
+}
@@ -56,6 +56,8 @@ import org.datanucleus.store.query.expression.ParameterExpression;
 import org.datanucleus.store.query.expression.PrimaryExpression;
 import org.datanucleus.store.query.expression.VariableExpression;
 import org.datanucleus.store.query.expression.CaseExpression.ExpressionPair;
+import org.datanucleus.store.query.inmemory.InMemoryCompilation.MemberAccessor;
+import org.datanucleus.store.query.inmemory.InMemoryCompilation.MethodBinding;
 import org.datanucleus.util.ClassUtils;
 import org.datanucleus.util.Imports;
 import org.datanucleus.util.NucleusLogger;
@@ -91,6 +93,9 @@ public class InMemoryExpressionEvaluator extends AbstractExpressionEvaluator
     /** Alias name for the candidate. */
     final String candidateAlias;
 
+    /** Compiled form of the query, with accessors/evaluators bound to its expressions (optional). */
+    InMemoryCompilation inmemoryCompilation;
+
     /**
      * Constructor for an in-memory evaluator.
      * @param ec ExecutionContext
@@ -123,6 +128,16 @@ public class InMemoryExpressionEvaluator extends AbstractExpressionEvaluator
         return queryLanguage;
     }
 
+    /**
+     * Method to set the compiled form of the query being evaluated, so that the expressions of the query are evaluated using
+     * their bound accessors/evaluators rather than looking up the members/methods for each candidate.
+     * @param inmemoryCompilation The in-memory compilation
+     */
+    public void setInMemoryCompilation(InMemoryCompilation inmemoryCompilation)
+    {
+        this.inmemoryCompilation = inmemoryCompilation;
+    }
+
     /* (non-Javadoc)
      * @see org.datanucleus.query.evaluator.AbstractExpressionEvaluator#processAndExpression(org.datanucleus.query.expression.Expression)
      */
@@ -935,7 +950,7 @@ public class InMemoryExpressionEvaluator extends AbstractExpressionEvaluator
             else
             {
                 // Try to find a supported static method with this name
-                InvocationEvaluator methodEval = queryMgr.getInMemoryEvaluatorForMethod(null, method);
+                InvocationEvaluator methodEval = getInvocationEvaluator(invokeExpr, null);
                 if (methodEval != null)
                 {
                     return methodEval.evaluate(invokeExpr, null, this);
@@ -952,7 +967,7 @@ public class InMemoryExpressionEvaluator extends AbstractExpressionEvaluator
 
             // Invoke method on this object
             Class invokedType = invokedValue != null ? invokedValue.getClass() : invokeExpr.getLeft().getSymbol().getValueType();
-            InvocationEvaluator methodEval = queryMgr.getInMemoryEvaluatorForMethod(invokedType, method);
+            InvocationEvaluator methodEval = getInvocationEvaluator(invokeExpr, invokedType);
             if (methodEval != null)
             {
                 return methodEval.evaluate(invokeExpr, invokedValue, this);
@@ -979,7 +994,7 @@ public class InMemoryExpressionEvaluator extends AbstractExpressionEvaluator
 
             // Invoke method on this object
             Class invokedType = invokedValue != null ? invokedValue.getClass() : invokeExpr.getLeft().getSymbol().getValueType();
-            InvocationEvaluator methodEval = queryMgr.getInMemoryEvaluatorForMethod(invokedType, method);
+            InvocationEvaluator methodEval = getInvocationEvaluator(invokeExpr, invokedType);
             if (methodEval != null)
             {
                 return methodEval.evaluate(invokeExpr, invokedValue, this);
@@ -999,7 +1014,7 @@ public class InMemoryExpressionEvaluator extends AbstractExpressionEvaluator
             {
                 return new InMemoryFailure();
             }
-            InvocationEvaluator methodEval = queryMgr.getInMemoryEvaluatorForMethod(invokedType, method);
+            InvocationEvaluator methodEval = getInvocationEvaluator(invokeExpr, invokedType);
             if (methodEval != null)
             {
                 return methodEval.evaluate(invokeExpr, invokedValue, this);
@@ -1015,7 +1030,7 @@ public class InMemoryExpressionEvaluator extends AbstractExpressionEvaluator
 
             // Invoke method on this object
             Class invokedType = invokedValue != null ? invokedValue.getClass() : invokeExpr.getLeft().getSymbol().getValueType();
-            InvocationEvaluator methodEval = queryMgr.getInMemoryEvaluatorForMethod(invokedType, method);
+            InvocationEvaluator methodEval = getInvocationEvaluator(invokeExpr, invokedType);
             if (methodEval != null)
             {
                 return methodEval.evaluate(invokeExpr, invokedValue, this);
@@ -1031,7 +1046,7 @@ public class InMemoryExpressionEvaluator extends AbstractExpressionEvaluator
 
             // Invoke method on this object
             Class invokedType = invokedValue != null ? invokedValue.getClass() : invokeExpr.getLeft().getSymbol().getValueType();
-            InvocationEvaluator methodEval = queryMgr.getInMemoryEvaluatorForMethod(invokedType, method);
+            InvocationEvaluator methodEval = getInvocationEvaluator(invokeExpr, invokedType);
             if (methodEval != null)
             {
                 return methodEval.evaluate(invokeExpr, invokedValue, this);
@@ -1047,7 +1062,7 @@ public class InMemoryExpressionEvaluator extends AbstractExpressionEvaluator
 
             // Invoke method on this object
             Class invokedType = invokedValue.getClass();
-            InvocationEvaluator methodEval = queryMgr.getInMemoryEvaluatorForMethod(invokedType, method);
+            InvocationEvaluator methodEval = getInvocationEvaluator(invokeExpr, invokedType);
             if (methodEval != null)
             {
                 return methodEval.evaluate(invokeExpr, invokedValue, this);
@@ -1254,6 +1269,7 @@ public class InMemoryExpressionEvaluator extends AbstractExpressionEvaluator
         }
 
         // Evaluate the field of this value
+        MemberAccessor[] accessors = inmemoryCompilation != null ? inmemoryCompilation.getMemberAccessors(primExpr) : null;
         for (int i = firstTupleToProcess; i < primExpr.getTuples().size(); i++)
         {
             String fieldName = primExpr.getTuples().get(i);
@@ -1263,7 +1279,17 @@ public class InMemoryExpressionEvaluator extends AbstractExpressionEvaluator
                 Optional opt = (Optional)value;
                 value = opt.isPresent() ? opt.get() : null;
             }
-            if (!fieldName.equals(candidateAlias))
+            if (accessors != null && !fieldName.equals(candidateAlias))
+            {
+                // Use the accessor bound to this member
+                DNStateManager valueSM = ec.getApiAdapter().isPersistent(value) ? ec.findStateManager(value) : null;
+                value = accessors[i].getValue(value, valueSM);
+                if (value instanceof InMemoryFailure)
+                {
+                    return value;
+                }
+            }
+            else if (!fieldName.equals(candidateAlias))
             {
                 boolean getValueByReflection = true;
                 if (ec.getApiAdapter().isPersistent(value))
@@ -1297,6 +1323,23 @@ public class InMemoryExpressionEvaluator extends AbstractExpressionEvaluator
         return value;
     }
 
+    /**
+     * Convenience method to get the InvocationEvaluator for a method invoked on a type, using the evaluator bound to the
+     * InvokeExpression when the query is compiled.
+     * @param invokeExpr The InvokeExpression
+     * @param invokedType The type invoked on (null for static functions)
+     * @return The evaluator, or null if not supported
+     */
+    private InvocationEvaluator getInvocationEvaluator(InvokeExpression invokeExpr, Class invokedType)
+    {
+        MethodBinding binding = inmemoryCompilation != null ? inmemoryCompilation.getMethodBinding(invokeExpr) : null;
+        if (binding != null)
+        {
+            return binding.getEvaluator(invokedType, queryMgr);
+        }
+        return queryMgr.getInMemoryEvaluatorForMethod(invokedType, invokeExpr.getOperation());
+    }
+
     /**
      * Method to set the value for a variable.
      * @param id Id of the variable
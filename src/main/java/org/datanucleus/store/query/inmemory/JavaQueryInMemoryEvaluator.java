@@ -20,23 +20,34 @@ package org.datanucleus.store.query.inmemory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.datanucleus.ClassLoaderResolver;
+import org.datanucleus.ExecutionContext;
 import org.datanucleus.exceptions.NucleusException;
+import org.datanucleus.exceptions.NucleusObjectNotFoundException;
 import org.datanucleus.exceptions.NucleusUserException;
+import org.datanucleus.metadata.AbstractClassMetaData;
+import org.datanucleus.metadata.AbstractMemberMetaData;
+import org.datanucleus.state.DNStateManager;
 import org.datanucleus.store.query.Query;
 import org.datanucleus.store.query.QueryUtils;
 import org.datanucleus.store.query.compiler.QueryCompilation;
 import org.datanucleus.store.query.expression.CreatorExpression;
 import org.datanucleus.store.query.expression.Expression;
 import org.datanucleus.store.query.expression.InvokeExpression;
+import org.datanucleus.store.query.inmemory.InMemoryCompilation.MemberPath;
 import org.datanucleus.util.Localiser;
 import org.datanucleus.util.NucleusLogger;
 import org.datanucleus.util.StringUtils;
@@ -51,6 +62,9 @@ public abstract class JavaQueryInMemoryEvaluator
     /** Name under which any set of results are stored in the state map. Used for aggregation. */
     public static final String RESULTS_SET = "DATANUCLEUS_RESULTS_SET";
 
+    /** Minimum number of candidates evaluated by each task when evaluating the filter in parallel. */
+    private static final int MIN_PARALLEL_FILTER_CHUNK_SIZE = 256;
+
     protected final String language;
 
     protected String candidateAlias = "this";
@@ -70,6 +84,9 @@ public abstract class JavaQueryInMemoryEvaluator
     /** The evaluator. */
     protected InMemoryExpressionEvaluator evaluator;
 
+    /** Compiled form of the query, with accessors/evaluators bound to its expressions. */
+    protected InMemoryCompilation inmemoryCompilation;
+
     /** Map of state symbols for the query evaluation. */
     protected Map<String, Object> state;
 
@@ -97,7 +114,9 @@ public abstract class JavaQueryInMemoryEvaluator
         state = new HashMap<String, Object>();
         state.put(this.candidateAlias, query.getCandidateClass()); // TODO Why put the CLASS in here?! it should be a candidate
 
+        inmemoryCompilation = InMemoryCompilation.getForCompilation(compilation);
         evaluator = new InMemoryExpressionEvaluator(query.getExecutionContext(), parameterValues, state, query.getParsedImports(), clr, this.candidateAlias, query.getLanguage());
+        evaluator.setInMemoryCompilation(inmemoryCompilation);
     }
 
     /**
@@ -134,15 +153,7 @@ public abstract class JavaQueryInMemoryEvaluator
             if (applyResult && result != null && result.length > 1)
             {
                 // Have result but not returning rows of candidate type so remove dupd candidates
-                Iterator<Object> candIter = candidates.iterator();
-                while (candIter.hasNext())
-                {
-                    Object candidate = candIter.next();
-                    if (!executeCandidates.contains(candidate))
-                    {
-                        executeCandidates.add(candidate);
-                    }
-                }
+                executeCandidates.addAll(new LinkedHashSet<>(candidates));
             }
             else
             {
@@ -193,9 +204,27 @@ public abstract class JavaQueryInMemoryEvaluator
             {
                 NucleusLogger.QUERY.debug(Localiser.msg("021012", "filter", language, filter));
             }
+            prefetchMembers(resultSet, inmemoryCompilation.getFilterMemberPaths());
             resultSet = handleFilter(resultSet);
         }
 
+        long fromIncl = 0;
+        long toExcl = -1;
+        boolean hasRange = applyRange && query.getRange() != null;
+        if (hasRange)
+        {
+            fromIncl = query.getRangeFromIncl();
+            toExcl = query.getRangeToExcl();
+            if (query.getRangeFromInclParam() != null)
+            {
+                fromIncl = ((Number)parameterValues.get(query.getRangeFromInclParam())).longValue();
+            }
+            if (query.getRangeToExclParam() != null)
+            {
+                toExcl = ((Number)parameterValues.get(query.getRangeToExclParam())).longValue();
+            }
+        }
+
         Expression[] ordering = compilation.getExprOrdering();
         if (applyOrdering && ordering != null)
         {
@@ -204,22 +233,16 @@ public abstract class JavaQueryInMemoryEvaluator
             {
                 NucleusLogger.QUERY.debug(Localiser.msg("021012", "ordering", language, StringUtils.objectArrayToString(ordering)));
             }
-            resultSet = ordering(resultSet);
+
+            prefetchMembers(resultSet, inmemoryCompilation.getOrderingMemberPaths());
+
+            // When applying a range we only need to order (and retain) the objects up to the end of the range
+            resultSet = ordering(resultSet, hasRange ? Math.max(toExcl, 0) : -1);
         }
 
-        if (applyRange && query.getRange() != null)
+        if (hasRange)
         {
             // Process any range constraints
-            long fromIncl = query.getRangeFromIncl();
-            long toExcl = query.getRangeToExcl();
-            if (query.getRangeFromInclParam() != null)
-            {
-                fromIncl = ((Number)parameterValues.get(query.getRangeFromInclParam())).longValue();
-            }
-            if (query.getRangeToExclParam() != null)
-            {
-                toExcl = ((Number)parameterValues.get(query.getRangeToExclParam())).longValue();
-            }
             if (NucleusLogger.QUERY.isDebugEnabled())
             {
                 NucleusLogger.QUERY.debug(Localiser.msg("021012", "range", language, "" + fromIncl + "," + toExcl));
@@ -235,6 +258,8 @@ public abstract class JavaQueryInMemoryEvaluator
                 NucleusLogger.QUERY.debug(Localiser.msg("021012", "result", language, StringUtils.objectArrayToString(result)));
             }
 
+            prefetchMembers(resultSet, inmemoryCompilation.getResultMemberPaths());
+
             // Apply grouping
             List<Object> aggregateList = new ArrayList<>();
             List<Object> s = resultSet;
@@ -254,17 +279,8 @@ public abstract class JavaQueryInMemoryEvaluator
 
             if (query.getResultDistinct())
             {
-                List<Object> tmpList = new ArrayList<>();
-                Iterator<Object> iter = resultSet.iterator();
-                while (iter.hasNext())
-                {
-                    Object obj = iter.next();
-                    if (!tmpList.contains(obj)) // Omit dups
-                    {
-                        tmpList.add(obj);
-                    }
-                }
-                resultSet = tmpList;
+                // Omit dups, retaining the order
+                resultSet = new ArrayList<>(new LinkedHashSet<>(resultSet));
             }
         }
 
@@ -284,6 +300,140 @@ public abstract class JavaQueryInMemoryEvaluator
         return resultSet;
     }
 
+    /**
+     * Method to load the members that a component of the query uses for all of the provided objects, prior to evaluating that
+     * component. The objects are grouped by class, and the unloaded members of the objects of a class are taken from the L2 cache
+     * where available, with the remainder fetched with one call to the persistence handler (and the L2 cache then updated),
+     * rather than one fetch per object when evaluating. Embedded objects (loaded with their owner) and deleted objects are not
+     * fetched. The members of related objects are then loaded in the same way, following the paths of the members.
+     * @param objects The objects
+     * @param paths Paths of the members used from these objects
+     */
+    private void prefetchMembers(Collection<Object> objects, MemberPath paths)
+    {
+        if (paths.isEmpty() || objects.isEmpty() || !query.getBooleanExtensionProperty(Query.EXTENSION_EVALUATE_IN_MEMORY_PREFETCH, false))
+        {
+            return;
+        }
+
+        ExecutionContext ec = query.getExecutionContext();
+        Map<AbstractClassMetaData, List<DNStateManager>> smsByClass = new HashMap<>();
+        for (Object obj : objects)
+        {
+            if (ec.getApiAdapter().isPersistent(obj))
+            {
+                DNStateManager sm = ec.findStateManager(obj);
+                if (sm != null && !sm.getLifecycleState().isNew())
+                {
+                    smsByClass.computeIfAbsent(sm.getClassMetaData(), k -> new ArrayList<>()).add(sm);
+                }
+            }
+        }
+
+        for (Map.Entry<AbstractClassMetaData, List<DNStateManager>> entry : smsByClass.entrySet())
+        {
+            AbstractClassMetaData cmd = entry.getKey();
+            List<DNStateManager> sms = entry.getValue();
+
+            Map<String, Integer> fieldNumbersByMember = new HashMap<>();
+            for (String memberName : paths.getMembers().keySet())
+            {
+                AbstractMemberMetaData mmd = cmd.getMetaDataForMember(memberName);
+                if (mmd != null && mmd.getAbsoluteFieldNumber() >= 0)
+                {
+                    fieldNumbersByMember.put(memberName, mmd.getAbsoluteFieldNumber());
+                }
+            }
+            if (fieldNumbersByMember.isEmpty())
+            {
+                continue;
+            }
+
+            // Group the objects by the members that are not loaded (nor in the L2 cache), so we never refetch a loaded (possibly updated) member
+            Map<BitSet, List<DNStateManager>> smsByUnloadedFields = new HashMap<>();
+            for (DNStateManager sm : sms)
+            {
+                if (sm.isEmbedded() || sm.isDeleted())
+                {
+                    // Embedded objects are loaded with their owner, and deleted objects are loaded (or reported) when evaluated
+                    continue;
+                }
+
+                BitSet unloadedFields = new BitSet();
+                for (int fieldNumber : fieldNumbersByMember.values())
+                {
+                    if (!sm.isFieldLoaded(fieldNumber))
+                    {
+                        unloadedFields.set(fieldNumber);
+                    }
+                }
+                if (!unloadedFields.isEmpty())
+                {
+                    // Take what we can from the L2 cache
+                    int[] unloadedFieldNumbers = sm.loadFieldsFromLevel2Cache(unloadedFields.stream().toArray());
+                    unloadedFields.clear();
+                    if (unloadedFieldNumbers != null)
+                    {
+                        for (int fieldNumber : unloadedFieldNumbers)
+                        {
+                            unloadedFields.set(fieldNumber);
+                        }
+                    }
+                }
+                if (!unloadedFields.isEmpty())
+                {
+                    smsByUnloadedFields.computeIfAbsent(unloadedFields, k -> new ArrayList<>()).add(sm);
+                }
+            }
+            for (Map.Entry<BitSet, List<DNStateManager>> unloadedEntry : smsByUnloadedFields.entrySet())
+            {
+                int[] fieldNumbers = unloadedEntry.getKey().stream().toArray();
+                List<DNStateManager> unloadedSMs = unloadedEntry.getValue();
+                if (NucleusLogger.QUERY.isDebugEnabled())
+                {
+                    NucleusLogger.QUERY.debug("Prefetching fields " + StringUtils.intArrayToString(fieldNumbers) + " of " + unloadedSMs.size() +
+                        " objects of type " + cmd.getFullClassName() + " for in-memory evaluation");
+                }
+                try
+                {
+                    ec.getStoreManager().getPersistenceHandler().fetchObjects(fieldNumbers, unloadedSMs.toArray(new DNStateManager[unloadedSMs.size()]));
+                    for (DNStateManager sm : unloadedSMs)
+                    {
+                        sm.updateLevel2CacheForFields(fieldNumbers);
+                    }
+                }
+                catch (NucleusObjectNotFoundException onfe)
+                {
+                    // Leave these to be loaded (or reported) when evaluated
+                    NucleusLogger.QUERY.debug("Unable to prefetch fields for in-memory evaluation : " + onfe.getMessage());
+                }
+            }
+
+            // Load the members used from the values of these members
+            for (Map.Entry<String, Integer> memberEntry : fieldNumbersByMember.entrySet())
+            {
+                MemberPath memberPaths = paths.getMembers().get(memberEntry.getKey());
+                if (!memberPaths.isEmpty())
+                {
+                    int fieldNumber = memberEntry.getValue();
+                    List<Object> values = new ArrayList<>();
+                    for (DNStateManager sm : sms)
+                    {
+                        if (sm.isFieldLoaded(fieldNumber))
+                        {
+                            Object value = sm.provideField(fieldNumber);
+                            if (value != null)
+                            {
+                                values.add(value);
+                            }
+                        }
+                    }
+                    prefetchMembers(values, memberPaths);
+                }
+            }
+        }
+    }
+
     private List<Object> handleFilter(List<Object> set)
     {
         Expression filter = compilation.getExprFilter();
@@ -295,6 +445,24 @@ public abstract class JavaQueryInMemoryEvaluator
         // Store current results in case we have an aggregate in the filter
         state.put(RESULTS_SET, set);
 
+        // Only evaluate in parallel when the ExecutionContext is multithreaded, since evaluating can load fields of the candidates
+        int parallelThreshold = query.getIntExtensionProperty(Query.EXTENSION_EVALUATE_IN_MEMORY_PARALLEL_THRESHOLD, -1);
+        if (parallelThreshold > 0 && set.size() >= parallelThreshold && ForkJoinPool.getCommonPoolParallelism() > 1 && query.getExecutionContext().getMultithreaded())
+        {
+            if (!state.containsKey(candidateAlias))
+            {
+                throw new NucleusUserException("Alias \"" + candidateAlias + "\" doesn't exist in the query or the candidate alias wasn't defined");
+            }
+            if (NucleusLogger.QUERY.isDebugEnabled())
+            {
+                NucleusLogger.QUERY.debug("Evaluating filter for " + set.size() + " candidates in parallel");
+            }
+
+            List<Object> candidateList = (set instanceof RandomAccess) ? set : new ArrayList<>(set);
+            int chunkSize = Math.max(MIN_PARALLEL_FILTER_CHUNK_SIZE, candidateList.size() / (ForkJoinPool.getCommonPoolParallelism() * 4));
+            return ForkJoinPool.commonPool().invoke(new FilterTask(filter, candidateList, 0, candidateList.size(), chunkSize));
+        }
+
         List<Object> result = new ArrayList<>();
         Iterator<Object> it = set.iterator();
         if (NucleusLogger.QUERY.isDebugEnabled())
@@ -315,6 +483,7 @@ public abstract class JavaQueryInMemoryEvaluator
 
             InMemoryExpressionEvaluator eval = new InMemoryExpressionEvaluator(query.getExecutionContext(), 
                     parameterValues, state, query.getParsedImports(), clr, candidateAlias, query.getLanguage());
+            eval.setInMemoryCompilation(inmemoryCompilation);
             Object evalResult = evaluateBooleanExpression(filter, eval);
             if (Boolean.TRUE.equals(evalResult))
             {
@@ -328,6 +497,65 @@ public abstract class JavaQueryInMemoryEvaluator
         return result;
     }
 
+    /**
+     * Task to evaluate the filter over a range of the candidates, splitting the range in two until it is no larger than the chunk size.
+     * Each leaf evaluates with its own copy of the state map, and each candidate with its own evaluator (so its own variable values)
+     * as when evaluating serially. The results of the two halves are concatenated so the order of the candidates is retained.
+     * Note that any field of a candidate that is not loaded will be loaded from the worker thread, so this is only used where the
+     * ExecutionContext is multithreaded.
+     */
+    private class FilterTask extends RecursiveTask<List<Object>>
+    {
+        private static final long serialVersionUID = -2416932484562387153L;
+
+        final Expression filter;
+        final List<Object> set;
+        final int start;
+        final int end;
+        final int chunkSize;
+
+        FilterTask(Expression filter, List<Object> set, int start, int end, int chunkSize)
+        {
+            this.filter = filter;
+            this.set = set;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected List<Object> compute()
+        {
+            if (end - start > chunkSize)
+            {
+                int mid = (start + end) >>> 1;
+                FilterTask left = new FilterTask(filter, set, start, mid, chunkSize);
+                left.fork();
+                List<Object> result = new FilterTask(filter, set, mid, end, chunkSize).compute();
+                List<Object> leftResult = left.join();
+                leftResult.addAll(result);
+                return leftResult;
+            }
+
+            Map<String, Object> workerState = new HashMap<>(state);
+            List<Object> result = new ArrayList<>();
+            for (int i=start;i<end;i++)
+            {
+                Object obj = set.get(i);
+                workerState.put(candidateAlias, obj);
+
+                InMemoryExpressionEvaluator eval = new InMemoryExpressionEvaluator(query.getExecutionContext(), 
+                    parameterValues, workerState, query.getParsedImports(), clr, candidateAlias, query.getLanguage());
+                eval.setInMemoryCompilation(inmemoryCompilation);
+                if (Boolean.TRUE.equals(evaluateBooleanExpression(filter, eval)))
+                {
+                    result.add(obj);
+                }
+            }
+            return result;
+        }
+    }
+
     /**
      * Convenience method to evaluate the provided expression returning a boolean.
      * Caters for variables in the provided expression, attempting to process all possible values for them.
@@ -457,7 +685,13 @@ public abstract class JavaQueryInMemoryEvaluator
         return Arrays.asList(o);
     }
 
-    private List<Object> ordering(List<Object> set)
+    /**
+     * Method to order the provided objects.
+     * @param set The objects to order
+     * @param maxResults Maximum number of ordered objects required, or -1 for all
+     * @return The ordered objects
+     */
+    private List<Object> ordering(List<Object> set, long maxResults)
     {
         final Expression[] ordering = compilation.getExprOrdering();
         if (ordering == null)
@@ -468,7 +702,7 @@ public abstract class JavaQueryInMemoryEvaluator
         // Save the result set
         state.put(RESULTS_SET, set);
 
-        return QueryUtils.orderCandidates(set, ordering, state, candidateAlias, query.getExecutionContext(), clr, parameterValues, query.getParsedImports(), query.getLanguage());
+        return QueryUtils.orderCandidates(set, ordering, state, candidateAlias, query.getExecutionContext(), clr, parameterValues, query.getParsedImports(), query.getLanguage(), maxResults);
     }
 
     /**
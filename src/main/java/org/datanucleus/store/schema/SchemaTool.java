@@ -43,6 +43,7 @@ import org.datanucleus.exceptions.NucleusException;
 import org.datanucleus.exceptions.NucleusUserException;
 import org.datanucleus.metadata.FileMetaData;
 import org.datanucleus.metadata.MetaDataManager;
+import org.datanucleus.metadata.MetaDataManagerImpl;
 import org.datanucleus.metadata.MetaDataUtils;
 import org.datanucleus.metadata.PersistenceUnitMetaData;
 import org.datanucleus.store.StoreManager;
@@ -81,6 +82,7 @@ public class SchemaTool
     public static final String OPTION_API = "api";
     public static final String OPTION_CATALOG_NAME = "catalog";
     public static final String OPTION_SCHEMA_NAME = "schema";
+    public static final String OPTION_METADATA_SNAPSHOT = "metadataSnapshot";
 
     public enum Mode
     {
@@ -115,6 +117,9 @@ public class SchemaTool
     /** Whether to operate in verbose mode. */
     private boolean verbose = false;
 
+    /** Name of a file in which to write a snapshot of the metadata of the classes processed (or null if not required). */
+    private String metadataSnapshotFilename = null;
+
     /**
      * Entry method when invoked from the command line.
      * @param args List of options for processing by the available methods in this class.
@@ -143,6 +148,7 @@ public class SchemaTool
         cmd.addOption(OPTION_API, OPTION_API, "api", "API Adapter (JDO, JPA, etc)");
         cmd.addOption(OPTION_CATALOG_NAME, OPTION_CATALOG_NAME, "catalog", "CatalogName");
         cmd.addOption(OPTION_SCHEMA_NAME, OPTION_SCHEMA_NAME, "schema", "SchemaName");
+        cmd.addOption(OPTION_METADATA_SNAPSHOT, OPTION_METADATA_SNAPSHOT, "metadataSnapshot", "File to write a snapshot of the metadata to (for use with datanucleus.metadata.snapshot)");
         cmd.addOption("v", "verbose", null, "verbose output");
         cmd.addOption("pu", "persistenceUnit", "<persistence-unit>", "name of the persistence unit to handle the schema for");
         cmd.addOption("props", "properties", "props", "path to a properties file");
@@ -232,6 +238,10 @@ public class SchemaTool
         {
             tool.setIncludeAutoStart(true);
         }
+        if (cmd.hasOption(OPTION_METADATA_SNAPSHOT))
+        {
+            tool.setMetaDataSnapshotFile(cmd.getOptionArg(OPTION_METADATA_SNAPSHOT));
+        }
         if (cmd.hasOption("v"))
         {
             tool.setVerbose(true);
@@ -389,6 +399,11 @@ public class SchemaTool
                         }
                     }
                 }
+
+                if (tool.getMetaDataSnapshotFile() != null)
+                {
+                    tool.writeMetaDataSnapshot(metaDataMgr, clr);
+                }
             }
             catch (Exception e)
             {
@@ -517,6 +532,37 @@ public class SchemaTool
         storeMgr.validateSchemaForClasses(classNames, getPropertiesForSchemaTool());
     }
 
+    /**
+     * Method to write a snapshot of the metadata loaded by the MetaDataManager to the metadata snapshot file, for use by the
+     * persistence property "datanucleus.metadata.snapshot" to avoid loading this metadata at runtime.
+     * @param mmgr MetaData manager
+     * @param clr ClassLoader resolver
+     * @throws NucleusException Thrown if an error occurs writing the snapshot
+     */
+    public void writeMetaDataSnapshot(MetaDataManager mmgr, ClassLoaderResolver clr)
+    {
+        if (!(mmgr instanceof MetaDataManagerImpl))
+        {
+            throw new NucleusException("MetaDataManager of type " + mmgr.getClass().getName() + " does not support writing of a metadata snapshot");
+        }
+
+        String msg = "Writing metadata snapshot to " + metadataSnapshotFilename;
+        LOGGER.info(msg);
+        if (isVerbose())
+        {
+            System.out.println(msg);
+        }
+        try
+        {
+            ((MetaDataManagerImpl)mmgr).writeMetaDataSnapshot(new File(metadataSnapshotFilename), clr);
+        }
+        catch (NucleusException ne)
+        {
+            LOGGER.error(ne.getMessage(), ne);
+            throw ne;
+        }
+    }
+
     /**
      * Method to create a NucleusContext for the specified mode of SchemaTool
      * @param mode Mode of operation of SchemaTool
@@ -875,4 +921,15 @@ public class SchemaTool
     {
         return includeAutoStart;
     }
+
+    public String getMetaDataSnapshotFile()
+    {
+        return metadataSnapshotFilename;
+    }
+
+    public SchemaTool setMetaDataSnapshotFile(String file)
+    {
+        this.metadataSnapshotFilename = file;
+        return this;
+    }
 }
\ No newline at end of file
@@ -22,11 +22,13 @@ package org.datanucleus.store.types;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -44,6 +46,9 @@ import org.datanucleus.api.ApiAdapter;
 import org.datanucleus.exceptions.NucleusException;
 import org.datanucleus.exceptions.NucleusObjectNotFoundException;
 import org.datanucleus.exceptions.NucleusUserException;
+import org.datanucleus.flush.MapClearOperation;
+import org.datanucleus.flush.MapPutOperation;
+import org.datanucleus.flush.MapRemoveOperation;
 import org.datanucleus.identity.IdentityUtils;
 import org.datanucleus.metadata.AbstractClassMetaData;
 import org.datanucleus.metadata.AbstractMemberMetaData;
@@ -54,6 +59,7 @@ import org.datanucleus.store.FieldValues;
 import org.datanucleus.store.types.scostore.CollectionStore;
 import org.datanucleus.store.types.scostore.MapStore;
 import org.datanucleus.store.types.scostore.SetStore;
+import org.datanucleus.store.types.wrappers.backed.BackedSCO;
 import org.datanucleus.util.ClassUtils;
 import org.datanucleus.util.Localiser;
 import org.datanucleus.util.NucleusLogger;
@@ -965,6 +971,114 @@ public class SCOUtils
         return updated;
     }
 
+    /**
+     * Convenience method to return the entries of the previous value of a Map field, for use in working out what has changed
+     * when the map is replaced. Uses the contents of the previous value when they are known, namely an unwrapped map or a wrapper
+     * with its contents loaded. When the previous value is a backed wrapper of the same store without its contents loaded (always the
+     * case when container contents are not cached) then reads the entries from the store, but only when updates go to the store directly,
+     * since any operations queued by the previous wrapper are not yet in the store. Otherwise returns null, and the caller should
+     * replace the whole contents.
+     * @param ownerSM StateManager of the owner of the map
+     * @param store The backing store
+     * @param oldValue The previous value of the field
+     * @return The previous entries (if known)
+     * @param <K> Type of the map key
+     * @param <V> Type of the map value
+     */
+    public static <K, V> Map<K, V> getMapContentsForUpdate(DNStateManager ownerSM, MapStore<K, V> store, Object oldValue)
+    {
+        if (oldValue instanceof SCOContainer && ((SCOContainer)oldValue).isLoaded())
+        {
+            return (Map<K, V>)((SCOContainer)oldValue).getValue();
+        }
+        else if (oldValue instanceof BackedSCO)
+        {
+            if (((BackedSCO)oldValue).getBackingStore() != store || useQueuedUpdate(ownerSM))
+            {
+                return null;
+            }
+
+            Map<K, V> previousMap = new HashMap<>();
+            populateMapDelegateWithStoreData(previousMap, store, ownerSM);
+            return previousMap;
+        }
+        else if (oldValue instanceof SCOContainer)
+        {
+            return null;
+        }
+        return (Map<K, V>)oldValue;
+    }
+
+    /**
+     * Convenience method to return the entries of a replacement map that are not present in the previous map, or that have a
+     * different value to that in the previous map.
+     * @param map The replacement map
+     * @param previousMap The previous map
+     * @return The entries to put in the store
+     * @param <K> Type of the map key
+     * @param <V> Type of the map value
+     */
+    public static <K, V> Map<K, V> getMapEntriesToPut(Map<K, V> map, Map<K, V> previousMap)
+    {
+        Map<K, V> entriesToPut = new LinkedHashMap<>();
+        for (Map.Entry<K, V> entry : map.entrySet())
+        {
+            K key = entry.getKey();
+            V value = entry.getValue();
+            if (!previousMap.containsKey(key))
+            {
+                entriesToPut.put(key, value);
+            }
+            else
+            {
+                Object previousValue = previousMap.get(key);
+                if (previousValue != value && (previousValue == null || !previousValue.equals(value)))
+                {
+                    entriesToPut.put(key, value);
+                }
+            }
+        }
+        return entriesToPut;
+    }
+
+    /**
+     * Convenience method for use by backed Map wrappers when the map is replaced and the operation queue is in use.
+     * Queues only the changes from the previous map (removal of keys no longer present, and put of keys that are new or have a changed value),
+     * or a clear followed by put of all entries when the previous map is not known.
+     * @param ownerSM StateManager of the owner of the map
+     * @param store The backing store
+     * @param map The replacement map
+     * @param previousMap The previous map (or null if not known)
+     */
+    public static void queueMapUpdate(DNStateManager ownerSM, MapStore store, Map map, Map previousMap)
+    {
+        ExecutionContext ec = ownerSM.getExecutionContext();
+        if (previousMap == null)
+        {
+            ec.addOperationToQueue(new MapClearOperation(ownerSM, store));
+            previousMap = Collections.emptyMap();
+        }
+        else
+        {
+            Iterator<Map.Entry> previousIter = previousMap.entrySet().iterator();
+            while (previousIter.hasNext())
+            {
+                Map.Entry entry = previousIter.next();
+                if (!map.containsKey(entry.getKey()))
+                {
+                    ec.addOperationToQueue(new MapRemoveOperation(ownerSM, store, entry.getKey(), entry.getValue()));
+                }
+            }
+        }
+
+        Iterator<Map.Entry> entryIter = getMapEntriesToPut(map, previousMap).entrySet().iterator();
+        while (entryIter.hasNext())
+        {
+            Map.Entry entry = entryIter.next();
+            ec.addOperationToQueue(new MapPutOperation(ownerSM, store, entry.getKey(), entry.getValue()));
+        }
+    }
+
     /**
      * Convenience method to populate the passed delegate Map with the keys/values from the associated Store.
      * <P>
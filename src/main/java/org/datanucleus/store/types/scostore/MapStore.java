@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.Map;
 
 import org.datanucleus.state.DNStateManager;
+import org.datanucleus.store.types.SCOUtils;
 
 /**
  * Interface representation of the backing store for a Map, providing its interface with the datastore.
@@ -158,6 +159,44 @@ public interface MapStore<K, V> extends Store
         putAll(sm, map, Collections.emptyMap());
     }
 
+    /**
+     * Method to update the map to be the supplied map of entries, where we know the map entries prior to the update.
+     * Default implementation removes the keys that are no longer present, and puts the entries that are new or have a changed value,
+     * so only the difference is sent to the datastore. If the previous entries are not known then falls back to update(sm, map).
+     * @param sm StateManager of the object
+     * @param map The map to use
+     * @param previousMap The map prior to the update (null if not known)
+     */
+    default void update(DNStateManager sm, Map<K, V> map, Map<K, V> previousMap)
+    {
+        if (previousMap == null)
+        {
+            update(sm, map);
+            return;
+        }
+
+        for (Map.Entry<K, V> entry : previousMap.entrySet())
+        {
+            if (!map.containsKey(entry.getKey()))
+            {
+                if (entry.getValue() != null)
+                {
+                    remove(sm, entry.getKey(), entry.getValue());
+                }
+                else
+                {
+                    remove(sm, entry.getKey());
+                }
+            }
+        }
+
+        Map<K, V> entriesToPut = SCOUtils.getMapEntriesToPut(map, previousMap);
+        if (!entriesToPut.isEmpty())
+        {
+            putAll(sm, entriesToPut, previousMap);
+        }
+    }
+
     /**
      * Accessor for a backing store representing the key set for the Map.
      * @return Keys for the Map.
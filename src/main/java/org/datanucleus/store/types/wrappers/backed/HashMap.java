@@ -132,28 +132,21 @@ public class HashMap<K, V> extends org.datanucleus.store.types.wrappers.HashMap<
             }
             else
             {
-                // TODO This is clear+putAll. Improve it to work out what is changed using oldValue
                 if (backingStore != null)
                 {
+                    // Only send the changes from the old value to the store, reading the old entries from the store when not loaded
+                    java.util.Map oldMap = SCOUtils.getMapContentsForUpdate(ownerSM, backingStore, oldValue);
                     if (SCOUtils.useQueuedUpdate(ownerSM))
                     {
                         // If not yet flushed to store then no need to add to queue (since will be handled via insert)
                         if (ownerSM.isFlushedToDatastore() || !ownerSM.getLifecycleState().isNew())
                         {
-                            ownerSM.getExecutionContext().addOperationToQueue(new MapClearOperation(ownerSM, backingStore));
-
-                            Iterator iter = newValue.entrySet().iterator();
-                            while (iter.hasNext())
-                            {
-                                java.util.Map.Entry entry = (java.util.Map.Entry)iter.next();
-                                ownerSM.getExecutionContext().addOperationToQueue(new MapPutOperation(ownerSM, backingStore, entry.getKey(), entry.getValue()));
-                            }
+                            SCOUtils.queueMapUpdate(ownerSM, backingStore, newValue, oldMap);
                         }
                     }
                     else
                     {
-                        backingStore.clear(ownerSM);
-                        backingStore.putAll(ownerSM, newValue, Collections.emptyMap());
+                        backingStore.update(ownerSM, newValue, oldMap);
                     }
                 }
                 delegate.putAll(newValue);
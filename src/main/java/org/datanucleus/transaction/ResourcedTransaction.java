@@ -20,15 +20,20 @@ package org.datanucleus.transaction;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.transaction.Synchronization;
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
+import org.datanucleus.management.FactoryStatistics;
 import org.datanucleus.util.Localiser;
 import org.datanucleus.util.NucleusLogger;
 import org.datanucleus.util.StringUtils;
@@ -88,8 +93,42 @@ public class ResourcedTransaction
 
     private final String idString;
 
+    /** Executor for performing the phases of the commit on the branches concurrently (if any). */
+    private final ExecutorService executorService;
+
+    /** Statistics to record the timings of the commit phases with (if enabled). */
+    private final FactoryStatistics statistics;
+
+    /**
+     * Operation to perform on a branch of this transaction.
+     */
+    @FunctionalInterface
+    private interface BranchOperation
+    {
+        /**
+         * Method to perform the operation on the branch.
+         * @param branchXid Xid of the branch
+         * @param resourceManager The resource of the branch
+         * @return The result (vote) of the operation
+         * @throws XAException if the operation fails
+         */
+        int perform(Xid branchXid, XAResource resourceManager) throws XAException;
+    }
+
     ResourcedTransaction()
     {
+        this(null, null);
+    }
+
+    /**
+     * Constructor for a transaction.
+     * @param executorService Executor to use for preparing/committing the branches concurrently, or null to do them in turn
+     * @param statistics Statistics to record the timings of the commit phases with, or null if not enabled
+     */
+    ResourcedTransaction(ExecutorService executorService, FactoryStatistics statistics)
+    {
+        this.executorService = executorService;
+        this.statistics = statistics;
         xid = new XidImpl(NODE_ID, 0, NEXT_GLOBAL_TRANSACTION_ID++);
         idString = "" + NODE_ID + "-" + (NEXT_GLOBAL_TRANSACTION_ID-1);
         if (NucleusLogger.TRANSACTION.isDebugEnabled())
@@ -338,6 +377,7 @@ public class ResourcedTransaction
             {
                 // If we have only one resource, we don't ask to prepare, and we go with one-phase commit
                 status = STATUS_COMMITTING;
+                long startTime = System.currentTimeMillis();
                 Iterator<Map.Entry<Xid, XAResource>> branchesEntryIter = branches.entrySet().iterator();
                 while (branchesEntryIter.hasNext())
                 {
@@ -368,6 +408,10 @@ public class ResourcedTransaction
                         NucleusLogger.TRANSACTION.error(Localiser.msg("015038", "commit", resourceManager, getXAErrorCode(e), toString(), StringUtils.getMessageFromRootCauseOfThrowable(e)));
                     }
                 }
+                if (statistics != null)
+                {
+                    statistics.transactionCommitPhaseCompleted(System.currentTimeMillis() - startTime);
+                }
                 if (!failed)
                 {
                     status = STATUS_COMMITTED;
@@ -381,95 +425,60 @@ public class ResourcedTransaction
             {
                 // Prepare each enlisted resource
                 status = STATUS_PREPARING;
-                Iterator<Map.Entry<Xid, XAResource>> branchesEntryIter = branches.entrySet().iterator();
-                while ((!failed) && (branchesEntryIter.hasNext()))
+                failures = new ArrayList<>();
+                long startTime = System.currentTimeMillis();
+                Map<Xid, Integer> votes = performOnBranches("prepare", branches, (key, resourceManager) -> resourceManager.prepare(key), true, failures);
+                if (failures.isEmpty())
                 {
-                    Map.Entry<Xid, XAResource> branchesEntry = branchesEntryIter.next();
-                    Xid key = branchesEntry.getKey();
-                    XAResource resourceManager = branchesEntry.getValue();
-                    try
-                    {
-                        // Preparing the resource manager using its branch xid
-                        resourceManager.prepare(key);
-                    }
-                    catch (Throwable e)
+                    status = STATUS_PREPARED;
+                }
+                if (statistics != null)
+                {
+                    statistics.transactionPreparePhaseCompleted(System.currentTimeMillis() - startTime);
+                }
+
+                // Branches that voted read-only have already completed, so take no part in the second phase
+                Map<Xid, XAResource> secondPhaseBranches = new LinkedHashMap<>();
+                for (Map.Entry<Xid, XAResource> branchesEntry : branches.entrySet())
+                {
+                    Integer vote = votes.get(branchesEntry.getKey());
+                    if (vote != null && vote == XAResource.XA_RDONLY)
                     {
-                        if (failures == null)
+                        if (statistics != null)
                         {
-                            // lazy instantiate this, because we only need on failures
-                            failures = new ArrayList<>();
+                            statistics.transactionBranchReadOnly();
                         }
-                        failures.add(e);
-                        failed = true;
-                        status = STATUS_MARKED_ROLLBACK;
-                        NucleusLogger.TRANSACTION.error(Localiser.msg("015038", "prepare", resourceManager, getXAErrorCode(e), toString(), StringUtils.getMessageFromRootCauseOfThrowable(e)));
                     }
-                }
-
-                if (!failed)
-                {
-                    status = STATUS_PREPARED;
+                    else
+                    {
+                        secondPhaseBranches.put(branchesEntry.getKey(), branchesEntry.getValue());
+                    }
                 }
 
                 // Starts 2nd commit phase
                 // If fail, rollback
-                if (failed)
+                startTime = System.currentTimeMillis();
+                if (!failures.isEmpty())
                 {
                     status = STATUS_ROLLING_BACK;
-                    failed = false;
                     // Rolling back all the prepared (and unprepared) branches
-                    branchesEntryIter = branches.entrySet().iterator();
-                    while (branchesEntryIter.hasNext())
-                    {
-                        Map.Entry<Xid, XAResource> branchesEntry = branchesEntryIter.next();
-                        Xid key = branchesEntry.getKey();
-                        XAResource resourceManager = branchesEntry.getValue();
-                        try
-                        {
-                            resourceManager.rollback(key);
-                        }
-                        catch (Throwable e)
-                        {
-                            NucleusLogger.TRANSACTION.error(Localiser.msg("015038", "rollback", resourceManager, getXAErrorCode(e), toString(), StringUtils.getMessageFromRootCauseOfThrowable(e)));
-                            if (failures == null)
-                            {
-                                // lazy instantiate this, because we only need on failures
-                                failures = new ArrayList<>();
-                            }
-                            failures.add(e);
-                            failed = true;
-                        }
-                    }
+                    int numPrepareFailures = failures.size();
+                    performOnBranches("rollback", secondPhaseBranches, (key, resourceManager) -> {resourceManager.rollback(key); return XAResource.XA_OK;}, false, failures);
+                    failed = failures.size() > numPrepareFailures;
                     status = STATUS_ROLLEDBACK;
                 }
                 else
                 {
                     status = STATUS_COMMITTING;
                     // Commit each enlisted resource
-                    branchesEntryIter = branches.entrySet().iterator();
-                    while (branchesEntryIter.hasNext())
-                    {
-                        Map.Entry<Xid, XAResource> branchesEntry = branchesEntryIter.next();
-                        Xid key = branchesEntry.getKey();
-                        XAResource resourceManager = branchesEntry.getValue();
-                        try
-                        {
-                            resourceManager.commit(key, false);
-                        }
-                        catch (Throwable e)
-                        {
-                            NucleusLogger.TRANSACTION.error(Localiser.msg("015038", "commit", resourceManager, getXAErrorCode(e), toString(), StringUtils.getMessageFromRootCauseOfThrowable(e)));
-                            if (failures == null)
-                            {
-                                // lazy instantiate this, because we only need on failures
-                                failures = new ArrayList<>();
-                            }
-                            failures.add(e);
-                            failed = true;
-                        }
-                    }
+                    performOnBranches("commit", secondPhaseBranches, (key, resourceManager) -> {resourceManager.commit(key, false); return XAResource.XA_OK;}, false, failures);
+                    failed = !failures.isEmpty();
                     status = STATUS_COMMITTED;
                 }
+                if (statistics != null && !secondPhaseBranches.isEmpty())
+                {
+                    statistics.transactionCommitPhaseCompleted(System.currentTimeMillis() - startTime);
+                }
             }
 
             // Synchronization.afterCompletion
@@ -567,6 +576,69 @@ public class ResourcedTransaction
         }
     }
 
+    /**
+     * Method to perform an operation on the specified branches of this transaction. When an executor is available and there is more
+     * than one branch then the operation is performed on all branches concurrently, otherwise on each branch in turn.
+     * @param opName Name of the operation (for logging)
+     * @param targetBranches The branches, keyed by their Xid
+     * @param op The operation
+     * @param stopOnFailure Whether to stop performing the operation when it fails on a branch (only applies when done in turn)
+     * @param failures List to add any failures to
+     * @return The results (votes) of the branches where the operation succeeded, keyed by their Xid
+     */
+    private Map<Xid, Integer> performOnBranches(String opName, Map<Xid, XAResource> targetBranches, BranchOperation op, boolean stopOnFailure, List<Throwable> failures)
+    {
+        Map<Xid, Integer> results = new HashMap<>();
+        if (executorService == null || targetBranches.size() <= 1)
+        {
+            for (Map.Entry<Xid, XAResource> branchesEntry : targetBranches.entrySet())
+            {
+                XAResource resourceManager = branchesEntry.getValue();
+                try
+                {
+                    results.put(branchesEntry.getKey(), op.perform(branchesEntry.getKey(), resourceManager));
+                }
+                catch (Throwable e)
+                {
+                    failures.add(e);
+                    NucleusLogger.TRANSACTION.error(Localiser.msg("015038", opName, resourceManager, getXAErrorCode(e), toString(), StringUtils.getMessageFromRootCauseOfThrowable(e)));
+                    if (stopOnFailure)
+                    {
+                        break;
+                    }
+                }
+            }
+            return results;
+        }
+
+        Map<Xid, Future<Integer>> futures = new LinkedHashMap<>();
+        for (Map.Entry<Xid, XAResource> branchesEntry : targetBranches.entrySet())
+        {
+            futures.put(branchesEntry.getKey(), executorService.submit(() -> op.perform(branchesEntry.getKey(), branchesEntry.getValue())));
+        }
+        for (Map.Entry<Xid, Future<Integer>> futureEntry : futures.entrySet())
+        {
+            XAResource resourceManager = targetBranches.get(futureEntry.getKey());
+            try
+            {
+                results.put(futureEntry.getKey(), futureEntry.getValue().get());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                failures.add(e);
+                NucleusLogger.TRANSACTION.error(Localiser.msg("015038", opName, resourceManager, getXAErrorCode(e), toString(), StringUtils.getMessageFromRootCauseOfThrowable(e)));
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                failures.add(cause);
+                NucleusLogger.TRANSACTION.error(Localiser.msg("015038", opName, resourceManager, getXAErrorCode(cause), toString(), StringUtils.getMessageFromRootCauseOfThrowable(cause)));
+            }
+        }
+        return results;
+    }
+
     public void setRollbackOnly()
     {
         status = STATUS_MARKED_ROLLBACK;
@@ -19,8 +19,11 @@ package org.datanucleus.transaction;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 import org.datanucleus.ExecutionContext;
+import org.datanucleus.management.FactoryStatistics;
+import org.datanucleus.util.ThreadPoolUtils;
 
 /**
  * TransactionManager provides a facade for creating (Open/XA) transactions.
@@ -35,6 +38,57 @@ public class ResourcedTransactionManager
     /** Map of transaction keyed by the ExecutionContext that it is for. */
     private Map<ExecutionContext, ResourcedTransaction> txnForExecutionContext = new ConcurrentHashMap<ExecutionContext, ResourcedTransaction>();
 
+    /** Maximum number of threads to use for preparing/committing the branches of a transaction concurrently. */
+    private final int maxThreads;
+
+    /** Statistics to record the timings of the commit phases with (if enabled). */
+    private final FactoryStatistics statistics;
+
+    /** Executor for preparing/committing the branches of a transaction concurrently. Lazy initialised, so use getExecutorService() to access. */
+    private ExecutorService executorService = null;
+
+    public ResourcedTransactionManager()
+    {
+        this(0, null);
+    }
+
+    /**
+     * Constructor for a transaction manager.
+     * @param maxThreads Maximum number of threads to use for preparing/committing the branches of a transaction concurrently.
+     *     When not positive the branches are prepared/committed in turn.
+     * @param statistics Statistics to record the timings of the commit phases with, or null if not enabled
+     */
+    public ResourcedTransactionManager(int maxThreads, FactoryStatistics statistics)
+    {
+        this.maxThreads = maxThreads;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Accessor for the executor to use for preparing/committing the branches of a transaction concurrently.
+     * @return The executor, or null when the branches are to be processed in turn
+     */
+    protected synchronized ExecutorService getExecutorService()
+    {
+        if (executorService == null && maxThreads > 0)
+        {
+            executorService = ThreadPoolUtils.newFixedThreadPool("DataNucleus-Transaction", maxThreads);
+        }
+        return executorService;
+    }
+
+    /**
+     * Method to close the transaction manager, releasing any threads used for committing transactions.
+     */
+    public synchronized void close()
+    {
+        if (executorService != null)
+        {
+            executorService.shutdown();
+            executorService = null;
+        }
+    }
+
     public void setContainerManagedConnections(boolean flag)
     {
         containerManagedConnections = flag;
@@ -46,7 +100,7 @@ public class ResourcedTransactionManager
         {
             throw new NucleusTransactionException("Invalid state. Transaction has already started");
         }
-        txnForExecutionContext.put(ec, new ResourcedTransaction());
+        txnForExecutionContext.put(ec, new ResourcedTransaction(getExecutorService(), statistics));
     }
 
     public void commit(ExecutionContext ec)
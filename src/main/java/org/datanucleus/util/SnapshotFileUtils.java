@@ -0,0 +1,195 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.datanucleus.exceptions.NucleusException;
+
+/**
+ * Utilities for snapshot files, used to store state that is expensive to generate (e.g metadata, or the plugin registry) between runs.
+ * A snapshot file is GZIP-compressed serialised form, comprising a header identifying the type of snapshot (and version of its format),
+ * a key of the resources that the state was generated from (a SHA-256 hash, see {@link #newDigest()}), and the state itself.
+ * When read, the classes of the objects in the file are restricted, so a snapshot file cannot be used to instantiate any other classes.
+ */
+public class SnapshotFileUtils
+{
+    private SnapshotFileUtils()
+    {
+    }
+
+    /**
+     * Creator of the ObjectInputStream to read a snapshot with.
+     */
+    @FunctionalInterface
+    public interface ObjectInputStreamCreator
+    {
+        ObjectInputStream create(InputStream in) throws IOException;
+    }
+
+    /**
+     * Method to write a snapshot to the specified file. It is written to a temporary file and moved into place, so that no other process
+     * can read a partially written snapshot.
+     * @param file The snapshot file
+     * @param header Header identifying the type of snapshot
+     * @param key Key of the resources that the state was generated from
+     * @param state The state
+     * @throws IOException if an error occurs writing
+     */
+    public static void write(File file, String header, String key, Object state) throws IOException
+    {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists())
+        {
+            dir.mkdirs();
+        }
+
+        File tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+        try
+        {
+            try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))))
+            {
+                out.writeUTF(header);
+                out.writeUTF(key);
+                out.writeObject(state);
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Method to open the snapshot in the specified file for reading. The stream is positioned after the header, so the key (readUTF)
+     * and then the state (readObject) can be read from it. Reading an object of a class that is not allowed fails with an InvalidClassException.
+     * @param file The snapshot file
+     * @param header Header identifying the type of snapshot
+     * @param creator Creator of the ObjectInputStream (e.g to resolve classes using a ClassLoaderResolver)
+     * @param allowedClass Test for the classes whose objects may be read
+     * @param logger Logger for any problem with the file
+     * @param description Description of the type of snapshot for log messages (e.g "metadata snapshot")
+     * @return The stream, or null if the file does not exist or does not have the specified header
+     * @throws IOException if an error occurs reading
+     */
+    public static ObjectInputStream openForRead(File file, String header, ObjectInputStreamCreator creator, Predicate<Class<?>> allowedClass,
+            NucleusLogger logger, String description)
+    throws IOException
+    {
+        if (!file.isFile())
+        {
+            logger.debug(description + " " + file + " does not exist so ignoring it");
+            return null;
+        }
+
+        ObjectInputStream in = creator.create(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))));
+        try
+        {
+            in.setObjectInputFilter(info ->
+            {
+                Class<?> cls = info.serialClass();
+                if (cls == null)
+                {
+                    return ObjectInputFilter.Status.UNDECIDED;
+                }
+                else if (allowedClass.test(cls))
+                {
+                    return ObjectInputFilter.Status.ALLOWED;
+                }
+                logger.warn(description + " " + file + " contains an object of type " + cls.getName() + " which is not allowed");
+                return ObjectInputFilter.Status.REJECTED;
+            });
+            if (!header.equals(in.readUTF()))
+            {
+                logger.warn("File " + file + " is not a " + description + " of this version so ignoring it");
+                in.close();
+                return null;
+            }
+            return in;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Method to create a digest for generating the key of a snapshot.
+     * @return The (SHA-256) digest
+     */
+    public static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new NucleusException("Unable to generate key for snapshot", e);
+        }
+    }
+
+    /**
+     * Method to update the digest with the contents of the specified stream.
+     * @param digest The digest
+     * @param in The stream (read to its end, but not closed)
+     * @throws IOException if an error occurs reading
+     */
+    public static void updateDigest(MessageDigest digest, InputStream in) throws IOException
+    {
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = in.read(buffer)) > 0)
+        {
+            digest.update(buffer, 0, len);
+        }
+    }
+
+    /**
+     * Method to complete the digest and return the key, in hexadecimal form.
+     * @param digest The digest
+     * @return The key
+     */
+    public static String getKey(MessageDigest digest)
+    {
+        StringBuilder str = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            str.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return str.toString();
+    }
+}
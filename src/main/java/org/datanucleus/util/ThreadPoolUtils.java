@@ -0,0 +1,76 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utilities for creating the thread pools used by DataNucleus for performing work concurrently.
+ */
+public class ThreadPoolUtils
+{
+    private ThreadPoolUtils()
+    {
+    }
+
+    /**
+     * Method to create a pool with a fixed number of threads. The threads are daemon threads, so do not prevent the JVM from
+     * exiting, and are named using the specified prefix followed by their number (e.g "DataNucleus-Federation-1").
+     * @param threadNamePrefix Prefix for the names of the threads
+     * @param numThreads Number of threads
+     * @return The executor
+     */
+    public static ExecutorService newFixedThreadPool(String threadNamePrefix, int numThreads)
+    {
+        return Executors.newFixedThreadPool(numThreads, newThreadFactory(threadNamePrefix));
+    }
+
+    /**
+     * Method to create a pool with up to a fixed number of threads, where threads that have been idle for the specified time
+     * are ended (and started again when needed). Suitable for a pool that is used only occasionally, so holds no threads when unused.
+     * The threads are daemon threads named using the specified prefix followed by their number.
+     * @param threadNamePrefix Prefix for the names of the threads
+     * @param numThreads Maximum number of threads
+     * @param keepAliveMillis Time (millisecs) that a thread can be idle before it is ended
+     * @return The executor
+     */
+    public static ExecutorService newIdleTimeoutThreadPool(String threadNamePrefix, int numThreads, long keepAliveMillis)
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(numThreads, numThreads, keepAliveMillis, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), newThreadFactory(threadNamePrefix));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory newThreadFactory(String threadNamePrefix)
+    {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return r ->
+        {
+            Thread thread = new Thread(r, threadNamePrefix + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
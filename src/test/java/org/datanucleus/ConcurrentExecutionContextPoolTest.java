@@ -0,0 +1,141 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.management.FactoryStatistics;
+
+/**
+ * Tests for the concurrent pool of ExecutionContexts.
+ */
+public class ConcurrentExecutionContextPoolTest extends TestCase
+{
+    PersistenceNucleusContextImpl nucCtx;
+
+    /** Owners that each mock ExecutionContext was initialised with. */
+    Map<ExecutionContext, Object> owners = new HashMap<>();
+
+    protected void setUp() throws Exception
+    {
+        Map<String, Object> props = new HashMap<>();
+        props.put(PropertyNames.PROPERTY_EXECUTION_CONTEXT_MAX_IDLE, "4");
+        props.put(PropertyNames.PROPERTY_ENABLE_STATISTICS, "true");
+        nucCtx = new PersistenceNucleusContextImpl(null, props);
+    }
+
+    private ExecutionContext createExecutionContext()
+    {
+        return (ExecutionContext) Proxy.newProxyInstance(ExecutionContext.class.getClassLoader(), new Class[] {ExecutionContext.class},
+            (proxy, method, args) ->
+            {
+                if (method.getName().equals("initialise"))
+                {
+                    owners.put((ExecutionContext) proxy, args[0]);
+                    return null;
+                }
+                else if (method.getName().equals("hashCode"))
+                {
+                    return System.identityHashCode(proxy);
+                }
+                else if (method.getName().equals("equals"))
+                {
+                    return proxy == args[0];
+                }
+                return null;
+            });
+    }
+
+    public void testCheckOutReusesCheckedIn()
+    {
+        ConcurrentExecutionContextPool pool = new ConcurrentExecutionContextPool(nucCtx);
+        ExecutionContext ec = createExecutionContext();
+        pool.checkIn(ec);
+
+        Object owner = new Object();
+        assertSame(ec, pool.checkOut(owner, null));
+        assertSame(owner, owners.get(ec));
+
+        FactoryStatistics stats = nucCtx.getStatistics();
+        assertEquals(1, stats.getExecutionContextPoolHitCount());
+        assertEquals(0, stats.getExecutionContextPoolSize());
+    }
+
+    public void testIdleIsBounded()
+    {
+        ConcurrentExecutionContextPool pool = new ConcurrentExecutionContextPool(nucCtx);
+        Set<ExecutionContext> ecs = new HashSet<>();
+        for (int i=0;i<10;i++)
+        {
+            ExecutionContext ec = createExecutionContext();
+            ecs.add(ec);
+            pool.checkIn(ec);
+        }
+        pool.cleanUp();
+        assertEquals(4, nucCtx.getStatistics().getExecutionContextPoolSize());
+
+        // The held ExecutionContexts are available from the stripe and the time wheel
+        Set<ExecutionContext> checkedOut = new HashSet<>();
+        for (int i=0;i<4;i++)
+        {
+            checkedOut.add(pool.checkOut(null, null));
+        }
+        assertEquals(4, checkedOut.size());
+        assertTrue(ecs.containsAll(checkedOut));
+        assertEquals(4, nucCtx.getStatistics().getExecutionContextPoolHitCount());
+        assertEquals(0, nucCtx.getStatistics().getExecutionContextPoolSize());
+    }
+
+    public void testCleanUpExpires()
+    {
+        ConcurrentExecutionContextPool pool = new ConcurrentExecutionContextPool(nucCtx);
+        for (int i=0;i<4;i++)
+        {
+            pool.checkIn(createExecutionContext());
+        }
+        pool.expirationTime = -1;
+        pool.cleanUp();
+        assertEquals(0, nucCtx.getStatistics().getExecutionContextPoolSize());
+
+        // All could be checked in again
+        for (int i=0;i<4;i++)
+        {
+            pool.checkIn(createExecutionContext());
+        }
+        pool.expirationTime = 30000;
+        pool.cleanUp();
+        assertEquals(4, nucCtx.getStatistics().getExecutionContextPoolSize());
+    }
+
+    public void testSynchronizedPoolStatistics()
+    {
+        ExecutionContextPool pool = new ExecutionContextPool(nucCtx);
+        ExecutionContext ec = createExecutionContext();
+        pool.checkIn(ec);
+        assertEquals(1, nucCtx.getStatistics().getExecutionContextPoolSize());
+        assertSame(ec, pool.checkOut(null, null));
+        assertEquals(1, nucCtx.getStatistics().getExecutionContextPoolHitCount());
+        assertEquals(0, nucCtx.getStatistics().getExecutionContextPoolSize());
+    }
+}
@@ -0,0 +1,177 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.PersistenceNucleusContextImpl;
+
+/**
+ * Tests for the storage of field values in CachedPC.
+ */
+public class CachedPCTest extends TestCase
+{
+    public void testLoadedFields()
+    {
+        boolean[] loaded = new boolean[70];
+        loaded[1] = true;
+        loaded[65] = true;
+        CachedPC cachedPC = new CachedPC(Object.class, loaded, null, null);
+        assertTrue(Arrays.equals(loaded, cachedPC.getLoadedFields()));
+        assertTrue(Arrays.equals(new int[] {1, 65}, cachedPC.getLoadedFieldNumbers()));
+
+        cachedPC.setLoadedField(65, false);
+        cachedPC.setLoadedField(69, true);
+        assertFalse(cachedPC.isLoaded(65));
+        assertTrue(Arrays.equals(new int[] {1, 69}, cachedPC.getLoadedFieldNumbers()));
+
+        // Selection of the specified fields, as ClassUtils.getFlagsSetTo
+        assertTrue(Arrays.equals(new int[] {69, 1}, cachedPC.getFieldNumbersLoaded(new int[] {69, 2, 1}, true)));
+        assertTrue(Arrays.equals(new int[] {2, 65}, cachedPC.getFieldNumbersLoaded(new int[] {1, 2, 65}, false)));
+        assertNull(cachedPC.getFieldNumbersLoaded(new int[] {0, 65}, true));
+        assertNull(cachedPC.getFieldNumbersLoaded(null, true));
+    }
+
+    public void testFieldValues()
+    {
+        CachedPC cachedPC = new CachedPC(Object.class, new boolean[70], null, null);
+        cachedPC.setIntFieldValue(5, 42);
+        cachedPC.setDoubleFieldValue(1, 2.5);
+        cachedPC.setBooleanFieldValue(66, true);
+        cachedPC.setFieldValue(3, "Home");
+        cachedPC.setLongFieldValue(0, Long.MIN_VALUE);
+        cachedPC.setCharFieldValue(68, 'x');
+        cachedPC.setFloatFieldValue(2, -1.5f);
+
+        assertEquals(42, cachedPC.getIntFieldValue(5));
+        assertEquals(2.5, cachedPC.getDoubleFieldValue(1), 0.0);
+        assertTrue(cachedPC.getBooleanFieldValue(66));
+        assertEquals("Home", cachedPC.getFieldValue(3));
+        assertEquals(Long.MIN_VALUE, cachedPC.getLongFieldValue(0));
+        assertEquals('x', cachedPC.getCharFieldValue(68));
+        assertEquals(-1.5f, cachedPC.getFloatFieldValue(2), 0.0f);
+
+        // Primitives are available boxed too
+        assertEquals(Integer.valueOf(42), cachedPC.getFieldValue(5));
+        assertEquals(Character.valueOf('x'), cachedPC.getFieldValue(68));
+        assertNull(cachedPC.getFieldValue(4));
+
+        // Replace a primitive with an object value, and copy
+        cachedPC.setFieldValue(5, null);
+        CachedPC copy = cachedPC.getCopy();
+        assertNull(copy.getFieldValue(5));
+        assertEquals(2.5, copy.getDoubleFieldValue(1), 0.0);
+        assertEquals(Long.MIN_VALUE, copy.getLongFieldValue(0));
+        assertEquals("Home", copy.getFieldValue(3));
+
+        copy.setIntFieldValue(1, 7);
+        assertEquals(7, copy.getIntFieldValue(1));
+        assertEquals(2.5, cachedPC.getDoubleFieldValue(1), 0.0);
+    }
+
+    public void testManyPrimitiveFieldValues()
+    {
+        boolean[] loaded = new boolean[100];
+        Arrays.fill(loaded, 0, 80, true);
+        CachedPC cachedPC = new CachedPC(Object.class, loaded, null, null);
+
+        // Set in descending order so each value is inserted before the others, and beyond the loaded fields
+        for (int i = 99; i >= 0; i--)
+        {
+            cachedPC.setLongFieldValue(i, i * 10L);
+        }
+        for (int i = 0; i < 100; i += 2)
+        {
+            cachedPC.setFieldValue(i, "Value" + i);
+        }
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(i % 2 == 0 ? "Value" + i : Long.valueOf(i * 10L), cachedPC.getFieldValue(i));
+        }
+
+        CachedPC copy = cachedPC.getCopy();
+        copy.setIntFieldValue(2, 5);
+        assertEquals(5, copy.getIntFieldValue(2));
+        assertEquals(30L, copy.getLongFieldValue(3));
+        assertEquals(990L, copy.getLongFieldValue(99));
+        assertEquals("Value2", cachedPC.getFieldValue(2));
+    }
+
+    public void testTrimToSize()
+    {
+        boolean[] loaded = new boolean[20];
+        Arrays.fill(loaded, true);
+        CachedPC cachedPC = new CachedPC(Object.class, loaded, null, "id1");
+        for (int i = 0; i < 20; i++)
+        {
+            if (i % 5 == 0)
+            {
+                cachedPC.setIntFieldValue(i, i);
+            }
+            else
+            {
+                cachedPC.setFieldValue(i, "Value" + i);
+            }
+        }
+        assertEquals(20, cachedPC.getPrimitiveCapacity());
+
+        // The entry held by the cache only has room for its primitive values
+        cachedPC.trimToSize();
+        SoftLevel2Cache cache = new SoftLevel2Cache(new PersistenceNucleusContextImpl(null, new HashMap<>()));
+        cache.put("id1", cachedPC);
+        CachedPC stored = cache.get("id1");
+        assertSame(cachedPC, stored);
+        assertEquals(4, stored.getPrimitiveCapacity());
+        assertEquals(15, stored.getIntFieldValue(15));
+        assertEquals("Value16", stored.getFieldValue(16));
+
+        // Updating a copy can still add primitive values
+        CachedPC copy = stored.getCopy();
+        copy.setLongFieldValue(1, 7L);
+        assertEquals(7L, copy.getLongFieldValue(1));
+        assertEquals(10, copy.getIntFieldValue(10));
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedFieldValueAccessors()
+    {
+        CachedPC cachedPC = new CachedPC(Object.class, new boolean[4], null, "id");
+        cachedPC.setFieldValue(Integer.valueOf(2), "Home");
+        cachedPC.setIntFieldValue(3, 42);
+
+        assertEquals("Home", cachedPC.getFieldValue(Integer.valueOf(2)));
+        assertEquals("Home", cachedPC.getFieldValue(2));
+        assertEquals(Integer.valueOf(42), cachedPC.getFieldValue(Integer.valueOf(3)));
+
+        cachedPC.setFieldValue(Integer.valueOf(3), null);
+        assertNull(cachedPC.getFieldValue(3));
+    }
+
+    public void testLoadedFieldsIsCopy()
+    {
+        CachedPC cachedPC = new CachedPC(Object.class, new boolean[] {true, false}, null, "id");
+        boolean[] flags = cachedPC.getLoadedFields();
+        flags[1] = true;
+        assertFalse(cachedPC.isLoaded(1));
+        assertNotSame(flags, cachedPC.getLoadedFields());
+        assertTrue(Arrays.equals(new boolean[] {true, false}, cachedPC.getLoadedFields()));
+    }
+}
@@ -0,0 +1,177 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.PersistenceNucleusContextImpl;
+import org.datanucleus.PropertyNames;
+
+/**
+ * Tests for the off-heap Level 2 cache.
+ */
+public class OffHeapLevel2CacheTest extends TestCase
+{
+    private OffHeapLevel2Cache createCache(int size)
+    {
+        Map<String, Object> props = new HashMap<>();
+        props.put(PropertyNames.PROPERTY_CACHE_L2_OFFHEAP_SIZE, "" + size);
+        props.put(PropertyNames.PROPERTY_CACHE_L2_OFFHEAP_BLOCK_SIZE, "64");
+        return new OffHeapLevel2Cache(new PersistenceNucleusContextImpl(null, props));
+    }
+
+    public void testPutGet()
+    {
+        OffHeapLevel2Cache cache = createCache(1024 * 1024);
+
+        boolean[] loaded = new boolean[] {true, true, true, true, false};
+        CachedPC pc = new CachedPC(String.class, loaded, Long.valueOf(3), "id1");
+        pc.setLongFieldValue(0, 1234567890123L);
+        pc.setBooleanFieldValue(1, true);
+        pc.setFieldValue(2, "Some text that is longer than one block of the cache, so that it spans blocks");
+        List<Object> ids = new ArrayList<>();
+        ids.add(new CachedPC.CachedId("mydomain.B", Long.valueOf(1)));
+        pc.setFieldValue(3, ids);
+        cache.put("id1", pc);
+
+        assertTrue(cache.containsOid("id1"));
+        assertEquals(1, cache.getSize());
+
+        CachedPC copy = cache.get("id1");
+        assertNotSame(pc, copy);
+        assertEquals(String.class, copy.getObjectClass());
+        assertEquals("id1", copy.getId());
+        assertEquals(Long.valueOf(3), copy.getVersion());
+        assertTrue(Arrays.equals(loaded, copy.getLoadedFields()));
+        assertEquals(1234567890123L, copy.getLongFieldValue(0));
+        assertTrue(copy.getBooleanFieldValue(1));
+        assertEquals(pc.getFieldValue(2), copy.getFieldValue(2));
+        assertEquals(ids, copy.getFieldValue(3));
+
+        cache.evict("id1");
+        assertNull(cache.get("id1"));
+        assertEquals(0, cache.getSize());
+    }
+
+    public void testLeastRecentlyUsedEviction()
+    {
+        // 16 segments, each of 8 blocks of 64 bytes
+        OffHeapLevel2Cache cache = createCache(16 * 8 * 64);
+        for (int i=0;i<500;i++)
+        {
+            CachedPC pc = new CachedPC(String.class, new boolean[] {true}, null, "id" + i);
+            pc.setFieldValue(0, "value" + i);
+            cache.put("id" + i, pc);
+        }
+        assertTrue(cache.getSize() < 500);
+        assertNotNull(cache.get("id499"));
+        assertEquals("value499", cache.get("id499").getFieldValue(0));
+        assertNull(cache.get("id0"));
+    }
+
+    public void testPutReplacesPrevious()
+    {
+        OffHeapLevel2Cache cache = createCache(1024 * 1024);
+        CachedPC pc1 = new CachedPC(String.class, new boolean[] {true}, Long.valueOf(1), "id1");
+        pc1.setFieldValue(0, "first");
+        assertNull(cache.put("id1", pc1));
+
+        // The replaced object is returned
+        CachedPC pc2 = new CachedPC(String.class, new boolean[] {true}, Long.valueOf(2), "id1");
+        pc2.setFieldValue(0, "second");
+        CachedPC prev = cache.put("id1", pc2);
+        assertNotNull(prev);
+        assertEquals(Long.valueOf(1), prev.getVersion());
+        assertEquals("first", prev.getFieldValue(0));
+        assertEquals(Long.valueOf(2), cache.get("id1").getVersion());
+        assertEquals("second", cache.get("id1").getFieldValue(0));
+        assertEquals(1, cache.getSize());
+    }
+
+    public void testSizeBeyondIntRange()
+    {
+        Map<String, Object> props = new HashMap<>();
+        props.put(PropertyNames.PROPERTY_CACHE_L2_OFFHEAP_SIZE, "8589934592");
+        assertEquals(8589934592L, new PersistenceNucleusContextImpl(null, props).getConfiguration().getLongProperty(PropertyNames.PROPERTY_CACHE_L2_OFFHEAP_SIZE));
+
+        // The buffer of each segment must be within the maximum size of a ByteBuffer
+        assertEquals(16, OffHeapLevel2Cache.getNumberOfSegments(64L * 1024 * 1024, 128));
+        assertEquals(16, OffHeapLevel2Cache.getNumberOfSegments(16L * Integer.MAX_VALUE, 128));
+        assertEquals(32, OffHeapLevel2Cache.getNumberOfSegments(17L * Integer.MAX_VALUE, 128));
+        assertEquals(128, OffHeapLevel2Cache.getNumberOfSegments(100L * Integer.MAX_VALUE, 16));
+    }
+
+    public void testValueForms()
+    {
+        OffHeapLevel2Cache cache = createCache(1024 * 1024);
+        CachedPC pc = new CachedPC(String.class, new boolean[] {true, true, true}, Integer.valueOf(1), Long.valueOf(1));
+        pc.setIntFieldValue(0, 123);
+        pc.setFieldValue(1, "name");
+        pc.setFieldValue(2, new CachedPC.CachedId("mydomain.B", Long.valueOf(1)));
+        cache.put(Long.valueOf(1), pc);
+
+        CachedPC copy = cache.get(Long.valueOf(1));
+        assertEquals(Integer.valueOf(1), copy.getVersion());
+        assertEquals(Long.valueOf(1), copy.getId());
+        assertEquals(123, copy.getIntFieldValue(0));
+        assertEquals("name", copy.getFieldValue(1));
+        assertEquals(pc.getFieldValue(2), copy.getFieldValue(2));
+    }
+
+    public void testUniqueKeysRemovedWithObject()
+    {
+        // 16 segments, each of 8 blocks of 64 bytes
+        OffHeapLevel2Cache cache = createCache(16 * 8 * 64);
+        CacheUniqueKey key = new CacheUniqueKey(String.class.getName(), new String[] {"name"}, new Object[] {"value0"});
+        CachedPC pc = new CachedPC(String.class, new boolean[] {true}, null, "id0");
+        pc.setFieldValue(0, "value0");
+        cache.putUnique(key, pc);
+        assertEquals("value0", cache.getUnique(key).getFieldValue(0));
+
+        // Evicting the object removes its unique key
+        cache.evict("id0");
+        assertTrue(cache.uniqueIds.isEmpty());
+        assertTrue(cache.uniqueKeysById.isEmpty());
+
+        // As does the object being evicted as least recently used
+        cache.putUnique(key, pc);
+        for (int i=1;i<500;i++)
+        {
+            CachedPC other = new CachedPC(String.class, new boolean[] {true}, null, "id" + i);
+            other.setFieldValue(0, "value" + i);
+            cache.putUnique(new CacheUniqueKey(String.class.getName(), new String[] {"name"}, new Object[] {"value" + i}), other);
+        }
+        assertNull(cache.get("id0"));
+        assertFalse(cache.uniqueIds.containsKey(key));
+        assertEquals(cache.getSize(), cache.uniqueIds.size());
+        assertEquals(cache.getSize(), cache.uniqueKeysById.size());
+
+        // Removing the unique key leaves the object cached
+        CacheUniqueKey lastKey = new CacheUniqueKey(String.class.getName(), new String[] {"name"}, new Object[] {"value499"});
+        cache.removeUnique(lastKey);
+        assertNull(cache.getUnique(lastKey));
+        assertNotNull(cache.get("id499"));
+        assertFalse(cache.uniqueKeysById.containsKey("id499"));
+    }
+}
@@ -0,0 +1,158 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.cache;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.PersistenceNucleusContextImpl;
+
+/**
+ * Tests for the soft Level 2 cache, and the class based operations of AbstractReferencedLevel2Cache.
+ */
+public class SoftLevel2CacheTest extends TestCase
+{
+    private static CachedPC cachedPC(Class cls, Object id)
+    {
+        return new CachedPC(cls, new boolean[1], null, id);
+    }
+
+    public void testEvictAllOfClass()
+    {
+        SoftLevel2Cache cache = new SoftLevel2Cache(new PersistenceNucleusContextImpl(null, new HashMap<>()));
+        cache.put("s1", cachedPC(String.class, "s1"));
+        cache.put("s2", cachedPC(String.class, "s2"));
+        cache.put("i1", cachedPC(Integer.class, "i1"));
+        cache.put("l1", cachedPC(Long.class, "l1"));
+        CacheUniqueKey key = new CacheUniqueKey(String.class.getName(), new String[] {"name"}, new Object[] {"First"});
+        cache.putUnique(key, cache.get("s1"));
+        cache.pin("s2");
+        assertEquals(1, cache.getNumberOfPinnedObjects());
+
+        cache.evictAll(String.class, false);
+        assertNull(cache.get("s1"));
+        assertNull(cache.get("s2"));
+        assertNull(cache.getUnique(key));
+        assertEquals(0, cache.getNumberOfPinnedObjects());
+        assertEquals(2, cache.getSize());
+
+        cache.evictAll(Number.class, true);
+        assertTrue(cache.isEmpty());
+    }
+
+    public void testPinAllOfClass()
+    {
+        SoftLevel2Cache cache = new SoftLevel2Cache(new PersistenceNucleusContextImpl(null, new HashMap<>()));
+        cache.put("i1", cachedPC(Integer.class, "i1"));
+        cache.put("i2", cachedPC(Integer.class, "i2"));
+        cache.put("s1", cachedPC(String.class, "s1"));
+
+        cache.pinAll(Number.class, true);
+        assertEquals(2, cache.getNumberOfPinnedObjects());
+        assertEquals(1, cache.getNumberOfUnpinnedObjects());
+
+        cache.unpinAll(Number.class, true);
+        assertEquals(0, cache.getNumberOfPinnedObjects());
+        assertEquals(3, cache.getSize());
+    }
+
+    public void testIndexOfCollectedObjectsIsPurged()
+    {
+        SoftLevel2Cache cache = new SoftLevel2Cache(new PersistenceNucleusContextImpl(null, new HashMap<>()));
+        CacheUniqueKey key = new CacheUniqueKey(String.class.getName(), new String[] {"name"}, new Object[] {"First"});
+        cache.putUnique(key, cachedPC(String.class, "s0"));
+        for (int i=0;i<100;i++)
+        {
+            cache.put("s" + i, cachedPC(String.class, "s" + i));
+        }
+        assertEquals(101, cache.getIndexSize());
+
+        // Simulate the objects being garbage collected
+        for (int i=1;i<100;i++)
+        {
+            cache.unpinnedCache.remove("s" + i);
+        }
+        cache.uniqueKeyCache.remove(key);
+
+        cache.purgeIndexes();
+        assertEquals(1, cache.getIndexSize());
+        cache.evictAll(String.class, false);
+        assertTrue(cache.isEmpty());
+    }
+
+    public void testConcurrentPutPurgeAndEvict() throws Exception
+    {
+        SoftLevel2Cache cache = new SoftLevel2Cache(new PersistenceNucleusContextImpl(null, new HashMap<>()));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread[] threads = new Thread[4];
+        for (int t=0;t<threads.length;t++)
+        {
+            final int threadNo = t;
+            threads[t] = new Thread(() ->
+            {
+                try
+                {
+                    for (int i=0;i<20000;i++)
+                    {
+                        // Puts of new ids race with the purge, while puts of the shared ids race with evicts by other threads
+                        String id = (i % 2 == 0) ? ("s" + threadNo + "_" + i) : ("s" + (i % 8));
+                        CacheUniqueKey key = new CacheUniqueKey(String.class.getName(), new String[] {"name"}, new Object[] {id});
+                        cache.put(id, cachedPC(String.class, id));
+                        cache.putUnique(key, cachedPC(String.class, id));
+
+                        String evictId = "s" + ((i + threadNo) % 8);
+                        cache.evict(evictId);
+                        cache.removeUnique(new CacheUniqueKey(String.class.getName(), new String[] {"name"}, new Object[] {evictId}));
+                    }
+                }
+                catch (Throwable thr)
+                {
+                    failure.compareAndSet(null, thr);
+                }
+            });
+        }
+        Thread purger = new Thread(() ->
+        {
+            while (running.get())
+            {
+                cache.purgeIndexes();
+            }
+        });
+        purger.start();
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join(30000);
+        }
+        running.set(false);
+        purger.join(30000);
+        assertNull(failure.get());
+
+        // Every cached object must still be indexed, so evicting the class empties the cache
+        cache.evictAll(String.class, false);
+        assertTrue(cache.isEmpty());
+        assertTrue(cache.uniqueKeyCache.isEmpty());
+    }
+}
@@ -0,0 +1,319 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.flush;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.ExecutionContext;
+import org.datanucleus.PersistenceNucleusContext;
+import org.datanucleus.exceptions.NucleusException;
+import org.datanucleus.exceptions.NucleusOptimisticException;
+import org.datanucleus.metadata.ClassMetaData;
+import org.datanucleus.metadata.FileMetaData;
+import org.datanucleus.state.CallbackHandler;
+import org.datanucleus.state.DNStateManager;
+import org.datanucleus.state.LifeCycleState;
+import org.datanucleus.store.StoreManager;
+import org.datanucleus.store.StorePersistenceHandler;
+
+/**
+ * Tests for the grouped flushing of updates by FlushNonReferential.
+ */
+public class FlushNonReferentialTest extends TestCase
+{
+    List<String> calls = new ArrayList<>();
+
+    ClassMetaData cmd = new FileMetaData().newPackageMetaData("mydomain").newClassMetaData("A");
+
+    LifeCycleState clean = new LifeCycleState()
+    {
+        @Override
+        public String toString()
+        {
+            return "P_CLEAN";
+        }
+    };
+
+    /** Name of the object whose preStore callback throws an exception. */
+    String failingPreStore;
+
+    /** Exception thrown by the persistence handler updateObjects. */
+    RuntimeException updateFailure;
+
+    /** Actions performed by the preStore callback, keyed by the name of the object. */
+    Map<String, Runnable> preStoreActions = new HashMap<>();
+
+    /** Actions performed by the postStore callback, keyed by the name of the object. */
+    Map<String, Runnable> postStoreActions = new HashMap<>();
+
+    /** StateManager with its flushing flag and the name of its object. */
+    static class TestStateManager
+    {
+        String name;
+        boolean flushing;
+        int[] dirtyFieldNumbers = new int[] {1};
+        DNStateManager sm;
+    }
+
+    private TestStateManager createStateManager(String name, boolean flushing)
+    {
+        TestStateManager state = new TestStateManager();
+        state.name = name;
+        state.flushing = flushing;
+        state.sm = (DNStateManager)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {DNStateManager.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getObject" :
+                case "getInternalObjectId" :
+                    return name;
+                case "getClassMetaData" :
+                    return cmd;
+                case "getLifecycleState" :
+                    return clean;
+                case "getDirtyFieldNumbers" :
+                    return state.dirtyFieldNumbers;
+                case "isFlushing" :
+                    return state.flushing;
+                case "setFlushing" :
+                    state.flushing = (Boolean)args[0];
+                    return null;
+                case "flush" :
+                case "markAsFlushed" :
+                    calls.add(method.getName() + " " + name);
+                    return null;
+                case "hashCode" :
+                    return System.identityHashCode(proxy);
+                case "equals" :
+                    return proxy == args[0];
+                default :
+                    return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+            }
+        });
+        return state;
+    }
+
+    private ExecutionContext createExecutionContext()
+    {
+        CallbackHandler callbacks = (CallbackHandler)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {CallbackHandler.class}, (proxy, method, args) ->
+        {
+            if (method.getName().equals("preStore") && args[0].equals(failingPreStore))
+            {
+                throw new IllegalStateException("preStore failed");
+            }
+            Map<String, Runnable> actions = method.getName().equals("preStore") ? preStoreActions : method.getName().equals("postStore") ? postStoreActions : null;
+            if (actions != null && actions.containsKey(args[0]))
+            {
+                actions.get(args[0]).run();
+            }
+            return null;
+        });
+        StorePersistenceHandler handler = (StorePersistenceHandler)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {StorePersistenceHandler.class}, (proxy, method, args) ->
+        {
+            if (method.getName().equals("updateObjects"))
+            {
+                List<Object> objects = new ArrayList<>();
+                for (DNStateManager sm : (DNStateManager[])args[1])
+                {
+                    objects.add(sm.getObject());
+                }
+                calls.add("updateObjects " + objects);
+                if (updateFailure != null)
+                {
+                    throw updateFailure;
+                }
+            }
+            return null;
+        });
+        StoreManager storeMgr = (StoreManager)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {StoreManager.class},
+            (proxy, method, args) -> method.getName().equals("getPersistenceHandler") ? handler : null);
+        PersistenceNucleusContext nucCtx = (PersistenceNucleusContext)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {PersistenceNucleusContext.class},
+            (proxy, method, args) -> method.getReturnType() == boolean.class ? Boolean.FALSE : null);
+        return (ExecutionContext)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {ExecutionContext.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getCallbackHandler" :
+                    return callbacks;
+                case "getStoreManager" :
+                    return storeMgr;
+                case "getNucleusContext" :
+                    return nucCtx;
+                default :
+                    return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+            }
+        });
+    }
+
+    private static List<DNStateManager> getStateManagers(TestStateManager... states)
+    {
+        List<DNStateManager> sms = new ArrayList<>();
+        for (TestStateManager state : states)
+        {
+            sms.add(state.sm);
+        }
+        return sms;
+    }
+
+    public void testUpdatesGrouped()
+    {
+        TestStateManager a = createStateManager("a", false);
+        TestStateManager b = createStateManager("b", false);
+
+        List<NucleusOptimisticException> failures = FlushNonReferential.flushUpdatesGrouped(getStateManagers(a, b), createExecutionContext());
+        assertNull(failures);
+        assertEquals(Arrays.asList("updateObjects [a, b]", "markAsFlushed a", "markAsFlushed b"), calls);
+        assertFalse(a.flushing);
+        assertFalse(b.flushing);
+    }
+
+    public void testFlushingStateManagerNotGrouped()
+    {
+        TestStateManager a = createStateManager("a", true);
+        TestStateManager b = createStateManager("b", false);
+        TestStateManager c = createStateManager("c", false);
+
+        FlushNonReferential.flushUpdatesGrouped(getStateManagers(a, b, c), createExecutionContext());
+        assertEquals(Arrays.asList("flush a", "updateObjects [b, c]", "markAsFlushed b", "markAsFlushed c"), calls);
+        assertTrue(a.flushing);
+    }
+
+    public void testFlushingResetWhenCallbackFails()
+    {
+        TestStateManager a = createStateManager("a", false);
+        TestStateManager b = createStateManager("b", false);
+        failingPreStore = "b";
+
+        try
+        {
+            FlushNonReferential.flushUpdatesGrouped(getStateManagers(a, b), createExecutionContext());
+            fail("Expected exception from preStore");
+        }
+        catch (IllegalStateException ise)
+        {
+            // Expected
+        }
+        assertTrue(calls.isEmpty());
+        assertFalse(a.flushing);
+        assertFalse(b.flushing);
+    }
+
+    public void testFlushingResetWhenUpdateFails()
+    {
+        TestStateManager a = createStateManager("a", false);
+        TestStateManager b = createStateManager("b", false);
+        updateFailure = new NucleusException("datastore failure");
+
+        try
+        {
+            FlushNonReferential.flushUpdatesGrouped(getStateManagers(a, b), createExecutionContext());
+            fail("Expected exception from updateObjects");
+        }
+        catch (NucleusException ne)
+        {
+            assertSame(updateFailure, ne);
+        }
+        assertFalse(a.flushing);
+        assertFalse(b.flushing);
+    }
+
+    public void testOptimisticFailuresSplitPerObject()
+    {
+        TestStateManager a = createStateManager("a", false);
+        TestStateManager b = createStateManager("b", false);
+        TestStateManager c = createStateManager("c", false);
+        NucleusOptimisticException failureA = new NucleusOptimisticException("a failed", "a");
+        NucleusOptimisticException failureC = new NucleusOptimisticException("c failed", "c");
+        updateFailure = new NucleusOptimisticException("update failed", new Throwable[] {failureA, failureC});
+
+        List<NucleusOptimisticException> failures = FlushNonReferential.flushUpdatesGrouped(getStateManagers(a, b, c), createExecutionContext());
+        assertEquals(Arrays.asList(failureA, failureC), failures);
+        assertEquals(Arrays.asList("updateObjects [a, b, c]", "markAsFlushed b"), calls);
+        assertFalse(a.flushing);
+    }
+
+    public void testUnidentifiedNestedFailureFailsGroup()
+    {
+        TestStateManager a = createStateManager("a", false);
+        TestStateManager b = createStateManager("b", false);
+        TestStateManager c = createStateManager("c", false);
+        NucleusOptimisticException failureA = new NucleusOptimisticException("a failed", "a");
+        updateFailure = new NucleusOptimisticException("update failed", new Throwable[] {failureA, new NucleusException("not optimistic")});
+
+        List<NucleusOptimisticException> failures = FlushNonReferential.flushUpdatesGrouped(getStateManagers(a, b, c), createExecutionContext());
+        assertEquals(Arrays.asList(failureA), failures);
+        assertEquals(Arrays.asList("updateObjects [a, b, c]"), calls);
+        assertFalse(a.flushing);
+    }
+
+    public void testSingleOptimisticFailureFailsGroup()
+    {
+        TestStateManager a = createStateManager("a", false);
+        TestStateManager b = createStateManager("b", false);
+        updateFailure = new NucleusOptimisticException("b failed", "b");
+
+        List<NucleusOptimisticException> failures = FlushNonReferential.flushUpdatesGrouped(getStateManagers(a, b), createExecutionContext());
+        assertEquals(Arrays.asList(updateFailure), failures);
+        assertEquals(Arrays.asList("updateObjects [a, b]"), calls);
+    }
+
+    public void testBareOptimisticFailureFailsGroup()
+    {
+        TestStateManager a = createStateManager("a", false);
+        TestStateManager b = createStateManager("b", false);
+        TestStateManager c = createStateManager("c", false);
+        updateFailure = new NucleusOptimisticException("update failed");
+
+        List<NucleusOptimisticException> failures = FlushNonReferential.flushUpdatesGrouped(getStateManagers(a, b, c), createExecutionContext());
+        assertEquals(Arrays.asList(updateFailure), failures);
+        assertEquals(Arrays.asList("updateObjects [a, b, c]"), calls);
+        assertFalse(a.flushing);
+        assertFalse(b.flushing);
+        assertFalse(c.flushing);
+    }
+
+    public void testFieldsUpdatedByLaterPreStoreAreGrouped()
+    {
+        TestStateManager a = createStateManager("a", false);
+        TestStateManager b = createStateManager("b", false);
+        preStoreActions.put("b", () -> a.dirtyFieldNumbers = new int[] {1, 2});
+
+        List<NucleusOptimisticException> failures = FlushNonReferential.flushUpdatesGrouped(getStateManagers(a, b), createExecutionContext());
+        assertNull(failures);
+        assertEquals(Arrays.asList("updateObjects [a]", "markAsFlushed a", "updateObjects [b]", "markAsFlushed b"), calls);
+    }
+
+    public void testFieldsUpdatedAfterGroupingAreFlushedAgain()
+    {
+        TestStateManager a = createStateManager("a", false);
+        TestStateManager b = createStateManager("b", false);
+        postStoreActions.put("a", () -> b.dirtyFieldNumbers = new int[] {1, 2});
+
+        List<NucleusOptimisticException> failures = FlushNonReferential.flushUpdatesGrouped(getStateManagers(a, b), createExecutionContext());
+        assertNull(failures);
+        assertEquals(Arrays.asList("updateObjects [a, b]", "markAsFlushed a", "flush b"), calls);
+        assertFalse(b.flushing);
+    }
+}
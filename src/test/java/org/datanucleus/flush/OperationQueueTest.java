@@ -0,0 +1,195 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.flush;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.metadata.AbstractMemberMetaData;
+import org.datanucleus.metadata.ClassMetaData;
+import org.datanucleus.metadata.FieldMetaData;
+import org.datanucleus.metadata.FileMetaData;
+import org.datanucleus.state.DNStateManager;
+import org.datanucleus.store.types.scostore.CollectionStore;
+import org.datanucleus.store.types.scostore.MapStore;
+
+/**
+ * Tests for the processing of queued SCO operations by OperationQueue.
+ */
+public class OperationQueueTest extends TestCase
+{
+    List<String> calls = new ArrayList<>();
+
+    /** Element that is equal to any other element with the same name. */
+    static class Element
+    {
+        final String name;
+        final int instance;
+
+        Element(String name, int instance)
+        {
+            this.name = name;
+            this.instance = instance;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            return obj instanceof Element && ((Element)obj).name.equals(name);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return name.hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return name + "#" + instance;
+        }
+    }
+
+    AbstractMemberMetaData mmd;
+
+    protected void setUp() throws Exception
+    {
+        ClassMetaData cmd = new FileMetaData().newPackageMetaData("mydomain").newClassMetaData("A");
+        mmd = new FieldMetaData(cmd, "elements")
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public int getAbsoluteFieldNumber()
+            {
+                return 0;
+            }
+        };
+    }
+
+    private DNStateManager createStateManager()
+    {
+        return (DNStateManager)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {DNStateManager.class}, 
+            (proxy, method, args) -> method.getReturnType() == boolean.class ? Boolean.FALSE : null);
+    }
+
+    private <T> T createStore(Class<T> storeType)
+    {
+        return storeType.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {storeType}, (proxy, method, args) -> 
+        {
+            if (method.getName().equals("getOwnerMemberMetaData"))
+            {
+                return mmd;
+            }
+            Object arg = args.length > 1 ? args[1] : null;
+            if (arg instanceof Collection)
+            {
+                arg = new ArrayList<>((Collection)arg);
+            }
+            else if (arg instanceof Map)
+            {
+                arg = new TreeMap<>((Map)arg);
+            }
+            calls.add(method.getName() + " " + arg);
+            return method.getReturnType() == boolean.class ? Boolean.TRUE : null;
+        }));
+    }
+
+    public void testCollectionOperationsReducedToNetChange()
+    {
+        DNStateManager sm1 = createStateManager();
+        DNStateManager sm2 = createStateManager();
+        CollectionStore store = createStore(CollectionStore.class);
+
+        OperationQueue queue = new OperationQueue();
+        queue.enqueue(new CollectionAddOperation(sm1, store, "a"));
+        queue.enqueue(new CollectionAddOperation(sm2, store, "x"));
+        queue.enqueue(new CollectionAddOperation(sm1, store, "b"));
+        queue.enqueue(new CollectionRemoveOperation(sm1, store, "a", true));
+        queue.enqueue(new CollectionAddOperation(sm1, store, "c"));
+        queue.enqueue(new CollectionRemoveOperation(sm1, store, "d", true));
+
+        queue.performAll(store, sm1);
+        assertEquals(Arrays.asList("remove d", "addAll [b, c]"), calls);
+        assertEquals(1, queue.getOperations().size());
+
+        calls.clear();
+        queue.performAll(store, sm1);
+        assertTrue(calls.isEmpty());
+        queue.performAll(store, sm2);
+        assertEquals(Arrays.asList("add x"), calls);
+        assertTrue(queue.getOperations().isEmpty());
+    }
+
+    public void testMapOperationsReducedToNetChange()
+    {
+        DNStateManager sm = createStateManager();
+        MapStore store = createStore(MapStore.class);
+
+        OperationQueue queue = new OperationQueue();
+        queue.enqueue(new MapPutOperation(sm, store, "a", 1));
+        queue.enqueue(new MapPutOperation(sm, store, "b", 2));
+        queue.enqueue(new MapRemoveOperation(sm, store, "a", null));
+        queue.enqueue(new MapPutOperation(sm, store, "c", 3));
+        queue.enqueue(new MapPutOperation(sm, store, "b", 4));
+        queue.enqueue(new MapClearOperation(sm, store));
+        queue.enqueue(new MapPutOperation(sm, store, "d", 5));
+
+        queue.performAll(store, sm);
+        assertEquals(Arrays.asList("putAll {b=4, c=3}", "clear null", "put d"), calls);
+        assertTrue(queue.getOperations().isEmpty());
+    }
+
+    public void testCollectionOperationsMatchEqualElements()
+    {
+        DNStateManager sm = createStateManager();
+        CollectionStore store = createStore(CollectionStore.class);
+
+        // Add of one instance and remove of an equal instance cancel each other out
+        OperationQueue queue = new OperationQueue();
+        queue.enqueue(new CollectionAddOperation(sm, store, new Element("x", 1)));
+        queue.enqueue(new CollectionRemoveOperation(sm, store, new Element("x", 2), true));
+        queue.performAll(store, sm);
+        assertTrue(calls.isEmpty());
+
+        // The most recently added instance is the one added
+        queue.enqueue(new CollectionAddOperation(sm, store, new Element("x", 1)));
+        queue.enqueue(new CollectionRemoveOperation(sm, store, new Element("x", 2), true));
+        queue.enqueue(new CollectionAddOperation(sm, store, new Element("x", 3)));
+        queue.enqueue(new CollectionAddOperation(sm, store, new Element("y", 1)));
+        queue.performAll(store, sm);
+        assertEquals(Arrays.asList("addAll [x#3, y#1]"), calls);
+
+        // Net removal uses the removed instance, even when the last operation was an add
+        calls.clear();
+        queue.enqueue(new CollectionRemoveOperation(sm, store, new Element("x", 1), true));
+        queue.enqueue(new CollectionRemoveOperation(sm, store, new Element("x", 2), true));
+        queue.enqueue(new CollectionAddOperation(sm, store, new Element("x", 3)));
+        queue.performAll(store, sm);
+        assertEquals(Arrays.asList("remove x#2"), calls);
+        assertTrue(queue.getOperations().isEmpty());
+    }
+}
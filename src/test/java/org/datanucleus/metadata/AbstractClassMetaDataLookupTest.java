@@ -0,0 +1,160 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.metadata;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the flattened member lookups of AbstractClassMetaData, checking that they give the same
+ * answers as navigating the inheritance tree.
+ */
+public class AbstractClassMetaDataLookupTest extends TestCase
+{
+    private static final String[] NAMES = {"id", "name", "version", "extra", "unknown"};
+
+    private ClassMetaData root;
+    private ClassMetaData sub;
+    private ClassMetaData subsub;
+
+    protected void setUp() throws Exception
+    {
+        PackageMetaData pmd = new PackageMetaData("mydomain");
+
+        // Root : id, name, version
+        root = new ClassMetaData(pmd, "Root");
+        setMembers(root, null, new AbstractMemberMetaData[0],
+            new FieldMetaData(root, "id"), new FieldMetaData(root, "name"), new FieldMetaData(root, "version"));
+
+        // Sub : overrides Root.name, adds extra, and redefines version
+        sub = new ClassMetaData(pmd, "Sub");
+        AbstractMemberMetaData overrideName = new FieldMetaData(sub, "mydomain.Root.name");
+        setMembers(sub, root, new AbstractMemberMetaData[] {overrideName},
+            new FieldMetaData(sub, "extra"), new FieldMetaData(sub, "version"));
+        sub.members.add(0, overrideName);
+
+        // SubSub : no members of its own
+        subsub = new ClassMetaData(pmd, "SubSub");
+        setMembers(subsub, sub, new AbstractMemberMetaData[0]);
+    }
+
+    private static void setMembers(AbstractClassMetaData cmd, AbstractClassMetaData superCmd, AbstractMemberMetaData[] overridden, AbstractMemberMetaData... managed)
+    {
+        cmd.pcSuperclassMetaData = superCmd;
+        cmd.overriddenMembers = overridden;
+        cmd.managedMembers = managed;
+        cmd.memberPositionsByName = new HashMap<>();
+        for (int i=0;i<managed.length;i++)
+        {
+            cmd.members.add(managed[i]);
+            cmd.memberPositionsByName.put(managed[i].getName(), i);
+        }
+        cmd.noOfInheritedManagedMembers = superCmd != null ? superCmd.memberCount : 0;
+        cmd.memberCount = cmd.noOfInheritedManagedMembers + managed.length;
+        cmd.setInitialised();
+    }
+
+    private static void initialiseLookups(AbstractClassMetaData cmd) throws Exception
+    {
+        Method m = AbstractClassMetaData.class.getDeclaredMethod("initialiseMemberLookups");
+        m.setAccessible(true);
+        m.invoke(cmd);
+    }
+
+    private static Map<String, Object> describe(AbstractClassMetaData cmd)
+    {
+        Map<String, Object> results = new HashMap<>();
+        for (String name : NAMES)
+        {
+            results.put("member:" + name, cmd.getMetaDataForMember(name));
+            results.put("position:" + name, cmd.getAbsolutePositionOfMember(name));
+        }
+        for (int i=-1;i<=cmd.memberCount;i++)
+        {
+            results.put("absolute:" + i, cmd.getMetaDataForManagedMemberAtAbsolutePosition(i));
+        }
+        return results;
+    }
+
+    public void testLookupsMatchInheritanceNavigation() throws Exception
+    {
+        ClassMetaData[] cmds = {root, sub, subsub};
+        Map<ClassMetaData, Map<String, Object>> baseline = new HashMap<>();
+        for (ClassMetaData cmd : cmds)
+        {
+            assertNull(cmd.managedMembersByAbsolutePosition);
+            baseline.put(cmd, describe(cmd));
+        }
+
+        for (ClassMetaData cmd : cmds)
+        {
+            initialiseLookups(cmd);
+            assertNotNull(cmd.managedMembersByAbsolutePosition);
+            assertNotNull(cmd.membersByName);
+            assertNotNull(cmd.absoluteMemberPositionsByName);
+        }
+
+        for (ClassMetaData cmd : cmds)
+        {
+            Map<String, Object> expected = baseline.get(cmd);
+            Map<String, Object> actual = describe(cmd);
+            for (Map.Entry<String, Object> entry : expected.entrySet())
+            {
+                assertSame(cmd.getFullClassName() + " " + entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+            }
+        }
+    }
+
+    public void testOverriddenAndRedefinedMembers() throws Exception
+    {
+        initialiseLookups(root);
+        initialiseLookups(sub);
+        initialiseLookups(subsub);
+
+        // Overridden member keeps the superclass position but resolves to the overriding definition
+        AbstractMemberMetaData overrideName = sub.overriddenMembers[0];
+        assertEquals(1, sub.getAbsolutePositionOfMember("name"));
+        assertSame(overrideName, sub.getMetaDataForMember("name"));
+        assertSame(overrideName, sub.getMetaDataForManagedMemberAtAbsolutePosition(1));
+        assertSame(overrideName, subsub.getMetaDataForManagedMemberAtAbsolutePosition(1));
+        assertSame(root.managedMembers[1], root.getMetaDataForManagedMemberAtAbsolutePosition(1));
+
+        // Redefined member resolves to the subclass definition by name, while its superclass position stays unchanged
+        assertEquals(4, sub.getAbsolutePositionOfMember("version"));
+        assertSame(sub.managedMembers[1], sub.getMetaDataForMember("version"));
+        assertSame(sub.managedMembers[1], subsub.getMetaDataForMember("version"));
+        assertSame(root.managedMembers[2], sub.getMetaDataForManagedMemberAtAbsolutePosition(2));
+        assertEquals(2, root.getAbsolutePositionOfMember("version"));
+
+        assertEquals(-1, subsub.getAbsolutePositionOfMember("unknown"));
+        assertNull(subsub.getMetaDataForMember("unknown"));
+        assertNull(subsub.getMetaDataForManagedMemberAtAbsolutePosition(5));
+    }
+
+    public void testSuperclassWithoutLookupsNavigatesTree() throws Exception
+    {
+        initialiseLookups(sub);
+        assertNull(sub.membersByName);
+        assertNull(sub.absoluteMemberPositionsByName);
+        assertEquals(0, sub.getAbsolutePositionOfMember("id"));
+        assertSame(root.managedMembers[0], sub.getMetaDataForMember("id"));
+    }
+}
@@ -0,0 +1,103 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.metadata;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the locking of class hierarchies when loading metadata.
+ */
+public class MetaDataLoadLocksTest extends TestCase
+{
+    public void testIndependentHierarchies() throws Exception
+    {
+        MetaDataLoadLocks locks = new MetaDataLoadLocks();
+        assertTrue(locks.lock("mydomain.A"));
+        assertTrue(locks.lock("mydomain.A"));
+
+        AtomicBoolean lockedB = new AtomicBoolean();
+        Thread other = new Thread(() ->
+        {
+            lockedB.set(locks.lock("mydomain.B"));
+            locks.unlock("mydomain.B");
+        });
+        other.start();
+        other.join(5000);
+        assertTrue(lockedB.get());
+
+        locks.unlock("mydomain.A");
+        locks.unlock("mydomain.A");
+    }
+
+    public void testSameHierarchyWaits() throws Exception
+    {
+        MetaDataLoadLocks locks = new MetaDataLoadLocks();
+        assertTrue(locks.lock("mydomain.A"));
+
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread other = new Thread(() ->
+        {
+            if (locks.lock("mydomain.A"))
+            {
+                locked.countDown();
+                locks.unlock("mydomain.A");
+            }
+        });
+        other.start();
+        assertFalse(locked.await(100, TimeUnit.MILLISECONDS));
+
+        locks.unlock("mydomain.A");
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        other.join(5000);
+    }
+
+    public void testWaitingWouldDeadlock() throws Exception
+    {
+        MetaDataLoadLocks locks = new MetaDataLoadLocks();
+        CountDownLatch otherLockedB = new CountDownLatch(1);
+        AtomicBoolean otherLockedA = new AtomicBoolean();
+        Thread other = new Thread(() ->
+        {
+            locks.lock("mydomain.B");
+            otherLockedB.countDown();
+            // Waits for this thread to release A
+            otherLockedA.set(locks.lock("mydomain.A"));
+            locks.unlock("mydomain.A");
+            locks.unlock("mydomain.B");
+        });
+
+        assertTrue(locks.lock("mydomain.A"));
+        other.start();
+        assertTrue(otherLockedB.await(5, TimeUnit.SECONDS));
+        while (other.getState() != Thread.State.WAITING)
+        {
+            Thread.sleep(5);
+        }
+
+        // Other thread holds B and is waiting for A, so can't wait for B
+        assertFalse(locks.lock("mydomain.B"));
+
+        locks.unlock("mydomain.A");
+        other.join(5000);
+        assertTrue(otherLockedA.get());
+    }
+}
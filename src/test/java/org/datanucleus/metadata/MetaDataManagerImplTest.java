@@ -0,0 +1,245 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.metadata;
+
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.ClassLoaderResolver;
+import org.datanucleus.ClassLoaderResolverImpl;
+import org.datanucleus.NucleusContext;
+import org.datanucleus.PersistenceNucleusContextImpl;
+import org.datanucleus.PropertyNames;
+import org.datanucleus.api.ApiAdapter;
+import org.datanucleus.store.types.TypeManager;
+import org.datanucleus.store.types.TypeManagerImpl;
+
+/**
+ * Tests for the loading of class metadata by MetaDataManagerImpl.
+ */
+public class MetaDataManagerImplTest extends TestCase
+{
+    static class Sample1
+    {
+    }
+
+    static class Sample2
+    {
+    }
+
+    static class Sample3
+    {
+    }
+
+    static class Sample4
+    {
+    }
+
+    /**
+     * MetaDataManager that provides metadata (with the members defaulted) for the specified classes.
+     */
+    static class TestMetaDataManager extends MetaDataManagerImpl
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Class> classes;
+
+        TestMetaDataManager(Class... classes)
+        {
+            super(createNucleusContext(classes));
+            this.classes = Arrays.asList(classes);
+        }
+
+        /**
+         * Create a NucleusContext for the specified persistable classes, with an API that persists fields by default.
+         * @param classes The persistable classes
+         * @return The context
+         */
+        private static NucleusContext createNucleusContext(Class... classes)
+        {
+            List<Class> persistableClasses = Arrays.asList(classes);
+            ApiAdapter api = (ApiAdapter)Proxy.newProxyInstance(MetaDataManagerImplTest.class.getClassLoader(), new Class[] {ApiAdapter.class},
+                (proxy, method, args) ->
+                {
+                    if (method.getName().equals("isPersistable") && args.length == 1 && args[0] instanceof Class)
+                    {
+                        return persistableClasses.contains(args[0]);
+                    }
+                    return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+                });
+            NucleusContext ctx = new PersistenceNucleusContextImpl(null, new HashMap<>());
+            TypeManager[] typeMgr = new TypeManager[1];
+            NucleusContext apiCtx = (NucleusContext)Proxy.newProxyInstance(MetaDataManagerImplTest.class.getClassLoader(), new Class[] {NucleusContext.class},
+                (proxy, method, args) ->
+                {
+                    switch (method.getName())
+                    {
+                        case "getApiAdapter" :
+                            return api;
+                        case "getTypeManager" :
+                            return typeMgr[0];
+                        default :
+                            return method.invoke(ctx, args);
+                    }
+                });
+            typeMgr[0] = new TypeManagerImpl(apiCtx);
+            return apiCtx;
+        }
+
+        @Override
+        protected AbstractClassMetaData loadMetaDataForClass(Class c, ClassLoaderResolver clr)
+        {
+            if (!classes.contains(c))
+            {
+                return null;
+            }
+            FileMetaData filemd = new FileMetaData();
+            PackageMetaData pmd = filemd.newPackageMetaData(c.getPackage().getName());
+            ClassMetaData cmd = pmd.newClassMetaData(c.getName().substring(c.getPackage().getName().length() + 1));
+            registerMetaDataForClass(c.getName(), cmd);
+            return cmd;
+        }
+
+        @Override
+        protected FileMetaData parseXmlFile(URL fileURL)
+        {
+            return null;
+        }
+
+        @Override
+        public void registerFile(String fileURLString, FileMetaData filemd, ClassLoaderResolver clr)
+        {
+        }
+    }
+
+    public void testListenersNotifiedOncePerClassWithConcurrentLoads() throws Exception
+    {
+        Class[] classes = {Sample1.class, Sample2.class, Sample3.class, Sample4.class};
+        TestMetaDataManager mmgr = new TestMetaDataManager(classes);
+        Map<String, AtomicInteger> loadedCounts = new ConcurrentHashMap<>();
+        mmgr.registerListener(cmd -> loadedCounts.computeIfAbsent(cmd.getFullClassName(), k -> new AtomicInteger()).incrementAndGet());
+
+        ClassLoaderResolver clr = new ClassLoaderResolverImpl();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i=0;i<8;i++)
+        {
+            int offset = i;
+            Thread thread = new Thread(() ->
+            {
+                try
+                {
+                    start.await();
+                    for (int j=0;j<classes.length;j++)
+                    {
+                        Class cls = classes[(offset + j) % classes.length];
+                        AbstractClassMetaData cmd = mmgr.getMetaDataForClass(cls, clr);
+                        assertNotNull(cmd);
+                        assertTrue(cmd.isInitialised());
+                    }
+                }
+                catch (Throwable thr)
+                {
+                    synchronized (failures)
+                    {
+                        failures.add(thr);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertEquals(failures.toString(), 0, failures.size());
+        assertEquals(classes.length, loadedCounts.size());
+        for (Class cls : classes)
+        {
+            assertEquals(cls.getName(), 1, loadedCounts.get(cls.getName()).get());
+        }
+    }
+
+    private static Map<String, Future<FileMetaData>> parseXmlFiles(boolean concurrent, Set<Thread> parsingThreads) throws Exception
+    {
+        TestMetaDataManager mmgr = new TestMetaDataManager()
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected FileMetaData parseXmlFile(URL fileURL)
+            {
+                parsingThreads.add(Thread.currentThread());
+                FileMetaData filemd = new FileMetaData();
+                filemd.setFilename(fileURL.toString());
+                return filemd;
+            }
+
+            @Override
+            protected boolean supportsConcurrentXmlParsing()
+            {
+                return concurrent;
+            }
+        };
+        mmgr.getNucleusContext().getConfiguration().setProperty(PropertyNames.PROPERTY_METADATA_XML_MAX_THREADS, 4);
+
+        List<URL> urls = new ArrayList<>();
+        for (int i=0;i<6;i++)
+        {
+            urls.add(new URL("file:/mydomain/package" + i + ".jdo"));
+        }
+        Map<String, Future<FileMetaData>> parsedFiles = mmgr.parseXmlFiles(urls);
+        for (URL url : urls)
+        {
+            assertEquals(url.toString(), mmgr.getParsedXmlFile(parsedFiles, url).getFilename());
+        }
+        return parsedFiles;
+    }
+
+    public void testXmlFilesParsedInParallelOnlyWhenSupported() throws Exception
+    {
+        Set<Thread> parsingThreads = ConcurrentHashMap.newKeySet();
+        assertNull(parseXmlFiles(false, parsingThreads));
+        assertEquals(Collections.singleton(Thread.currentThread()), parsingThreads);
+
+        parsingThreads.clear();
+        assertNotNull(parseXmlFiles(true, parsingThreads));
+        assertFalse(parsingThreads.contains(Thread.currentThread()));
+        for (Thread thread : parsingThreads)
+        {
+            assertTrue(thread.getName(), thread.getName().startsWith("DataNucleus-MetaData-"));
+        }
+    }
+}
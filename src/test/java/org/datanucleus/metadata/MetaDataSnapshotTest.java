@@ -0,0 +1,221 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.metadata;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.ClassLoaderResolver;
+import org.datanucleus.ClassLoaderResolverImpl;
+import org.datanucleus.metadata.MetaDataManagerImplTest.TestMetaDataManager;
+
+/**
+ * Tests for the writing and reading of metadata snapshots.
+ */
+public class MetaDataSnapshotTest extends TestCase
+{
+    static class Sample
+    {
+        String name;
+    }
+
+    static class Person
+    {
+        long id;
+        String name;
+        int[] scores;
+        List<String> nicknames;
+        Date birthDate;
+    }
+
+    static class Employee extends Person
+    {
+        double salary;
+        Person manager;
+    }
+
+    ClassLoaderResolver clr = new ClassLoaderResolverImpl();
+
+    private static FileMetaData createFileMetaData() throws Exception
+    {
+        FileMetaData filemd = new FileMetaData();
+        PackageMetaData pmd = filemd.newPackageMetaData("org.datanucleus.metadata");
+        ClassMetaData cmd = pmd.newClassMetaData("MetaDataSnapshotTest$Sample");
+        FieldMetaData fmd = new FieldMetaData(cmd, "name");
+        fmd.memberRepresented = Sample.class.getDeclaredField("name");
+        cmd.addMember(fmd);
+        return filemd;
+    }
+
+    private static void writeFile(File file, String contents) throws IOException
+    {
+        try (FileOutputStream out = new FileOutputStream(file))
+        {
+            out.write(contents.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public void testWriteRead() throws Exception
+    {
+        File file = File.createTempFile("snapshot", ".ser");
+        try
+        {
+            Map<String, FileMetaData> fileMetaDataByURLString = new HashMap<>();
+            fileMetaDataByURLString.put("annotations:" + Sample.class.getName(), createFileMetaData());
+            MetaDataSnapshot.write(file, fileMetaDataByURLString, clr);
+
+            Map<String, FileMetaData> read = MetaDataSnapshot.read(file, clr);
+            assertNotNull(read);
+            assertEquals(1, read.size());
+            FileMetaData filemd = read.get("annotations:" + Sample.class.getName());
+            ClassMetaData cmd = filemd.getPackage(0).getClass(0);
+            assertEquals(Sample.class.getName(), cmd.getFullClassName());
+            AbstractMemberMetaData mmd = cmd.getMetaDataForMemberAtRelativePosition(0);
+            assertEquals("name", mmd.getName());
+            assertEquals(Sample.class.getDeclaredField("name"), mmd.getMemberRepresented());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testChangedMetaDataFileInvalidatesSnapshot() throws Exception
+    {
+        File file = File.createTempFile("snapshot", ".ser");
+        File mdFile = File.createTempFile("package", ".jdo");
+        try
+        {
+            writeFile(mdFile, "<jdo/>");
+            Map<String, FileMetaData> fileMetaDataByURLString = new HashMap<>();
+            fileMetaDataByURLString.put(mdFile.toURI().toURL().toString(), createFileMetaData());
+            MetaDataSnapshot.write(file, fileMetaDataByURLString, clr);
+            assertNotNull(MetaDataSnapshot.read(file, clr));
+
+            writeFile(mdFile, "<jdo><package/></jdo>");
+            assertNull(MetaDataSnapshot.read(file, clr));
+        }
+        finally
+        {
+            file.delete();
+            mdFile.delete();
+        }
+    }
+
+    public void testInvalidSnapshot() throws Exception
+    {
+        File file = File.createTempFile("snapshot", ".ser");
+        try
+        {
+            writeFile(file, "not a snapshot");
+            assertNull(MetaDataSnapshot.read(file, clr));
+        }
+        finally
+        {
+            file.delete();
+        }
+        assertNull(MetaDataSnapshot.read(file, clr));
+    }
+
+    public void testWriteReadInitialisedMetaData() throws Exception
+    {
+        TestMetaDataManager mmgr = new TestMetaDataManager(Person.class, Employee.class);
+        AbstractClassMetaData employeeCmd = mmgr.getMetaDataForClass(Employee.class, clr);
+        assertTrue(employeeCmd.isInitialised());
+
+        File file = File.createTempFile("snapshot", ".ser");
+        try
+        {
+            Map<String, FileMetaData> fileMetaDataByURLString = new HashMap<>();
+            fileMetaDataByURLString.put("annotations:" + Person.class.getName(), mmgr.getMetaDataForClass(Person.class, clr).getPackageMetaData().getFileMetaData());
+            fileMetaDataByURLString.put("annotations:" + Employee.class.getName(), employeeCmd.getPackageMetaData().getFileMetaData());
+            MetaDataSnapshot.write(file, fileMetaDataByURLString, clr);
+
+            Map<String, FileMetaData> read = MetaDataSnapshot.read(file, clr);
+            assertNotNull(read);
+            AbstractClassMetaData readCmd = read.get("annotations:" + Employee.class.getName()).getPackage(0).getClass(0);
+            assertTrue(readCmd.isInitialised());
+            assertEquals(Employee.class.getName(), readCmd.getFullClassName());
+            assertEquals(employeeCmd.getNoOfManagedMembers(), readCmd.getNoOfManagedMembers());
+            assertEquals(employeeCmd.getAllMemberPositions().length, readCmd.getAllMemberPositions().length);
+
+            // Superclass metadata is part of the graph
+            AbstractClassMetaData readSuperCmd = readCmd.getSuperAbstractClassMetaData();
+            assertEquals(Person.class.getName(), readSuperCmd.getFullClassName());
+            assertSame(readSuperCmd, read.get("annotations:" + Person.class.getName()).getPackage(0).getClass(0));
+
+            // Types and members are resolved, including primitives, arrays and classes of the application
+            for (int i=0;i<employeeCmd.getAllMemberPositions().length;i++)
+            {
+                AbstractMemberMetaData mmd = employeeCmd.getMetaDataForManagedMemberAtAbsolutePosition(i);
+                AbstractMemberMetaData readMmd = readCmd.getMetaDataForManagedMemberAtAbsolutePosition(i);
+                assertEquals(mmd.getFullFieldName(), readMmd.getFullFieldName());
+                assertEquals(mmd.getType(), readMmd.getType());
+                assertEquals(mmd.getMemberRepresented(), readMmd.getMemberRepresented());
+                assertEquals(mmd.getPersistenceModifier(), readMmd.getPersistenceModifier());
+            }
+            assertEquals(double.class, readCmd.getMetaDataForMember("salary").getType());
+            assertEquals(int[].class, readSuperCmd.getMetaDataForMember("scores").getType());
+            assertEquals(Person.class, readCmd.getMetaDataForMember("manager").getType());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testSnapshotWithOtherTypesIsRejected() throws Exception
+    {
+        File file = File.createTempFile("snapshot", ".ser");
+        try
+        {
+            Map<String, FileMetaData> fileMetaDataByURLString = new HashMap<>();
+            fileMetaDataByURLString.put("annotations:" + Sample.class.getName(), createFileMetaData());
+            String key = MetaDataSnapshot.getKey(fileMetaDataByURLString, clr);
+
+            // Snapshot with a valid header and key, but containing an object that is not metadata
+            Map<String, Object> contents = new HashMap<>(fileMetaDataByURLString);
+            contents.put("other", new StringBuilder("not metadata"));
+            try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new FileOutputStream(file))))
+            {
+                out.writeUTF(MetaDataSnapshot.HEADER);
+                out.writeUTF(key);
+                out.writeObject(contents);
+            }
+            assertNull(MetaDataSnapshot.read(file, clr));
+            assertFalse(MetaDataSnapshot.isAllowedClass(StringBuilder.class));
+            assertFalse(MetaDataSnapshot.isAllowedClass(Thread[].class));
+            assertTrue(MetaDataSnapshot.isAllowedClass(AbstractMemberMetaData[].class));
+            assertTrue(MetaDataSnapshot.isAllowedClass(Integer.class));
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
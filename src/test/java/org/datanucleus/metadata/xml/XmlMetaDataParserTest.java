@@ -0,0 +1,87 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.metadata.xml;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.ClassLoaderResolverImpl;
+import org.datanucleus.metadata.PersistenceFileMetaData;
+import org.datanucleus.plugin.ConfigurationElement;
+import org.datanucleus.plugin.PluginManager;
+
+/**
+ * Tests for the parsing of XML metadata.
+ */
+public class XmlMetaDataParserTest extends TestCase
+{
+    private static final String PERSISTENCE_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<persistence>\n" +
+        "  <persistence-unit name=\"unit{0}\">\n" +
+        "    <class>mydomain.A{0}</class>\n" +
+        "  </persistence-unit>\n" +
+        "</persistence>\n";
+
+    public void testConcurrentParsing() throws Exception
+    {
+        Properties props = new Properties();
+        props.setProperty("bundle-check-action", "EXCEPTION");
+        PluginManager pluginMgr = new PluginManager(null, new ClassLoaderResolverImpl(), props)
+        {
+            @Override
+            public ConfigurationElement[] getConfigurationElementsForExtension(String extensionPointName, String discrimAttrName, String discrimAttrValue)
+            {
+                // Parsing of "persistence.xml" needs no plugins, so allow for the plugins not being registered
+                ConfigurationElement[] elems = super.getConfigurationElementsForExtension(extensionPointName, discrimAttrName, discrimAttrValue);
+                return elems != null ? elems : new ConfigurationElement[0];
+            }
+        };
+        final XmlMetaDataParser parser = new XmlMetaDataParser(null, pluginMgr, false, true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<PersistenceFileMetaData>> results = new ArrayList<>();
+            for (int i=0;i<40;i++)
+            {
+                final String xml = PERSISTENCE_XML.replace("{0}", "" + i);
+                results.add(executor.submit(() -> (PersistenceFileMetaData)parser.parseXmlMetaDataStream(
+                    new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "file:/tmp/META-INF/persistence.xml", "persistence")));
+            }
+            for (int i=0;i<40;i++)
+            {
+                PersistenceFileMetaData pfmd = results.get(i).get();
+                assertEquals(1, pfmd.getNoOfPersistenceUnits());
+                assertNotNull(pfmd.getPersistenceUnit("unit" + i));
+                assertTrue(pfmd.getPersistenceUnit("unit" + i).getClassNames().contains("mydomain.A" + i));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
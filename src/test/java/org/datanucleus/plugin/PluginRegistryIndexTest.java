@@ -0,0 +1,112 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.plugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.ClassLoaderResolver;
+import org.datanucleus.ClassLoaderResolverImpl;
+
+/**
+ * Tests for the index of a plugin registry.
+ */
+public class PluginRegistryIndexTest extends TestCase
+{
+    public void testWriteAndRead() throws Exception
+    {
+        ClassLoaderResolver clr = new ClassLoaderResolverImpl();
+        NonManagedPluginRegistry mgr = new NonManagedPluginRegistry(clr, "EXCEPTION", true);
+        Bundle bundle0 = mgr.registerBundle(clr.getResource("/org/datanucleus/samples/plugin/MANIFEST0.MF", null));
+        mgr.registerExtensionsForPlugin(clr.getResource("/org/datanucleus/samples/plugin/plugin1expoint.xml", null), bundle0);
+        mgr.registerExtensionsForPlugin(clr.getResource("/org/datanucleus/samples/plugin/plugin1.xml", null), bundle0);
+
+        List<URL> urls = Collections.singletonList(clr.getResource("/org/datanucleus/samples/plugin/plugin1.xml", null));
+        String key = PluginRegistryIndex.getKey(urls, "EXCEPTION", true);
+        assertNotNull(key);
+        assertEquals(key, PluginRegistryIndex.getKey(urls, "EXCEPTION", true));
+        assertFalse(key.equals(PluginRegistryIndex.getKey(urls, "EXCEPTION", false)));
+
+        File file = File.createTempFile("pluginRegistryIndex", ".ser");
+        try
+        {
+            PluginRegistryIndex.write(file, key, mgr.registeredPluginByPluginId, mgr.extensionPointsByUniqueId);
+            assertNull(PluginRegistryIndex.read(file, PluginRegistryIndex.getKey(urls, "LOG", true)));
+
+            PluginRegistryIndex index = PluginRegistryIndex.read(file, key);
+            assertNotNull(index);
+            assertEquals(mgr.registeredPluginByPluginId.keySet(), index.getBundlesBySymbolicName().keySet());
+            assertEquals(2, index.getExtensionPointsByUniqueId().size());
+
+            ExtensionPoint point = index.getExtensionPointsByUniqueId().get("org.datanucleus.testID");
+            assertEquals("testName", point.getName());
+            assertEquals(clr.getResource("/org/datanucleus/samples/plugin/plugin1.xsd", null), point.getSchema());
+            Extension[] exts = point.getExtensions();
+            assertEquals(2, exts.length);
+            assertSame(point, exts[0].getPoint());
+            assertSame(exts[0].getPlugin(), exts[1].getPlugin());
+            assertSame(index.getBundlesBySymbolicName().get(bundle0.getSymbolicName()), exts[0].getPlugin());
+
+            ConfigurationElement[] level1 = exts[0].getConfigurationElements();
+            assertEquals(2, level1.length);
+            assertEquals("1", level1[0].getAttribute("attr11"));
+            ConfigurationElement[] level2 = level1[0].getChildren();
+            assertEquals("2211", level2[0].getAttribute("attr21"));
+            assertSame(level1[0], level2[0].getParent());
+            assertSame(exts[0], level2[0].getExtension());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testIndexWithOtherTypesIsRejected() throws Exception
+    {
+        File file = File.createTempFile("pluginRegistryIndex", ".ser");
+        try
+        {
+            // Index with a valid header and key, but containing an object that is not part of a registry
+            Map<String, Object> contents = new HashMap<>();
+            contents.put("other", new StringBuilder("not a bundle"));
+            try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new FileOutputStream(file))))
+            {
+                out.writeUTF(PluginRegistryIndex.HEADER);
+                out.writeUTF("key");
+                out.writeObject(contents);
+            }
+            assertNull(PluginRegistryIndex.read(file, "key"));
+            assertFalse(PluginRegistryIndex.isAllowedClass(StringBuilder.class));
+            assertTrue(PluginRegistryIndex.isAllowedClass(ConfigurationElement[].class));
+            assertTrue(PluginRegistryIndex.isAllowedClass(HashMap.class));
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.state;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the striped pool of StateManagers.
+ */
+public class StripedStateManagerPoolTest extends TestCase
+{
+    /**
+     * Create a StateManager that only records its connection.
+     */
+    private static DNStateManager createStateManager(boolean connected)
+    {
+        boolean[] state = new boolean[] {connected};
+        return (DNStateManager) Proxy.newProxyInstance(DNStateManager.class.getClassLoader(), new Class[] {DNStateManager.class},
+            (proxy, method, args) ->
+            {
+                if (method.getName().equals("isConnected"))
+                {
+                    return state[0];
+                }
+                else if (method.getName().equals("connect"))
+                {
+                    state[0] = true;
+                    return null;
+                }
+                else if (method.getName().equals("hashCode"))
+                {
+                    return System.identityHashCode(proxy);
+                }
+                else if (method.getName().equals("equals"))
+                {
+                    return proxy == args[0];
+                }
+                return null;
+            });
+    }
+
+    private static List<DNStateManager> checkInFromOtherThread(StripedStateManagerPool pool, int num) throws InterruptedException
+    {
+        List<DNStateManager> sms = new ArrayList<>();
+        for (int i=0;i<num;i++)
+        {
+            sms.add(createStateManager(false));
+        }
+        Thread thread = new Thread(() -> sms.forEach(pool::checkIn));
+        thread.start();
+        thread.join();
+        return sms;
+    }
+
+    public void testCheckOutReusesCheckedIn()
+    {
+        StripedStateManagerPool pool = new StripedStateManagerPool(64, false, StateManagerImpl.class);
+        DNStateManager sm = createStateManager(false);
+        pool.checkIn(sm);
+        assertEquals(1, pool.getNumberPooled());
+
+        DNStateManager reused = pool.checkOut(null, null);
+        assertSame(sm, reused);
+        assertTrue(reused.isConnected());
+        assertEquals(0, pool.getNumberPooled());
+
+        // A StateManager that is still connected is never pooled
+        pool.checkIn(reused);
+        assertEquals(0, pool.getNumberPooled());
+        pool.close();
+    }
+
+    public void testFullMagazineIsSharedWithOtherThreads() throws Exception
+    {
+        StripedStateManagerPool pool = new StripedStateManagerPool(64, false, StateManagerImpl.class);
+        List<DNStateManager> sms = checkInFromOtherThread(pool, StripedStateManagerPool.DEFAULT_MAGAZINE_SIZE + 1);
+        assertEquals(StripedStateManagerPool.DEFAULT_MAGAZINE_SIZE + 1, pool.getNumberPooled());
+
+        // The full magazine was handed to the depot, so this thread can use it
+        DNStateManager sm = pool.checkOut(null, null);
+        assertTrue(sms.contains(sm));
+        pool.close();
+    }
+
+    public void testCloseReleasesAllMagazines() throws Exception
+    {
+        StripedStateManagerPool pool = new StripedStateManagerPool(64, false, StateManagerImpl.class);
+        checkInFromOtherThread(pool, StripedStateManagerPool.DEFAULT_MAGAZINE_SIZE + 5);
+        pool.checkIn(createStateManager(false));
+        assertEquals(StripedStateManagerPool.DEFAULT_MAGAZINE_SIZE + 6, pool.getNumberPooled());
+
+        pool.close();
+        assertEquals(0, pool.getNumberPooled());
+
+        // Nothing is pooled once closed
+        pool.checkIn(createStateManager(false));
+        assertEquals(0, pool.getNumberPooled());
+    }
+
+    public void testNumberPooledIsBounded() throws Exception
+    {
+        StripedStateManagerPool pool = new StripedStateManagerPool(32, false, StateManagerImpl.class);
+        for (int i=0;i<4;i++)
+        {
+            checkInFromOtherThread(pool, 20);
+        }
+        assertTrue("Pool holds " + pool.getNumberPooled(), pool.getNumberPooled() <= 32);
+        pool.close();
+    }
+
+    public void testMagazineOfEndedThreadIsReclaimed() throws Exception
+    {
+        // Only room for one magazine, which the other thread takes
+        StripedStateManagerPool pool = new StripedStateManagerPool(StripedStateManagerPool.DEFAULT_MAGAZINE_SIZE, false, StateManagerImpl.class);
+        checkInFromOtherThread(pool, 5);
+        assertEquals(5, pool.getNumberPooled());
+
+        DNStateManager sm = createStateManager(false);
+        pool.checkIn(sm);
+        assertEquals(1, pool.getNumberPooled());
+        assertSame(sm, pool.checkOut(null, null));
+        pool.close();
+
+        // The reaper releases the magazines of ended threads too
+        pool = new StripedStateManagerPool(64, false, StateManagerImpl.class);
+        checkInFromOtherThread(pool, 5);
+        pool.checkIn(createStateManager(false));
+        pool.cleanUp();
+        assertEquals(1, pool.getNumberPooled());
+        pool.close();
+    }
+
+    public void testCheckInScansForEndedThreadsAtMostOncePerInterval() throws Exception
+    {
+        // Only room for one magazine, which the other thread takes and keeps while alive
+        StripedStateManagerPool pool = new StripedStateManagerPool(StripedStateManagerPool.DEFAULT_MAGAZINE_SIZE, false, StateManagerImpl.class);
+        CountDownLatch checkedIn = new CountDownLatch(1);
+        CountDownLatch end = new CountDownLatch(1);
+        Thread thread = new Thread(() ->
+        {
+            pool.checkIn(createStateManager(false));
+            checkedIn.countDown();
+            try
+            {
+                end.await();
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        checkedIn.await();
+
+        // Scans, but the other thread is alive so its magazine is kept and this StateManager is dropped
+        pool.checkIn(createStateManager(false));
+        assertEquals(1, pool.getNumberPooled());
+
+        // The other thread has ended, but checkIn doesn't scan again so soon
+        end.countDown();
+        thread.join();
+        pool.checkIn(createStateManager(false));
+        assertEquals(1, pool.getNumberPooled());
+
+        // The reaper still releases it
+        pool.cleanUp();
+        assertEquals(0, pool.getNumberPooled());
+        pool.close();
+    }
+}
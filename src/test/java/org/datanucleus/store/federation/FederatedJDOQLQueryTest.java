@@ -0,0 +1,441 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.federation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.ClassLoaderResolver;
+import org.datanucleus.ClassLoaderResolverImpl;
+import org.datanucleus.Configuration;
+import org.datanucleus.ExecutionContext;
+import org.datanucleus.FetchPlan;
+import org.datanucleus.NucleusContext;
+import org.datanucleus.PersistenceNucleusContext;
+import org.datanucleus.PersistenceNucleusContextImpl;
+import org.datanucleus.PropertyNames;
+import org.datanucleus.api.ApiAdapter;
+import org.datanucleus.metadata.AbstractClassMetaData;
+import org.datanucleus.metadata.FileMetaData;
+import org.datanucleus.metadata.MetaDataManager;
+import org.datanucleus.store.StoreManager;
+import org.datanucleus.store.query.Extent;
+import org.datanucleus.store.query.Query;
+import org.datanucleus.store.query.compiler.QueryCompilation;
+import org.datanucleus.store.query.expression.Expression;
+import org.datanucleus.store.query.expression.OrderExpression;
+import org.datanucleus.store.query.expression.PrimaryExpression;
+import org.datanucleus.store.types.TypeManager;
+import org.datanucleus.store.types.TypeManagerImpl;
+import org.datanucleus.util.MockUtils;
+
+/**
+ * Tests for the execution of JDOQL queries across the datastores of a federation.
+ */
+public class FederatedJDOQLQueryTest extends TestCase
+{
+    public static class Person
+    {
+        private int age;
+
+        Person(int age)
+        {
+            this.age = age;
+        }
+
+        public String toString()
+        {
+            return "Person" + age;
+        }
+    }
+
+    public static class Employee extends Person
+    {
+        Employee(int age)
+        {
+            super(age);
+        }
+    }
+
+    public static class Base
+    {
+    }
+
+    public static class SubA extends Base
+    {
+    }
+
+    public static class SubB extends Base
+    {
+    }
+
+    public static class SubSubB extends SubB
+    {
+    }
+
+    public static class SubC extends SubA
+    {
+    }
+
+    public static class SubD extends SubB
+    {
+    }
+
+    /** Metadata for the classes, keyed by class name. */
+    Map<String, AbstractClassMetaData> cmds = new LinkedHashMap<>();
+
+    /** Datastore queries created, keyed by the name of the datastore. */
+    Map<String, List<Query>> datastoreQueries = new HashMap<>();
+
+    /** Results returned by the datastore queries, keyed by the name of the datastore. */
+    Map<String, List<Object>> datastoreResults = new HashMap<>();
+
+    /** Names of the threads that the datastore queries were executed on. */
+    Set<String> datastoreThreadNames = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Method to add metadata for the specified class, to be populated when the store manager is created.
+     * @param cls The class
+     * @param datastoreName Name of the datastore that the class is in (or null for the primary datastore)
+     */
+    private void addClass(Class cls, String datastoreName)
+    {
+        String packageName = cls.getPackage().getName();
+        AbstractClassMetaData cmd = new FileMetaData().newPackageMetaData(packageName).newClassMetaData(cls.getName().substring(packageName.length() + 1));
+        if (datastoreName != null)
+        {
+            cmd.addExtension("datastore", datastoreName);
+        }
+        cmds.put(cls.getName(), cmd);
+    }
+
+    private String[] getSubclasses(String className)
+    {
+        List<String> subclassNames = new ArrayList<>();
+        for (AbstractClassMetaData cmd : cmds.values())
+        {
+            AbstractClassMetaData superCmd = cmd.getSuperAbstractClassMetaData();
+            while (superCmd != null)
+            {
+                if (superCmd.getFullClassName().equals(className))
+                {
+                    subclassNames.add(cmd.getFullClassName());
+                    break;
+                }
+                superCmd = superCmd.getSuperAbstractClassMetaData();
+            }
+        }
+        return subclassNames.isEmpty() ? null : subclassNames.toArray(new String[subclassNames.size()]);
+    }
+
+    private ExecutionContext createExecutionContext(boolean multithreaded)
+    {
+        ApiAdapter api = MockUtils.mock(ApiAdapter.class);
+        StoreManager storeMgr = MockUtils.mock(StoreManager.class);
+        return MockUtils.mock(ExecutionContext.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getMultithreaded" :
+                    return multithreaded;
+                case "getApiAdapter" :
+                    return api;
+                case "getStoreManager" :
+                    return storeMgr;
+                default :
+                    return MockUtils.getDefaultValue(method);
+            }
+        });
+    }
+
+    private StoreManager createDatastore(String datastoreName)
+    {
+        return MockUtils.mock(StoreManager.class, (proxy, method, args) ->
+        {
+            if (method.getName().equals("newQuery") && args.length == 2)
+            {
+                Query query = new Query((StoreManager)proxy, (ExecutionContext)args[1])
+                {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    public String getLanguage()
+                    {
+                        return "JDOQL";
+                    }
+
+                    @Override
+                    public void setCandidates(Extent pcs)
+                    {
+                    }
+
+                    @Override
+                    public void setCandidates(Collection pcs)
+                    {
+                    }
+
+                    @Override
+                    protected void compileInternal(Map parameterValues)
+                    {
+                    }
+
+                    @Override
+                    protected Object performExecute(Map parameters)
+                    {
+                        return null;
+                    }
+
+                    @Override
+                    public Object executeWithMap(Map parameters)
+                    {
+                        datastoreThreadNames.add(Thread.currentThread().getName());
+                        return new ArrayList<>(datastoreResults.get(datastoreName));
+                    }
+                };
+                datastoreQueries.computeIfAbsent(datastoreName, k -> new ArrayList<>()).add(query);
+                return query;
+            }
+            else if (method.getName().equals("toString"))
+            {
+                return datastoreName;
+            }
+            else if (method.getName().equals("hashCode"))
+            {
+                return System.identityHashCode(proxy);
+            }
+            else if (method.getName().equals("equals"))
+            {
+                return proxy == args[0];
+            }
+            return MockUtils.getDefaultValue(method);
+        });
+    }
+
+    private FederatedStoreManager createStoreManager()
+    {
+        return createStoreManager(0);
+    }
+
+    private FederatedStoreManager createStoreManager(int maxThreads)
+    {
+        NucleusContext ctx = new PersistenceNucleusContextImpl(null, new HashMap<String, Object>());
+        Configuration conf = ctx.getConfiguration();
+        conf.setProperty(PropertyNames.PROPERTY_FEDERATION_MAX_THREADS, maxThreads);
+        ApiAdapter api = MockUtils.mock(ApiAdapter.class);
+        PersistenceNucleusContext[] nucCtx = new PersistenceNucleusContext[1];
+        TypeManager typeMgr = new TypeManagerImpl(MockUtils.mock(NucleusContext.class,
+            (proxy, method, args) -> method.getName().equals("getApiAdapter") ? api : method.invoke(ctx, args)));
+        MetaDataManager mmgr = MockUtils.mock(MetaDataManager.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getMetaDataForClass" :
+                case "getMetaDataForClassInternal" :
+                    return cmds.get(args[0] instanceof Class ? ((Class)args[0]).getName() : args[0]);
+                case "getSubclassesForClass" :
+                    return getSubclasses((String)args[0]);
+                case "getNucleusContext" :
+                    return nucCtx[0];
+                default :
+                    return MockUtils.getDefaultValue(method);
+            }
+        });
+        nucCtx[0] = MockUtils.mock(PersistenceNucleusContext.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getMetaDataManager" :
+                    return mmgr;
+                case "getConfiguration" :
+                    return conf;
+                case "getApiAdapter" :
+                    return api;
+                case "getTypeManager" :
+                    return typeMgr;
+                default :
+                    return MockUtils.getDefaultValue(method);
+            }
+        });
+
+        // Populate the metadata, so that each class knows its superclass
+        ClassLoaderResolver clr = new ClassLoaderResolverImpl();
+        for (AbstractClassMetaData cmd : cmds.values())
+        {
+            if (!cmd.isPopulated())
+            {
+                cmd.populate(clr, null, mmgr);
+            }
+        }
+
+        Map<String, StoreManager> secondaryStoreMgrs = new HashMap<>();
+        secondaryStoreMgrs.put("second", createDatastore("second"));
+        return new FederatedStoreManager(nucCtx[0], createDatastore("primary"), secondaryStoreMgrs);
+    }
+
+    private static List<String> getNames(Map<StoreManager, List<String>> candidatesByStoreMgr)
+    {
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<StoreManager, List<String>> entry : candidatesByStoreMgr.entrySet())
+        {
+            names.add(entry.getKey() + "=" + entry.getValue());
+        }
+        return names;
+    }
+
+    private static String getNames(String datastoreName, Class... classes)
+    {
+        List<String> classNames = new ArrayList<>();
+        for (Class cls : classes)
+        {
+            classNames.add(cls.getName());
+        }
+        return datastoreName + "=" + classNames;
+    }
+
+    public void testStoreManagersForClass() throws Exception
+    {
+        addClass(Base.class, null);
+        addClass(SubA.class, null);
+        addClass(SubB.class, "second");
+        addClass(SubSubB.class, "second");
+        addClass(SubC.class, "second");
+        addClass(SubD.class, null);
+
+        FederatedStoreManager storeMgr = createStoreManager();
+
+        // Classes in a datastore are queried via their highest superclass in that datastore
+        assertEquals(Arrays.asList(getNames("primary", Base.class), getNames("second", SubB.class, SubC.class)), 
+            getNames(storeMgr.getStoreManagersForClass(Base.class.getName(), true, null)));
+        assertEquals(Arrays.asList(getNames("primary", Base.class)), getNames(storeMgr.getStoreManagersForClass(Base.class.getName(), false, null)));
+        assertEquals(Arrays.asList(getNames("second", SubB.class), getNames("primary", SubD.class)), 
+            getNames(storeMgr.getStoreManagersForClass(SubB.class.getName(), true, null)));
+        assertEquals(Arrays.asList(getNames("primary", SubA.class), getNames("second", SubC.class)), 
+            getNames(storeMgr.getStoreManagersForClass(SubA.class.getName(), true, null)));
+        assertEquals(Arrays.asList(getNames("second", SubSubB.class)), getNames(storeMgr.getStoreManagersForClass(SubSubB.class.getName(), true, null)));
+    }
+
+    private FederatedJDOQLQuery createQuery(FederatedStoreManager storeMgr, boolean multithreaded, String result)
+    {
+        FederatedJDOQLQuery query = new FederatedJDOQLQuery(storeMgr, createExecutionContext(multithreaded))
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public FetchPlan getFetchPlan()
+            {
+                return null;
+            }
+        };
+        query.setCandidateClass(Person.class);
+        query.setResult(result);
+        query.setOrdering("age descending");
+        query.setRange(1, 3);
+        Expression[] orderings = new Expression[] {new OrderExpression(new PrimaryExpression(Arrays.asList("age")), "descending")};
+        query.setCompilation(new QueryCompilation(Person.class, "this", null, null, null, null, null, null, orderings, null));
+        return query;
+    }
+
+    private static List<Integer> getAges(Object results)
+    {
+        List<Integer> ages = new ArrayList<>();
+        for (Object result : (Collection)results)
+        {
+            ages.add(((Person)result).age);
+        }
+        return ages;
+    }
+
+    public void testMergeOfDatastoreResults() throws Exception
+    {
+        addClass(Person.class, null);
+        addClass(Employee.class, "second");
+        datastoreResults.put("primary", Arrays.asList(new Person(50), new Person(20), new Person(40)));
+        datastoreResults.put("second", Arrays.asList(new Employee(30), new Employee(60)));
+
+        FederatedStoreManager storeMgr = createStoreManager(2);
+        for (boolean multithreaded : new boolean[] {false, true})
+        {
+            datastoreQueries.clear();
+            datastoreThreadNames.clear();
+            FederatedJDOQLQuery query = createQuery(storeMgr, multithreaded, null);
+            List<Integer> ages = getAges(query.performExecute(new HashMap<>()));
+
+            // Ordering and range are applied across the results of all datastores
+            assertEquals(Arrays.asList(50, 40), ages);
+
+            // Each datastore is queried for its candidates, and need return no more than the end of the range
+            assertEquals(Person.class.getName(), datastoreQueries.get("primary").get(0).getCandidateClassName());
+            assertEquals(Employee.class.getName(), datastoreQueries.get("second").get(0).getCandidateClassName());
+            for (List<Query> queries : datastoreQueries.values())
+            {
+                assertEquals(1, queries.size());
+                assertEquals("age descending", queries.get(0).getOrdering());
+                assertEquals(0, queries.get(0).getRangeFromIncl());
+                assertEquals(3, queries.get(0).getRangeToExcl());
+            }
+
+            // Concurrent datastore queries are executed on the federation executor
+            for (String threadName : datastoreThreadNames)
+            {
+                assertEquals(multithreaded, threadName.startsWith("DataNucleus-Federation"));
+            }
+        }
+        storeMgr.close();
+    }
+
+    public void testDatastoreQueriesInTurnWithoutExecutor() throws Exception
+    {
+        addClass(Person.class, null);
+        addClass(Employee.class, "second");
+        datastoreResults.put("primary", Arrays.asList(new Person(50), new Person(20)));
+        datastoreResults.put("second", Arrays.asList(new Employee(30)));
+
+        // No "datanucleus.federation.maxThreads", so the datastore queries are executed in turn on this thread
+        FederatedJDOQLQuery query = createQuery(createStoreManager(), true, null);
+        assertEquals(Arrays.asList(30, 20), getAges(query.performExecute(new HashMap<>())));
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), datastoreThreadNames);
+    }
+
+    public void testNoOrderingOrRangeInDatastoreWhenNotCandidateResults() throws Exception
+    {
+        addClass(Person.class, null);
+        addClass(Employee.class, "second");
+        datastoreResults.put("primary", Arrays.asList(new Person(50)));
+        datastoreResults.put("second", Arrays.asList(new Employee(30)));
+
+        FederatedJDOQLQuery query = createQuery(createStoreManager(), false, "this");
+        query.performExecute(new HashMap<>());
+
+        assertEquals(2, datastoreQueries.size());
+        for (List<Query> queries : datastoreQueries.values())
+        {
+            assertNull(queries.get(0).getOrdering());
+            assertEquals(Long.MAX_VALUE, queries.get(0).getRangeToExcl());
+        }
+    }
+}
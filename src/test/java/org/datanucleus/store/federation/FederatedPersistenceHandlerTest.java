@@ -0,0 +1,232 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.federation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.ExecutionContext;
+import org.datanucleus.PersistenceNucleusContext;
+import org.datanucleus.PersistenceNucleusContextImpl;
+import org.datanucleus.PropertyNames;
+import org.datanucleus.metadata.AbstractClassMetaData;
+import org.datanucleus.metadata.FileMetaData;
+import org.datanucleus.metadata.PackageMetaData;
+import org.datanucleus.state.DNStateManager;
+import org.datanucleus.store.StoreManager;
+import org.datanucleus.store.StorePersistenceHandler;
+import org.datanucleus.store.StorePersistenceHandler.PersistenceBatchType;
+import org.datanucleus.util.MockUtils;
+
+/**
+ * Tests for the distribution of persistence operations across the datastores of a federation.
+ */
+public class FederatedPersistenceHandlerTest extends TestCase
+{
+    /** Operations performed by each datastore, in order. */
+    Map<String, List<String>> operations = new ConcurrentHashMap<>();
+
+    /** Threads that performed operations in the datastores. */
+    Set<Thread> operationThreads = ConcurrentHashMap.newKeySet();
+
+    AbstractClassMetaData primaryCmd;
+    AbstractClassMetaData secondCmd;
+
+    FederatedStoreManager storeMgr;
+
+    protected void setUp() throws Exception
+    {
+        PackageMetaData pmd = new FileMetaData().newPackageMetaData("mydomain");
+        primaryCmd = pmd.newClassMetaData("A");
+        secondCmd = pmd.newClassMetaData("B");
+        secondCmd.addExtension("datastore", "second");
+    }
+
+    protected void tearDown() throws Exception
+    {
+        if (storeMgr != null && storeMgr.executorService != null)
+        {
+            storeMgr.executorService.shutdown();
+        }
+    }
+
+    private StoreManager createDatastore(String datastoreName)
+    {
+        List<String> datastoreOperations = Collections.synchronizedList(new ArrayList<>());
+        operations.put(datastoreName, datastoreOperations);
+        StorePersistenceHandler handler = MockUtils.mock(StorePersistenceHandler.class,
+            (proxy, method, args) ->
+            {
+                operationThreads.add(Thread.currentThread());
+                if (method.getName().startsWith("batch"))
+                {
+                    datastoreOperations.add(method.getName() + ":" + args[1]);
+                }
+                else if (args != null && args[args.length-1] instanceof DNStateManager[])
+                {
+                    datastoreOperations.add(method.getName() + ":" + ((DNStateManager[])args[args.length-1]).length);
+                }
+                else
+                {
+                    datastoreOperations.add(method.getName());
+                }
+                return MockUtils.getDefaultValue(method);
+            });
+        return MockUtils.mock(StoreManager.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getPersistenceHandler" :
+                    return handler;
+                case "hashCode" :
+                    return System.identityHashCode(proxy);
+                case "equals" :
+                    return proxy == args[0];
+                default :
+                    return MockUtils.getDefaultValue(method);
+            }
+        });
+    }
+
+    private FederatedPersistenceHandler createPersistenceHandler(String transactionType)
+    {
+        Map<String, Object> props = new HashMap<>();
+        props.put(PropertyNames.PROPERTY_FEDERATION_MAX_THREADS, "2");
+        if (transactionType != null)
+        {
+            props.put(PropertyNames.PROPERTY_TRANSACTION_TYPE, transactionType);
+        }
+        PersistenceNucleusContext config = new PersistenceNucleusContextImpl(null, props);
+        PersistenceNucleusContext nucCtx = MockUtils.mock(PersistenceNucleusContext.class,
+            (proxy, method, args) -> method.getName().equals("getConfiguration") ? config.getConfiguration() : MockUtils.getDefaultValue(method));
+
+        Map<String, StoreManager> secondaryStoreMgrs = new HashMap<>();
+        secondaryStoreMgrs.put("second", createDatastore("second"));
+        storeMgr = new FederatedStoreManager(nucCtx, createDatastore("primary"), secondaryStoreMgrs);
+        return (FederatedPersistenceHandler)storeMgr.getPersistenceHandler();
+    }
+
+    private ExecutionContext createExecutionContext(boolean multithreaded)
+    {
+        return MockUtils.mock(ExecutionContext.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getMultithreaded" :
+                    return multithreaded;
+                case "hashCode" :
+                    return System.identityHashCode(proxy);
+                case "equals" :
+                    return proxy == args[0];
+                default :
+                    return MockUtils.getDefaultValue(method);
+            }
+        });
+    }
+
+    private DNStateManager[] createStateManagers(ExecutionContext ec, AbstractClassMetaData... cmds)
+    {
+        DNStateManager[] sms = new DNStateManager[cmds.length];
+        for (int i=0;i<cmds.length;i++)
+        {
+            AbstractClassMetaData cmd = cmds[i];
+            sms[i] = MockUtils.mock(DNStateManager.class, (proxy, method, args) ->
+            {
+                switch (method.getName())
+                {
+                    case "getClassMetaData" :
+                        return cmd;
+                    case "getExecutionContext" :
+                        return ec;
+                    default :
+                        return MockUtils.getDefaultValue(method);
+                }
+            });
+        }
+        return sms;
+    }
+
+    public void testSequentialWhenNotMultithreaded()
+    {
+        FederatedPersistenceHandler handler = createPersistenceHandler(null);
+        handler.insertObjects(createStateManagers(createExecutionContext(false), primaryCmd, secondCmd, primaryCmd));
+
+        assertEquals(Arrays.asList("insertObjects:2"), operations.get("primary"));
+        assertEquals(Arrays.asList("insertObjects:1"), operations.get("second"));
+        assertEquals(Collections.singleton(Thread.currentThread()), operationThreads);
+        assertNull(storeMgr.executorService);
+    }
+
+    public void testConcurrentWhenMultithreaded()
+    {
+        FederatedPersistenceHandler handler = createPersistenceHandler(null);
+        handler.deleteObjects(createStateManagers(createExecutionContext(true), primaryCmd, secondCmd, secondCmd));
+
+        assertEquals(Arrays.asList("deleteObjects:1"), operations.get("primary"));
+        assertEquals(Arrays.asList("deleteObjects:2"), operations.get("second"));
+        assertFalse(operationThreads.contains(Thread.currentThread()));
+        for (Thread thread : operationThreads)
+        {
+            assertTrue(thread.getName(), thread.getName().startsWith("DataNucleus-Federation-"));
+        }
+    }
+
+    public void testSequentialWhenJTA()
+    {
+        FederatedPersistenceHandler handler = createPersistenceHandler("JTA");
+        handler.updateObjects(new int[] {0}, createStateManagers(createExecutionContext(true), primaryCmd, secondCmd));
+
+        assertEquals(Arrays.asList("updateObjects:1"), operations.get("primary"));
+        assertEquals(Arrays.asList("updateObjects:1"), operations.get("second"));
+        assertEquals(Collections.singleton(Thread.currentThread()), operationThreads);
+    }
+
+    public void testBatchOnlyInInvolvedDatastores()
+    {
+        FederatedPersistenceHandler handler = createPersistenceHandler(null);
+        ExecutionContext ec = createExecutionContext(false);
+
+        handler.batchStart(ec, PersistenceBatchType.PERSIST);
+        DNStateManager[] sms = createStateManagers(ec, primaryCmd, primaryCmd);
+        handler.insertObject(sms[0]);
+        handler.insertObject(sms[1]);
+        handler.batchEnd(ec, PersistenceBatchType.PERSIST);
+
+        assertEquals(Arrays.asList("batchStart:PERSIST", "insertObject", "insertObject", "batchEnd:PERSIST"), operations.get("primary"));
+        assertTrue(operations.get("second").isEmpty());
+
+        // Batch of another ExecutionContext, across both datastores
+        operations.get("primary").clear();
+        ExecutionContext ec2 = createExecutionContext(true);
+        handler.batchStart(ec2, PersistenceBatchType.DELETE);
+        handler.deleteObject(createStateManagers(ec, primaryCmd)[0]);
+        handler.deleteObjects(createStateManagers(ec2, secondCmd, primaryCmd));
+        handler.batchEnd(ec2, PersistenceBatchType.DELETE);
+
+        assertEquals(Arrays.asList("deleteObject", "batchStart:DELETE", "deleteObjects:1", "batchEnd:DELETE"), operations.get("primary"));
+        assertEquals(Arrays.asList("batchStart:DELETE", "deleteObjects:1", "batchEnd:DELETE"), operations.get("second"));
+    }
+}
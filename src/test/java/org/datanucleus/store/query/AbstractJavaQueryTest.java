@@ -0,0 +1,184 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.ClassLoaderResolver;
+import org.datanucleus.ClassLoaderResolverImpl;
+import org.datanucleus.ExecutionContext;
+import org.datanucleus.FetchPlan;
+import org.datanucleus.PersistenceNucleusContext;
+import org.datanucleus.PersistenceNucleusContextImpl;
+import org.datanucleus.api.ApiAdapter;
+import org.datanucleus.metadata.MetaDataManager;
+import org.datanucleus.store.StoreManager;
+import org.datanucleus.store.query.compiler.QueryCompilation;
+import org.datanucleus.store.query.inmemory.JDOQLInMemoryEvaluator;
+import org.datanucleus.util.MockUtils;
+
+/**
+ * Tests for the replacement of the literals of a Java-based query by parameters.
+ */
+public class AbstractJavaQueryTest extends TestCase
+{
+    public static class Person
+    {
+        public int age;
+
+        public Person(int age)
+        {
+            this.age = age;
+        }
+    }
+
+    /** Query compilations cached by the query manager, keyed by the cache key. */
+    Map<String, QueryCompilation> cachedCompilations = new HashMap<>();
+
+    private ExecutionContext createExecutionContext()
+    {
+        ClassLoaderResolver clr = new ClassLoaderResolverImpl();
+        QueryManager queryMgr = MockUtils.mock(QueryManager.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getQueryCompilationForQuery" :
+                    return cachedCompilations.get(args[1]);
+                case "addQueryCompilation" :
+                    cachedCompilations.put((String)args[1], (QueryCompilation)args[2]);
+                    return null;
+                default :
+                    return MockUtils.getDefaultValue(method);
+            }
+        });
+        StoreManager storeMgr = MockUtils.mock(StoreManager.class,
+            (proxy, method, args) -> method.getName().equals("getQueryManager") ? queryMgr : MockUtils.getDefaultValue(method));
+
+        // Context without metadata, since the candidate is not persistable
+        PersistenceNucleusContextImpl ctx = new PersistenceNucleusContextImpl(null, new HashMap<>());
+        MetaDataManager mmgr = MockUtils.mock(MetaDataManager.class);
+        PersistenceNucleusContext nucCtx = MockUtils.mock(PersistenceNucleusContext.class, (proxy, method, args) ->
+            {
+                switch (method.getName())
+                {
+                    case "getMetaDataManager" :
+                        return mmgr;
+                    case "getStoreManager" :
+                        return storeMgr;
+                    default :
+                        return method.invoke(ctx, args);
+                }
+            });
+        ApiAdapter api = MockUtils.mock(ApiAdapter.class);
+        return MockUtils.mock(ExecutionContext.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getNucleusContext" :
+                    return nucCtx;
+                case "getClassLoaderResolver" :
+                    return clr;
+                case "getStoreManager" :
+                    return storeMgr;
+                case "getApiAdapter" :
+                    return api;
+                default :
+                    return MockUtils.getDefaultValue(method);
+            }
+        });
+    }
+
+    private AbstractJDOQLQuery createQuery(ExecutionContext ec, String filter)
+    {
+        AbstractJDOQLQuery query = new AbstractJDOQLQuery(ec.getStoreManager(), ec)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public FetchPlan getFetchPlan()
+            {
+                return null;
+            }
+
+            @Override
+            protected Object performExecute(Map parameters)
+            {
+                return null;
+            }
+        };
+        query.setCandidateClass(Person.class);
+        query.setFilter(filter);
+        query.addExtension(Query.EXTENSION_PARAMETERISE_LITERALS, Boolean.TRUE);
+        query.addExtension(Query.EXTENSION_COMPILATION_CACHED, Boolean.TRUE);
+        return query;
+    }
+
+    private List<Object> evaluate(AbstractJDOQLQuery query, Map parameterValues, List<Object> candidates)
+    {
+        JDOQLInMemoryEvaluator evaluator = new JDOQLInMemoryEvaluator(query, candidates, query.getCompilation(), parameterValues, new ClassLoaderResolverImpl());
+        return new ArrayList<>(evaluator.execute(true, false, false, false, false));
+    }
+
+    public void testLiteralVariantsShareCompilation()
+    {
+        ExecutionContext ec = createExecutionContext();
+        AbstractJDOQLQuery query1 = createQuery(ec, "age > 17");
+        AbstractJDOQLQuery query2 = createQuery(ec, "age > 30");
+
+        Map<Object, Object> params1 = new HashMap<>();
+        query1.compileInternal(params1);
+        Map<Object, Object> params2 = new HashMap<>();
+        query2.compileInternal(params2);
+
+        // The filter and single-string form of each query are those of the user
+        assertEquals("age > 17", query1.getFilter());
+        assertEquals("age > 30", query2.getFilter());
+        assertTrue(query1.toString(), query1.toString().endsWith("WHERE age > 17"));
+        assertTrue(query2.toString(), query2.toString().endsWith("WHERE age > 30"));
+
+        // Both are compiled from the parameterised filter, so share the compilation
+        assertEquals(1, cachedCompilations.size());
+        assertSame(query1.getCompilation(), query2.getCompilation());
+        assertEquals(query1.getFingerprint().getCompilationKey(), query2.getFingerprint().getCompilationKey());
+
+        // Each binds its own literal value
+        assertEquals(Arrays.asList(Integer.valueOf(17)), new ArrayList<>(params1.values()));
+        assertEquals(Arrays.asList(Integer.valueOf(30)), new ArrayList<>(params2.values()));
+        Person p10 = new Person(10);
+        Person p20 = new Person(20);
+        Person p40 = new Person(40);
+        List<Object> candidates = Arrays.asList(p10, p20, p40);
+        assertEquals(Arrays.asList(p20, p40), evaluate(query1, params1, candidates));
+        assertEquals(Arrays.asList(p40), evaluate(query2, params2, candidates));
+
+        // Changing the filter discards the parameterised form
+        query1.setFilter("age < 15");
+        Map<Object, Object> params3 = new HashMap<>();
+        query1.compileInternal(params3);
+        assertEquals(Arrays.asList(Integer.valueOf(15)), new ArrayList<>(params3.values()));
+        assertEquals(Arrays.asList(p10), evaluate(query1, params3, candidates));
+        assertNotSame(query2.getCompilation(), query1.getCompilation());
+        assertEquals(2, cachedCompilations.size());
+    }
+}
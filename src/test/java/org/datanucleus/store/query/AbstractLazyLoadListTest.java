@@ -0,0 +1,97 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the retrieval of objects by AbstractLazyLoadList.
+ */
+public class AbstractLazyLoadListTest extends TestCase
+{
+    static class CountingLazyLoadList extends AbstractLazyLoadList<Integer>
+    {
+        int numRetrieved = 0;
+        List<String> ranges = new ArrayList<>();
+
+        CountingLazyLoadList(String cacheType, int pageSize)
+        {
+            super(cacheType, pageSize);
+        }
+
+        @Override
+        protected Integer retrieveObjectForIndex(int index)
+        {
+            numRetrieved++;
+            return Integer.valueOf(index * 10);
+        }
+
+        @Override
+        protected List<Integer> retrieveObjectsForIndexRange(int startIndex, int endIndex)
+        {
+            ranges.add(startIndex + "-" + endIndex);
+            return super.retrieveObjectsForIndexRange(startIndex, endIndex);
+        }
+
+        @Override
+        protected int getSize()
+        {
+            return 7;
+        }
+    }
+
+    public void testPages()
+    {
+        CountingLazyLoadList list = new CountingLazyLoadList("none", 3);
+        List<Integer> values = new ArrayList<>();
+        for (Iterator<Integer> iter = list.iterator(); iter.hasNext();)
+        {
+            values.add(iter.next());
+        }
+        assertEquals(Arrays.asList(0, 10, 20, 30, 40, 50, 60), values);
+        assertEquals(Arrays.asList("0-3", "3-6", "6-7"), list.ranges);
+        assertEquals(7, list.numRetrieved);
+
+        // Current page is retained
+        assertEquals(Integer.valueOf(60), list.get(6));
+        assertEquals(Integer.valueOf(10), list.get(1));
+        assertEquals(Arrays.asList("0-3", "3-6", "6-7", "0-3"), list.ranges);
+    }
+
+    public void testIteratorWithCache()
+    {
+        CountingLazyLoadList list = new CountingLazyLoadList("strong", 1);
+        assertEquals(Integer.valueOf(0), list.get(0));
+        assertEquals(Integer.valueOf(10), list.get(1));
+
+        ListIterator<Integer> iter = list.listIterator();
+        assertEquals(Integer.valueOf(0), iter.next());
+        assertEquals(Integer.valueOf(10), iter.next());
+        assertEquals(Integer.valueOf(20), iter.next());
+        assertEquals(Integer.valueOf(20), iter.previous());
+        assertEquals(Integer.valueOf(10), iter.previous());
+        assertEquals(3, list.numRetrieved);
+        assertTrue(list.ranges.isEmpty());
+    }
+}
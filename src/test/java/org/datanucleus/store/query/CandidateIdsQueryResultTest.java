@@ -0,0 +1,284 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.ExecutionContext;
+import org.datanucleus.PersistenceNucleusContextImpl;
+import org.datanucleus.PropertyNames;
+import org.datanucleus.enhancement.Persistable;
+import org.datanucleus.store.StoreManager;
+import org.datanucleus.util.MockUtils;
+
+/**
+ * Tests for finding the objects of a CandidateIdsQueryResult a page at a time, and reading ahead.
+ */
+public class CandidateIdsQueryResultTest extends TestCase
+{
+    /** Objects found, keyed by their id. */
+    Map<Object, Persistable> objectsById = Collections.synchronizedMap(new HashMap<>());
+
+    /** Ids of each call to findObjectsById. */
+    List<List<Object>> findCalls = Collections.synchronizedList(new ArrayList<>());
+
+    /** Threads of each call to findObjectsById. */
+    List<String> findThreads = Collections.synchronizedList(new ArrayList<>());
+
+    /** Latch that finds in the background wait on before completing (if set). */
+    volatile CountDownLatch backgroundFindLatch;
+
+    /** Whether a find in the background has completed. */
+    volatile boolean backgroundFindCompleted;
+
+    /** QueryManager providing the read-ahead executor, using a single thread. */
+    QueryManager queryMgr;
+
+    /** StoreManager of the queries. */
+    StoreManager storeMgr;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        Map<String, Object> props = new HashMap<>();
+        props.put(PropertyNames.PROPERTY_QUERY_RESULT_READ_AHEAD_MAX_THREADS, 1);
+        storeMgr = MockUtils.mock(StoreManager.class,
+            (proxy, method, args) -> method.getName().equals("getQueryManager") ? queryMgr : MockUtils.getDefaultValue(method));
+        queryMgr = new QueryManagerImpl(new PersistenceNucleusContextImpl(null, props), storeMgr);
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        if (queryMgr != null)
+        {
+            queryMgr.close();
+        }
+    }
+
+    private Persistable getObject(Object id)
+    {
+        return objectsById.computeIfAbsent(id, k -> MockUtils.mock(Persistable.class,
+            (proxy, method, args) ->
+            {
+                switch (method.getName())
+                {
+                    case "toString" :
+                        return "Object " + k;
+                    case "hashCode" :
+                        return System.identityHashCode(proxy);
+                    case "equals" :
+                        return proxy == args[0];
+                    default :
+                        return MockUtils.getDefaultValue(method);
+                }
+            }));
+    }
+
+    private Query createQuery(boolean multithreaded, int pageSize, boolean readAhead)
+    {
+        Thread testThread = Thread.currentThread();
+        ExecutionContext ec = MockUtils.mock(ExecutionContext.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getMultithreaded" :
+                    return multithreaded;
+                case "findObjectsById" :
+                    Object[] ids = (Object[])args[0];
+                    findCalls.add(Arrays.asList(ids));
+                    findThreads.add(Thread.currentThread().getName());
+                    if (Thread.currentThread() != testThread && backgroundFindLatch != null)
+                    {
+                        backgroundFindLatch.await(10, TimeUnit.SECONDS);
+                    }
+                    Persistable[] objs = new Persistable[ids.length];
+                    for (int i=0;i<ids.length;i++)
+                    {
+                        objs[i] = getObject(ids[i]);
+                    }
+                    if (Thread.currentThread() != testThread)
+                    {
+                        backgroundFindCompleted = true;
+                    }
+                    return objs;
+                case "findObject" :
+                    fail("Objects should be found a page at a time");
+                    return null;
+                default :
+                    return MockUtils.getDefaultValue(method);
+            }
+        });
+
+        Query query = new Query(storeMgr, ec)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String getLanguage()
+            {
+                return "JDOQL";
+            }
+
+            @Override
+            public void setCandidates(Extent pcs)
+            {
+            }
+
+            @Override
+            public void setCandidates(Collection pcs)
+            {
+            }
+
+            @Override
+            protected void compileInternal(Map parameterValues)
+            {
+            }
+
+            @Override
+            protected Object performExecute(Map parameters)
+            {
+                return null;
+            }
+        };
+        query.addExtension(Query.EXTENSION_RESULT_SIZE_METHOD, "last");
+        query.addExtension(Query.EXTENSION_LOAD_RESULTS_AT_COMMIT, Boolean.FALSE);
+        query.addExtension(Query.EXTENSION_RESULT_CACHE_VALIDATE_OBJECTS, Boolean.FALSE);
+        query.addExtension(Query.EXTENSION_RESULT_CACHE_TYPE, "none");
+        query.addExtension(Query.EXTENSION_RESULT_PAGE_SIZE, pageSize);
+        query.addExtension(Query.EXTENSION_RESULT_READ_AHEAD, readAhead);
+        return query;
+    }
+
+    private List<Object> getIds(int number)
+    {
+        List<Object> ids = new ArrayList<>();
+        for (int i=0;i<number;i++)
+        {
+            ids.add(Integer.valueOf(i));
+        }
+        return ids;
+    }
+
+    public void testPaging()
+    {
+        Query query = createQuery(false, 2, true);
+        CandidateIdsQueryResult<Object> qr = new CandidateIdsQueryResult<>(query, getIds(5));
+        assertEquals(5, qr.size());
+
+        List<Object> results = new ArrayList<>();
+        for (Object obj : qr)
+        {
+            results.add(obj);
+        }
+        assertEquals(Arrays.asList(getObject(0), getObject(1), getObject(2), getObject(3), getObject(4)), results);
+
+        // One find for each page, and no read-ahead since not multithreaded
+        assertEquals(Arrays.asList(Arrays.asList(0, 1), Arrays.asList(2, 3), Arrays.asList(4)), findCalls);
+        for (String threadName : findThreads)
+        {
+            assertEquals(Thread.currentThread().getName(), threadName);
+        }
+
+        // Accessing an object of the current page doesn't find it again, but accessing another page does
+        assertSame(getObject(4), qr.get(4));
+        assertEquals(3, findCalls.size());
+        assertSame(getObject(3), qr.get(3));
+        assertSame(getObject(2), qr.get(2));
+        assertEquals(4, findCalls.size());
+        assertEquals(Arrays.asList(2, 3), findCalls.get(3));
+        qr.close();
+    }
+
+    public void testReadAhead()
+    {
+        Query query = createQuery(true, 2, true);
+        CandidateIdsQueryResult<Object> qr = new CandidateIdsQueryResult<>(query, getIds(5));
+
+        List<Object> results = new ArrayList<>();
+        for (Object obj : qr)
+        {
+            results.add(obj);
+        }
+        assertEquals(Arrays.asList(getObject(0), getObject(1), getObject(2), getObject(3), getObject(4)), results);
+
+        // First page found when accessed, and each following page read ahead using the executor of the QueryManager
+        assertEquals(Arrays.asList(Arrays.asList(0, 1), Arrays.asList(2, 3), Arrays.asList(4)), findCalls);
+        assertEquals(Thread.currentThread().getName(), findThreads.get(0));
+        assertEquals("DataNucleus-Query-ReadAhead-1", findThreads.get(1));
+        assertEquals("DataNucleus-Query-ReadAhead-1", findThreads.get(2));
+        qr.close();
+        query.closeAll();
+    }
+
+    public void testReadAheadExecutorIsShared()
+    {
+        ExecutorService executor = queryMgr.getReadAheadExecutor();
+        Query query = createQuery(true, 2, true);
+        CandidateIdsQueryResult<Object> qr = new CandidateIdsQueryResult<>(query, getIds(5));
+        assertSame(getObject(0), qr.get(0));
+        qr.close();
+
+        // Closing the query leaves the executor for other queries, and closing the QueryManager shuts it down
+        query.closeAll();
+        assertSame(executor, queryMgr.getReadAheadExecutor());
+        assertFalse(executor.isShutdown());
+        queryMgr.close();
+        queryMgr = null;
+        assertTrue(executor.isShutdown());
+    }
+
+    public void testCloseWaitsForReadAhead() throws InterruptedException
+    {
+        Query query = createQuery(true, 2, true);
+        CandidateIdsQueryResult<Object> qr = new CandidateIdsQueryResult<>(query, getIds(5));
+
+        backgroundFindLatch = new CountDownLatch(1);
+        assertSame(getObject(0), qr.get(0));
+
+        // Release the background find shortly after closing starts
+        Thread releaser = new Thread(() ->
+        {
+            try
+            {
+                Thread.sleep(200);
+            }
+            catch (InterruptedException e)
+            {
+                // Ignore
+            }
+            backgroundFindLatch.countDown();
+        });
+        releaser.start();
+        qr.close();
+        assertTrue(backgroundFindCompleted);
+        releaser.join();
+        query.closeAll();
+    }
+}
@@ -0,0 +1,139 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.query;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for QueryFingerprint.
+ */
+public class QueryFingerprintTest extends TestCase
+{
+    private static final String QUERY = "SELECT FROM mydomain.A WHERE x == :p1 && y == :p2";
+
+    public void testStructuralEquality()
+    {
+        QueryFingerprint fp1 = new QueryFingerprint("JDOQL", QUERY, Arrays.asList("default", "groupA"), null);
+        QueryFingerprint fp2 = new QueryFingerprint("JDOQL", QUERY, Arrays.asList("groupA", "default"), null);
+        assertEquals(fp1, fp2);
+        assertEquals(fp1.hashCode(), fp2.hashCode());
+        assertEquals(fp1.getHashString(), fp2.getHashString());
+        assertEquals(32, fp1.getHashString().length());
+        assertEquals(fp1.getCompilationKey(), fp2.getCompilationKey());
+
+        assertFalse(fp1.equals(new QueryFingerprint("JPQL", QUERY, Arrays.asList("default", "groupA"), null)));
+        assertFalse(fp1.equals(new QueryFingerprint("JDOQL", QUERY, Arrays.asList("default"), null)));
+        QueryFingerprint tenantFp = new QueryFingerprint("JDOQL", QUERY, Arrays.asList("default", "groupA"), "tenant1");
+        assertFalse(fp1.equals(tenantFp));
+        assertFalse(fp1.getCompilationKey().equals(tenantFp.getCompilationKey()));
+
+        assertTrue(tenantFp.matches(new HashSet<>(Arrays.asList("groupA", "default")), "tenant1"));
+        assertFalse(tenantFp.matches(new HashSet<>(Arrays.asList("groupA", "default")), null));
+    }
+
+    public void testParameters()
+    {
+        QueryFingerprint fp = new QueryFingerprint("JDOQL", QUERY, null, null);
+        assertSame(fp, fp.withParameters(null, null));
+        assertSame(fp, fp.withParameters(new HashMap<>(), null));
+        assertEquals("JDOQL:" + QUERY + ":", fp.getResultsKey());
+
+        Map<Object, Object> params1 = new LinkedHashMap<>();
+        params1.put("p1", Integer.valueOf(1));
+        params1.put("p2", "Home");
+        Map<Object, Object> params2 = new LinkedHashMap<>();
+        params2.put("p2", "Home");
+        params2.put("p1", Integer.valueOf(1));
+        QueryFingerprint paramFp1 = fp.withParameters(params1, null);
+        QueryFingerprint paramFp2 = fp.withParameters(params2, null);
+        assertTrue(paramFp1.hasParameters());
+        assertEquals(paramFp1, paramFp2);
+        assertEquals(paramFp1.getResultsKey(), paramFp2.getResultsKey());
+        assertFalse(paramFp1.equals(fp));
+        assertTrue(paramFp1.getResultsKey().startsWith(fp.getResultsKey()));
+        assertEquals(fp.getCompilationKey(), paramFp1.getCompilationKey());
+
+        // Values with the same string form but a different type are distinct
+        Map<Object, Object> params3 = new HashMap<>();
+        params3.put("p1", Long.valueOf(1));
+        params3.put("p2", "Home");
+        QueryFingerprint paramFp3 = fp.withParameters(params3, null);
+        assertFalse(paramFp1.equals(paramFp3));
+        assertFalse(paramFp1.getResultsKey().equals(paramFp3.getResultsKey()));
+
+        // Parameter values whose concatenated forms are the same are distinct
+        Map<Object, Object> params4 = new HashMap<>();
+        params4.put("p1", Arrays.asList("a,b"));
+        Map<Object, Object> params5 = new HashMap<>();
+        params5.put("p1", Arrays.asList("a", "b"));
+        assertFalse(fp.withParameters(params4, null).getResultsKey().equals(fp.withParameters(params5, null).getResultsKey()));
+
+        // Results keys don't depend on the fetch plan, with or without parameters
+        QueryFingerprint groupFp = new QueryFingerprint("JDOQL", QUERY, Arrays.asList("default", "groupA"), null);
+        assertFalse(fp.getCompilationKey().equals(groupFp.getCompilationKey()));
+        assertEquals(fp.getResultsKey(), groupFp.getResultsKey());
+        assertEquals(paramFp1.getResultsKey(), groupFp.withParameters(params1, null).getResultsKey());
+    }
+
+    private static String getResultsKey(QueryFingerprint fp, Object value)
+    {
+        Map<Object, Object> params = new HashMap<>();
+        params.put("p1", value);
+        return fp.withParameters(params, null).getResultsKey();
+    }
+
+    public void testDateAndDecimalParameters()
+    {
+        QueryFingerprint fp = new QueryFingerprint("JDOQL", QUERY, null, null);
+
+        // Dates differing only by milliseconds (so with the same string form) are distinct
+        long millis = 1700000000123L;
+        Date date1 = new Date(millis);
+        Date date2 = new Date(millis + 1);
+        assertEquals(date1.toString(), date2.toString());
+        assertFalse(getResultsKey(fp, date1).equals(getResultsKey(fp, date2)));
+        assertEquals(getResultsKey(fp, date1), getResultsKey(fp, new Date(millis)));
+
+        // Key of a date is independent of the default timezone
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        String key = getResultsKey(fp, date1);
+        try
+        {
+            TimeZone.setDefault(TimeZone.getTimeZone(defaultTimeZone.getID().equals("UTC") ? "America/New_York" : "UTC"));
+            assertEquals(key, getResultsKey(fp, new Date(millis)));
+        }
+        finally
+        {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+
+        // Numerically equal decimals are the same, and others distinct
+        assertEquals(getResultsKey(fp, new BigDecimal("1.0")), getResultsKey(fp, new BigDecimal("1.00")));
+        assertFalse(getResultsKey(fp, new BigDecimal("1.0")).equals(getResultsKey(fp, new BigDecimal("1.01"))));
+        assertFalse(getResultsKey(fp, new BigDecimal("10")).equals(getResultsKey(fp, new BigDecimal("1"))));
+    }
+}
@@ -17,6 +17,12 @@ Contributors:
 **********************************************************************/
 package org.datanucleus.store.query;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import junit.framework.TestCase;
 
 /**
@@ -59,4 +65,51 @@ public class QueryUtilsTest extends TestCase
         assertEquals("userId should be the same",fieldValues[1],myResult.getUserId());
     }
 
+    public void testSortTopK()
+    {
+        List<Integer> values = Arrays.asList(7, 3, 9, 1, 5, 3, 8, 2);
+        Comparator<Integer> comparator = Comparator.naturalOrder();
+
+        assertEquals(Arrays.asList(1, 2, 3), QueryUtils.sortTopK(values, comparator, 3));
+        assertEquals(Arrays.asList(9, 8), QueryUtils.sortTopK(values, comparator.reversed(), 2));
+        assertTrue(QueryUtils.sortTopK(values, comparator, 0).isEmpty());
+
+        // Asking for more than are present gives them all, sorted
+        assertEquals(Arrays.asList(1, 2, 3, 3, 5, 7, 8, 9), QueryUtils.sortTopK(values, comparator, 20));
+    }
+
+    public void testSortTopKIsStable()
+    {
+        // Compare only on the first character so ties are resolved by input position, as for a full (stable) sort
+        List<String> values = Arrays.asList("b1", "a1", "c1", "a2", "b2", "a3");
+        Comparator<String> comparator = (s1, s2) -> Character.compare(s1.charAt(0), s2.charAt(0));
+
+        assertEquals(Arrays.asList("a1", "a2"), QueryUtils.sortTopK(values, comparator, 2));
+        assertEquals(Arrays.asList("a1", "a2", "a3", "b1"), QueryUtils.sortTopK(values, comparator, 4));
+    }
+
+    public void testParameteriseLiterals()
+    {
+        Map<String, Object> literals = new HashMap<>();
+        assertEquals("this.id == :DN_LITERAL_INTEGER_0 && name == :DN_LITERAL_STRING_1 && :DN_LITERAL_DOUBLE_2 < price",
+            QueryUtils.parameteriseLiterals("this.id == 17 && name == \"Joe\" && 2.5d < price", false, literals));
+        assertEquals(Integer.valueOf(17), literals.get("DN_LITERAL_INTEGER_0"));
+        assertEquals("Joe", literals.get("DN_LITERAL_STRING_1"));
+        assertEquals(Double.valueOf(2.5), literals.get("DN_LITERAL_DOUBLE_2"));
+
+        // Literals that aren't compared, character/boolean/null literals, and identifiers with digits are left
+        literals.clear();
+        assertEquals("name.startsWith('Jo') && code == 'x' && flag == true && addr2 != null && size == :DN_LITERAL_LONG_0",
+            QueryUtils.parameteriseLiterals("name.startsWith('Jo') && code == 'x' && flag == true && addr2 != null && size == 3L", false, literals));
+        assertEquals(1, literals.size());
+        assertNull(QueryUtils.parameteriseLiterals("name.startsWith('Jo') && this.values.contains(5)", false, literals));
+
+        // Filters with parameters are left
+        assertNull(QueryUtils.parameteriseLiterals("id == 17 && name == :name", false, literals));
+        assertNull(QueryUtils.parameteriseLiterals("e.id = 17 AND e.name = ?1", true, literals));
+
+        literals.clear();
+        assertEquals("e.id = :DN_LITERAL_INTEGER_0 AND e.name <> :DN_LITERAL_STRING_1 AND e.name LIKE 'J%'",
+            QueryUtils.parameteriseLiterals("e.id = 17 AND e.name <> 'Joe' AND e.name LIKE 'J%'", true, literals));
+    }
 }
\ No newline at end of file
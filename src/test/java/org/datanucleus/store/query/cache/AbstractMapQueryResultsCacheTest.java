@@ -0,0 +1,218 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.query.cache;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.Configuration;
+import org.datanucleus.NucleusContext;
+import org.datanucleus.PersistenceNucleusContextImpl;
+import org.datanucleus.metadata.MetaDataManager;
+
+/**
+ * Tests for the index of cached query keys by class in the map-based query results caches.
+ */
+public class AbstractMapQueryResultsCacheTest extends TestCase
+{
+    static class Base
+    {
+    }
+
+    static class Sub extends Base
+    {
+    }
+
+    static class Other
+    {
+    }
+
+    AbstractMapQueryResultsCache cache;
+
+    protected void setUp() throws Exception
+    {
+        Configuration conf = new PersistenceNucleusContextImpl(null, new HashMap<String, Object>()).getConfiguration();
+        MetaDataManager mmgr = (MetaDataManager)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {MetaDataManager.class}, (proxy, method, args) -> null);
+        NucleusContext nucCtx = (NucleusContext)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {NucleusContext.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getConfiguration" :
+                    return conf;
+                case "getMetaDataManager" :
+                    return mmgr;
+                default :
+                    return null;
+            }
+        });
+        cache = new StrongQueryResultsCache(nucCtx);
+    }
+
+    private static String key(Class cls, String filter)
+    {
+        return "JDOQL:SELECT FROM " + cls.getName() + " WHERE " + filter + ":";
+    }
+
+    private static List<Object> results()
+    {
+        return new ArrayList<>(Arrays.asList("a", "b"));
+    }
+
+    public void testEvictByClassUsesCandidateAndSuperclasses()
+    {
+        cache.put(key(Base.class, "x"), results());
+        cache.put(key(Sub.class, "x"), results());
+        cache.put(key(Sub.class, "y"), results());
+        cache.put(key(Other.class, "x"), results());
+        assertEquals(Collections.singleton(key(Base.class, "x")), cache.keysByClassName.get(Base.class.getName()));
+        assertEquals(2, cache.keysByClassName.get(Sub.class.getName()).size());
+
+        // A change to a Base doesn't affect queries of Sub
+        cache.evict(Base.class);
+        assertFalse(cache.contains(key(Base.class, "x")));
+        assertTrue(cache.contains(key(Sub.class, "x")));
+        assertNull(cache.keysByClassName.get(Base.class.getName()));
+
+        cache.put(key(Base.class, "x"), results());
+        cache.evict(Sub.class);
+        assertFalse(cache.contains(key(Base.class, "x")));
+        assertFalse(cache.contains(key(Sub.class, "x")));
+        assertFalse(cache.contains(key(Sub.class, "y")));
+        assertTrue(cache.contains(key(Other.class, "x")));
+        assertEquals(1, cache.size());
+        assertEquals(Collections.singleton(Other.class.getName()), cache.keysByClassName.keySet());
+        assertEquals(Collections.singleton(key(Other.class, "x")), cache.classNamesByKey.keySet());
+    }
+
+    public void testEvictByClassUsesProvidedClassNames()
+    {
+        String joinKey = key(Base.class, "other.x == 1");
+        cache.put(joinKey, results(), Arrays.asList(Base.class.getName(), Other.class.getName()));
+        cache.evict(Other.class);
+        assertFalse(cache.contains(joinKey));
+        assertTrue(cache.keysByClassName.isEmpty());
+        assertTrue(cache.classNamesByKey.isEmpty());
+
+        // Putting the key again replaces the classes it is indexed under
+        cache.put(joinKey, results(), Arrays.asList(Base.class.getName(), Other.class.getName()));
+        cache.put(joinKey, results(), Collections.singleton(Base.class.getName()));
+        assertNull(cache.keysByClassName.get(Other.class.getName()));
+        cache.evict(Other.class);
+        assertTrue(cache.contains(joinKey));
+    }
+
+    public void testEvictAllClearsIndex()
+    {
+        cache.put(key(Base.class, "x"), results());
+        cache.put(key(Other.class, "x"), results());
+        cache.evictAll();
+        assertTrue(cache.isEmpty());
+        assertTrue(cache.keysByClassName.isEmpty());
+        assertTrue(cache.classNamesByKey.isEmpty());
+    }
+
+    public void testPinnedResultsNotEvictedByClass()
+    {
+        String pinnedKey = key(Base.class, "x");
+        cache.keysToPin.add(pinnedKey);
+        cache.put(pinnedKey, results());
+        cache.put(key(Base.class, "y"), results());
+
+        cache.evict(Base.class);
+        assertNotNull(cache.get(pinnedKey));
+        assertNull(cache.get(key(Base.class, "y")));
+    }
+
+    public void testIndexOfCollectedResultsIsPurged()
+    {
+        String pinnedKey = key(Base.class, "x == 1");
+        cache.keysToPin.add(pinnedKey);
+        cache.put(pinnedKey, results());
+        for (int i=0;i<100;i++)
+        {
+            cache.put(key(Base.class, "y == " + i), results());
+
+            // Simulate the results being garbage collected
+            cache.cache.remove(key(Base.class, "y == " + i));
+        }
+        cache.put(key(Other.class, "z == 1"), results());
+        assertEquals(102, cache.classNamesByKey.size());
+
+        cache.purgeIndex();
+        assertEquals(2, cache.classNamesByKey.size());
+        assertTrue(cache.classNamesByKey.containsKey(pinnedKey));
+        assertEquals(Collections.singleton(pinnedKey), cache.keysByClassName.get(Base.class.getName()));
+        assertNotNull(cache.get(key(Other.class, "z == 1")));
+    }
+
+    public void testConcurrentEvictByClass() throws Exception
+    {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int t=0;t<threads.length;t++)
+        {
+            for (int i=0;i<2000;i+=3)
+            {
+                cache.keysToPin.add(key(Base.class, t + "_" + i));
+            }
+        }
+        for (int t=0;t<threads.length;t++)
+        {
+            final int threadNo = t;
+            threads[t] = new Thread(() ->
+            {
+                try
+                {
+                    for (int i=0;i<2000;i++)
+                    {
+                        cache.put(key(Base.class, threadNo + "_" + i), results());
+                        cache.evict(threadNo % 2 == 0 ? Base.class : Sub.class);
+                    }
+                }
+                catch (Throwable thr)
+                {
+                    failure.compareAndSet(null, thr);
+                }
+            });
+        }
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join(30000);
+        }
+        assertNull(failure.get());
+
+        // Only pinned results remain, and the index only holds those
+        cache.evict(Base.class);
+        assertTrue(cache.isEmpty());
+        for (String key : cache.classNamesByKey.keySet())
+        {
+            assertNotNull(cache.get(key));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.query.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.NucleusContext;
+import org.datanucleus.PersistenceNucleusContextImpl;
+import org.datanucleus.PropertyNames;
+
+/**
+ * Tests for the bounded (W-TinyLFU) query results cache.
+ */
+public class BoundedQueryResultsCacheTest extends TestCase
+{
+    BoundedQueryResultsCache cache;
+
+    protected void setUp() throws Exception
+    {
+        Map<String, Object> props = new HashMap<>();
+        props.put(PropertyNames.PROPERTY_CACHE_QUERYRESULTS_MAX_WEIGHT, "100");
+        NucleusContext nucCtx = new PersistenceNucleusContextImpl(null, props);
+        cache = new BoundedQueryResultsCache(nucCtx);
+    }
+
+    private static List<Object> results(int num)
+    {
+        List<Object> results = new ArrayList<>();
+        for (int i=0;i<num;i++)
+        {
+            results.add(Integer.valueOf(i));
+        }
+        return results;
+    }
+
+    public void testWeightIsBounded()
+    {
+        for (int i=0;i<50;i++)
+        {
+            cache.put("JDOQL:SELECT FROM mydomain.A WHERE x == " + i + ":", results(10));
+            assertTrue("Weight of cache is " + cache.getWeight(), cache.getWeight() <= 100);
+        }
+        assertTrue(cache.size() <= 10);
+
+        // Results that could never fit are not cached
+        assertNull(cache.put("JDOQL:SELECT FROM mydomain.B:", results(101)));
+        assertFalse(cache.contains("JDOQL:SELECT FROM mydomain.B:"));
+    }
+
+    public void testFrequentlyUsedEntrySurvivesScan()
+    {
+        String hotKey = "JDOQL:SELECT FROM mydomain.A WHERE hot:";
+        cache.put(hotKey, results(10));
+        for (int i=0;i<10;i++)
+        {
+            assertNotNull(cache.get(hotKey));
+        }
+
+        // One-off queries should not displace the frequently used query
+        for (int i=0;i<100;i++)
+        {
+            cache.put("JDOQL:SELECT FROM mydomain.A WHERE x == " + i + ":", results(10));
+        }
+        assertNotNull(cache.get(hotKey));
+    }
+
+    public void testPerQueryExpiry() throws Exception
+    {
+        cache.put("JDOQL:SELECT FROM mydomain.A:", results(1), null, 1);
+        cache.put("JDOQL:SELECT FROM mydomain.B:", results(1), null, -1);
+        Thread.sleep(20);
+        assertNull(cache.get("JDOQL:SELECT FROM mydomain.A:"));
+        assertNotNull(cache.get("JDOQL:SELECT FROM mydomain.B:"));
+    }
+
+    public void testClearAtClose()
+    {
+        cache.put("JDOQL:SELECT FROM mydomain.A:", results(1));
+        cache.close();
+        assertEquals(0, cache.size());
+
+        Map<String, Object> props = new HashMap<>();
+        props.put(PropertyNames.PROPERTY_CACHE_QUERYRESULTS_CLEARATCLOSE, "false");
+        BoundedQueryResultsCache retainedCache = new BoundedQueryResultsCache(new PersistenceNucleusContextImpl(null, props));
+        retainedCache.put("JDOQL:SELECT FROM mydomain.A:", results(1));
+        retainedCache.close();
+        assertEquals(1, retainedCache.size());
+    }
+}
@@ -0,0 +1,171 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.query.inmemory;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.exceptions.NucleusUserException;
+import org.datanucleus.store.query.QueryManager;
+import org.datanucleus.store.query.compiler.QueryCompilation;
+import org.datanucleus.store.query.expression.DyadicExpression;
+import org.datanucleus.store.query.expression.Expression;
+import org.datanucleus.store.query.expression.InvokeExpression;
+import org.datanucleus.store.query.expression.PrimaryExpression;
+import org.datanucleus.store.query.inmemory.InMemoryCompilation.MemberAccessor;
+import org.datanucleus.store.query.inmemory.InMemoryCompilation.MemberPath;
+import org.datanucleus.store.query.inmemory.InMemoryCompilation.MethodBinding;
+
+/**
+ * Tests for the compilation of a query for in-memory evaluation.
+ */
+public class InMemoryCompilationTest extends TestCase
+{
+    static class Person
+    {
+        private String name;
+        private Person manager;
+
+        Person(String name, Person manager)
+        {
+            this.name = name;
+            this.manager = manager;
+        }
+    }
+
+    static class Employee extends Person
+    {
+        Employee(String name, Person manager)
+        {
+            super(name, manager);
+        }
+    }
+
+    public void testCompile()
+    {
+        PrimaryExpression nameExpr = new PrimaryExpression(Arrays.asList("manager", "name"));
+        PrimaryExpression otherExpr = new PrimaryExpression(Arrays.asList("name"));
+        InvokeExpression invokeExpr = new InvokeExpression(otherExpr, "toUpperCase", new ArrayList<Expression>());
+        Expression filter = new DyadicExpression(nameExpr, Expression.OP_EQ, invokeExpr);
+        QueryCompilation compilation = new QueryCompilation(Person.class, "this", null, null, null, filter, null, null, null, null);
+
+        InMemoryCompilation inmemoryCompilation = InMemoryCompilation.getForCompilation(compilation);
+        assertSame(inmemoryCompilation, InMemoryCompilation.getForCompilation(compilation));
+        assertEquals(2, inmemoryCompilation.getMemberAccessors(nameExpr).length);
+        assertEquals("name", inmemoryCompilation.getMemberAccessors(otherExpr)[0].getMemberName());
+        assertEquals("toUpperCase", inmemoryCompilation.getMethodBinding(invokeExpr).getMethodName());
+        assertNull(inmemoryCompilation.getMemberAccessors(new PrimaryExpression(Arrays.asList("name"))));
+
+        // Changing the filter discards the in-memory compilation
+        compilation.setExprFilter(nameExpr);
+        assertNotSame(inmemoryCompilation, InMemoryCompilation.getForCompilation(compilation));
+    }
+
+    public void testMemberPaths()
+    {
+        Expression filter = new DyadicExpression(new PrimaryExpression(Arrays.asList("this", "manager", "name")), Expression.OP_EQ,
+            new PrimaryExpression(Arrays.asList("name")));
+        Expression[] ordering = new Expression[] {new PrimaryExpression(Arrays.asList("manager", "manager"))};
+        QueryCompilation compilation = new QueryCompilation(Person.class, "this", null, null, null, filter, null, null, ordering, null);
+
+        InMemoryCompilation inmemoryCompilation = new InMemoryCompilation(compilation);
+        MemberPath filterPaths = inmemoryCompilation.getFilterMemberPaths();
+        assertEquals(Arrays.asList("manager", "name"), new ArrayList<>(filterPaths.getMembers().keySet()));
+        assertEquals(Arrays.asList("name"), new ArrayList<>(filterPaths.getMembers().get("manager").getMembers().keySet()));
+        assertTrue(filterPaths.getMembers().get("name").isEmpty());
+
+        MemberPath orderingPaths = inmemoryCompilation.getOrderingMemberPaths();
+        assertEquals(1, orderingPaths.getMembers().size());
+        assertTrue(orderingPaths.getMembers().get("manager").getMembers().get("manager").isEmpty());
+        assertTrue(inmemoryCompilation.getResultMemberPaths().isEmpty());
+    }
+
+    public void testMemberAccessor()
+    {
+        Person boss = new Person("Boss", null);
+        Person emp = new Employee("Fred", boss);
+
+        MemberAccessor[] accessors = new MemberAccessor[] {new MemberAccessor("manager"), new MemberAccessor("name")};
+        assertSame(boss, accessors[0].getValue(emp, null));
+        assertEquals("Boss", accessors[1].getValue(accessors[0].getValue(emp, null), null));
+        assertEquals("Fred", accessors[1].getValue(emp, null));
+        assertNull(accessors[1].getValue(accessors[0].getValue(boss, null), null));
+
+        try
+        {
+            new MemberAccessor("salary").getValue(emp, null);
+            fail("Expected NucleusUserException for unknown field");
+        }
+        catch (NucleusUserException nue)
+        {
+            // Expected
+        }
+    }
+
+    public void testMemberAccessorBoundPerClass()
+    {
+        Person boss = new Person("Boss", null);
+        Person emp = new Employee("Fred", boss);
+
+        // Alternating candidate classes retain the binding for each class
+        MemberAccessor accessor = new MemberAccessor("name");
+        assertEquals("Fred", accessor.getValue(emp, null));
+        assertEquals("Boss", accessor.getValue(boss, null));
+        InMemoryCompilation.MemberBinding empBinding = accessor.bindings.get(Employee.class);
+        InMemoryCompilation.MemberBinding bossBinding = accessor.bindings.get(Person.class);
+        assertNotNull(empBinding);
+        assertNotNull(bossBinding);
+        assertEquals("Fred", accessor.getValue(emp, null));
+        assertEquals("Boss", accessor.getValue(boss, null));
+        assertEquals(2, accessor.bindings.size());
+        assertSame(empBinding, accessor.bindings.get(Employee.class));
+        assertSame(bossBinding, accessor.bindings.get(Person.class));
+    }
+
+    public void testMethodBindingPerType()
+    {
+        Map<Class, Integer> lookups = new HashMap<>();
+        InvocationEvaluator stringEvaluator = (expr, invokedValue, eval) -> "string";
+        QueryManager queryMgr = (QueryManager)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {QueryManager.class},
+            (proxy, method, args) ->
+            {
+                if (method.getName().equals("getInMemoryEvaluatorForMethod"))
+                {
+                    lookups.merge((Class)args[0], 1, Integer::sum);
+                    return args[0] == String.class ? stringEvaluator : null;
+                }
+                return null;
+            });
+
+        MethodBinding binding = new MethodBinding("toUpperCase");
+        for (int i=0;i<3;i++)
+        {
+            assertSame(stringEvaluator, binding.getEvaluator(String.class, queryMgr));
+            assertNull(binding.getEvaluator(Integer.class, queryMgr));
+            assertNull(binding.getEvaluator(null, queryMgr));
+        }
+        assertEquals(Integer.valueOf(1), lookups.get(String.class));
+        assertEquals(Integer.valueOf(1), lookups.get(Integer.class));
+        assertEquals(Integer.valueOf(1), lookups.get(null));
+    }
+}
@@ -0,0 +1,342 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.query.inmemory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.ExecutionContext;
+import org.datanucleus.api.ApiAdapter;
+import org.datanucleus.metadata.AbstractMemberMetaData;
+import org.datanucleus.metadata.ClassMetaData;
+import org.datanucleus.metadata.FieldMetaData;
+import org.datanucleus.metadata.FileMetaData;
+import org.datanucleus.state.DNStateManager;
+import org.datanucleus.state.LifeCycleState;
+import org.datanucleus.store.StorePersistenceHandler;
+import org.datanucleus.store.StoreManager;
+import org.datanucleus.store.query.Extent;
+import org.datanucleus.store.query.Query;
+import org.datanucleus.store.query.compiler.QueryCompilation;
+import org.datanucleus.store.query.expression.DyadicExpression;
+import org.datanucleus.store.query.expression.Expression;
+import org.datanucleus.store.query.expression.Literal;
+import org.datanucleus.store.query.expression.PrimaryExpression;
+import org.datanucleus.util.MockUtils;
+
+/**
+ * Tests for the in-memory evaluation of a query filter, serially and in parallel.
+ */
+public class JavaQueryInMemoryEvaluatorTest extends TestCase
+{
+    static class Person
+    {
+        private int age;
+
+        Person(int age)
+        {
+            this.age = age;
+        }
+    }
+
+    /** Threads that evaluated a candidate. */
+    Set<Thread> evaluatingThreads = ConcurrentHashMap.newKeySet();
+
+    /** Number of evaluators created. */
+    AtomicInteger evaluatorCount = new AtomicInteger();
+
+    private ExecutionContext createExecutionContext(boolean multithreaded)
+    {
+        ApiAdapter api = MockUtils.mock(ApiAdapter.class, (proxy, method, args) ->
+        {
+            if (method.getName().equals("isPersistent"))
+            {
+                evaluatingThreads.add(Thread.currentThread());
+            }
+            return MockUtils.getDefaultValue(method);
+        });
+        StoreManager storeMgr = MockUtils.mock(StoreManager.class);
+        return MockUtils.mock(ExecutionContext.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getMultithreaded" :
+                    return multithreaded;
+                case "getApiAdapter" :
+                    return api;
+                case "getStoreManager" :
+                    // Called by each InMemoryExpressionEvaluator when created
+                    evaluatorCount.incrementAndGet();
+                    return storeMgr;
+                default :
+                    return MockUtils.getDefaultValue(method);
+            }
+        });
+    }
+
+    private Query createQuery(ExecutionContext ec, int parallelThreshold)
+    {
+        Query query = new Query(null, ec)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String getLanguage()
+            {
+                return "JDOQL";
+            }
+
+            @Override
+            public void setCandidates(Extent pcs)
+            {
+            }
+
+            @Override
+            public void setCandidates(Collection pcs)
+            {
+            }
+
+            @Override
+            protected void compileInternal(Map parameterValues)
+            {
+            }
+
+            @Override
+            protected Object performExecute(Map parameters)
+            {
+                return null;
+            }
+        };
+        query.addExtension(Query.EXTENSION_EVALUATE_IN_MEMORY_PARALLEL_THRESHOLD, parallelThreshold);
+        query.addExtension(Query.EXTENSION_EVALUATE_IN_MEMORY_PREFETCH, Boolean.FALSE);
+        return query;
+    }
+
+    private Collection<Object> evaluate(List<Object> candidates, boolean multithreaded, int parallelThreshold)
+    {
+        evaluatingThreads.clear();
+        evaluatorCount.set(0);
+
+        Expression filter = new DyadicExpression(new PrimaryExpression(Arrays.asList("age")), Expression.OP_GT, new Literal(Integer.valueOf(500)));
+        QueryCompilation compilation = new QueryCompilation(Person.class, "this", null, null, null, filter, null, null, null, null);
+        Query query = createQuery(createExecutionContext(multithreaded), parallelThreshold);
+        JDOQLInMemoryEvaluator evaluator = new JDOQLInMemoryEvaluator(query, candidates, compilation, new HashMap(), null);
+        return evaluator.execute(true, false, false, false, false);
+    }
+
+    public void testParallelFilterMatchesSerial()
+    {
+        List<Object> candidates = new ArrayList<>();
+        for (int i=0;i<5000;i++)
+        {
+            candidates.add(new Person((i * 7919) % 1000));
+        }
+
+        Collection<Object> serialResults = evaluate(candidates, true, -1);
+        assertEquals(Arrays.asList(Thread.currentThread()), new ArrayList<>(evaluatingThreads));
+        assertEquals(2495, serialResults.size());
+
+        Collection<Object> parallelResults = evaluate(candidates, true, 100);
+        assertEquals(new ArrayList<>(serialResults), new ArrayList<>(parallelResults));
+
+        // Each candidate is evaluated with its own evaluator, as when evaluating serially
+        assertEquals(candidates.size() + 1, evaluatorCount.get());
+        if (ForkJoinPool.getCommonPoolParallelism() > 1)
+        {
+            evaluatingThreads.remove(Thread.currentThread());
+            assertFalse(evaluatingThreads.isEmpty());
+        }
+    }
+
+    public void testNoParallelFilterWhenNotMultithreaded()
+    {
+        List<Object> candidates = new ArrayList<>();
+        for (int i=0;i<5000;i++)
+        {
+            candidates.add(new Person(i % 1000));
+        }
+
+        Collection<Object> results = evaluate(candidates, false, 100);
+        assertEquals(2495, results.size());
+        assertEquals(Arrays.asList(Thread.currentThread()), new ArrayList<>(evaluatingThreads));
+    }
+
+    /**
+     * State of a mock StateManager for a Person, recording how its age field was loaded.
+     */
+    static class PersonState
+    {
+        final Person person;
+        final boolean embedded;
+        final boolean deleted;
+        final boolean inLevel2Cache;
+        boolean loaded;
+        boolean loadedFromLevel2Cache;
+        boolean fetched;
+        boolean level2CacheUpdated;
+
+        PersonState(Person person, boolean embedded, boolean deleted, boolean inLevel2Cache)
+        {
+            this.person = person;
+            this.embedded = embedded;
+            this.deleted = deleted;
+            this.inLevel2Cache = inLevel2Cache;
+        }
+    }
+
+    public void testPrefetchUsesLevel2CacheAndSkipsEmbeddedAndDeleted()
+    {
+        ClassMetaData cmd = new ClassMetaData(new FileMetaData().newPackageMetaData("test"), "Person")
+        {
+            private static final long serialVersionUID = 1L;
+            final AbstractMemberMetaData ageMmd = new FieldMetaData(this, "age")
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public int getAbsoluteFieldNumber()
+                {
+                    return 0;
+                }
+            };
+
+            @Override
+            public AbstractMemberMetaData getMetaDataForMember(String name)
+            {
+                return name.equals("age") ? ageMmd : null;
+            }
+        };
+        LifeCycleState lifecycleState = new LifeCycleState()
+        {
+            @Override
+            public String toString()
+            {
+                return "P_CLEAN";
+            }
+        };
+
+        PersonState unloaded = new PersonState(new Person(600), false, false, false);
+        PersonState cached = new PersonState(new Person(700), false, false, true);
+        PersonState embedded = new PersonState(new Person(800), true, false, false);
+        PersonState deleted = new PersonState(new Person(100), false, true, false);
+        Map<Object, DNStateManager> smsByObject = new HashMap<>();
+        Map<DNStateManager, PersonState> statesBySM = new HashMap<>();
+        for (PersonState state : Arrays.asList(unloaded, cached, embedded, deleted))
+        {
+            DNStateManager sm = MockUtils.mock(DNStateManager.class, (proxy, method, args) ->
+            {
+                switch (method.getName())
+                {
+                    case "getClassMetaData" :
+                        return cmd;
+                    case "getLifecycleState" :
+                        return lifecycleState;
+                    case "isEmbedded" :
+                        return state.embedded;
+                    case "isDeleted" :
+                        return state.deleted;
+                    case "isFieldLoaded" :
+                        return state.loaded;
+                    case "loadFieldsFromLevel2Cache" :
+                        if (state.inLevel2Cache)
+                        {
+                            state.loaded = true;
+                            state.loadedFromLevel2Cache = true;
+                            return null;
+                        }
+                        return args[0];
+                    case "updateLevel2CacheForFields" :
+                        state.level2CacheUpdated = true;
+                        return null;
+                    case "isLoaded" :
+                        state.loaded = true;
+                        return true;
+                    case "provideField" :
+                        return state.person.age;
+                    case "hashCode" :
+                        return System.identityHashCode(proxy);
+                    case "equals" :
+                        return proxy == args[0];
+                    default :
+                        return MockUtils.getDefaultValue(method);
+                }
+            });
+            smsByObject.put(state.person, sm);
+            statesBySM.put(sm, state);
+        }
+
+        StorePersistenceHandler persistenceHandler = MockUtils.mock(StorePersistenceHandler.class, (proxy, method, args) ->
+            {
+                if (method.getName().equals("fetchObjects"))
+                {
+                    for (DNStateManager sm : (DNStateManager[])args[1])
+                    {
+                        statesBySM.get(sm).fetched = true;
+                        statesBySM.get(sm).loaded = true;
+                    }
+                }
+                return MockUtils.getDefaultValue(method);
+            });
+        StoreManager storeMgr = MockUtils.mock(StoreManager.class,
+            (proxy, method, args) -> method.getName().equals("getPersistenceHandler") ? persistenceHandler : MockUtils.getDefaultValue(method));
+        ApiAdapter api = MockUtils.mock(ApiAdapter.class,
+            (proxy, method, args) -> method.getName().equals("isPersistent") ? Boolean.valueOf(smsByObject.containsKey(args[0])) : MockUtils.getDefaultValue(method));
+        ExecutionContext ec = MockUtils.mock(ExecutionContext.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getApiAdapter" :
+                    return api;
+                case "getStoreManager" :
+                    return storeMgr;
+                case "findStateManager" :
+                    return smsByObject.get(args[0]);
+                default :
+                    return MockUtils.getDefaultValue(method);
+            }
+        });
+
+        Expression filter = new DyadicExpression(new PrimaryExpression(Arrays.asList("age")), Expression.OP_GT, new Literal(Integer.valueOf(500)));
+        QueryCompilation compilation = new QueryCompilation(Person.class, "this", null, null, null, filter, null, null, null, null);
+        Query query = createQuery(ec, -1);
+        query.addExtension(Query.EXTENSION_EVALUATE_IN_MEMORY_PREFETCH, Boolean.TRUE);
+        List<Object> candidates = Arrays.asList(unloaded.person, cached.person, embedded.person, deleted.person);
+        Collection<Object> results = new JDOQLInMemoryEvaluator(query, candidates, compilation, new HashMap(), null).execute(true, false, false, false, false);
+        assertEquals(Arrays.asList(unloaded.person, cached.person, embedded.person), new ArrayList<>(results));
+
+        // Only the object not in the L2 cache is fetched from the datastore, and then put in the L2 cache
+        assertTrue(unloaded.fetched);
+        assertTrue(unloaded.level2CacheUpdated);
+        assertTrue(cached.loadedFromLevel2Cache);
+        assertFalse(cached.fetched);
+        assertFalse(embedded.fetched);
+        assertFalse(embedded.loadedFromLevel2Cache);
+        assertFalse(deleted.fetched);
+        assertFalse(deleted.loadedFromLevel2Cache);
+    }
+}
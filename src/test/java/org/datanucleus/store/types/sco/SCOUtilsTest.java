@@ -116,6 +116,27 @@ public class SCOUtilsTest extends TestCase
         assertFalse("List should not be marked as updated when nothing changes", updated);
     }
 
+    /**
+     * Test of the entries to put when replacing a map.
+     */
+    public void testGetMapEntriesToPut()
+    {
+        java.util.Map<String, Integer> previousMap = new java.util.HashMap<>();
+        previousMap.put("A", 1);
+        previousMap.put("B", 2);
+        previousMap.put("C", null);
+        java.util.Map<String, Integer> map = new java.util.HashMap<>();
+        map.put("A", 1);
+        map.put("B", 3);
+        map.put("C", null);
+        map.put("D", 4);
+
+        java.util.Map<String, Integer> entriesToPut = SCOUtils.getMapEntriesToPut(map, previousMap);
+        assertEquals(2, entriesToPut.size());
+        assertEquals(Integer.valueOf(3), entriesToPut.get("B"));
+        assertEquals(Integer.valueOf(4), entriesToPut.get("D"));
+    }
+
     /**
      * Minimal SCOList implementation backed by an ArrayList, for testing updateListWithListElements.
      */
@@ -0,0 +1,207 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.store.types.wrappers.backed;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.ExecutionContext;
+import org.datanucleus.NucleusContext;
+import org.datanucleus.PersistenceNucleusContextImpl;
+import org.datanucleus.flush.MapClearOperation;
+import org.datanucleus.flush.MapPutOperation;
+import org.datanucleus.flush.Operation;
+import org.datanucleus.metadata.AbstractMemberMetaData;
+import org.datanucleus.metadata.FieldMetaData;
+import org.datanucleus.metadata.FieldPersistenceModifier;
+import org.datanucleus.state.DNStateManager;
+import org.datanucleus.store.BackedSCOStoreManager;
+import org.datanucleus.store.StoreManager;
+import org.datanucleus.store.types.scostore.MapStore;
+import org.datanucleus.store.types.scostore.SetStore;
+import org.datanucleus.util.MockUtils;
+
+/**
+ * Tests for replacing the value of a persistent Map field with a backed HashMap wrapper.
+ */
+public class HashMapTest extends TestCase
+{
+    /** Entries of the map in the datastore. */
+    Map<String, Integer> storeEntries = new TreeMap<>();
+
+    /** Updating calls made on the MapStore. */
+    List<String> storeCalls = new ArrayList<>();
+
+    /** Operations queued for the owner. */
+    List<Operation> queuedOperations = new ArrayList<>();
+
+    /** Whether the operation queue is in use. */
+    boolean queued = false;
+
+    NucleusContext nucCtx;
+
+    MapStore<String, Integer> store;
+
+    DNStateManager ownerSM;
+
+    AbstractMemberMetaData mmd;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        nucCtx = new PersistenceNucleusContextImpl(null, null);
+
+        SetStore<Map.Entry<String, Integer>> entrySetStore = MockUtils.mock(SetStore.class, (proxy, method, args) ->
+            method.getName().equals("iterator") ? new TreeMap<>(storeEntries).entrySet().iterator() : MockUtils.getDefaultValue(method));
+        store = MockUtils.mock(MapStore.class, (proxy, method, args) ->
+        {
+            if (method.isDefault())
+            {
+                return MockUtils.invokeDefault(proxy, method, args);
+            }
+            switch (method.getName())
+            {
+                case "keysAreEmbedded" :
+                case "valuesAreEmbedded" :
+                    return true;
+                case "entrySetStore" :
+                    return entrySetStore;
+                case "getOwnerMemberMetaData" :
+                    return mmd;
+                case "clear" :
+                    storeCalls.add("clear");
+                    storeEntries.clear();
+                    return null;
+                case "remove" :
+                    storeCalls.add("remove " + args[1]);
+                    return storeEntries.remove(args[1]);
+                case "put" :
+                    storeCalls.add("put " + args[1] + "=" + args[2]);
+                    return storeEntries.put((String)args[1], (Integer)args[2]);
+                case "putAll" :
+                    storeCalls.add("putAll " + new TreeMap<>((Map)args[1]));
+                    storeEntries.putAll((Map)args[1]);
+                    return null;
+                default :
+                    return MockUtils.getDefaultValue(method);
+            }
+        });
+
+        ExecutionContext ec = MockUtils.mock(ExecutionContext.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getNucleusContext" :
+                    return nucCtx;
+                case "operationQueueIsActive" :
+                    return queued;
+                case "addOperationToQueue" :
+                    queuedOperations.add((Operation)args[0]);
+                    return null;
+                default :
+                    return MockUtils.getDefaultValue(method);
+            }
+        });
+        Object storeMgr = Proxy.newProxyInstance(StoreManager.class.getClassLoader(), new Class[] {StoreManager.class, BackedSCOStoreManager.class},
+            (proxy, method, args) -> method.getName().equals("getBackingStoreForField") ? store : MockUtils.getDefaultValue(method));
+        ownerSM = MockUtils.mock(DNStateManager.class, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getExecutionContext" :
+                    return ec;
+                case "getStoreManager" :
+                    return storeMgr;
+                case "isFlushedToDatastore" :
+                    return true;
+                default :
+                    return MockUtils.getDefaultValue(method);
+            }
+        });
+
+        // Map field whose contents are not cached in the wrapper
+        mmd = new FieldMetaData(null, "map")
+        {
+            @Override
+            public int getAbsoluteFieldNumber()
+            {
+                return 0;
+            }
+        };
+        mmd.setPersistenceModifier(FieldPersistenceModifier.PERSISTENT);
+        mmd.newMapMetaData().addExtension("cache", "false");
+
+        storeEntries.put("A", 1);
+        storeEntries.put("B", 2);
+        storeEntries.put("C", 3);
+    }
+
+    private java.util.HashMap<String, Integer> getReplacementMap()
+    {
+        java.util.HashMap<String, Integer> newValue = new java.util.HashMap<>();
+        newValue.put("A", 1);
+        newValue.put("C", 30);
+        newValue.put("D", 4);
+        return newValue;
+    }
+
+    /**
+     * Test that replacing the map of a persistent object sends only the changed entries to the store,
+     * using the previous entries read from the store since the wrapper doesn't cache them.
+     */
+    public void testReplaceUpdatesOnlyChangedEntries()
+    {
+        HashMap<String, Integer> oldWrapper = new HashMap<>(ownerSM, mmd);
+        oldWrapper.initialise();
+        assertFalse(oldWrapper.isLoaded());
+
+        HashMap<String, Integer> newWrapper = new HashMap<>(ownerSM, mmd);
+        newWrapper.initialise(getReplacementMap(), oldWrapper);
+
+        assertEquals(Arrays.asList("remove B", "putAll {C=30, D=4}"), storeCalls);
+        assertEquals(new TreeMap<>(getReplacementMap()), storeEntries);
+    }
+
+    /**
+     * Test that replacing the map when the operation queue is in use queues a clear and put of all entries,
+     * since the previous entries in the store don't include any queued changes.
+     */
+    public void testReplaceQueuedReplacesAllEntries()
+    {
+        queued = true;
+        HashMap<String, Integer> oldWrapper = new HashMap<>(ownerSM, mmd);
+        oldWrapper.initialise();
+
+        HashMap<String, Integer> newWrapper = new HashMap<>(ownerSM, mmd);
+        newWrapper.initialise(getReplacementMap(), oldWrapper);
+
+        assertTrue(storeCalls.isEmpty());
+        assertEquals(4, queuedOperations.size());
+        assertTrue(queuedOperations.get(0) instanceof MapClearOperation);
+        for (int i = 1; i < 4; i++)
+        {
+            assertTrue(queuedOperations.get(i) instanceof MapPutOperation);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import junit.framework.TestCase;
+
+import org.datanucleus.management.FactoryStatistics;
+
+/**
+ * Tests for the two-phase commit of a ResourcedTransaction.
+ */
+public class ResourcedTransactionTest extends TestCase
+{
+    static class TestXAResource implements XAResource
+    {
+        final int vote;
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        TestXAResource(int vote)
+        {
+            this.vote = vote;
+        }
+
+        public void start(Xid xid, int flags) throws XAException
+        {
+            calls.add("start");
+        }
+
+        public void end(Xid xid, int flags) throws XAException
+        {
+            calls.add("end");
+        }
+
+        public int prepare(Xid xid) throws XAException
+        {
+            calls.add("prepare");
+            if (vote < 0)
+            {
+                throw new XAException(XAException.XA_RBROLLBACK);
+            }
+            return vote;
+        }
+
+        public void commit(Xid xid, boolean onePhase) throws XAException
+        {
+            calls.add("commit");
+        }
+
+        public void rollback(Xid xid) throws XAException
+        {
+            calls.add("rollback");
+        }
+
+        public void forget(Xid xid) throws XAException
+        {
+        }
+
+        public int getTransactionTimeout() throws XAException
+        {
+            return 0;
+        }
+
+        public boolean setTransactionTimeout(int seconds) throws XAException
+        {
+            return false;
+        }
+
+        public boolean isSameRM(XAResource xares) throws XAException
+        {
+            return xares == this;
+        }
+
+        public Xid[] recover(int flag) throws XAException
+        {
+            return null;
+        }
+    }
+
+    private void commitBranches(ResourcedTransaction tx, TestXAResource... resources)
+    {
+        for (TestXAResource res : resources)
+        {
+            assertTrue(tx.enlistResource(res));
+            assertTrue(tx.delistResource(res, XAResource.TMSUCCESS));
+        }
+        tx.commit();
+    }
+
+    public void testReadOnlyBranchIsNotCommitted()
+    {
+        TestXAResource res1 = new TestXAResource(XAResource.XA_OK);
+        TestXAResource res2 = new TestXAResource(XAResource.XA_RDONLY);
+        ResourcedTransaction tx = new ResourcedTransaction();
+        commitBranches(tx, res1, res2);
+
+        assertEquals(ResourcedTransaction.STATUS_COMMITTED, tx.getStatus());
+        assertEquals("[start, end, prepare, commit]", res1.calls.toString());
+        assertEquals("[start, end, prepare]", res2.calls.toString());
+    }
+
+    public void testConcurrentCommit()
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            TestXAResource res1 = new TestXAResource(XAResource.XA_OK);
+            TestXAResource res2 = new TestXAResource(XAResource.XA_OK);
+            TestXAResource res3 = new TestXAResource(XAResource.XA_RDONLY);
+            ResourcedTransaction tx = new ResourcedTransaction(executor, null);
+            commitBranches(tx, res1, res2, res3);
+
+            assertEquals(ResourcedTransaction.STATUS_COMMITTED, tx.getStatus());
+            assertEquals("[start, end, prepare, commit]", res1.calls.toString());
+            assertEquals("[start, end, prepare, commit]", res2.calls.toString());
+            assertEquals("[start, end, prepare]", res3.calls.toString());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testFailedPrepareRollsBackOtherBranches()
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            TestXAResource res1 = new TestXAResource(XAResource.XA_OK);
+            TestXAResource res2 = new TestXAResource(-1);
+            TestXAResource res3 = new TestXAResource(XAResource.XA_RDONLY);
+            ResourcedTransaction tx = new ResourcedTransaction(executor, null);
+            try
+            {
+                commitBranches(tx, res1, res2, res3);
+                fail("Expected commit to fail");
+            }
+            catch (RollbackException e)
+            {
+                // Expected
+            }
+
+            assertEquals(ResourcedTransaction.STATUS_ROLLEDBACK, tx.getStatus());
+            assertEquals("[start, end, prepare, rollback]", res1.calls.toString());
+            assertEquals("[start, end, prepare, rollback]", res2.calls.toString());
+            assertEquals("[start, end, prepare]", res3.calls.toString());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testStatusPreparedAfterSuccessfulPrepare()
+    {
+        List<Integer> preparedStatuses = new ArrayList<>();
+        ResourcedTransaction[] txHolder = new ResourcedTransaction[1];
+        FactoryStatistics statistics = new FactoryStatistics(null)
+        {
+            @Override
+            public void transactionPreparePhaseCompleted(long time)
+            {
+                super.transactionPreparePhaseCompleted(time);
+                preparedStatuses.add(txHolder[0].getStatus());
+            }
+        };
+
+        txHolder[0] = new ResourcedTransaction(null, statistics);
+        commitBranches(txHolder[0], new TestXAResource(XAResource.XA_OK), new TestXAResource(XAResource.XA_OK));
+        assertEquals(ResourcedTransaction.STATUS_COMMITTED, txHolder[0].getStatus());
+
+        txHolder[0] = new ResourcedTransaction(null, statistics);
+        try
+        {
+            commitBranches(txHolder[0], new TestXAResource(XAResource.XA_OK), new TestXAResource(-1));
+            fail("Expected commit to fail");
+        }
+        catch (RollbackException e)
+        {
+            // Expected
+        }
+
+        // Only a transaction whose branches all prepared successfully is PREPARED
+        assertEquals(Arrays.asList(ResourcedTransaction.STATUS_PREPARED, ResourcedTransaction.STATUS_PREPARING), preparedStatuses);
+    }
+}
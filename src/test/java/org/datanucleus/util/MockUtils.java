@@ -0,0 +1,88 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Utilities for creating mock implementations of interfaces in tests, using dynamic proxies.
+ */
+public final class MockUtils
+{
+    private MockUtils()
+    {
+    }
+
+    /**
+     * Method to create a mock of the specified interface where every method returns the default value for its return type.
+     * @param type The interface
+     * @return The mock
+     * @param <T> Type of the interface
+     */
+    public static <T> T mock(Class<T> type)
+    {
+        return mock(type, (proxy, method, args) -> getDefaultValue(method));
+    }
+
+    /**
+     * Method to create a mock of the specified interface with its methods answered by the specified handler.
+     * The handler can use {@link #getDefaultValue(Method)} for the methods that it doesn't need to answer.
+     * @param type The interface
+     * @param handler Handler for the method invocations
+     * @return The mock
+     * @param <T> Type of the interface
+     */
+    public static <T> T mock(Class<T> type, InvocationHandler handler)
+    {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class[] {type}, handler));
+    }
+
+    /**
+     * Method to invoke the default implementation of an interface method on a mock, for handlers that want the behaviour
+     * of default methods rather than answering them.
+     * @param proxy The mock
+     * @param method The default method
+     * @param args The arguments
+     * @return The result of the default method
+     * @throws Throwable if the default method throws it
+     */
+    public static Object invokeDefault(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        Class type = method.getDeclaringClass();
+        return MethodHandles.privateLookupIn(type, MethodHandles.lookup()).unreflectSpecial(method, type).bindTo(proxy).invokeWithArguments(args);
+    }
+
+    /**
+     * Accessor for the value for a mocked method to return when it has nothing specific to return.
+     * This is false for boolean methods, 0 for int methods and null otherwise.
+     * @param method The method
+     * @return The default value
+     */
+    public static Object getDefaultValue(Method method)
+    {
+        Class type = method.getReturnType();
+        if (type == boolean.class || type == Boolean.class)
+        {
+            return Boolean.FALSE;
+        }
+        return type == int.class ? Integer.valueOf(0) : null;
+    }
+}
@@ -0,0 +1,101 @@
+/**********************************************************************
+Copyright (c) 2026 Andy Jefferson and others. All rights reserved.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+Contributors:
+    ...
+**********************************************************************/
+package org.datanucleus.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the reading and writing of snapshot files.
+ */
+public class SnapshotFileUtilsTest extends TestCase
+{
+    private static final String HEADER = "DataNucleus-Test-1";
+
+    private static boolean isAllowedClass(Class<?> cls)
+    {
+        return cls == String.class || cls == Object[].class || cls.getPackageName().equals("java.util");
+    }
+
+    public void testWriteRead() throws Exception
+    {
+        File file = File.createTempFile("snapshot", ".ser");
+        try
+        {
+            List<String> state = new ArrayList<>(Arrays.asList("a", "b"));
+            SnapshotFileUtils.write(file, HEADER, "key1", state);
+            try (ObjectInputStream in = SnapshotFileUtils.openForRead(file, HEADER, ObjectInputStream::new, SnapshotFileUtilsTest::isAllowedClass,
+                NucleusLogger.GENERAL, "Test snapshot"))
+            {
+                assertEquals("key1", in.readUTF());
+                assertEquals(state, in.readObject());
+            }
+
+            // Other type (or version) of snapshot
+            assertNull(SnapshotFileUtils.openForRead(file, "DataNucleus-Test-2", ObjectInputStream::new, SnapshotFileUtilsTest::isAllowedClass,
+                NucleusLogger.GENERAL, "Test snapshot"));
+        }
+        finally
+        {
+            file.delete();
+        }
+        assertNull(SnapshotFileUtils.openForRead(file, HEADER, ObjectInputStream::new, SnapshotFileUtilsTest::isAllowedClass,
+            NucleusLogger.GENERAL, "Test snapshot"));
+    }
+
+    public void testOnlyAllowedClassesRead() throws Exception
+    {
+        File file = File.createTempFile("snapshot", ".ser");
+        try
+        {
+            SnapshotFileUtils.write(file, HEADER, "key1", new ArrayList<>(Arrays.asList("a", new BigDecimal("1.5"))));
+            try (ObjectInputStream in = SnapshotFileUtils.openForRead(file, HEADER, ObjectInputStream::new, SnapshotFileUtilsTest::isAllowedClass,
+                NucleusLogger.GENERAL, "Test snapshot"))
+            {
+                in.readUTF();
+                in.readObject();
+                fail("Expected the BigDecimal to be rejected");
+            }
+            catch (InvalidClassException ice)
+            {
+                // Expected
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testKey() throws Exception
+    {
+        MessageDigest digest = SnapshotFileUtils.newDigest();
+        SnapshotFileUtils.updateDigest(digest, new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", SnapshotFileUtils.getKey(digest));
+    }
+}